@@ -0,0 +1,83 @@
+package org.thermometer;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Cost of instrumenting a registry with `TemperatureMetrics` compared against
+// a registry without metrics and one whose metrics were switched off
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class MetricsOverheadBenchmark {
+
+    private static final int READING_COUNT = 4096;
+    private static final int THRESHOLD_COUNT = 100;
+
+    @State(Scope.Benchmark)
+    public static class RegistryState {
+
+        @Param({"none", "enabled", "disabled"})
+        public String metrics;
+
+        @Param({"1", "16"})
+        public int latencySampleInterval;
+
+        public ThermometerRegistry thermometerRegistry;
+        public float[] readings;
+        public int readingIndex = 0;
+
+        @Setup(Level.Trial)
+        public void setup(Blackhole blackhole) {
+            Random random = new Random(THRESHOLD_COUNT);
+
+            ThermometerRegistry.ThermometerRegistryBuilder thermometerRegistryBuilder = new ThermometerRegistry.ThermometerRegistryBuilder(1);
+
+            if (!metrics.equals("none")) {
+                TemperatureMetrics temperatureMetrics = new TemperatureMetrics.TemperatureMetricsBuilder()
+                        .latencySampleInterval(latencySampleInterval)
+                        .build();
+                temperatureMetrics.setEnabled(metrics.equals("enabled"));
+
+                thermometerRegistryBuilder.temperatureMetrics(temperatureMetrics);
+            }
+
+            thermometerRegistry = thermometerRegistryBuilder.build();
+
+            for (int thresholdIndex = 0; thresholdIndex < THRESHOLD_COUNT; thresholdIndex++) {
+                thermometerRegistry.addTemperatureThreshold(0, new TemperatureThreshold.TemperatureThresholdBuilder(random.nextFloat() * 20.0F - 10.0F)
+                        .thresholdEventCallback(blackhole::consume)
+                        .build());
+            }
+
+            readings = new float[READING_COUNT];
+            float reading = 0.0F;
+
+            for (int index = 0; index < READING_COUNT; index++) {
+                reading = Math.max(-10.0F, Math.min(10.0F, reading + (random.nextFloat() - 0.5F)));
+                readings[index] = reading;
+            }
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void singleReadingLatency(RegistryState registryState) {
+        registryState.thermometerRegistry.onTemperatureData(0, registryState.readings[registryState.readingIndex]);
+        registryState.readingIndex = (registryState.readingIndex + 1) % READING_COUNT;
+    }
+
+}
@@ -0,0 +1,98 @@
+package org.thermometer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Fahrenheit thresholds evaluated against Celsius readings. Evaluating every
+// threshold on its own converts both temperatures of a reading per threshold
+// while the index converts them once per scale, and once per reading for the
+// whole of a batch.
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ScaleConversionBenchmark {
+
+    private static final int BATCH_LENGTH = 256;
+
+    @State(Scope.Thread)
+    public static class ScaleConversionState {
+
+        @Param({"100", "10000"})
+        public int thresholdCount;
+
+        public List<TemperatureThreshold> temperatureThresholds;
+        public TemperatureThresholdIndex temperatureThresholdIndex;
+        public float[] readings;
+
+        @Setup(Level.Trial)
+        public void setup(Blackhole blackhole) {
+            Random random = new Random(thresholdCount);
+
+            temperatureThresholds = new ArrayList<>();
+            temperatureThresholdIndex = new TemperatureThresholdIndex();
+
+            for (int thresholdIndex = 0; thresholdIndex < thresholdCount; thresholdIndex++) {
+                TemperatureThreshold temperatureThreshold = new TemperatureThreshold.TemperatureThresholdBuilder(random.nextFloat() * 200.0F)
+                        .temperatureScale(TemperatureScales.FAHRENHEIT_SCALE)
+                        .thresholdEventCallback(blackhole::consume)
+                        .build();
+
+                temperatureThresholds.add(temperatureThreshold);
+            }
+
+            temperatureThresholdIndex.addTemperatureThresholds(temperatureThresholds);
+
+            readings = new float[BATCH_LENGTH];
+            float reading = 20.0F;
+
+            for (int readingIndex = 0; readingIndex < BATCH_LENGTH; readingIndex++) {
+                reading += random.nextFloat() - 0.5F;
+                readings[readingIndex] = reading;
+            }
+        }
+    }
+
+    @Benchmark
+    public void convertPerThreshold(ScaleConversionState conversionState) {
+        float[] readings = conversionState.readings;
+
+        for (int readingIndex = 1; readingIndex < readings.length; readingIndex++) {
+            for (TemperatureThreshold temperatureThreshold : conversionState.temperatureThresholds) {
+                temperatureThreshold.onTemperatureRead(readings[readingIndex], readings[readingIndex - 1], TemperatureScales.CELSIUS_SCALE);
+            }
+        }
+    }
+
+    @Benchmark
+    public void convertPerScale(ScaleConversionState conversionState) {
+        float[] readings = conversionState.readings;
+
+        for (int readingIndex = 1; readingIndex < readings.length; readingIndex++) {
+            conversionState.temperatureThresholdIndex.onTemperatureRead(readings[readingIndex], readings[readingIndex - 1], TemperatureScales.CELSIUS_SCALE);
+        }
+    }
+
+    @Benchmark
+    public void convertPerScaleBatch(ScaleConversionState conversionState) {
+        conversionState.temperatureThresholdIndex.onTemperatureReads(
+                conversionState.readings, 0, conversionState.readings.length, TemperatureScales.CELSIUS_SCALE);
+    }
+
+}
@@ -0,0 +1,144 @@
+package org.thermometer;
+
+import java.util.Random;
+
+// Readings of a single synthetic sensor oscillating around a setpoint. Streams
+// built with the same shape, settings and seed produce the same readings so a
+// load can be reproduced exactly. Not thread safe, every stream is meant to be
+// driven by a single producer.
+public class SyntheticTemperatureStream {
+
+    public static final float DEFAULT_SETPOINT = 20.0F;
+    public static final float DEFAULT_AMPLITUDE = 5.0F;
+    public static final int DEFAULT_PERIOD_READINGS = 1_000;
+    public static final float DEFAULT_NOISE = 0.1F;
+
+    public enum SignalShapes {
+        // Gaussian steps pulled back towards the setpoint
+        RANDOM_WALK,
+        // A sine wave of `periodReadings` readings with gaussian noise on top
+        SINE_WITH_NOISE,
+        // Jumps to a new level within the amplitude every `periodReadings`
+        // readings with gaussian noise on top
+        STEP_CHANGES
+    }
+
+    private final SignalShapes signalShape;
+    private final float setpoint;
+    private final float amplitude;
+    private final int periodReadings;
+    private final float noise;
+    private final Random random;
+
+    private long readingIndex = 0L;
+    private float level;
+
+    private SyntheticTemperatureStream(SignalShapes signalShape, float setpoint, float amplitude, int periodReadings, float noise, long seed) {
+        this.signalShape = signalShape;
+        this.setpoint = setpoint;
+        this.amplitude = amplitude;
+        this.periodReadings = periodReadings;
+        this.noise = noise;
+        this.random = new Random(seed);
+        this.level = setpoint;
+    }
+
+    public static class SyntheticTemperatureStreamBuilder {
+
+        private final SignalShapes signalShape;
+        private final long seed;
+        private float setpoint = DEFAULT_SETPOINT;
+        private float amplitude = DEFAULT_AMPLITUDE;
+        private int periodReadings = DEFAULT_PERIOD_READINGS;
+        private float noise = DEFAULT_NOISE;
+
+        public SyntheticTemperatureStreamBuilder(SignalShapes signalShape, long seed) throws IllegalArgumentException {
+            if (signalShape == null) {
+                throw new IllegalArgumentException("Signal shape can't be 'null'");
+            }
+
+            this.signalShape = signalShape;
+            this.seed = seed;
+        }
+
+        public SyntheticTemperatureStream build() {
+            return new SyntheticTemperatureStream(
+                    this.signalShape,
+                    this.setpoint,
+                    this.amplitude,
+                    this.periodReadings,
+                    this.noise,
+                    this.seed);
+        }
+
+        public SyntheticTemperatureStreamBuilder setpoint(float setpoint) throws IllegalArgumentException {
+            if (!Float.isFinite(setpoint)) {
+                throw new IllegalArgumentException("Setpoint must be a finite temperature");
+            }
+
+            this.setpoint = setpoint;
+            return this;
+        }
+
+        public SyntheticTemperatureStreamBuilder amplitude(float amplitude) throws IllegalArgumentException {
+            if (!(amplitude >= 0.0F) || Float.isInfinite(amplitude)) {
+                throw new IllegalArgumentException("Amplitude must be a finite temperature of at least '0'");
+            }
+
+            this.amplitude = amplitude;
+            return this;
+        }
+
+        public SyntheticTemperatureStreamBuilder periodReadings(int periodReadings) throws IllegalArgumentException {
+            if (periodReadings < 2) {
+                throw new IllegalArgumentException("Period must be at least '2' readings");
+            }
+
+            this.periodReadings = periodReadings;
+            return this;
+        }
+
+        public SyntheticTemperatureStreamBuilder noise(float noise) throws IllegalArgumentException {
+            if (!(noise >= 0.0F) || Float.isInfinite(noise)) {
+                throw new IllegalArgumentException("Noise must be a finite temperature of at least '0'");
+            }
+
+            this.noise = noise;
+            return this;
+        }
+    }
+
+    public float nextTemperature() {
+        long currentIndex = readingIndex++;
+        float gaussianNoise = (float) random.nextGaussian() * noise;
+
+        switch (signalShape) {
+            case RANDOM_WALK:
+                // Reverts to the setpoint over roughly a period so the walk
+                // keeps oscillating around it rather than drifting away
+                level += gaussianNoise + (setpoint - level) / periodReadings;
+                return level;
+            case SINE_WITH_NOISE:
+                return setpoint + amplitude * (float) Math.sin(2.0 * Math.PI * (currentIndex % periodReadings) / periodReadings) + gaussianNoise;
+            default:
+                if (currentIndex % periodReadings == 0) {
+                    level = setpoint + amplitude * (2.0F * random.nextFloat() - 1.0F);
+                }
+
+                return level + gaussianNoise;
+        }
+    }
+
+    public SignalShapes getSignalShape() {
+        return signalShape;
+    }
+
+    public float getSetpoint() {
+        return setpoint;
+    }
+
+    public float getAmplitude() {
+        return amplitude;
+    }
+
+}
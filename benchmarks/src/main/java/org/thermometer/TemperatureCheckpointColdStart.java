@@ -0,0 +1,87 @@
+package org.thermometer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Reports how long a restart takes to get alerting live again when its
+// thresholds are loaded from their CSV config and when the thresholds and
+// temperatures are restored from a `TemperatureCheckpoint`.
+//
+// mvn package -DskipTests
+// java -cp benchmarks/target/benchmarks.jar org.thermometer.TemperatureCheckpointColdStart
+public class TemperatureCheckpointColdStart {
+
+    private static final int SENSOR_COUNT = 50_000;
+    private static final int THRESHOLDS_PER_SENSOR = 4;
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws IOException {
+        Random random = new Random(SENSOR_COUNT);
+        Path configPath = Files.createTempFile("thresholds", ".csv");
+        Path checkpointPath = Files.createTempFile("thermometers", ".checkpoint");
+
+        try {
+            List<String> configLines = new ArrayList<>();
+
+            for (int sensorId = 0; sensorId < SENSOR_COUNT; sensorId++) {
+                for (int thresholdIndex = 0; thresholdIndex < THRESHOLDS_PER_SENSOR; thresholdIndex++) {
+                    configLines.add(String.format("%d,%.1f,CELSIUS_SCALE,,,alert", sensorId, random.nextFloat() * 40.0F));
+                }
+            }
+
+            Files.write(configPath, configLines, StandardCharsets.UTF_8);
+
+            Map<String, FloatConsumer> thresholdEventCallbacks = Map.of("alert", newTemperature -> {
+            });
+
+            ThermometerRegistry thermometerRegistry = new ThermometerRegistry.ThermometerRegistryBuilder(SENSOR_COUNT).build();
+            TemperatureThresholdConfig temperatureThresholdConfig = TemperatureThresholdConfig.parse(configPath);
+
+            for (int sensorId = 0; sensorId < SENSOR_COUNT; sensorId++) {
+                thermometerRegistry.onTemperatureData(sensorId, random.nextFloat() * 40.0F);
+                thermometerRegistry.onTemperatureData(sensorId, random.nextFloat() * 40.0F);
+            }
+
+            TemperatureCheckpoint.capture(thermometerRegistry, temperatureThresholdConfig.getThresholdDefinitions()).write(checkpointPath);
+
+            System.out.println(String.format("%d thresholds across %d sensors, %d byte checkpoint",
+                    configLines.size(), SENSOR_COUNT, Files.size(checkpointPath)));
+
+            for (int round = 0; round < ROUNDS; round++) {
+                long startNanos = System.nanoTime();
+
+                ThermometerRegistry configRegistry = new ThermometerRegistry.ThermometerRegistryBuilder(SENSOR_COUNT).build();
+                TemperatureThresholdConfig reloadedConfig = TemperatureThresholdConfig.parse(configPath);
+
+                for (TemperatureThresholdConfig.ThresholdDefinition thresholdDefinition : reloadedConfig.getThresholdDefinitions()) {
+                    configRegistry.addTemperatureThreshold(thresholdDefinition.getSensorId(), thresholdDefinition.newTemperatureThreshold(thresholdEventCallbacks.get("alert")));
+                }
+
+                long configNanos = System.nanoTime() - startNanos;
+                startNanos = System.nanoTime();
+
+                ThermometerRegistry checkpointRegistry = new ThermometerRegistry.ThermometerRegistryBuilder(SENSOR_COUNT).build();
+                TemperatureCheckpoint temperatureCheckpoint = TemperatureCheckpoint.read(checkpointPath);
+                temperatureCheckpoint.restoreTemperatures(checkpointRegistry);
+                temperatureCheckpoint.restoreThresholds(checkpointRegistry, thresholdEventCallbacks);
+
+                long checkpointNanos = System.nanoTime() - startNanos;
+
+                System.out.println(String.format("config: %.1f ms (no temperatures), checkpoint: %.1f ms",
+                        configNanos / (double) TimeUnit.MILLISECONDS.toNanos(1),
+                        checkpointNanos / (double) TimeUnit.MILLISECONDS.toNanos(1)));
+            }
+        } finally {
+            Files.deleteIfExists(configPath);
+            Files.deleteIfExists(checkpointPath);
+        }
+    }
+
+}
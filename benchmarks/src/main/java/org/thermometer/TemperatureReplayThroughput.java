@@ -0,0 +1,60 @@
+package org.thermometer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+// Reports how many readings per second a memory-mapped log can be replayed
+// into a `ThermometerRegistry` as fast as possible.
+//
+// mvn package -DskipTests
+// java -cp benchmarks/target/benchmarks.jar org.thermometer.TemperatureReplayThroughput
+public class TemperatureReplayThroughput {
+
+    private static final int SENSOR_COUNT = 10_000;
+    private static final int READING_COUNT = 20_000_000;
+    private static final int THRESHOLDS_PER_SENSOR = 4;
+    private static final int REPLAY_ROUNDS = 5;
+
+    public static void main(String[] args) throws IOException {
+        Random random = new Random(READING_COUNT);
+        Path binaryPath = Files.createTempFile("readings", ".bin");
+
+        try {
+            float[] sensorTemperatures = new float[SENSOR_COUNT];
+
+            try (TemperatureRecordWriter temperatureRecordWriter = new TemperatureRecordWriter(binaryPath)) {
+                for (int readingIndex = 0; readingIndex < READING_COUNT; readingIndex++) {
+                    int sensorId = random.nextInt(SENSOR_COUNT);
+                    sensorTemperatures[sensorId] += random.nextFloat() - 0.5F;
+
+                    temperatureRecordWriter.write(readingIndex, sensorId, sensorTemperatures[sensorId]);
+                }
+            }
+
+            long[] triggeredCount = new long[1];
+
+            ThermometerRegistry thermometerRegistry = new ThermometerRegistry.ThermometerRegistryBuilder(SENSOR_COUNT).build();
+
+            for (int sensorId = 0; sensorId < SENSOR_COUNT; sensorId++) {
+                for (int thresholdIndex = 0; thresholdIndex < THRESHOLDS_PER_SENSOR; thresholdIndex++) {
+                    thermometerRegistry.addTemperatureThreshold(sensorId, new TemperatureThreshold.TemperatureThresholdBuilder(thresholdIndex - 2)
+                            .thresholdEventCallback(newTemperature -> triggeredCount[0]++)
+                            .build());
+                }
+            }
+
+            TemperatureReplaySource temperatureReplaySource = new TemperatureReplaySource.TemperatureReplaySourceBuilder(binaryPath).build();
+
+            for (int round = 0; round < REPLAY_ROUNDS; round++) {
+                System.out.println(temperatureReplaySource.replay(thermometerRegistry));
+            }
+
+            System.out.println(String.format("(%d thresholds triggered)", triggeredCount[0]));
+        } finally {
+            Files.deleteIfExists(binaryPath);
+        }
+    }
+
+}
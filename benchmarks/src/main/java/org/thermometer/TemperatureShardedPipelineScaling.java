@@ -0,0 +1,117 @@
+package org.thermometer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntFunction;
+
+// Reports how many readings per second producers that share every sensor get
+// through when providing them to a `ThermometerRegistry` directly and when
+// handing them to a `TemperatureShardedPipeline` with a growing number of
+// shards.
+//
+// mvn package -DskipTests
+// java -cp benchmarks/target/benchmarks.jar org.thermometer.TemperatureShardedPipelineScaling
+public class TemperatureShardedPipelineScaling {
+
+    private static final int SENSOR_COUNT = 1_000;
+    private static final int THRESHOLDS_PER_SENSOR = 4;
+    private static final int PRODUCER_COUNT = Math.max(2, Runtime.getRuntime().availableProcessors() / 2);
+    private static final int READINGS_PER_PRODUCER = 5_000_000;
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) {
+        for (int round = 0; round < ROUNDS; round++) {
+            ThermometerRegistry thermometerRegistry = newThermometerRegistry();
+
+            report("direct", measure(producerIndex -> thermometerRegistry::onTemperatureData));
+
+            for (int shardCount = 1; shardCount <= Runtime.getRuntime().availableProcessors(); shardCount *= 2) {
+                try (TemperatureShardedPipeline temperatureShardedPipeline = new TemperatureShardedPipeline.TemperatureShardedPipelineBuilder(newThermometerRegistry())
+                        .shardCount(shardCount)
+                        .build()) {
+
+                    List<TemperatureShardedPipeline.PipelineProducer> pipelineProducers = new ArrayList<>();
+
+                    for (int producerIndex = 0; producerIndex < PRODUCER_COUNT; producerIndex++) {
+                        pipelineProducers.add(temperatureShardedPipeline.newProducer());
+                    }
+
+                    long startNanos = System.nanoTime();
+                    measure(producerIndex -> pipelineProducers.get(producerIndex)::onTemperatureData);
+
+                    // Only count the readings once the shards have provided
+                    // them all
+                    pipelineProducers.forEach(TemperatureShardedPipeline.PipelineProducer::close);
+                    temperatureShardedPipeline.close();
+
+                    report(String.format("%d shards", shardCount), System.nanoTime() - startNanos);
+                }
+            }
+
+            System.out.println();
+        }
+    }
+
+    private static ThermometerRegistry newThermometerRegistry() {
+        ThermometerRegistry thermometerRegistry = new ThermometerRegistry.ThermometerRegistryBuilder(SENSOR_COUNT).build();
+
+        for (int sensorId = 0; sensorId < SENSOR_COUNT; sensorId++) {
+            for (int thresholdIndex = 0; thresholdIndex < THRESHOLDS_PER_SENSOR; thresholdIndex++) {
+                thermometerRegistry.addTemperatureThreshold(sensorId, new TemperatureThreshold.TemperatureThresholdBuilder(thresholdIndex - 2)
+                        .thresholdEventCallback(newTemperature -> {
+                        })
+                        .build());
+            }
+        }
+
+        return thermometerRegistry;
+    }
+
+    // Every producer walks the temperatures of randomly picked sensors
+    private static long measure(IntFunction<ReadingSink> readingSinks) {
+        List<Thread> producers = new ArrayList<>();
+
+        for (int producerIndex = 0; producerIndex < PRODUCER_COUNT; producerIndex++) {
+            ReadingSink readingSink = readingSinks.apply(producerIndex);
+            Random random = new Random(producerIndex);
+
+            producers.add(new Thread(() -> {
+                float[] sensorTemperatures = new float[SENSOR_COUNT];
+
+                for (int readingIndex = 0; readingIndex < READINGS_PER_PRODUCER; readingIndex++) {
+                    int sensorId = random.nextInt(SENSOR_COUNT);
+                    sensorTemperatures[sensorId] += random.nextFloat() - 0.5F;
+
+                    readingSink.onTemperatureData(sensorId, sensorTemperatures[sensorId]);
+                }
+            }));
+        }
+
+        long startNanos = System.nanoTime();
+
+        producers.forEach(Thread::start);
+
+        try {
+            for (Thread producer : producers) {
+                producer.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        return System.nanoTime() - startNanos;
+    }
+
+    private static void report(String label, long elapsedNanos) {
+        double readingsPerSecond = (double) PRODUCER_COUNT * READINGS_PER_PRODUCER / elapsedNanos * 1e9;
+
+        System.out.println(String.format("%-10s %d producers: %.2f million readings/sec", label, PRODUCER_COUNT, readingsPerSecond / 1e6));
+    }
+
+    private interface ReadingSink {
+
+        void onTemperatureData(int sensorId, float temperature);
+    }
+
+}
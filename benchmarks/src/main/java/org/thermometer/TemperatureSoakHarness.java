@@ -0,0 +1,388 @@
+package org.thermometer;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Drives a `ThermometerRegistry` with synthetic sensors from several producer
+// threads for as long as a soak run should last and reports the throughput and
+// reading to callback latency percentiles of every interval and of the whole
+// run. Sensors are spread over `SyntheticTemperatureStream` shapes with
+// thresholds around their setpoints in both Celsius and Fahrenheit, and every
+// stream is seeded so runs with the same settings offer the same load.
+//
+// Latency is measured by `TemperatureMetrics` from the moment a reading is
+// provided until its threshold callbacks returned. Producers send readings in
+// bursts spaced so they average the requested rate, or as fast as they can
+// when no rate is given. A producer that falls behind, e.g. blocked by
+// backpressure, provides its readings late, and that wait never shows up in
+// the callback latency. So the schedule lag of every sampled reading, from
+// when its burst was due until it was provided, is reported next to it, and
+// the two add up to the latency the reading would have seen end to end.
+//
+// The report is written as JSON so runs of different releases can be compared
+// by tooling. Settings are read from system properties:
+//
+// mvn package -DskipTests
+// java -Dsoak.durationSeconds=600 -Dsoak.report=soak.json \
+//         -cp benchmarks/target/benchmarks.jar org.thermometer.TemperatureSoakHarness
+public class TemperatureSoakHarness {
+
+    public static final int REPORT_FORMAT_VERSION = 2;
+
+    private static final double[] REPORTED_PERCENTILES = {50.0, 90.0, 99.0, 99.9, 99.99};
+    private static final String[] REPORTED_PERCENTILE_NAMES = {"p50", "p90", "p99", "p999", "p9999"};
+
+    private final int sensorCount;
+    private final int producerCount;
+    private final int thresholdsPerSensor;
+    private final long durationSeconds;
+    private final long reportIntervalSeconds;
+    private final long readingsPerSecond;
+    private final int burstSize;
+    private final long seed;
+    private final int latencySampleInterval;
+    private final DispatchStrategies dispatchStrategy;
+    private final int poolSize;
+
+    // Only recorded when readings are sent at a rate as there is no schedule
+    // to fall behind otherwise
+    private final TemperatureLatencyHistogram scheduleLag = new TemperatureLatencyHistogram();
+
+    private volatile boolean running = true;
+
+    private TemperatureSoakHarness() {
+        this.sensorCount = intProperty("soak.sensors", 10_000, 1);
+        this.producerCount = intProperty("soak.producers", 4, 1);
+        this.thresholdsPerSensor = intProperty("soak.thresholdsPerSensor", 4, 0);
+        this.durationSeconds = longProperty("soak.durationSeconds", 60L, 1L);
+        this.reportIntervalSeconds = longProperty("soak.reportIntervalSeconds", 10L, 1L);
+        this.readingsPerSecond = longProperty("soak.readingsPerSecond", 1_000_000L, 0L);
+        this.burstSize = intProperty("soak.burstSize", 64, 1);
+        this.seed = longProperty("soak.seed", 42L, Long.MIN_VALUE);
+        this.latencySampleInterval = intProperty("soak.latencySampleInterval", 1, 1);
+        this.dispatchStrategy = DispatchStrategies.valueOf(System.getProperty("soak.dispatchStrategy", DispatchStrategies.CALLER_THREAD.name()));
+        this.poolSize = intProperty("soak.poolSize", TemperatureDispatcher.DEFAULT_POOL_SIZE, 1);
+
+        if (producerCount > sensorCount) {
+            throw new IllegalArgumentException("There can't be more producers than sensors as every sensor has a single producer");
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        String reportPath = System.getProperty("soak.report");
+        String report = new TemperatureSoakHarness().run();
+
+        if (reportPath == null) {
+            System.out.println(report);
+        } else {
+            Files.write(Paths.get(reportPath), report.getBytes(StandardCharsets.UTF_8));
+            System.err.println(String.format("Report written to '%s'", reportPath));
+        }
+    }
+
+    private String run() throws InterruptedException {
+        TemperatureDispatcher temperatureDispatcher = new TemperatureDispatcher.TemperatureDispatcherBuilder()
+                .dispatchStrategy(dispatchStrategy)
+                .poolSize(poolSize)
+                .build();
+
+        TemperatureMetrics temperatureMetrics = new TemperatureMetrics.TemperatureMetricsBuilder()
+                .latencySampleInterval(latencySampleInterval)
+                .build();
+
+        ThermometerRegistry thermometerRegistry = new ThermometerRegistry.ThermometerRegistryBuilder(sensorCount)
+                .temperatureDispatcher(temperatureDispatcher)
+                .temperatureMetrics(temperatureMetrics)
+                .build();
+
+        SyntheticTemperatureStream[] streams = newStreams(thermometerRegistry);
+
+        String startedAt = Instant.now().toString();
+        List<String> intervalReports = new ArrayList<>();
+        Thread[] producers = new Thread[producerCount];
+
+        for (int producerIndex = 0; producerIndex < producerCount; producerIndex++) {
+            int producerId = producerIndex;
+
+            producers[producerIndex] = new Thread(() -> produce(thermometerRegistry, streams, producerId), "soak-producer-" + producerIndex);
+            producers[producerIndex].start();
+        }
+
+        long startNanos = System.nanoTime();
+        IntervalState previousState = new IntervalState(temperatureMetrics.snapshot(), scheduleLag.snapshot(), 0L, startNanos);
+        IntervalState startState = previousState;
+
+        try {
+            long elapsedSeconds = 0L;
+
+            while (elapsedSeconds < durationSeconds) {
+                // The last interval is cut short to end with the run
+                elapsedSeconds = Math.min(elapsedSeconds + reportIntervalSeconds, durationSeconds);
+
+                long sleepNanos = startNanos + TimeUnit.SECONDS.toNanos(elapsedSeconds) - System.nanoTime();
+
+                if (sleepNanos > 0L) {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                }
+
+                IntervalState currentState = new IntervalState(
+                        temperatureMetrics.snapshot(), scheduleLag.snapshot(), getDroppedReadingCount(thermometerRegistry), System.nanoTime());
+                String intervalReport = toJson(currentState, previousState, startNanos);
+
+                intervalReports.add(intervalReport);
+                System.err.println(intervalReport);
+                previousState = currentState;
+            }
+        } finally {
+            running = false;
+
+            for (Thread producer : producers) {
+                producer.join();
+            }
+
+            temperatureDispatcher.shutdown();
+            temperatureDispatcher.awaitTermination(10, TimeUnit.SECONDS);
+        }
+
+        return toReport(startedAt, intervalReports, toJson(previousState, startState, startNanos));
+    }
+
+    // Setpoints are spread over a wide range so sensors don't all cross the
+    // same thresholds at once, and every other threshold is in Fahrenheit so
+    // readings are converted on the way
+    private SyntheticTemperatureStream[] newStreams(ThermometerRegistry thermometerRegistry) {
+        Random random = new Random(seed);
+        SyntheticTemperatureStream.SignalShapes[] signalShapes = SyntheticTemperatureStream.SignalShapes.values();
+        SyntheticTemperatureStream[] streams = new SyntheticTemperatureStream[sensorCount];
+        List<TemperatureThreshold> temperatureThresholds = new ArrayList<>(thresholdsPerSensor);
+
+        for (int sensorId = 0; sensorId < sensorCount; sensorId++) {
+            streams[sensorId] = new SyntheticTemperatureStream.SyntheticTemperatureStreamBuilder(signalShapes[sensorId % signalShapes.length], random.nextLong())
+                    .setpoint(random.nextInt(80) - 20)
+                    .amplitude(1.0F + random.nextInt(10))
+                    .periodReadings(100 + random.nextInt(10_000))
+                    .noise(0.05F + random.nextFloat() / 2.0F)
+                    .build();
+
+            temperatureThresholds.clear();
+
+            for (int thresholdIndex = 0; thresholdIndex < thresholdsPerSensor; thresholdIndex++) {
+                float celsiusThreshold = streams[sensorId].getSetpoint() + streams[sensorId].getAmplitude() * (2.0F * random.nextFloat() - 1.0F);
+                boolean fahrenheit = thresholdIndex % 2 == 1;
+
+                temperatureThresholds.add(new TemperatureThreshold.TemperatureThresholdBuilder(fahrenheit
+                        ? TemperatureThreshold.convertTemperature(celsiusThreshold, TemperatureScales.CELSIUS_SCALE, TemperatureScales.FAHRENHEIT_SCALE)
+                        : celsiusThreshold)
+                        .temperatureScale(fahrenheit ? TemperatureScales.FAHRENHEIT_SCALE : TemperatureScales.CELSIUS_SCALE)
+                        .thresholdEventCallback(newTemperature -> {
+                        })
+                        .build());
+            }
+
+            thermometerRegistry.addTemperatureThresholds(sensorId, temperatureThresholds);
+        }
+
+        return streams;
+    }
+
+    // Every producer owns the sensors whose id leaves its index as the
+    // remainder so each sensor's readings arrive in order
+    private void produce(ThermometerRegistry thermometerRegistry, SyntheticTemperatureStream[] streams, int producerId) {
+        Random random = new Random(seed + producerId);
+        int ownedSensorCount = (sensorCount - producerId + producerCount - 1) / producerCount;
+        double meanBurstGapNanos = readingsPerSecond == 0L ? 0.0 : TimeUnit.SECONDS.toNanos(1) * (double) burstSize * producerCount / readingsPerSecond;
+        long nextBurstNanos = System.nanoTime();
+        long sentReadingCount = 0L;
+
+        while (running) {
+            // Exponential gaps make the bursts arrive as a Poisson process
+            if (meanBurstGapNanos > 0.0) {
+                nextBurstNanos += (long) (-Math.log(1.0 - random.nextDouble()) * meanBurstGapNanos);
+
+                long parkNanos = nextBurstNanos - System.nanoTime();
+
+                if (parkNanos > 0L) {
+                    LockSupport.parkNanos(parkNanos);
+                }
+            }
+
+            for (int readingIndex = 0; readingIndex < burstSize; readingIndex++) {
+                int sensorId = producerId + random.nextInt(ownedSensorCount) * producerCount;
+
+                // Readings later in a burst also wait on the ones before them
+                if (meanBurstGapNanos > 0.0 && sentReadingCount++ % latencySampleInterval == 0L) {
+                    scheduleLag.recordNanos(System.nanoTime() - nextBurstNanos);
+                }
+
+                thermometerRegistry.onTemperatureData(sensorId, streams[sensorId].nextTemperature());
+            }
+        }
+    }
+
+    // Sensors only count their own dropped readings so summing them counts
+    // every dropped reading once even though sensors share lanes
+    private long getDroppedReadingCount(ThermometerRegistry thermometerRegistry) {
+        long droppedReadingCount = 0L;
+
+        for (int sensorId = 0; sensorId < sensorCount; sensorId++) {
+            droppedReadingCount += thermometerRegistry.getDroppedReadingCount(sensorId);
+        }
+
+        return droppedReadingCount;
+    }
+
+    private static class IntervalState {
+
+        private final TemperatureMetricsSnapshot metricsSnapshot;
+        private final TemperatureLatencyHistogram.HistogramSnapshot scheduleLag;
+        private final long droppedReadingCount;
+        private final long nanos;
+        private final long gcCount;
+        private final long gcMillis;
+        private final long heapUsedBytes;
+
+        private IntervalState(
+                TemperatureMetricsSnapshot metricsSnapshot,
+                TemperatureLatencyHistogram.HistogramSnapshot scheduleLag,
+                long droppedReadingCount,
+                long nanos) {
+
+            long collectionCount = 0L;
+            long collectionMillis = 0L;
+
+            for (GarbageCollectorMXBean garbageCollector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                collectionCount += Math.max(0L, garbageCollector.getCollectionCount());
+                collectionMillis += Math.max(0L, garbageCollector.getCollectionTime());
+            }
+
+            this.metricsSnapshot = metricsSnapshot;
+            this.scheduleLag = scheduleLag;
+            this.droppedReadingCount = droppedReadingCount;
+            this.nanos = nanos;
+            this.gcCount = collectionCount;
+            this.gcMillis = collectionMillis;
+            this.heapUsedBytes = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+        }
+    }
+
+    private static String toJson(IntervalState currentState, IntervalState previousState, long startNanos) {
+        TemperatureMetricsSnapshot current = currentState.metricsSnapshot;
+        TemperatureMetricsSnapshot previous = previousState.metricsSnapshot;
+        TemperatureLatencyHistogram.HistogramSnapshot callbackLatency = current.getCallbackLatency().since(previous.getCallbackLatency());
+        TemperatureLatencyHistogram.HistogramSnapshot scheduleLag = currentState.scheduleLag.since(previousState.scheduleLag);
+
+        double seconds = (currentState.nanos - previousState.nanos) / (double) TimeUnit.SECONDS.toNanos(1);
+        long readingCount = current.getReadingCount() - previous.getReadingCount();
+
+        return String.format(Locale.ROOT,
+                "{\"endSeconds\":%.3f,\"seconds\":%.3f,\"readings\":%d,\"readingsPerSecond\":%.1f,\"dispatchedReadings\":%d,"
+                        + "\"droppedReadings\":%d,\"thresholdEvaluations\":%d,\"thresholdsFired\":%d,"
+                        + "\"callbackLatencyNanos\":%s,\"scheduleLagNanos\":%s,"
+                        + "\"gcCount\":%d,\"gcMillis\":%d,\"heapUsedBytes\":%d}",
+                (currentState.nanos - startNanos) / (double) TimeUnit.SECONDS.toNanos(1),
+                seconds,
+                readingCount,
+                seconds > 0.0 ? readingCount / seconds : 0.0,
+                current.getDispatchedReadingCount() - previous.getDispatchedReadingCount(),
+                currentState.droppedReadingCount - previousState.droppedReadingCount,
+                current.getThresholdEvaluationCount() - previous.getThresholdEvaluationCount(),
+                current.getThresholdFiredCount() - previous.getThresholdFiredCount(),
+                toJson(callbackLatency),
+                toJson(scheduleLag),
+                currentState.gcCount - previousState.gcCount,
+                currentState.gcMillis - previousState.gcMillis,
+                currentState.heapUsedBytes);
+    }
+
+    private static String toJson(TemperatureLatencyHistogram.HistogramSnapshot latency) {
+        StringBuilder percentiles = new StringBuilder();
+
+        for (int percentileIndex = 0; percentileIndex < REPORTED_PERCENTILES.length; percentileIndex++) {
+            percentiles.append(String.format(Locale.ROOT, ",\"%s\":%d",
+                    REPORTED_PERCENTILE_NAMES[percentileIndex],
+                    latency.getValueAtPercentile(REPORTED_PERCENTILES[percentileIndex])));
+        }
+
+        return String.format(Locale.ROOT, "{\"count\":%d,\"mean\":%.1f%s,\"max\":%d}",
+                latency.getCount(),
+                latency.getMeanNanos(),
+                percentiles,
+                latency.getMaxNanos());
+    }
+
+    private String toReport(String startedAt, List<String> intervalReports, String totalReport) {
+        return String.format(Locale.ROOT,
+                "{\"reportFormatVersion\":%d,\"startedAt\":\"%s\",\"libraryVersion\":%s,\"javaVersion\":\"%s\",\"availableProcessors\":%d,"
+                        + "\"settings\":{\"sensors\":%d,\"producers\":%d,\"thresholdsPerSensor\":%d,\"durationSeconds\":%d,"
+                        + "\"reportIntervalSeconds\":%d,\"readingsPerSecond\":%d,\"burstSize\":%d,\"seed\":%d,"
+                        + "\"latencySampleInterval\":%d,\"dispatchStrategy\":\"%s\",\"poolSize\":%d},"
+                        + "\"intervals\":[%s],\"total\":%s}",
+                REPORT_FORMAT_VERSION,
+                startedAt,
+                toJsonString(ThermometerRegistry.class.getPackage().getImplementationVersion()),
+                System.getProperty("java.version"),
+                Runtime.getRuntime().availableProcessors(),
+                sensorCount,
+                producerCount,
+                thresholdsPerSensor,
+                durationSeconds,
+                reportIntervalSeconds,
+                readingsPerSecond,
+                burstSize,
+                seed,
+                latencySampleInterval,
+                dispatchStrategy,
+                poolSize,
+                String.join(",", intervalReports),
+                totalReport);
+    }
+
+    // Only ever given version strings so there is nothing to escape
+    private static String toJsonString(String value) {
+        return value == null ? "null" : "\"" + value + "\"";
+    }
+
+    private static int intProperty(String name, int defaultValue, int minimumValue) throws IllegalArgumentException {
+        long value = longProperty(name, defaultValue, minimumValue);
+
+        if (value > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException(String.format("'%s' must be at most '%d' but was '%d'", name, Integer.MAX_VALUE, value));
+        }
+
+        return (int) value;
+    }
+
+    private static long longProperty(String name, long defaultValue, long minimumValue) throws IllegalArgumentException {
+        String value = System.getProperty(name);
+
+        if (value == null) {
+            return defaultValue;
+        }
+
+        long parsedValue;
+
+        try {
+            parsedValue = Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(String.format("'%s' must be a whole number but was '%s'", name, value), e);
+        }
+
+        if (parsedValue < minimumValue) {
+            throw new IllegalArgumentException(String.format("'%s' must be at least '%d' but was '%d'", name, minimumValue, parsedValue));
+        }
+
+        return parsedValue;
+    }
+
+}
@@ -0,0 +1,72 @@
+package org.thermometer;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Covers evaluating a single reading against a single `TemperatureThreshold`
+// and the temperature conversion that happens along the way
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TemperatureThresholdBenchmark {
+
+    @State(Scope.Thread)
+    public static class TemperatureThresholdState {
+
+        public TemperatureThreshold celsiusThreshold;
+        public TemperatureThreshold fahrenheitThreshold;
+
+        public float previousTemperature = 9.0F;
+        public float newTemperature = 11.0F;
+
+        @Setup(Level.Trial)
+        public void setup(Blackhole blackhole) {
+            celsiusThreshold = new TemperatureThreshold.TemperatureThresholdBuilder(10.0F)
+                    .thresholdEventCallback(blackhole::consume)
+                    .build();
+
+            fahrenheitThreshold = new TemperatureThreshold.TemperatureThresholdBuilder(50.0F)
+                    .temperatureScale(TemperatureScales.FAHRENHEIT_SCALE)
+                    .thresholdEventCallback(blackhole::consume)
+                    .build();
+        }
+    }
+
+    @Benchmark
+    public void onTemperatureReadSameScale(TemperatureThresholdState thresholdState) {
+        thresholdState.celsiusThreshold.onTemperatureRead(
+                thresholdState.newTemperature,
+                thresholdState.previousTemperature,
+                TemperatureScales.CELSIUS_SCALE);
+    }
+
+    @Benchmark
+    public void onTemperatureReadConvertedScale(TemperatureThresholdState thresholdState) {
+        thresholdState.fahrenheitThreshold.onTemperatureRead(
+                thresholdState.newTemperature,
+                thresholdState.previousTemperature,
+                TemperatureScales.CELSIUS_SCALE);
+    }
+
+    @Benchmark
+    public float convertTemperature(TemperatureThresholdState thresholdState) {
+        return TemperatureThreshold.convertTemperature(
+                thresholdState.newTemperature,
+                TemperatureScales.CELSIUS_SCALE,
+                TemperatureScales.FAHRENHEIT_SCALE);
+    }
+
+}
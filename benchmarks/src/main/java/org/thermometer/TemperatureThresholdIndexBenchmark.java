@@ -0,0 +1,102 @@
+package org.thermometer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+// Compares evaluating a reading against every registered threshold with a
+// linear scan to evaluating it through a `TemperatureThresholdIndex` and
+// through `TemperatureThresholdArrays`. The arrays only use the Vector API when
+// the incubator module is added, without it they use their scalar kernel.
+//
+// mvn package -DskipTests
+// java --add-modules jdk.incubator.vector -cp benchmarks/target/benchmarks.jar org.thermometer.TemperatureThresholdIndexBenchmark
+public class TemperatureThresholdIndexBenchmark {
+
+    private static final int[] THRESHOLD_COUNTS = {10, 100, 1_000, 10_000, 100_000};
+    private static final int READING_COUNT = 20_000;
+    private static final int WARMUP_ROUNDS = 2;
+
+    private static long triggeredCount = 0;
+
+    public static void main(String[] args) {
+        System.out.println(String.format("thresholds, linear scan ns/reading, index ns/reading, %s arrays ns/reading",
+                new TemperatureThresholdArrays().isVectorized() ? "vectorized" : "scalar"));
+
+        for (int thresholdCount : THRESHOLD_COUNTS) {
+            benchmark(thresholdCount);
+        }
+
+        // Print the count so the callbacks can't be optimized away
+        System.out.println(String.format("(%d thresholds triggered)", triggeredCount));
+    }
+
+    private static void benchmark(int thresholdCount) {
+        Random random = new Random(thresholdCount);
+
+        Consumer<Float> thresholdEventCallback = newTemperature -> triggeredCount++;
+
+        List<TemperatureThreshold> temperatureThresholds = new ArrayList<>();
+        TemperatureThresholdIndex temperatureThresholdIndex = new TemperatureThresholdIndex();
+        TemperatureThresholdArrays temperatureThresholdArrays = new TemperatureThresholdArrays();
+
+        for (int thresholdIndex = 0; thresholdIndex < thresholdCount; thresholdIndex++) {
+            TemperatureThreshold temperatureThreshold
+                    = new TemperatureThreshold.TemperatureThresholdBuilder(random.nextFloat() * 200.0F - 100.0F, thresholdEventCallback)
+                            .build();
+
+            temperatureThresholds.add(temperatureThreshold);
+        }
+
+        temperatureThresholdIndex.addTemperatureThresholds(temperatureThresholds);
+        temperatureThresholdArrays.addTemperatureThresholds(temperatureThresholds);
+
+        // Readings follow a small random walk which is what a real sensor looks
+        // like and is what the index is meant to exploit
+        float[] readings = new float[READING_COUNT];
+        float reading = 0.0F;
+
+        for (int readingIndex = 0; readingIndex < READING_COUNT; readingIndex++) {
+            reading = Math.max(-100.0F, Math.min(100.0F, reading + (random.nextFloat() - 0.5F)));
+            readings[readingIndex] = reading;
+        }
+
+        long linearScanNanos = 0;
+        long indexNanos = 0;
+        long arraysNanos = 0;
+
+        for (int round = 0; round <= WARMUP_ROUNDS; round++) {
+            long startNanos = System.nanoTime();
+
+            for (int readingIndex = 1; readingIndex < READING_COUNT; readingIndex++) {
+                for (TemperatureThreshold temperatureThreshold : temperatureThresholds) {
+                    temperatureThreshold.onTemperatureRead(readings[readingIndex], readings[readingIndex - 1], TemperatureScales.CELSIUS_SCALE);
+                }
+            }
+
+            linearScanNanos = System.nanoTime() - startNanos;
+            startNanos = System.nanoTime();
+
+            for (int readingIndex = 1; readingIndex < READING_COUNT; readingIndex++) {
+                temperatureThresholdIndex.onTemperatureRead(readings[readingIndex], readings[readingIndex - 1], TemperatureScales.CELSIUS_SCALE);
+            }
+
+            indexNanos = System.nanoTime() - startNanos;
+            startNanos = System.nanoTime();
+
+            for (int readingIndex = 1; readingIndex < READING_COUNT; readingIndex++) {
+                temperatureThresholdArrays.onTemperatureRead(readings[readingIndex], readings[readingIndex - 1], TemperatureScales.CELSIUS_SCALE);
+            }
+
+            arraysNanos = System.nanoTime() - startNanos;
+        }
+
+        System.out.println(String.format("%d, %.1f, %.1f, %.1f",
+                thresholdCount,
+                (double) linearScanNanos / READING_COUNT,
+                (double) indexNanos / READING_COUNT,
+                (double) arraysNanos / READING_COUNT));
+    }
+
+}
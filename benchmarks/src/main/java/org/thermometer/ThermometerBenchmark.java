@@ -0,0 +1,133 @@
+package org.thermometer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+// Covers the ingest path of `Thermometer` from `onTemperatureData` through the
+// threshold index to the threshold callbacks. Readings are evented on the
+// caller thread so the benchmark measures the evaluation rather than a hand off
+// to another thread.
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ThermometerBenchmark {
+
+    private static final int READING_COUNT = 4096;
+    private static final int SENSOR_COUNT = 64;
+
+    @State(Scope.Benchmark)
+    public static class ThermometerState {
+
+        @Param({"1", "100", "10000", "100000"})
+        public int thresholdCount;
+
+        // Half of the thresholds are in Fahrenheit when mixed which exercises
+        // the conversion of the reading into each scale
+        @Param({"false", "true"})
+        public boolean mixedScales;
+
+        public ThermometerRegistry thermometerRegistry;
+        public Thermometer thermometer;
+        public float[] readings;
+
+        @Setup(Level.Trial)
+        public void setup(Blackhole blackhole) {
+            Random random = new Random(thresholdCount);
+
+            thermometerRegistry = new ThermometerRegistry.ThermometerRegistryBuilder(SENSOR_COUNT).build();
+
+            for (int sensorId = 0; sensorId < SENSOR_COUNT; sensorId++) {
+                thermometerRegistry.addTemperatureThresholds(sensorId, newTemperatureThresholds(thresholdCount / SENSOR_COUNT + 1, random, blackhole));
+            }
+
+            thermometer = new Thermometer();
+            thermometer.addTemperatureThresholds(newTemperatureThresholds(thresholdCount, random, blackhole));
+
+            // Readings follow a small random walk which is what a real sensor
+            // looks like
+            readings = new float[READING_COUNT];
+            float reading = 0.0F;
+
+            for (int readingIndex = 0; readingIndex < READING_COUNT; readingIndex++) {
+                reading = Math.max(-100.0F, Math.min(100.0F, reading + (random.nextFloat() - 0.5F)));
+                readings[readingIndex] = reading;
+            }
+        }
+
+        // Registered in bulk so each sensor only publishes a single snapshot
+        private List<TemperatureThreshold> newTemperatureThresholds(int count, Random random, Blackhole blackhole) {
+            List<TemperatureThreshold> temperatureThresholds = new ArrayList<>(count);
+
+            for (int thresholdIndex = 0; thresholdIndex < count; thresholdIndex++) {
+                temperatureThresholds.add(newTemperatureThreshold(random, blackhole));
+            }
+
+            return temperatureThresholds;
+        }
+
+        private TemperatureThreshold newTemperatureThreshold(Random random, Blackhole blackhole) {
+            return new TemperatureThreshold.TemperatureThresholdBuilder(random.nextFloat() * 200.0F - 100.0F)
+                    .temperatureScale(mixedScales && random.nextBoolean() ? TemperatureScales.FAHRENHEIT_SCALE : TemperatureScales.CELSIUS_SCALE)
+                    .thresholdEventCallback(blackhole::consume)
+                    .build();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ReadingCursor {
+
+        private static final AtomicInteger NEXT_SENSOR_ID = new AtomicInteger();
+
+        // Each producer thread reads its own sensor of the shared registry
+        public final int sensorId = NEXT_SENSOR_ID.getAndIncrement() % SENSOR_COUNT;
+
+        public int readingIndex = 0;
+
+        public float nextReading(float[] readings) {
+            readingIndex = (readingIndex + 1) % readings.length;
+            return readings[readingIndex];
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void singleReadingLatency(ThermometerState thermometerState, ReadingCursor readingCursor) {
+        thermometerState.thermometer.onTemperatureData(readingCursor.nextReading(thermometerState.readings));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void sustainedIngestThroughput(ThermometerState thermometerState, ReadingCursor readingCursor) {
+        thermometerState.thermometer.onTemperatureData(readingCursor.nextReading(thermometerState.readings));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Threads(4)
+    public void multiThreadedProducerThroughput(ThermometerState thermometerState, ReadingCursor readingCursor) {
+        thermometerState.thermometerRegistry.onTemperatureData(
+                readingCursor.sensorId,
+                readingCursor.nextReading(thermometerState.readings));
+    }
+
+}
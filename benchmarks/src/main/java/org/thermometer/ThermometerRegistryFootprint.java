@@ -0,0 +1,83 @@
+package org.thermometer;
+
+import java.lang.ref.Reference;
+import java.util.function.Consumer;
+
+// Reports the heap retained per sensor when holding the state of many sensors
+// in a single `ThermometerRegistry` rather than in standalone `Thermometer`
+// instances each with their own registry.
+//
+// mvn package -DskipTests
+// java -cp benchmarks/target/benchmarks.jar org.thermometer.ThermometerRegistryFootprint
+public class ThermometerRegistryFootprint {
+
+    private static final int SENSOR_COUNT = 100_000;
+
+    public static void main(String[] args) {
+        Consumer<Float> thresholdEventCallback = newTemperature -> {
+        };
+
+        long baselineBytes = usedHeapBytes();
+
+        Thermometer[] thermometers = new Thermometer[SENSOR_COUNT];
+
+        for (int sensorId = 0; sensorId < SENSOR_COUNT; sensorId++) {
+            thermometers[sensorId] = new Thermometer();
+            thermometers[sensorId].onTemperatureData(sensorId);
+            thermometers[sensorId].onTemperatureData(sensorId + 1);
+        }
+
+        long thermometerBytes = usedHeapBytes() - baselineBytes;
+
+        Reference.reachabilityFence(thermometers);
+        thermometers = null;
+        baselineBytes = usedHeapBytes();
+
+        ThermometerRegistry thermometerRegistry = new ThermometerRegistry.ThermometerRegistryBuilder(SENSOR_COUNT).build();
+
+        for (int sensorId = 0; sensorId < SENSOR_COUNT; sensorId++) {
+            thermometerRegistry.onTemperatureData(sensorId, sensorId);
+            thermometerRegistry.onTemperatureData(sensorId, sensorId + 1);
+        }
+
+        long registryBytes = usedHeapBytes() - baselineBytes;
+
+        Reference.reachabilityFence(thermometerRegistry);
+
+        System.out.println(String.format("%d sensors", SENSOR_COUNT));
+        System.out.println(String.format("standalone thermometers: %.1f bytes/sensor", (double) thermometerBytes / SENSOR_COUNT));
+        System.out.println(String.format("shared registry: %.1f bytes/sensor", (double) registryBytes / SENSOR_COUNT));
+
+        // A threshold costs its own object plus the per sensor listeners that are
+        // only allocated once a sensor has something registered with it
+        baselineBytes = usedHeapBytes();
+
+        for (int sensorId = 0; sensorId < SENSOR_COUNT; sensorId++) {
+            thermometerRegistry.addTemperatureThreshold(sensorId,
+                    new TemperatureThreshold.TemperatureThresholdBuilder(sensorId, thresholdEventCallback).build());
+        }
+
+        long thresholdBytes = usedHeapBytes() - baselineBytes;
+
+        Reference.reachabilityFence(thermometerRegistry);
+
+        System.out.println(String.format("shared registry with one threshold per sensor: %.1f additional bytes/sensor", (double) thresholdBytes / SENSOR_COUNT));
+    }
+
+    private static long usedHeapBytes() {
+        Runtime runtime = Runtime.getRuntime();
+
+        for (int gcCount = 0; gcCount < 4; gcCount++) {
+            System.gc();
+
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+}
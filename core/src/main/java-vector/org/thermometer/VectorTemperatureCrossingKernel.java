@@ -0,0 +1,70 @@
+package org.thermometer;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// `TemperatureCrossingKernel` evaluating as many lanes at a time as the widest
+// float vector of the platform holds. Compiled by the 'vector-api' profile and
+// loaded reflectively by `TemperatureThresholdArrays` so the rest of the
+// library doesn't depend on the incubator module being present.
+//
+// Every comparison is the same IEEE comparison the scalar kernel makes, so NaN
+// temperatures, thresholds and precisions give the same lanes on both.
+final class VectorTemperatureCrossingKernel implements TemperatureCrossingKernel {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    @Override
+    public void computeCrossings(
+            float[] thresholdValues,
+            float[] thresholdPrecisions,
+            float[] thresholdDirections,
+            int length,
+            float newTemperature,
+            float previousTemperature,
+            long[] crossedWords) {
+
+        for (int wordIndex = 0; wordIndex < TemperatureCrossingKernel.wordCount(length); wordIndex++) {
+            crossedWords[wordIndex] = 0L;
+        }
+
+        float temperatureDifference = Math.abs(newTemperature - previousTemperature);
+        float allowedDirection = newTemperature < previousTemperature
+                ? DECREASING_DIRECTION
+                : newTemperature > previousTemperature ? INCREASING_DIRECTION : ANY_DIRECTION;
+
+        int vectorEnd = SPECIES.loopBound(length);
+
+        // A vector never holds more than 64 lanes and always divides 64 so the
+        // bits of a vector always fit in a single word
+        for (int laneIndex = 0; laneIndex < vectorEnd; laneIndex += SPECIES.length()) {
+            FloatVector thresholdValue = FloatVector.fromArray(SPECIES, thresholdValues, laneIndex);
+            FloatVector thresholdDirection = FloatVector.fromArray(SPECIES, thresholdDirections, laneIndex);
+
+            VectorMask<Float> crossed = thresholdValue.compare(VectorOperators.GT, previousTemperature)
+                    .and(thresholdValue.compare(VectorOperators.LE, newTemperature))
+                    .or(thresholdValue.compare(VectorOperators.LT, previousTemperature)
+                            .and(thresholdValue.compare(VectorOperators.GE, newTemperature)))
+                    .and(FloatVector.fromArray(SPECIES, thresholdPrecisions, laneIndex).compare(VectorOperators.LE, temperatureDifference))
+                    .and(thresholdDirection.compare(VectorOperators.EQ, ANY_DIRECTION)
+                            .or(thresholdDirection.compare(VectorOperators.EQ, allowedDirection)));
+
+            long crossedBits = crossed.toLong();
+
+            if (crossedBits != 0L) {
+                crossedWords[laneIndex >>> 6] |= crossedBits << laneIndex;
+            }
+        }
+
+        ScalarCrossingKernel.computeCrossings(
+                thresholdValues, thresholdPrecisions, thresholdDirections, vectorEnd, length, newTemperature, previousTemperature, crossedWords);
+    }
+
+    @Override
+    public boolean isVectorized() {
+        return true;
+    }
+
+}
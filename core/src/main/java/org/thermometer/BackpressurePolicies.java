@@ -0,0 +1,8 @@
+package org.thermometer;
+
+public enum BackpressurePolicies {
+    BLOCK,
+    DROP_OLDEST,
+    DROP_NEWEST,
+    CALLER_RUNS
+}
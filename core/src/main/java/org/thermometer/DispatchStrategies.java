@@ -0,0 +1,8 @@
+package org.thermometer;
+
+public enum DispatchStrategies {
+    CALLER_THREAD,
+    BOUNDED_POOL,
+    CACHED_POOL,
+    VIRTUAL_THREADS
+}
@@ -0,0 +1,10 @@
+package org.thermometer;
+
+// Primitive specialization of `Consumer<Float>` so that threshold callbacks
+// don't box the temperature they are handed
+@FunctionalInterface
+public interface FloatConsumer {
+
+    public void accept(float temperature);
+
+}
@@ -0,0 +1,6 @@
+package org.thermometer;
+
+public enum IngestModes {
+    EVERY_READING,
+    CONFLATED
+}
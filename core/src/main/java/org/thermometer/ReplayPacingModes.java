@@ -0,0 +1,6 @@
+package org.thermometer;
+
+public enum ReplayPacingModes {
+    AS_FAST_AS_POSSIBLE,
+    REAL_TIME
+}
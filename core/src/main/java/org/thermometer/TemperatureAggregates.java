@@ -0,0 +1,8 @@
+package org.thermometer;
+
+public enum TemperatureAggregates {
+    MINIMUM,
+    MAXIMUM,
+    MEAN,
+    EWMA
+}
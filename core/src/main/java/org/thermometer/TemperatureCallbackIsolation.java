@@ -0,0 +1,583 @@
+package org.thermometer;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+// Isolates the callbacks of the listeners of a `ThermometerRegistry` from each
+// other. Readings are still evaluated on the dispatch lane of their sensor but
+// every listener gets a bounded lane of its own on the callback dispatcher that
+// its callbacks are handed off to, so a callback that blocks (e.g. on an HTTP
+// call) only backs up its own lane rather than every listener after it.
+//
+// A callback that runs for longer than the time budget is an overrun. Running
+// callbacks can't be interrupted so overruns are noticed once the callback
+// returns, or earlier when a new callback is handed off while one is still
+// stuck past the budget. A listener that overruns repeatedly is quarantined
+// and its callbacks are shed until the quarantine ends, after which a single
+// overrun quarantines it again until it completes a callback within budget.
+public class TemperatureCallbackIsolation {
+
+    public static final int DEFAULT_LISTENER_QUEUE_CAPACITY = 256;
+    public static final BackpressurePolicies DEFAULT_LISTENER_BACKPRESSURE_POLICY = BackpressurePolicies.DROP_OLDEST;
+    public static final long DEFAULT_CALLBACK_TIME_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(10L);
+    public static final int DEFAULT_QUARANTINE_OVERRUN_COUNT = 3;
+    public static final long DEFAULT_QUARANTINE_NANOS = TimeUnit.SECONDS.toNanos(30L);
+
+    private final TemperatureDispatcher callbackDispatcher;
+    private final int listenerQueueCapacity;
+    private final BackpressurePolicies listenerBackpressurePolicy;
+    private final long callbackTimeBudgetNanos;
+    private final int quarantineOverrunCount;
+    private final long quarantineNanos;
+    private final LongSupplier nanoTimeSource;
+
+    // Listeners are only tracked once they have overrun or shed a callback and
+    // until they are unregistered
+    private final Set<IsolatedListener> slowListeners = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger listenerCount = new AtomicInteger();
+
+    private TemperatureCallbackIsolation(
+            TemperatureDispatcher callbackDispatcher,
+            int listenerQueueCapacity,
+            BackpressurePolicies listenerBackpressurePolicy,
+            long callbackTimeBudgetNanos,
+            int quarantineOverrunCount,
+            long quarantineNanos,
+            LongSupplier nanoTimeSource) {
+
+        this.callbackDispatcher = callbackDispatcher;
+        this.listenerQueueCapacity = listenerQueueCapacity;
+        this.listenerBackpressurePolicy = listenerBackpressurePolicy;
+        this.callbackTimeBudgetNanos = callbackTimeBudgetNanos;
+        this.quarantineOverrunCount = quarantineOverrunCount;
+        this.quarantineNanos = quarantineNanos;
+        this.nanoTimeSource = nanoTimeSource;
+    }
+
+    public static class TemperatureCallbackIsolationBuilder {
+
+        private TemperatureDispatcher callbackDispatcher = null;
+        private int listenerQueueCapacity = DEFAULT_LISTENER_QUEUE_CAPACITY;
+        private BackpressurePolicies listenerBackpressurePolicy = DEFAULT_LISTENER_BACKPRESSURE_POLICY;
+        private long callbackTimeBudgetNanos = DEFAULT_CALLBACK_TIME_BUDGET_NANOS;
+        private int quarantineOverrunCount = DEFAULT_QUARANTINE_OVERRUN_COUNT;
+        private long quarantineNanos = DEFAULT_QUARANTINE_NANOS;
+        private LongSupplier nanoTimeSource = System::nanoTime;
+
+        public TemperatureCallbackIsolationBuilder() {
+        }
+
+        // Without a callback dispatcher one of its own is used that runs every
+        // listener lane on a thread of its own, virtual when the Java runtime
+        // supports them. A bounded pool would let as many stuck callbacks as
+        // it has threads starve every other listener.
+        public TemperatureCallbackIsolation build() {
+            TemperatureDispatcher dispatcher = this.callbackDispatcher != null
+                    ? this.callbackDispatcher
+                    : newCallbackDispatcher();
+
+            return new TemperatureCallbackIsolation(
+                    dispatcher,
+                    this.listenerQueueCapacity,
+                    this.listenerBackpressurePolicy,
+                    this.callbackTimeBudgetNanos,
+                    this.quarantineOverrunCount,
+                    this.quarantineNanos,
+                    this.nanoTimeSource);
+        }
+
+        private static TemperatureDispatcher newCallbackDispatcher() {
+            try {
+                return new TemperatureDispatcher.TemperatureDispatcherBuilder()
+                        .dispatchStrategy(DispatchStrategies.VIRTUAL_THREADS)
+                        .build();
+            } catch (UnsupportedOperationException e) {
+                return new TemperatureDispatcher.TemperatureDispatcherBuilder()
+                        .dispatchStrategy(DispatchStrategies.CACHED_POOL)
+                        .build();
+            }
+        }
+
+        public TemperatureCallbackIsolationBuilder callbackDispatcher(TemperatureDispatcher callbackDispatcher) throws IllegalArgumentException {
+            if (callbackDispatcher == null) {
+                throw new IllegalArgumentException("Callback dispatcher can't be set to 'null'");
+            }
+
+            this.callbackDispatcher = callbackDispatcher;
+            return this;
+        }
+
+        // Callbacks queued for a single listener
+        public TemperatureCallbackIsolationBuilder listenerQueueCapacity(int listenerQueueCapacity) throws IllegalArgumentException {
+            if (listenerQueueCapacity < 1) {
+                throw new IllegalArgumentException("Listener queue capacity must be at least '1'");
+            }
+
+            this.listenerQueueCapacity = listenerQueueCapacity;
+            return this;
+        }
+
+        // Only policies that shed callbacks are allowed as blocking on, or
+        // running the callbacks of, a backed up listener would hold up the
+        // sensor lane and every other listener with it
+        public TemperatureCallbackIsolationBuilder listenerBackpressurePolicy(BackpressurePolicies listenerBackpressurePolicy) throws IllegalArgumentException {
+            if (listenerBackpressurePolicy != BackpressurePolicies.DROP_NEWEST && listenerBackpressurePolicy != BackpressurePolicies.DROP_OLDEST) {
+                throw new IllegalArgumentException("Listener backpressure policy must be either 'DROP_NEWEST' or 'DROP_OLDEST'");
+            }
+
+            this.listenerBackpressurePolicy = listenerBackpressurePolicy;
+            return this;
+        }
+
+        public TemperatureCallbackIsolationBuilder callbackTimeBudget(long callbackTimeBudget, TimeUnit unit) throws IllegalArgumentException {
+            if (callbackTimeBudget <= 0L || unit == null) {
+                throw new IllegalArgumentException("Callback time budget must be positive and have a unit");
+            }
+
+            this.callbackTimeBudgetNanos = unit.toNanos(callbackTimeBudget);
+            return this;
+        }
+
+        // Consecutive overruns after which a listener is quarantined
+        public TemperatureCallbackIsolationBuilder quarantineOverrunCount(int quarantineOverrunCount) throws IllegalArgumentException {
+            if (quarantineOverrunCount < 1) {
+                throw new IllegalArgumentException("Quarantine overrun count must be at least '1'");
+            }
+
+            this.quarantineOverrunCount = quarantineOverrunCount;
+            return this;
+        }
+
+        public TemperatureCallbackIsolationBuilder quarantineDuration(long quarantineDuration, TimeUnit unit) throws IllegalArgumentException {
+            if (quarantineDuration <= 0L || unit == null) {
+                throw new IllegalArgumentException("Quarantine duration must be positive and have a unit");
+            }
+
+            this.quarantineNanos = unit.toNanos(quarantineDuration);
+            return this;
+        }
+
+        // Callbacks are timed and quarantines are ended with this clock rather
+        // than `System.nanoTime()`, e.g. so tests can control it
+        TemperatureCallbackIsolationBuilder nanoTimeSource(LongSupplier nanoTimeSource) throws IllegalArgumentException {
+            if (nanoTimeSource == null) {
+                throw new IllegalArgumentException("Nano time source can't be set to 'null'");
+            }
+
+            this.nanoTimeSource = nanoTimeSource;
+            return this;
+        }
+    }
+
+    // Every registration of a listener with a sensor is isolated on its own
+    IsolatedListener newIsolatedListener(
+            int sensorId,
+            TemperatureThresholdEventListener temperatureThreshold,
+            TemperatureMetrics temperatureMetrics,
+            LongSupplier readNanosSource) {
+
+        return new IsolatedListener(sensorId, temperatureThreshold, temperatureMetrics, readNanosSource);
+    }
+
+    // Listeners that have overrun their budget or had callbacks shed, the
+    // worst offenders first
+    public List<SlowListener> getSlowListeners() {
+        List<SlowListener> currentSlowListeners = new ArrayList<>(slowListeners.size());
+
+        for (IsolatedListener slowListener : slowListeners) {
+            currentSlowListeners.add(slowListener.toSlowListener());
+        }
+
+        currentSlowListeners.sort(Comparator
+                .comparingLong(SlowListener::getOverrunCount)
+                .thenComparingLong(SlowListener::getShedCount)
+                .reversed());
+
+        return currentSlowListeners;
+    }
+
+    public TemperatureDispatcher getCallbackDispatcher() {
+        return callbackDispatcher;
+    }
+
+    public int getListenerQueueCapacity() {
+        return listenerQueueCapacity;
+    }
+
+    public BackpressurePolicies getListenerBackpressurePolicy() {
+        return listenerBackpressurePolicy;
+    }
+
+    public long getCallbackTimeBudgetNanos() {
+        return callbackTimeBudgetNanos;
+    }
+
+    public int getQuarantineOverrunCount() {
+        return quarantineOverrunCount;
+    }
+
+    public long getQuarantineNanos() {
+        return quarantineNanos;
+    }
+
+    // Hands the callbacks of a single listener registration off to its own lane.
+    // Readings are handed off from the sensor lane and callbacks run on the
+    // listener lane, so the accounting shared by the two is guarded by `this`.
+    final class IsolatedListener implements TemperatureDispatcher.TimedTemperatureThresholdEventListener {
+
+        private final int sensorId;
+        private final TemperatureThresholdEventListener temperatureThreshold;
+
+        // Set for `TemperatureThreshold` instances whose crossings are detected
+        // on the sensor lane so only their callback is handed off
+        private final TemperatureThreshold thresholdCallback;
+
+        private final TemperatureMetrics temperatureMetrics;
+        private final LongSupplier readNanosSource;
+        private final TemperatureDispatcher.DispatchLane listenerLane;
+        private final int listenerIndex;
+
+        private String listenerName = null;
+        private boolean unregistered = false;
+
+        // When the running callback started or '0' while none is running
+        private volatile long callbackStartNanos = 0L;
+
+        // '0' unless quarantined
+        private volatile long quarantinedUntilNanos = 0L;
+
+        // Only touched from the sensor lane
+        private long reportedDroppedCount = 0L;
+
+        private long callbackCount = 0L;
+        private long overrunCount = 0L;
+        private long shedCount = 0L;
+        private long quarantineCount = 0L;
+        private long maxCallbackNanos = 0L;
+        private int consecutiveOverrunCount = 0;
+        private boolean onProbation = false;
+        private boolean runningOverrunRecorded = false;
+
+        private IsolatedListener(
+                int sensorId,
+                TemperatureThresholdEventListener temperatureThreshold,
+                TemperatureMetrics temperatureMetrics,
+                LongSupplier readNanosSource) {
+
+            this.sensorId = sensorId;
+            this.temperatureThreshold = temperatureThreshold;
+            this.thresholdCallback = temperatureThreshold instanceof TemperatureThreshold ? (TemperatureThreshold) temperatureThreshold : null;
+            this.temperatureMetrics = temperatureMetrics;
+            this.readNanosSource = readNanosSource;
+            this.listenerLane = callbackDispatcher.newLane(listenerQueueCapacity, listenerBackpressurePolicy);
+            this.listenerIndex = listenerCount.incrementAndGet();
+        }
+
+        // Evaluates the crossing on the sensor lane and hands the callback off
+        // when it fired. Returns whether it fired even if the callback was shed.
+        boolean onConvertedTemperatureRead(float convertedNewTemperature, float convertedPreviousTemperature) {
+            if (!thresholdCallback.shouldTriggerConvertedThresholdEvent(convertedNewTemperature, convertedPreviousTemperature)) {
+                return false;
+            }
+
+            submit(convertedNewTemperature, convertedPreviousTemperature, thresholdCallback.getTemperatureScale());
+            return true;
+        }
+
+        // Hands a reading off to a listener that isn't a `TemperatureThreshold`
+        void submitReading(float newTemperature, float previousTemperature, TemperatureScales temperatureScaleUsedForReading) {
+            submit(newTemperature, previousTemperature, temperatureScaleUsedForReading);
+        }
+
+        private void submit(float newTemperature, float previousTemperature, TemperatureScales temperatureScale) {
+            long startNanos = callbackStartNanos;
+
+            // The clock is only read when the listener is busy or quarantined
+            if (startNanos != 0L || quarantinedUntilNanos != 0L) {
+                long nowNanos = nanoTimeSource.getAsLong();
+
+                if (startNanos != 0L && nowNanos - startNanos > callbackTimeBudgetNanos) {
+                    onRunningOverrun(startNanos, nowNanos);
+                }
+
+                if (isQuarantined(nowNanos)) {
+                    onShed(1L);
+                    return;
+                }
+            }
+
+            listenerLane.submitReading(this, newTemperature, previousTemperature, temperatureScale, readNanosSource.getAsLong());
+
+            long droppedCount = listenerLane.getDroppedCount();
+
+            if (droppedCount != reportedDroppedCount) {
+                onShed(droppedCount - reportedDroppedCount);
+                reportedDroppedCount = droppedCount;
+            }
+        }
+
+        @Override
+        public void onTemperatureRead(float newTemperature, float previousTemperature, TemperatureScales temperatureScaleUsedForReading) {
+            onTemperatureRead(newTemperature, previousTemperature, temperatureScaleUsedForReading, 0L);
+        }
+
+        // Runs the callback on the listener lane
+        @Override
+        public void onTemperatureRead(float newTemperature, float previousTemperature, TemperatureScales temperatureScaleUsedForReading, long readNanos) {
+            long startNanos = nanoTimeSource.getAsLong();
+
+            // Callbacks queued before the listener was quarantined are shed too
+            if (isQuarantined(startNanos)) {
+                onShed(1L);
+                return;
+            }
+
+            callbackStartNanos = startNanos;
+
+            try {
+                if (thresholdCallback != null) {
+                    thresholdCallback.triggerThresholdEvent(newTemperature);
+                } else {
+                    temperatureThreshold.onTemperatureRead(newTemperature, previousTemperature, temperatureScaleUsedForReading);
+                }
+            } finally {
+                long endNanos = nanoTimeSource.getAsLong();
+
+                callbackStartNanos = 0L;
+                onCallbackReturned(endNanos - startNanos, endNanos);
+            }
+
+            if (thresholdCallback != null && temperatureMetrics != null && temperatureMetrics.isEnabled()) {
+                temperatureMetrics.onThresholdFired(readNanos);
+            }
+        }
+
+        private boolean isQuarantined(long nowNanos) {
+            long untilNanos = quarantinedUntilNanos;
+
+            if (untilNanos == 0L) {
+                return false;
+            }
+
+            if (nowNanos - untilNanos < 0L) {
+                return true;
+            }
+
+            endQuarantine(untilNanos);
+            return false;
+        }
+
+        // Stops reading the clock for every reading once the quarantine is over,
+        // unless the listener has been quarantined again in the meantime
+        private synchronized void endQuarantine(long untilNanos) {
+            if (quarantinedUntilNanos == untilNanos) {
+                quarantinedUntilNanos = 0L;
+            }
+        }
+
+        // Stops the listener from being reported, and kept, as a slow listener
+        synchronized void onUnregistered() {
+            unregistered = true;
+            slowListeners.remove(this);
+        }
+
+        private synchronized void onCallbackReturned(long callbackNanos, long nowNanos) {
+            callbackCount++;
+            maxCallbackNanos = Math.max(maxCallbackNanos, callbackNanos);
+
+            if (callbackNanos <= callbackTimeBudgetNanos) {
+                consecutiveOverrunCount = 0;
+                onProbation = false;
+            } else if (!runningOverrunRecorded) {
+                onOverrun(nowNanos);
+            }
+
+            runningOverrunRecorded = false;
+        }
+
+        // A callback that is still running past its budget is only counted once
+        private synchronized void onRunningOverrun(long startNanos, long nowNanos) {
+            if (callbackStartNanos == startNanos && !runningOverrunRecorded) {
+                runningOverrunRecorded = true;
+                onOverrun(nowNanos);
+            }
+        }
+
+        // Must be invoked while holding the lock on `this`
+        private void onOverrun(long nowNanos) {
+            overrunCount++;
+            consecutiveOverrunCount++;
+
+            if (!unregistered) {
+                slowListeners.add(this);
+            }
+
+            if (temperatureMetrics != null && temperatureMetrics.isEnabled()) {
+                temperatureMetrics.onCallbackOverrun(getListenerName());
+            }
+
+            if (onProbation || consecutiveOverrunCount >= quarantineOverrunCount) {
+                quarantinedUntilNanos = nowNanos + quarantineNanos;
+                quarantineCount++;
+                consecutiveOverrunCount = 0;
+                onProbation = true;
+
+                if (temperatureMetrics != null && temperatureMetrics.isEnabled()) {
+                    temperatureMetrics.onListenerQuarantined();
+                }
+            }
+        }
+
+        private synchronized void onShed(long count) {
+            shedCount += count;
+
+            if (!unregistered) {
+                slowListeners.add(this);
+            }
+
+            if (temperatureMetrics != null && temperatureMetrics.isEnabled()) {
+                temperatureMetrics.onCallbacksShed(count);
+            }
+        }
+
+        // Must be invoked while holding the lock on `this`
+        private String getListenerName() {
+            if (listenerName == null) {
+                listenerName = String.format("sensor %d: %s", sensorId, describeListener());
+            }
+
+            return listenerName;
+        }
+
+        // Lambdas and classes that don't override `toString()` are named after
+        // the class they are declared in and numbered in registration order
+        private String describeListener() {
+            Class<?> listenerClass = temperatureThreshold.getClass();
+            String className = listenerClass.getName();
+            String description = temperatureThreshold.toString();
+
+            if (!description.startsWith(className + "@")) {
+                return description;
+            }
+
+            int lambdaIndex = className.indexOf("$$Lambda");
+
+            if (lambdaIndex >= 0) {
+                return String.format("lambda in %s #%d", className.substring(0, lambdaIndex), listenerIndex);
+            }
+
+            if (listenerClass.isAnonymousClass()) {
+                return String.format("anonymous listener in %s #%d", listenerClass.getEnclosingClass().getName(), listenerIndex);
+            }
+
+            return String.format("%s #%d", className, listenerIndex);
+        }
+
+        private synchronized SlowListener toSlowListener() {
+            return new SlowListener(
+                    sensorId,
+                    temperatureThreshold,
+                    getListenerName(),
+                    callbackCount,
+                    overrunCount,
+                    shedCount,
+                    quarantineCount,
+                    maxCallbackNanos,
+                    isQuarantined(nanoTimeSource.getAsLong()));
+        }
+    }
+
+    // Point in time copy of how a listener that overran or shed callbacks has
+    // behaved since it was registered
+    public static class SlowListener {
+
+        private final int sensorId;
+        private final TemperatureThresholdEventListener temperatureThreshold;
+        private final String listenerName;
+        private final long callbackCount;
+        private final long overrunCount;
+        private final long shedCount;
+        private final long quarantineCount;
+        private final long maxCallbackNanos;
+        private final boolean quarantined;
+
+        private SlowListener(
+                int sensorId,
+                TemperatureThresholdEventListener temperatureThreshold,
+                String listenerName,
+                long callbackCount,
+                long overrunCount,
+                long shedCount,
+                long quarantineCount,
+                long maxCallbackNanos,
+                boolean quarantined) {
+
+            this.sensorId = sensorId;
+            this.temperatureThreshold = temperatureThreshold;
+            this.listenerName = listenerName;
+            this.callbackCount = callbackCount;
+            this.overrunCount = overrunCount;
+            this.shedCount = shedCount;
+            this.quarantineCount = quarantineCount;
+            this.maxCallbackNanos = maxCallbackNanos;
+            this.quarantined = quarantined;
+        }
+
+        public int getSensorId() {
+            return sensorId;
+        }
+
+        public TemperatureThresholdEventListener getTemperatureThreshold() {
+            return temperatureThreshold;
+        }
+
+        // The same name overruns are keyed by in `TemperatureMetrics`
+        public String getListenerName() {
+            return listenerName;
+        }
+
+        // Callbacks that ran to completion
+        public long getCallbackCount() {
+            return callbackCount;
+        }
+
+        public long getOverrunCount() {
+            return overrunCount;
+        }
+
+        public long getShedCount() {
+            return shedCount;
+        }
+
+        public long getQuarantineCount() {
+            return quarantineCount;
+        }
+
+        public long getMaxCallbackNanos() {
+            return maxCallbackNanos;
+        }
+
+        public boolean isQuarantined() {
+            return quarantined;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s callbacks=%d overruns=%d shed=%d quarantines=%d maxCallback=%dns%s",
+                    listenerName,
+                    callbackCount,
+                    overrunCount,
+                    shedCount,
+                    quarantineCount,
+                    maxCallbackNanos,
+                    quarantined ? " (quarantined)" : "");
+        }
+    }
+
+}
@@ -0,0 +1,423 @@
+package org.thermometer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+// The temperatures of every sensor of a `ThermometerRegistry` and the
+// definitions of its thresholds at a point in time, so a restart can pick up
+// where it left off without rebuilding its thresholds from their config and
+// without waiting for two fresh readings per sensor before a crossing can be
+// detected.
+//
+// A checkpoint is a fixed size header followed by fixed size little endian
+// sensor records, the table of callback names the thresholds refer to and
+// fixed size threshold records, so it decodes front to back in a single pass:
+//
+// header    magic (int) | version (short) | reserved (short) | checksum (int) | sensor count (int) | threshold count (int) | callback name count (int) | checkpoint time (long, milliseconds)
+// sensor    sensor id (int) | temperature scale (int) | packed previous and current temperature bits (long)
+// callback  name length (short) | UTF-8 name
+// threshold sensor id (int) | threshold (float) | precision (float) | hysteresis band (float) | hold sample count (int) | callback index (int) | hold time (long, milliseconds) | cooldown (long, milliseconds) | scale (byte) | direction (byte) | reserved (6 bytes)
+//
+// Only sensors that have been read or aren't in the default scale are
+// written. The checksum is a CRC32 of everything after the header so a
+// checkpoint torn by a crash is rejected rather than half restored.
+public final class TemperatureCheckpoint {
+
+    public static final int MAGIC = 0x54434B50; // "TCKP"
+    public static final short VERSION = 2;
+
+    public static final int HEADER_SIZE = 32;
+    public static final int SENSOR_RECORD_SIZE = 16;
+    public static final int THRESHOLD_RECORD_SIZE = 48;
+
+    public static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    private static final int CHECKSUM_OFFSET = Integer.BYTES + Short.BYTES + Short.BYTES;
+    private static final int THRESHOLD_RESERVED_SIZE = 6;
+    private static final byte NO_DIRECTION = -1;
+
+    private static final TemperatureScales[] TEMPERATURE_SCALES = TemperatureScales.values();
+    private static final ThresholdTriggerDirections[] THRESHOLD_TRIGGER_DIRECTIONS = ThresholdTriggerDirections.values();
+
+    private final long checkpointTimeMillis;
+
+    // Indexed by sensor record
+    private final int[] sensorIds;
+    private final byte[] temperatureScales;
+    private final long[] packedTemperatures;
+
+    private final List<TemperatureThresholdConfig.ThresholdDefinition> thresholdDefinitions;
+
+    private TemperatureCheckpoint(
+            long checkpointTimeMillis,
+            int[] sensorIds,
+            byte[] temperatureScales,
+            long[] packedTemperatures,
+            List<TemperatureThresholdConfig.ThresholdDefinition> thresholdDefinitions) {
+
+        this.checkpointTimeMillis = checkpointTimeMillis;
+        this.sensorIds = sensorIds;
+        this.temperatureScales = temperatureScales;
+        this.packedTemperatures = packedTemperatures;
+        this.thresholdDefinitions = Collections.unmodifiableList(thresholdDefinitions);
+    }
+
+    // Each sensor's pair of temperatures is captured as a whole, though
+    // readings made while capturing may land before or after it
+    public static TemperatureCheckpoint capture(
+            ThermometerRegistry thermometerRegistry,
+            Collection<TemperatureThresholdConfig.ThresholdDefinition> thresholdDefinitions) throws IllegalArgumentException {
+
+        if (thermometerRegistry == null || thresholdDefinitions == null) {
+            throw new IllegalArgumentException("Thermometer registry and threshold definitions can't be 'null'");
+        }
+
+        int sensorCapacity = thermometerRegistry.getSensorCapacity();
+        int[] sensorIds = new int[sensorCapacity];
+        byte[] temperatureScales = new byte[sensorCapacity];
+        long[] packedTemperatures = new long[sensorCapacity];
+        int sensorCount = 0;
+
+        for (int sensorId = 0; sensorId < sensorCapacity; sensorId++) {
+            long sensorTemperatures = thermometerRegistry.getPackedTemperatures(sensorId);
+            TemperatureScales temperatureScale = thermometerRegistry.getTemperatureScale(sensorId);
+
+            if (sensorTemperatures == ThermometerRegistry.NO_READINGS && temperatureScale == TemperatureScales.CELSIUS_SCALE) {
+                continue;
+            }
+
+            sensorIds[sensorCount] = sensorId;
+            temperatureScales[sensorCount] = (byte) temperatureScale.ordinal();
+            packedTemperatures[sensorCount] = sensorTemperatures;
+            sensorCount++;
+        }
+
+        return new TemperatureCheckpoint(
+                System.currentTimeMillis(),
+                Arrays.copyOf(sensorIds, sensorCount),
+                Arrays.copyOf(temperatureScales, sensorCount),
+                Arrays.copyOf(packedTemperatures, sensorCount),
+                new ArrayList<>(thresholdDefinitions));
+    }
+
+    // Written to a temporary file next to the checkpoint that is forced to disk
+    // and then moved over it so the previous checkpoint stays intact until the
+    // new one is complete
+    public void write(Path path) throws IOException {
+        Map<String, Integer> callbackIndexes = new LinkedHashMap<>();
+
+        for (TemperatureThresholdConfig.ThresholdDefinition thresholdDefinition : thresholdDefinitions) {
+            callbackIndexes.putIfAbsent(thresholdDefinition.getCallbackName(), callbackIndexes.size());
+        }
+
+        List<byte[]> callbackNames = new ArrayList<>(callbackIndexes.size());
+        long checkpointSize = HEADER_SIZE + (long) sensorIds.length * SENSOR_RECORD_SIZE + (long) thresholdDefinitions.size() * THRESHOLD_RECORD_SIZE;
+
+        for (String callbackName : callbackIndexes.keySet()) {
+            byte[] callbackNameBytes = callbackName.getBytes(StandardCharsets.UTF_8);
+
+            if (callbackNameBytes.length > Short.MAX_VALUE) {
+                throw new IllegalArgumentException(String.format("Callback name '%s' is too long to checkpoint", callbackName));
+            }
+
+            callbackNames.add(callbackNameBytes);
+            checkpointSize += Short.BYTES + callbackNameBytes.length;
+        }
+
+        if (checkpointSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Checkpoint is too large to be mapped as a whole");
+        }
+
+        ByteBuffer checkpointBuffer = ByteBuffer.allocateDirect((int) checkpointSize).order(BYTE_ORDER);
+
+        checkpointBuffer.putInt(MAGIC);
+        checkpointBuffer.putShort(VERSION);
+        checkpointBuffer.putShort((short) 0);
+
+        // Filled in once the rest has been written
+        checkpointBuffer.putInt(0);
+
+        checkpointBuffer.putInt(sensorIds.length);
+        checkpointBuffer.putInt(thresholdDefinitions.size());
+        checkpointBuffer.putInt(callbackNames.size());
+        checkpointBuffer.putLong(checkpointTimeMillis);
+
+        for (int sensorIndex = 0; sensorIndex < sensorIds.length; sensorIndex++) {
+            checkpointBuffer.putInt(sensorIds[sensorIndex]);
+            checkpointBuffer.putInt(temperatureScales[sensorIndex]);
+            checkpointBuffer.putLong(packedTemperatures[sensorIndex]);
+        }
+
+        for (byte[] callbackName : callbackNames) {
+            checkpointBuffer.putShort((short) callbackName.length);
+            checkpointBuffer.put(callbackName);
+        }
+
+        for (TemperatureThresholdConfig.ThresholdDefinition thresholdDefinition : thresholdDefinitions) {
+            checkpointBuffer.putInt(thresholdDefinition.getSensorId());
+            checkpointBuffer.putFloat(thresholdDefinition.getTemperatureThreshold());
+            checkpointBuffer.putFloat(thresholdDefinition.getThresholdTriggerPrecision());
+            checkpointBuffer.putFloat(thresholdDefinition.getHysteresisBand());
+            checkpointBuffer.putInt(thresholdDefinition.getHoldSampleCount());
+            checkpointBuffer.putInt(callbackIndexes.get(thresholdDefinition.getCallbackName()));
+            checkpointBuffer.putLong(thresholdDefinition.getHoldTimeMillis());
+            checkpointBuffer.putLong(thresholdDefinition.getCooldownMillis());
+            checkpointBuffer.put((byte) thresholdDefinition.getTemperatureScale().ordinal());
+            checkpointBuffer.put(thresholdDefinition.getThresholdTriggerDirection() == null
+                    ? NO_DIRECTION
+                    : (byte) thresholdDefinition.getThresholdTriggerDirection().ordinal());
+            checkpointBuffer.position(checkpointBuffer.position() + THRESHOLD_RESERVED_SIZE);
+        }
+
+        checkpointBuffer.putInt(CHECKSUM_OFFSET, checksum(checkpointBuffer, checkpointBuffer.position()));
+        checkpointBuffer.flip();
+
+        Path temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+
+        try (FileChannel fileChannel = FileChannel.open(
+                temporaryPath,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+
+            while (checkpointBuffer.hasRemaining()) {
+                fileChannel.write(checkpointBuffer);
+            }
+
+            fileChannel.force(true);
+        }
+
+        try {
+            Files.move(temporaryPath, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // Maps the checkpoint and decodes it in a single pass once its checksum
+    // has been verified
+    public static TemperatureCheckpoint read(Path path) throws IOException, IllegalArgumentException {
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = fileChannel.size();
+
+            if (fileSize < HEADER_SIZE || fileSize > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(String.format("Temperature checkpoint size '%d' isn't supported", fileSize));
+            }
+
+            MappedByteBuffer checkpointBuffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, fileSize);
+            checkpointBuffer.order(BYTE_ORDER);
+
+            if (checkpointBuffer.getInt() != MAGIC) {
+                throw new IllegalArgumentException("Temperature checkpoint doesn't start with the expected magic number");
+            }
+
+            short version = checkpointBuffer.getShort();
+
+            if (version != VERSION) {
+                throw new IllegalArgumentException(String.format("Temperature checkpoint version '%d' isn't supported", version));
+            }
+
+            checkpointBuffer.getShort();
+            int expectedChecksum = checkpointBuffer.getInt();
+            int sensorCount = checkpointBuffer.getInt();
+            int thresholdCount = checkpointBuffer.getInt();
+            int callbackNameCount = checkpointBuffer.getInt();
+            long checkpointTimeMillis = checkpointBuffer.getLong();
+
+            if (sensorCount < 0 || thresholdCount < 0 || callbackNameCount < 0
+                    || HEADER_SIZE + (long) sensorCount * SENSOR_RECORD_SIZE + (long) thresholdCount * THRESHOLD_RECORD_SIZE > fileSize) {
+                throw new IllegalArgumentException("Temperature checkpoint is shorter than its header describes");
+            }
+
+            if (checksum(checkpointBuffer, (int) fileSize) != expectedChecksum) {
+                throw new IllegalArgumentException("Temperature checkpoint doesn't match its checksum");
+            }
+
+            int[] sensorIds = new int[sensorCount];
+            byte[] temperatureScales = new byte[sensorCount];
+            long[] packedTemperatures = new long[sensorCount];
+
+            for (int sensorIndex = 0; sensorIndex < sensorCount; sensorIndex++) {
+                sensorIds[sensorIndex] = checkpointBuffer.getInt();
+                temperatureScales[sensorIndex] = (byte) checkTemperatureScale(checkpointBuffer.getInt()).ordinal();
+                packedTemperatures[sensorIndex] = checkpointBuffer.getLong();
+            }
+
+            // Every callback name takes at least its length and the threshold
+            // records still have to fit behind them
+            if (callbackNameCount > (checkpointBuffer.remaining() - (long) thresholdCount * THRESHOLD_RECORD_SIZE) / Short.BYTES) {
+                throw new IllegalArgumentException("Temperature checkpoint is shorter than its header describes");
+            }
+
+            String[] callbackNames = new String[callbackNameCount];
+
+            for (int callbackIndex = 0; callbackIndex < callbackNameCount; callbackIndex++) {
+                if (checkpointBuffer.remaining() - (long) thresholdCount * THRESHOLD_RECORD_SIZE < Short.BYTES) {
+                    throw new IllegalArgumentException("Temperature checkpoint is shorter than its header describes");
+                }
+
+                int callbackNameLength = checkpointBuffer.getShort();
+
+                if (callbackNameLength < 0 || callbackNameLength > checkpointBuffer.remaining() - (long) thresholdCount * THRESHOLD_RECORD_SIZE) {
+                    throw new IllegalArgumentException(String.format("Callback name '%d' of the temperature checkpoint isn't valid", callbackIndex));
+                }
+
+                byte[] callbackName = new byte[callbackNameLength];
+                checkpointBuffer.get(callbackName);
+                callbackNames[callbackIndex] = new String(callbackName, StandardCharsets.UTF_8);
+            }
+
+            List<TemperatureThresholdConfig.ThresholdDefinition> thresholdDefinitions = new ArrayList<>(thresholdCount);
+
+            for (int thresholdIndex = 0; thresholdIndex < thresholdCount; thresholdIndex++) {
+                int sensorId = checkpointBuffer.getInt();
+                float temperatureThreshold = checkpointBuffer.getFloat();
+                float thresholdTriggerPrecision = checkpointBuffer.getFloat();
+                float hysteresisBand = checkpointBuffer.getFloat();
+                int holdSampleCount = checkpointBuffer.getInt();
+                int callbackIndex = checkpointBuffer.getInt();
+                long holdTimeMillis = checkpointBuffer.getLong();
+                long cooldownMillis = checkpointBuffer.getLong();
+                TemperatureScales temperatureScale = checkTemperatureScale(checkpointBuffer.get());
+                byte thresholdTriggerDirection = checkpointBuffer.get();
+                checkpointBuffer.position(checkpointBuffer.position() + THRESHOLD_RESERVED_SIZE);
+
+                if (callbackIndex < 0 || callbackIndex >= callbackNameCount
+                        || thresholdTriggerDirection < NO_DIRECTION || thresholdTriggerDirection >= THRESHOLD_TRIGGER_DIRECTIONS.length) {
+                    throw new IllegalArgumentException(String.format("Threshold record '%d' of the temperature checkpoint isn't valid", thresholdIndex));
+                }
+
+                thresholdDefinitions.add(new TemperatureThresholdConfig.ThresholdDefinition(
+                        sensorId,
+                        temperatureThreshold,
+                        temperatureScale,
+                        thresholdTriggerPrecision,
+                        thresholdTriggerDirection == NO_DIRECTION ? null : THRESHOLD_TRIGGER_DIRECTIONS[thresholdTriggerDirection],
+                        callbackNames[callbackIndex],
+                        hysteresisBand,
+                        holdSampleCount,
+                        holdTimeMillis,
+                        cooldownMillis));
+            }
+
+            return new TemperatureCheckpoint(checkpointTimeMillis, sensorIds, temperatureScales, packedTemperatures, thresholdDefinitions);
+        }
+    }
+
+    // Puts the temperatures and scale of every sensor back as they were
+    // checkpointed so the first reading after a restart can already cross a
+    // threshold. Sensors outside of the registry are skipped. Returns the
+    // number of sensors that were restored.
+    public int restoreTemperatures(ThermometerRegistry thermometerRegistry) {
+        int sensorCapacity = thermometerRegistry.getSensorCapacity();
+        int restoredCount = 0;
+
+        for (int sensorIndex = 0; sensorIndex < sensorIds.length; sensorIndex++) {
+            int sensorId = sensorIds[sensorIndex];
+
+            if (sensorId < 0 || sensorId >= sensorCapacity) {
+                continue;
+            }
+
+            thermometerRegistry.setTemperatureScale(sensorId, TEMPERATURE_SCALES[temperatureScales[sensorIndex]]);
+            thermometerRegistry.restorePackedTemperatures(sensorId, packedTemperatures[sensorIndex]);
+            restoredCount++;
+        }
+
+        return restoredCount;
+    }
+
+    // Builds every threshold of the checkpoint with the callback it names and
+    // adds the thresholds of each sensor as a single snapshot. Nothing is
+    // added when a threshold names an unknown callback or a sensor outside of
+    // the registry. The registrations are in the order of the definitions.
+    public List<TemperatureThresholdRegistration> restoreThresholds(
+            ThermometerRegistry thermometerRegistry,
+            Map<String, FloatConsumer> thresholdEventCallbacks) throws IllegalArgumentException {
+
+        Map<Integer, List<Integer>> definitionIndexesBySensor = new LinkedHashMap<>();
+        List<TemperatureThreshold> temperatureThresholds = new ArrayList<>(thresholdDefinitions.size());
+
+        for (int definitionIndex = 0; definitionIndex < thresholdDefinitions.size(); definitionIndex++) {
+            TemperatureThresholdConfig.ThresholdDefinition thresholdDefinition = thresholdDefinitions.get(definitionIndex);
+            FloatConsumer thresholdEventCallback = thresholdEventCallbacks.get(thresholdDefinition.getCallbackName());
+
+            if (thresholdEventCallback == null) {
+                throw new IllegalArgumentException(String.format(
+                        "Threshold '%s' names the unknown callback '%s'", thresholdDefinition, thresholdDefinition.getCallbackName()));
+            }
+
+            if (thresholdDefinition.getSensorId() >= thermometerRegistry.getSensorCapacity()) {
+                throw new IllegalArgumentException(String.format(
+                        "Threshold '%s' is for a sensor beyond the capacity of the registry", thresholdDefinition));
+            }
+
+            temperatureThresholds.add(thresholdDefinition.newTemperatureThreshold(thresholdEventCallback));
+            definitionIndexesBySensor.computeIfAbsent(thresholdDefinition.getSensorId(), sensorId -> new ArrayList<>()).add(definitionIndex);
+        }
+
+        TemperatureThresholdRegistration[] registrations = new TemperatureThresholdRegistration[thresholdDefinitions.size()];
+
+        for (Map.Entry<Integer, List<Integer>> sensorDefinitionIndexes : definitionIndexesBySensor.entrySet()) {
+            List<TemperatureThreshold> sensorThresholds = new ArrayList<>(sensorDefinitionIndexes.getValue().size());
+
+            for (int definitionIndex : sensorDefinitionIndexes.getValue()) {
+                sensorThresholds.add(temperatureThresholds.get(definitionIndex));
+            }
+
+            List<TemperatureThresholdRegistration> sensorRegistrations = thermometerRegistry.addTemperatureThresholds(sensorDefinitionIndexes.getKey(), sensorThresholds);
+
+            for (int sensorIndex = 0; sensorIndex < sensorRegistrations.size(); sensorIndex++) {
+                registrations[sensorDefinitionIndexes.getValue().get(sensorIndex)] = sensorRegistrations.get(sensorIndex);
+            }
+        }
+
+        return Collections.unmodifiableList(Arrays.asList(registrations));
+    }
+
+    public long getCheckpointTimeMillis() {
+        return checkpointTimeMillis;
+    }
+
+    // Sensors that had been read or set to a scale other than the default
+    public int getSensorCount() {
+        return sensorIds.length;
+    }
+
+    public List<TemperatureThresholdConfig.ThresholdDefinition> getThresholdDefinitions() {
+        return thresholdDefinitions;
+    }
+
+    private static int checksum(ByteBuffer checkpointBuffer, int checkpointSize) {
+        CRC32 crc = new CRC32();
+        crc.update(checkpointBuffer.duplicate().limit(checkpointSize).position(HEADER_SIZE));
+
+        return (int) crc.getValue();
+    }
+
+    private static TemperatureScales checkTemperatureScale(int temperatureScale) throws IllegalArgumentException {
+        if (temperatureScale < 0 || temperatureScale >= TEMPERATURE_SCALES.length) {
+            throw new IllegalArgumentException(String.format("Temperature scale '%d' of the temperature checkpoint isn't valid", temperatureScale));
+        }
+
+        return TEMPERATURE_SCALES[temperatureScale];
+    }
+
+}
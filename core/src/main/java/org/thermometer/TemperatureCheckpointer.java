@@ -0,0 +1,167 @@
+package org.thermometer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Writes a `TemperatureCheckpoint` of a `ThermometerRegistry` once every
+// checkpoint interval and a last time when it is closed, e.g. on shutdown.
+// Checkpoints are captured and written on a background thread so readings are
+// never held up by one.
+public class TemperatureCheckpointer implements AutoCloseable {
+
+    public static final long DEFAULT_CHECKPOINT_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final ThermometerRegistry thermometerRegistry;
+    private final Path checkpointPath;
+    private final Supplier<? extends Collection<TemperatureThresholdConfig.ThresholdDefinition>> thresholdDefinitions;
+    private final long checkpointIntervalMillis;
+    private final CountDownLatch closing = new CountDownLatch(1);
+    private final Thread checkpointerThread;
+
+    private volatile long checkpointCount = 0L;
+    private volatile long failedCheckpointCount = 0L;
+    private volatile Exception lastCheckpointFailure = null;
+    private volatile boolean closed = false;
+
+    private TemperatureCheckpointer(
+            ThermometerRegistry thermometerRegistry,
+            Path checkpointPath,
+            Supplier<? extends Collection<TemperatureThresholdConfig.ThresholdDefinition>> thresholdDefinitions,
+            long checkpointIntervalMillis) {
+
+        this.thermometerRegistry = thermometerRegistry;
+        this.checkpointPath = checkpointPath;
+        this.thresholdDefinitions = thresholdDefinitions;
+        this.checkpointIntervalMillis = checkpointIntervalMillis;
+
+        this.checkpointerThread = new Thread(this::checkpointPeriodically, "temperature-checkpointer");
+        this.checkpointerThread.setDaemon(true);
+        this.checkpointerThread.start();
+    }
+
+    public static class TemperatureCheckpointerBuilder {
+
+        private final ThermometerRegistry thermometerRegistry;
+        private final Path checkpointPath;
+        private Supplier<? extends Collection<TemperatureThresholdConfig.ThresholdDefinition>> thresholdDefinitions = Collections::emptyList;
+        private long checkpointIntervalMillis = DEFAULT_CHECKPOINT_INTERVAL_MILLIS;
+
+        public TemperatureCheckpointerBuilder(ThermometerRegistry thermometerRegistry, Path checkpointPath) throws IllegalArgumentException {
+            if (thermometerRegistry == null || checkpointPath == null) {
+                throw new IllegalArgumentException("Thermometer registry and checkpoint path can't be 'null'");
+            }
+
+            this.thermometerRegistry = thermometerRegistry;
+            this.checkpointPath = checkpointPath;
+        }
+
+        public TemperatureCheckpointer build() {
+            return new TemperatureCheckpointer(
+                    this.thermometerRegistry,
+                    this.checkpointPath,
+                    this.thresholdDefinitions,
+                    this.checkpointIntervalMillis);
+        }
+
+        // Asked for the thresholds to write on every checkpoint, e.g.
+        // `TemperatureThresholdReloader::getThresholdDefinitions`. Without it
+        // only temperatures are checkpointed.
+        public TemperatureCheckpointerBuilder thresholdDefinitions(
+                Supplier<? extends Collection<TemperatureThresholdConfig.ThresholdDefinition>> thresholdDefinitions) throws IllegalArgumentException {
+
+            if (thresholdDefinitions == null) {
+                throw new IllegalArgumentException("Threshold definitions can't be set to 'null'");
+            }
+
+            this.thresholdDefinitions = thresholdDefinitions;
+            return this;
+        }
+
+        public TemperatureCheckpointerBuilder checkpointInterval(long checkpointInterval, TimeUnit unit) throws IllegalArgumentException {
+            if (unit == null || unit.toMillis(checkpointInterval) < 1) {
+                throw new IllegalArgumentException("Checkpoint interval must be at least '1' millisecond");
+            }
+
+            this.checkpointIntervalMillis = unit.toMillis(checkpointInterval);
+            return this;
+        }
+    }
+
+    // Captures and writes a checkpoint right away
+    public synchronized TemperatureCheckpoint checkpoint() throws IOException {
+        TemperatureCheckpoint temperatureCheckpoint = TemperatureCheckpoint.capture(thermometerRegistry, thresholdDefinitions.get());
+        temperatureCheckpoint.write(checkpointPath);
+        checkpointCount++;
+
+        return temperatureCheckpoint;
+    }
+
+    public long getCheckpointCount() {
+        return checkpointCount;
+    }
+
+    public long getFailedCheckpointCount() {
+        return failedCheckpointCount;
+    }
+
+    // Why the last periodic checkpoint failed
+    public Exception getLastCheckpointFailure() {
+        return lastCheckpointFailure;
+    }
+
+    public Path getCheckpointPath() {
+        return checkpointPath;
+    }
+
+    public long getCheckpointIntervalMillis() {
+        return checkpointIntervalMillis;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    // Stops checkpointing periodically and writes a last checkpoint
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        closing.countDown();
+
+        try {
+            checkpointerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        checkpoint();
+    }
+
+    private void checkpointPeriodically() {
+        try {
+            while (!closing.await(checkpointIntervalMillis, TimeUnit.MILLISECONDS)) {
+                try {
+                    checkpoint();
+                } catch (IOException | RuntimeException e) {
+                    // The previous checkpoint stays in place
+                    failedCheckpointCount++;
+                    lastCheckpointFailure = e;
+
+                    Thread currentThread = Thread.currentThread();
+                    currentThread.getUncaughtExceptionHandler().uncaughtException(currentThread, e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,99 @@
+package org.thermometer;
+
+// Evaluates a move from the previous to the new temperature against thresholds
+// packed into parallel arrays, one lane per threshold, and sets the bit of
+// every lane whose threshold is triggered in `crossedWords` (lane `i` is bit
+// `i % 64` of word `i / 64`). A lane is triggered exactly when
+// `TemperatureThreshold.isTempThresholdReached`, `isTempDifferencePrecise` and
+// `isTempMovementCorrectDirection` would all hold for its threshold.
+//
+// Directions are packed as floats so every array shares a single lane shape.
+interface TemperatureCrossingKernel {
+
+    float ANY_DIRECTION = 0.0F;
+    float DECREASING_DIRECTION = 1.0F;
+    float INCREASING_DIRECTION = 2.0F;
+
+    // Clears the words covering `length` lanes before setting any bits
+    void computeCrossings(
+            float[] thresholdValues,
+            float[] thresholdPrecisions,
+            float[] thresholdDirections,
+            int length,
+            float newTemperature,
+            float previousTemperature,
+            long[] crossedWords);
+
+    // Whether lanes are evaluated several at a time
+    boolean isVectorized();
+
+    static float packDirection(ThresholdTriggerDirections thresholdTriggerDirection) {
+        if (thresholdTriggerDirection == null) {
+            return ANY_DIRECTION;
+        }
+
+        return thresholdTriggerDirection == ThresholdTriggerDirections.DECREASING_TEMP ? DECREASING_DIRECTION : INCREASING_DIRECTION;
+    }
+
+    static int wordCount(int length) {
+        return (length + Long.SIZE - 1) / Long.SIZE;
+    }
+
+    final class ScalarCrossingKernel implements TemperatureCrossingKernel {
+
+        @Override
+        public void computeCrossings(
+                float[] thresholdValues,
+                float[] thresholdPrecisions,
+                float[] thresholdDirections,
+                int length,
+                float newTemperature,
+                float previousTemperature,
+                long[] crossedWords) {
+
+            for (int wordIndex = 0; wordIndex < wordCount(length); wordIndex++) {
+                crossedWords[wordIndex] = 0L;
+            }
+
+            computeCrossings(thresholdValues, thresholdPrecisions, thresholdDirections, 0, length, newTemperature, previousTemperature, crossedWords);
+        }
+
+        // Also evaluates the lanes left over after the last full vector of a
+        // vectorized kernel
+        static void computeCrossings(
+                float[] thresholdValues,
+                float[] thresholdPrecisions,
+                float[] thresholdDirections,
+                int fromIndex,
+                int toIndex,
+                float newTemperature,
+                float previousTemperature,
+                long[] crossedWords) {
+
+            float temperatureDifference = Math.abs(newTemperature - previousTemperature);
+            float allowedDirection = newTemperature < previousTemperature
+                    ? DECREASING_DIRECTION
+                    : newTemperature > previousTemperature ? INCREASING_DIRECTION : ANY_DIRECTION;
+
+            for (int laneIndex = fromIndex; laneIndex < toIndex; laneIndex++) {
+                float thresholdValue = thresholdValues[laneIndex];
+                float thresholdDirection = thresholdDirections[laneIndex];
+
+                boolean crossed = ((previousTemperature < thresholdValue && newTemperature >= thresholdValue)
+                        || (previousTemperature > thresholdValue && newTemperature <= thresholdValue))
+                        && temperatureDifference >= thresholdPrecisions[laneIndex]
+                        && (thresholdDirection == ANY_DIRECTION || thresholdDirection == allowedDirection);
+
+                if (crossed) {
+                    crossedWords[laneIndex >>> 6] |= 1L << laneIndex;
+                }
+            }
+        }
+
+        @Override
+        public boolean isVectorized() {
+            return false;
+        }
+    }
+
+}
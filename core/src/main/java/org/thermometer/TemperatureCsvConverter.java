@@ -0,0 +1,74 @@
+package org.thermometer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+// Converts a CSV of readings into the binary format replayed by
+// `TemperatureReplaySource`. Every line holds a single reading:
+//
+// timestamp (milliseconds),sensor id,temperature
+//
+// Blank lines and lines starting with '#' are skipped as is a header on the
+// first line.
+//
+// java -cp core/target/classes org.thermometer.TemperatureCsvConverter readings.csv readings.bin
+public class TemperatureCsvConverter {
+
+    private TemperatureCsvConverter() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: TemperatureCsvConverter <csv path> <binary path>");
+            System.exit(1);
+        }
+
+        long recordCount = convert(Paths.get(args[0]), Paths.get(args[1]));
+
+        System.out.println(String.format("Converted %d readings", recordCount));
+    }
+
+    public static long convert(Path csvPath, Path binaryPath) throws IOException, IllegalArgumentException {
+        try (BufferedReader csvReader = Files.newBufferedReader(csvPath, StandardCharsets.UTF_8);
+                TemperatureRecordWriter temperatureRecordWriter = new TemperatureRecordWriter(binaryPath)) {
+
+            int lineNumber = 0;
+
+            for (String line = csvReader.readLine(); line != null; line = csvReader.readLine()) {
+                lineNumber++;
+                line = line.trim();
+
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+
+                String[] fields = line.split(",");
+
+                if (fields.length != 3) {
+                    throw new IllegalArgumentException(String.format("Line '%d' doesn't have exactly three fields", lineNumber));
+                }
+
+                try {
+                    temperatureRecordWriter.write(
+                            Long.parseLong(fields[0].trim()),
+                            Integer.parseInt(fields[1].trim()),
+                            Float.parseFloat(fields[2].trim()));
+                } catch (NumberFormatException e) {
+                    // Allow for a header naming the columns
+                    if (lineNumber == 1) {
+                        continue;
+                    }
+
+                    throw new IllegalArgumentException(String.format("Line '%d' isn't a valid reading", lineNumber), e);
+                }
+            }
+
+            return temperatureRecordWriter.getRecordCount();
+        }
+    }
+
+}
@@ -0,0 +1,35 @@
+package org.thermometer;
+
+import java.nio.FloatBuffer;
+
+public interface TemperatureDataEventListener {
+
+    public void onTemperatureData(float temperature);
+
+    // Implementations that can evaluate a batch of readings in a single pass
+    // should override this - by default every reading is evented on its own
+    public default void onTemperatureData(float[] temperatures, int offset, int length) {
+        if (offset < 0 || length < 0 || length > temperatures.length - offset) {
+            throw new IndexOutOfBoundsException(String.format("Range [%d, %d) is out of bounds for length '%d'", offset, (long) offset + length, temperatures.length));
+        }
+
+        for (int temperatureIndex = offset; temperatureIndex < offset + length; temperatureIndex++) {
+            onTemperatureData(temperatures[temperatureIndex]);
+        }
+    }
+
+    // Consumes the remaining readings of the buffer
+    public default void onTemperatureData(FloatBuffer temperatures) {
+        int length = temperatures.remaining();
+
+        if (temperatures.hasArray()) {
+            onTemperatureData(temperatures.array(), temperatures.arrayOffset() + temperatures.position(), length);
+            temperatures.position(temperatures.limit());
+        } else {
+            float[] copiedTemperatures = new float[length];
+            temperatures.get(copiedTemperatures);
+            onTemperatureData(copiedTemperatures, 0, length);
+        }
+    }
+
+}
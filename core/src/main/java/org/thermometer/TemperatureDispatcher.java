@@ -0,0 +1,706 @@
+package org.thermometer;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class TemperatureDispatcher {
+
+    public static final DispatchStrategies DEFAULT_DISPATCH_STRATEGY = DispatchStrategies.CALLER_THREAD;
+    public static final int DEFAULT_POOL_SIZE = Runtime.getRuntime().availableProcessors();
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    public static final BackpressurePolicies DEFAULT_BACKPRESSURE_POLICY = BackpressurePolicies.BLOCK;
+
+    private static final long CACHED_THREAD_KEEP_ALIVE_SECONDS = 60L;
+
+    private final DispatchStrategies dispatchStrategy;
+    private final int queueCapacity;
+    private final BackpressurePolicies backpressurePolicy;
+
+    // The default dispatcher is shared by every `Thermometer` that wasn't
+    // given one so no single owner gets to shut it down
+    private final boolean shared;
+
+    // 'null' when dispatching on the caller thread, which tracks the drains
+    // it is running itself so they can be waited on
+    private final ExecutorService executorService;
+    private final Executor executor;
+
+    private final AtomicInteger callerThreadDrainCount = new AtomicInteger();
+    private final ReentrantLock terminationLock = new ReentrantLock();
+    private final Condition terminated = terminationLock.newCondition();
+
+    private volatile boolean shutdown = false;
+
+    private TemperatureDispatcher(
+            DispatchStrategies dispatchStrategy,
+            int poolSize,
+            int queueCapacity,
+            BackpressurePolicies backpressurePolicy,
+            boolean shared
+    ) {
+        this.dispatchStrategy = dispatchStrategy;
+        this.queueCapacity = queueCapacity;
+        this.backpressurePolicy = backpressurePolicy;
+        this.shared = shared;
+
+        switch (dispatchStrategy) {
+            case CALLER_THREAD:
+                this.executorService = null;
+                this.executor = this::runOnCallerThread;
+                break;
+            case VIRTUAL_THREADS:
+                this.executorService = newVirtualThreadPerTaskExecutor();
+                this.executor = executorService;
+                break;
+            case CACHED_POOL:
+                // A thread per lane being drained so a lane stuck on a task
+                // never holds up the others, idle threads are retired
+                this.executorService = new ThreadPoolExecutor(
+                        0,
+                        Integer.MAX_VALUE,
+                        CACHED_THREAD_KEEP_ALIVE_SECONDS,
+                        TimeUnit.SECONDS,
+                        new SynchronousQueue<>(),
+                        new DispatchThreadFactory());
+                this.executor = executorService;
+                break;
+            default:
+                // Each lane has at most one drain task outstanding so the work
+                // queue of the pool is bounded by the number of lanes and the
+                // per lane queues are where the capacity is enforced
+                this.executorService = new ThreadPoolExecutor(
+                        poolSize,
+                        poolSize,
+                        0L,
+                        TimeUnit.MILLISECONDS,
+                        new LinkedBlockingQueue<>(),
+                        new DispatchThreadFactory());
+                this.executor = executorService;
+                break;
+        }
+    }
+
+    public static class TemperatureDispatcherBuilder {
+
+        private DispatchStrategies dispatchStrategy = DEFAULT_DISPATCH_STRATEGY;
+        private int poolSize = DEFAULT_POOL_SIZE;
+        private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+        private BackpressurePolicies backpressurePolicy = DEFAULT_BACKPRESSURE_POLICY;
+
+        public TemperatureDispatcherBuilder() {
+        }
+
+        public TemperatureDispatcher build() {
+            return new TemperatureDispatcher(
+                    this.dispatchStrategy,
+                    this.poolSize,
+                    this.queueCapacity,
+                    this.backpressurePolicy,
+                    false);
+        }
+
+        public TemperatureDispatcherBuilder dispatchStrategy(DispatchStrategies dispatchStrategy) throws IllegalArgumentException {
+            if (dispatchStrategy == null) {
+                throw new IllegalArgumentException("Dispatch strategy can't be set to 'null'");
+            }
+
+            this.dispatchStrategy = dispatchStrategy;
+            return this;
+        }
+
+        public TemperatureDispatcherBuilder poolSize(int poolSize) throws IllegalArgumentException {
+            if (poolSize < 1) {
+                throw new IllegalArgumentException("Pool size must be at least '1'");
+            }
+
+            this.poolSize = poolSize;
+            return this;
+        }
+
+        public TemperatureDispatcherBuilder queueCapacity(int queueCapacity) throws IllegalArgumentException {
+            if (queueCapacity < 1) {
+                throw new IllegalArgumentException("Queue capacity must be at least '1'");
+            }
+
+            this.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        public TemperatureDispatcherBuilder backpressurePolicy(BackpressurePolicies backpressurePolicy) throws IllegalArgumentException {
+            if (backpressurePolicy == null) {
+                throw new IllegalArgumentException("Backpressure policy can't be set to 'null'");
+            }
+
+            this.backpressurePolicy = backpressurePolicy;
+            return this;
+        }
+    }
+
+    public static TemperatureDispatcher getDefaultDispatcher() {
+        return DefaultDispatcherHolder.DEFAULT_DISPATCHER;
+    }
+
+    public DispatchLane newLane() {
+        return new DispatchLane(queueCapacity, backpressurePolicy);
+    }
+
+    // A lane with a bound and backpressure policy of its own rather than the
+    // ones of the dispatcher, e.g. for a lane dedicated to a single listener
+    DispatchLane newLane(int laneQueueCapacity, BackpressurePolicies laneBackpressurePolicy) throws IllegalArgumentException {
+        if (laneQueueCapacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be at least '1'");
+        }
+
+        if (laneBackpressurePolicy == null) {
+            throw new IllegalArgumentException("Backpressure policy can't be set to 'null'");
+        }
+
+        return new DispatchLane(laneQueueCapacity, laneBackpressurePolicy);
+    }
+
+    public void shutdown() throws UnsupportedOperationException {
+        if (shared) {
+            throw new UnsupportedOperationException("The default dispatcher is shared and can't be shutdown");
+        }
+
+        shutdown = true;
+
+        if (executorService != null) {
+            executorService.shutdown();
+        } else {
+            signalTerminated();
+        }
+    }
+
+    // Dispatching on the caller thread terminates once it has been shutdown
+    // and the producer threads are done with the drains they were running
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        if (executorService != null) {
+            return executorService.awaitTermination(timeout, unit);
+        }
+
+        long remainingNanos = unit.toNanos(timeout);
+
+        terminationLock.lock();
+        try {
+            while (!shutdown || callerThreadDrainCount.get() > 0) {
+                if (remainingNanos <= 0L) {
+                    return false;
+                }
+
+                remainingNanos = terminated.awaitNanos(remainingNanos);
+            }
+
+            return true;
+        } finally {
+            terminationLock.unlock();
+        }
+    }
+
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    private void runOnCallerThread(Runnable drainTask) {
+        callerThreadDrainCount.incrementAndGet();
+
+        try {
+            drainTask.run();
+        } finally {
+            // Only the last drain to finish after shutdown has anyone to wake
+            if (callerThreadDrainCount.decrementAndGet() == 0 && shutdown) {
+                signalTerminated();
+            }
+        }
+    }
+
+    private void signalTerminated() {
+        terminationLock.lock();
+        try {
+            terminated.signalAll();
+        } finally {
+            terminationLock.unlock();
+        }
+    }
+
+    public DispatchStrategies getDispatchStrategy() {
+        return dispatchStrategy;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public BackpressurePolicies getBackpressurePolicy() {
+        return backpressurePolicy;
+    }
+
+    // A lane is a bounded FIFO of dispatch work that is only ever drained by a
+    // single thread at a time. Every `Thermometer` owns a lane so its listeners
+    // see readings in the same order they were read, regardless of how many
+    // threads back the dispatcher.
+    //
+    // Pending work is held in a ring of parallel arrays so that a single
+    // reading can be queued as primitives without allocating a task for it.
+    // The ring starts small and doubles up to the queue capacity so lanes that
+    // never back up stay cheap.
+    public class DispatchLane {
+
+        private static final int INITIAL_RING_CAPACITY = 16;
+
+        private final int laneQueueCapacity;
+        private final BackpressurePolicies laneBackpressurePolicy;
+
+        private Object[] pendingOwners;
+        private Runnable[] pendingTasks;
+        private TemperatureThresholdEventListener[] pendingListeners;
+        private float[] pendingNewTemperatures;
+        private float[] pendingPreviousTemperatures;
+        private TemperatureScales[] pendingTemperatureScales;
+        private long[] pendingReadNanos;
+        private int[] pendingReadingCounts;
+
+        private int pendingHead = 0;
+        private int pendingCount = 0;
+
+        private final ReentrantLock queueLock = new ReentrantLock();
+        private final Condition notFull = queueLock.newCondition();
+
+        // Held for the duration of a drain so that tasks are never run
+        // concurrently - this is what provides the ordering guarantee
+        private final ReentrantLock drainLock = new ReentrantLock();
+
+        private final AtomicLong droppedCount = new AtomicLong();
+
+        private final Runnable drainTask = this::drain;
+
+        private boolean drainScheduled = false;
+
+        // Set while holding the lock of `lockOrdered` when the drain has to be
+        // scheduled once the lock is given up
+        private boolean drainPending = false;
+
+        private DispatchLane(int laneQueueCapacity, BackpressurePolicies laneBackpressurePolicy) {
+            this.laneQueueCapacity = laneQueueCapacity;
+            this.laneBackpressurePolicy = laneBackpressurePolicy;
+
+            int initialRingCapacity = Math.min(INITIAL_RING_CAPACITY, laneQueueCapacity);
+
+            this.pendingOwners = new Object[initialRingCapacity];
+            this.pendingTasks = new Runnable[initialRingCapacity];
+            this.pendingListeners = new TemperatureThresholdEventListener[initialRingCapacity];
+            this.pendingNewTemperatures = new float[initialRingCapacity];
+            this.pendingPreviousTemperatures = new float[initialRingCapacity];
+            this.pendingTemperatureScales = new TemperatureScales[initialRingCapacity];
+            this.pendingReadNanos = new long[initialRingCapacity];
+            this.pendingReadingCounts = new int[initialRingCapacity];
+        }
+
+        public void submit(Runnable task) throws RejectedExecutionException {
+            enqueue(task, null, 0.0F, 0.0F, null, 0L, true);
+        }
+
+        // Queued regardless of the capacity of the lane so it is never dropped
+        // or blocked on. Only for work that is bounded by other means, e.g. a
+        // single pending summary per sensor when readings are conflated.
+        void submitUnbounded(Runnable task) throws RejectedExecutionException {
+            enqueue(task, null, 0.0F, 0.0F, null, 0L, false);
+        }
+
+        public void submitReading(
+                TemperatureThresholdEventListener temperatureThreshold,
+                float newTemperature,
+                float previousTemperature,
+                TemperatureScales temperatureScale) throws RejectedExecutionException {
+
+            enqueue(null, temperatureThreshold, newTemperature, previousTemperature, temperatureScale, 0L, true);
+        }
+
+        // The `System.nanoTime` of when the reading was provided is handed to
+        // listeners implementing `TimedTemperatureThresholdEventListener`
+        void submitReading(
+                TemperatureThresholdEventListener temperatureThreshold,
+                float newTemperature,
+                float previousTemperature,
+                TemperatureScales temperatureScale,
+                long readNanos) throws RejectedExecutionException {
+
+            enqueue(null, temperatureThreshold, newTemperature, previousTemperature, temperatureScale, readNanos, true);
+        }
+
+        private void enqueue(
+                Runnable task,
+                TemperatureThresholdEventListener temperatureThreshold,
+                float newTemperature,
+                float previousTemperature,
+                TemperatureScales temperatureScale,
+                long readNanos,
+                boolean bounded) throws RejectedExecutionException {
+
+            lockOrdered(bounded);
+            try {
+                queueOrdered(null, task, temperatureThreshold, newTemperature, previousTemperature, temperatureScale, readNanos, 1, bounded);
+            } finally {
+                unlockOrdered();
+            }
+        }
+
+        // Locks the lane so the caller can update whatever it queues work for
+        // and queue that work as a single step, e.g. so the readings of a
+        // sensor are queued in the order they were swapped in. When the lane
+        // is full and `awaitRoom` is set, BLOCK and CALLER_RUNS make room
+        // before the lock is handed out since it can't be given up later
+        // without letting other callers in ahead.
+        void lockOrdered(boolean awaitRoom) throws RejectedExecutionException {
+            if (shutdown) {
+                throw new RejectedExecutionException("Dispatcher has been shutdown");
+            }
+
+            queueLock.lock();
+
+            // A listener providing a reading while its lane is being drained on
+            // the same thread would wait on itself, so its work is queued past
+            // the capacity instead
+            if (!awaitRoom || drainLock.isHeldByCurrentThread()) {
+                return;
+            }
+
+            while (pendingCount >= laneQueueCapacity) {
+                if (laneBackpressurePolicy == BackpressurePolicies.CALLER_RUNS && !drainLock.isLocked()) {
+                    // The caller runs what is already queued so its own work
+                    // goes in behind it without pushing the lane past its
+                    // capacity
+                    queueLock.unlock();
+                    drain();
+                    queueLock.lock();
+                } else if (laneBackpressurePolicy == BackpressurePolicies.CALLER_RUNS
+                        || laneBackpressurePolicy == BackpressurePolicies.BLOCK) {
+
+                    // Only take over the drain when no other thread is
+                    // currently running tasks from this lane, otherwise wait
+                    // for space like BLOCK does
+                    awaitNotFull();
+                } else {
+                    return;
+                }
+            }
+        }
+
+        // Must be invoked while holding the lock of `lockOrdered`. Work of an
+        // owner only ever makes room for newer work of the same owner so one
+        // owner can't push out the work of another. Returns how many readings
+        // of the owner were dropped.
+        int queueOrdered(
+                Object owner,
+                Runnable task,
+                TemperatureThresholdEventListener temperatureThreshold,
+                float newTemperature,
+                float previousTemperature,
+                TemperatureScales temperatureScale,
+                long readNanos,
+                int readingCount,
+                boolean bounded) {
+
+            int droppedReadingCount = 0;
+
+            if (bounded && pendingCount >= laneQueueCapacity && !drainLock.isHeldByCurrentThread()) {
+                switch (laneBackpressurePolicy) {
+                    case DROP_NEWEST:
+                        droppedCount.incrementAndGet();
+                        return readingCount;
+                    case DROP_OLDEST:
+                        int ownerIndex = findOldest(owner);
+
+                        // Nothing of the owner is queued so the newest work is
+                        // the oldest it has to give up
+                        if (ownerIndex < 0) {
+                            droppedCount.incrementAndGet();
+                            return readingCount;
+                        }
+
+                        droppedReadingCount = removeAt(ownerIndex);
+                        droppedCount.incrementAndGet();
+                        break;
+                    default:
+                        // Room was already made by `lockOrdered`
+                        break;
+                }
+            }
+
+            if (pendingCount == pendingTasks.length) {
+                growRing();
+            }
+
+            int tail = (pendingHead + pendingCount) % pendingTasks.length;
+
+            pendingOwners[tail] = owner;
+            pendingTasks[tail] = task;
+            pendingListeners[tail] = temperatureThreshold;
+            pendingNewTemperatures[tail] = newTemperature;
+            pendingPreviousTemperatures[tail] = previousTemperature;
+            pendingTemperatureScales[tail] = temperatureScale;
+            pendingReadNanos[tail] = readNanos;
+            pendingReadingCounts[tail] = readingCount;
+            pendingCount++;
+
+            if (!drainScheduled) {
+                drainScheduled = true;
+                drainPending = true;
+            }
+
+            return droppedReadingCount;
+        }
+
+        void unlockOrdered() throws RejectedExecutionException {
+            boolean scheduleDrain = drainPending;
+
+            drainPending = false;
+            queueLock.unlock();
+
+            if (scheduleDrain) {
+                try {
+                    executor.execute(drainTask);
+                } catch (RejectedExecutionException e) {
+                    queueLock.lock();
+                    try {
+                        drainScheduled = false;
+                    } finally {
+                        queueLock.unlock();
+                    }
+
+                    throw e;
+                }
+            }
+        }
+
+        public long getDroppedCount() {
+            return droppedCount.get();
+        }
+
+        public int getPendingCount() {
+            queueLock.lock();
+            try {
+                return pendingCount;
+            } finally {
+                queueLock.unlock();
+            }
+        }
+
+        private void awaitNotFull() {
+            boolean interrupted = false;
+
+            while (pendingCount >= laneQueueCapacity) {
+                try {
+                    notFull.await();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private void growRing() {
+            // Only unbounded work and work queued from the thread draining the
+            // lane go past the capacity
+            int grownCapacity = pendingTasks.length < laneQueueCapacity
+                    ? Math.min(pendingTasks.length * 2, laneQueueCapacity)
+                    : pendingTasks.length * 2;
+
+            Object[] grownOwners = new Object[grownCapacity];
+            Runnable[] grownTasks = new Runnable[grownCapacity];
+            TemperatureThresholdEventListener[] grownListeners = new TemperatureThresholdEventListener[grownCapacity];
+            float[] grownNewTemperatures = new float[grownCapacity];
+            float[] grownPreviousTemperatures = new float[grownCapacity];
+            TemperatureScales[] grownTemperatureScales = new TemperatureScales[grownCapacity];
+            long[] grownReadNanos = new long[grownCapacity];
+            int[] grownReadingCounts = new int[grownCapacity];
+
+            for (int pendingIndex = 0; pendingIndex < pendingCount; pendingIndex++) {
+                int ringIndex = (pendingHead + pendingIndex) % pendingTasks.length;
+
+                grownOwners[pendingIndex] = pendingOwners[ringIndex];
+                grownTasks[pendingIndex] = pendingTasks[ringIndex];
+                grownListeners[pendingIndex] = pendingListeners[ringIndex];
+                grownNewTemperatures[pendingIndex] = pendingNewTemperatures[ringIndex];
+                grownPreviousTemperatures[pendingIndex] = pendingPreviousTemperatures[ringIndex];
+                grownTemperatureScales[pendingIndex] = pendingTemperatureScales[ringIndex];
+                grownReadNanos[pendingIndex] = pendingReadNanos[ringIndex];
+                grownReadingCounts[pendingIndex] = pendingReadingCounts[ringIndex];
+            }
+
+            pendingOwners = grownOwners;
+            pendingTasks = grownTasks;
+            pendingListeners = grownListeners;
+            pendingNewTemperatures = grownNewTemperatures;
+            pendingPreviousTemperatures = grownPreviousTemperatures;
+            pendingTemperatureScales = grownTemperatureScales;
+            pendingReadNanos = grownReadNanos;
+            pendingReadingCounts = grownReadingCounts;
+            pendingHead = 0;
+        }
+
+        private void removeHead() {
+            // Clear out the references so that we don't hold on to anything that
+            // has already been dispatched
+            pendingOwners[pendingHead] = null;
+            pendingTasks[pendingHead] = null;
+            pendingListeners[pendingHead] = null;
+            pendingTemperatureScales[pendingHead] = null;
+
+            pendingHead = (pendingHead + 1) % pendingTasks.length;
+            pendingCount--;
+        }
+
+        // Work without an owner is pushed out by any other work
+        private int findOldest(Object owner) {
+            if (owner == null) {
+                return pendingCount > 0 ? 0 : -1;
+            }
+
+            for (int pendingIndex = 0; pendingIndex < pendingCount; pendingIndex++) {
+                if (pendingOwners[(pendingHead + pendingIndex) % pendingTasks.length] == owner) {
+                    return pendingIndex;
+                }
+            }
+
+            return -1;
+        }
+
+        // Shifts the work queued ahead of the removed work up by one so the
+        // rest of the lane keeps its order. Returns how many readings the
+        // removed work was for.
+        private int removeAt(int pendingIndex) {
+            int removedReadingCount = pendingReadingCounts[(pendingHead + pendingIndex) % pendingTasks.length];
+
+            for (int shiftIndex = pendingIndex; shiftIndex > 0; shiftIndex--) {
+                int toIndex = (pendingHead + shiftIndex) % pendingTasks.length;
+                int fromIndex = (pendingHead + shiftIndex - 1) % pendingTasks.length;
+
+                pendingOwners[toIndex] = pendingOwners[fromIndex];
+                pendingTasks[toIndex] = pendingTasks[fromIndex];
+                pendingListeners[toIndex] = pendingListeners[fromIndex];
+                pendingNewTemperatures[toIndex] = pendingNewTemperatures[fromIndex];
+                pendingPreviousTemperatures[toIndex] = pendingPreviousTemperatures[fromIndex];
+                pendingTemperatureScales[toIndex] = pendingTemperatureScales[fromIndex];
+                pendingReadNanos[toIndex] = pendingReadNanos[fromIndex];
+                pendingReadingCounts[toIndex] = pendingReadingCounts[fromIndex];
+            }
+
+            removeHead();
+            return removedReadingCount;
+        }
+
+        private void drain() {
+            drainLock.lock();
+            try {
+                while (true) {
+                    Runnable task;
+                    TemperatureThresholdEventListener temperatureThreshold;
+                    float newTemperature;
+                    float previousTemperature;
+                    TemperatureScales temperatureScale;
+                    long readNanos;
+
+                    queueLock.lock();
+                    try {
+                        if (pendingCount == 0) {
+                            drainScheduled = false;
+                            return;
+                        }
+
+                        task = pendingTasks[pendingHead];
+                        temperatureThreshold = pendingListeners[pendingHead];
+                        newTemperature = pendingNewTemperatures[pendingHead];
+                        previousTemperature = pendingPreviousTemperatures[pendingHead];
+                        temperatureScale = pendingTemperatureScales[pendingHead];
+                        readNanos = pendingReadNanos[pendingHead];
+
+                        removeHead();
+                        notFull.signalAll();
+                    } finally {
+                        queueLock.unlock();
+                    }
+
+                    // Guard the lane against a misbehaving listener so that one
+                    // failure doesn't stop the readings queued behind it
+                    try {
+                        if (task != null) {
+                            task.run();
+                        } else if (temperatureThreshold instanceof TimedTemperatureThresholdEventListener) {
+                            ((TimedTemperatureThresholdEventListener) temperatureThreshold).onTemperatureRead(
+                                    newTemperature, previousTemperature, temperatureScale, readNanos);
+                        } else {
+                            temperatureThreshold.onTemperatureRead(newTemperature, previousTemperature, temperatureScale);
+                        }
+                    } catch (RuntimeException e) {
+                        Thread currentThread = Thread.currentThread();
+                        currentThread.getUncaughtExceptionHandler().uncaughtException(currentThread, e);
+                    }
+                }
+            } finally {
+                drainLock.unlock();
+            }
+        }
+    }
+
+    // Listeners that want to know when the reading they are evented with was
+    // provided, e.g. to measure the latency of the dispatch
+    interface TimedTemperatureThresholdEventListener extends TemperatureThresholdEventListener {
+
+        void onTemperatureRead(float newTemperature, float previousTemperature, TemperatureScales temperatureScaleUsedForReading, long readNanos);
+    }
+
+    private static ExecutorService newVirtualThreadPerTaskExecutor() throws UnsupportedOperationException {
+        // Looked up reflectively so that we can still run on runtimes that
+        // predate virtual threads
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Virtual threads aren't supported by this Java runtime", e);
+        }
+    }
+
+    private static class DispatchThreadFactory implements ThreadFactory {
+
+        private static final AtomicInteger DISPATCHER_COUNT = new AtomicInteger();
+
+        private final int dispatcherNumber = DISPATCHER_COUNT.incrementAndGet();
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(
+                    runnable,
+                    String.format("temperature-dispatcher-%d-%d", dispatcherNumber, threadCount.incrementAndGet()));
+
+            // Don't hold the JVM open on behalf of readings that are in flight
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    private static class DefaultDispatcherHolder {
+
+        private static final TemperatureDispatcher DEFAULT_DISPATCHER = new TemperatureDispatcher(
+                DEFAULT_DISPATCH_STRATEGY,
+                DEFAULT_POOL_SIZE,
+                DEFAULT_QUEUE_CAPACITY,
+                DEFAULT_BACKPRESSURE_POLICY,
+                true);
+    }
+
+}
@@ -0,0 +1,622 @@
+package org.thermometer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+// Receives readings over the network and routes them to the
+// `TemperatureDataEventListener` of their sensor. Every frame is a record in
+// the layout described by `TemperatureRecords`:
+//
+// timestamp (long, milliseconds) | sensor id (int) | temperature (float)
+//
+// UDP datagrams hold any number of whole frames while TCP connections stream
+// frames back to back. Both are served by a single selector thread which
+// decodes frames straight out of direct buffers that are allocated once (one
+// for UDP and one per TCP connection) and reused for every read. Connections
+// past `maxConnections` are closed as soon as they are accepted so clients
+// can't make the server allocate a buffer each without bound.
+//
+// Each selector wakeup reads up to `maxReadsPerWakeup` times from a ready
+// channel and consecutive frames of the same sensor within a read are
+// provided as a single batch, so a sensor streaming over TCP costs one
+// `onTemperatureData` call per read rather than one per frame.
+//
+// Readings are provided in the order they arrive. The timestamp of a frame is
+// skipped over without being decoded.
+public class TemperatureIngestServer implements AutoCloseable {
+
+    public static final int DEFAULT_RECEIVE_BUFFER_SIZE = 64 * 1024;
+    public static final int DEFAULT_MAX_READS_PER_WAKEUP = 64;
+    public static final int DEFAULT_MAX_CONNECTIONS = 256;
+
+    private final Selector selector;
+    private final DatagramChannel datagramChannel;
+    private final ServerSocketChannel serverSocketChannel;
+    private final SensorBatchConsumer sensorBatchConsumer;
+    private final int receiveBufferSize;
+    private final int maxReadsPerWakeup;
+    private final int maxConnections;
+
+    private final ByteBuffer datagramBuffer;
+
+    // Consecutive readings of a sensor are gathered here before they are
+    // provided as a batch
+    private final float[] batchTemperatures;
+
+    private final Consumer<SelectionKey> selectedKeyHandler = this::onKeySelected;
+
+    private final Thread selectorThread;
+    private final long startNanos = System.nanoTime();
+
+    private volatile boolean closed = false;
+
+    // Only written by the selector thread
+    private volatile long packetCount = 0;
+    private volatile long readingCount = 0;
+    private volatile long skippedReadingCount = 0;
+    private volatile long failedReadingCount = 0;
+    private volatile long parseErrorCount = 0;
+    private volatile long acceptedConnectionCount = 0;
+    private volatile long rejectedConnectionCount = 0;
+    private volatile int openConnectionCount = 0;
+
+    private TemperatureIngestServer(
+            InetSocketAddress udpAddress,
+            InetSocketAddress tcpAddress,
+            SensorBatchConsumer sensorBatchConsumer,
+            int receiveBufferSize,
+            int maxReadsPerWakeup,
+            int maxConnections) throws IOException {
+
+        this.sensorBatchConsumer = sensorBatchConsumer;
+        this.receiveBufferSize = receiveBufferSize;
+        this.maxReadsPerWakeup = maxReadsPerWakeup;
+        this.maxConnections = maxConnections;
+
+        // One byte past the last whole frame so that a datagram too large for
+        // the buffer, which is truncated, never looks like whole frames
+        this.datagramBuffer = udpAddress == null ? null : newReceiveBuffer((receiveBufferSize / TemperatureRecords.RECORD_SIZE) * TemperatureRecords.RECORD_SIZE + 1);
+        this.batchTemperatures = new float[receiveBufferSize / TemperatureRecords.RECORD_SIZE];
+
+        this.selector = Selector.open();
+
+        try {
+            if (udpAddress != null) {
+                this.datagramChannel = DatagramChannel.open();
+                this.datagramChannel.configureBlocking(false);
+                this.datagramChannel.bind(udpAddress);
+                this.datagramChannel.register(selector, SelectionKey.OP_READ);
+            } else {
+                this.datagramChannel = null;
+            }
+
+            if (tcpAddress != null) {
+                this.serverSocketChannel = ServerSocketChannel.open();
+                this.serverSocketChannel.configureBlocking(false);
+                this.serverSocketChannel.bind(tcpAddress);
+                this.serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
+            } else {
+                this.serverSocketChannel = null;
+            }
+        } catch (IOException e) {
+            closeChannels();
+            throw e;
+        }
+
+        this.selectorThread = new Thread(this::selectPeriodically, "temperature-ingest-selector");
+        this.selectorThread.setDaemon(true);
+        this.selectorThread.start();
+    }
+
+    public static class TemperatureIngestServerBuilder {
+
+        private final SensorBatchConsumer sensorBatchConsumer;
+        private InetSocketAddress udpAddress = null;
+        private InetSocketAddress tcpAddress = null;
+        private int receiveBufferSize = DEFAULT_RECEIVE_BUFFER_SIZE;
+        private int maxReadsPerWakeup = DEFAULT_MAX_READS_PER_WAKEUP;
+        private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+
+        // Readings for sensor ids outside of the registry are skipped
+        public TemperatureIngestServerBuilder(ThermometerRegistry thermometerRegistry) throws IllegalArgumentException {
+            if (thermometerRegistry == null) {
+                throw new IllegalArgumentException("Thermometer registry can't be 'null'");
+            }
+
+            int sensorCapacity = thermometerRegistry.getSensorCapacity();
+
+            this.sensorBatchConsumer = (sensorId, temperatures, offset, length) -> {
+                if (sensorId < 0 || sensorId >= sensorCapacity) {
+                    return false;
+                }
+
+                thermometerRegistry.onTemperatureData(sensorId, temperatures, offset, length);
+                return true;
+            };
+        }
+
+        // Routes every reading to the listener for its sensor id, readings for
+        // sensors without a listener (i.e. 'null') are skipped
+        public TemperatureIngestServerBuilder(IntFunction<TemperatureDataEventListener> temperatureDataEventListeners) throws IllegalArgumentException {
+            if (temperatureDataEventListeners == null) {
+                throw new IllegalArgumentException("Temperature data event listeners can't be 'null'");
+            }
+
+            this.sensorBatchConsumer = (sensorId, temperatures, offset, length) -> {
+                TemperatureDataEventListener temperatureDataEventListener = temperatureDataEventListeners.apply(sensorId);
+
+                if (temperatureDataEventListener == null) {
+                    return false;
+                }
+
+                temperatureDataEventListener.onTemperatureData(temperatures, offset, length);
+                return true;
+            };
+        }
+
+        // Binds the channels and starts serving them
+        public TemperatureIngestServer build() throws IllegalStateException, IOException {
+            if (udpAddress == null && tcpAddress == null) {
+                throw new IllegalStateException("Ingest server needs a UDP or TCP address to listen on");
+            }
+
+            return new TemperatureIngestServer(
+                    this.udpAddress,
+                    this.tcpAddress,
+                    this.sensorBatchConsumer,
+                    this.receiveBufferSize,
+                    this.maxReadsPerWakeup,
+                    this.maxConnections);
+        }
+
+        // Port '0' binds an ephemeral port, see `getUdpAddress`
+        public TemperatureIngestServerBuilder udpAddress(InetSocketAddress udpAddress) throws IllegalArgumentException {
+            if (udpAddress == null) {
+                throw new IllegalArgumentException("UDP address can't be set to 'null'");
+            }
+
+            this.udpAddress = udpAddress;
+            return this;
+        }
+
+        // Port '0' binds an ephemeral port, see `getTcpAddress`
+        public TemperatureIngestServerBuilder tcpAddress(InetSocketAddress tcpAddress) throws IllegalArgumentException {
+            if (tcpAddress == null) {
+                throw new IllegalArgumentException("TCP address can't be set to 'null'");
+            }
+
+            this.tcpAddress = tcpAddress;
+            return this;
+        }
+
+        // Bytes of each receive buffer. Datagrams larger than the buffer are
+        // truncated and counted as parse errors.
+        public TemperatureIngestServerBuilder receiveBufferSize(int receiveBufferSize) throws IllegalArgumentException {
+            if (receiveBufferSize < TemperatureRecords.RECORD_SIZE) {
+                throw new IllegalArgumentException(String.format("Receive buffer size must be at least '%d'", TemperatureRecords.RECORD_SIZE));
+            }
+
+            this.receiveBufferSize = receiveBufferSize;
+            return this;
+        }
+
+        // Bounds the time spent on a single channel before the others get
+        // their turn
+        public TemperatureIngestServerBuilder maxReadsPerWakeup(int maxReadsPerWakeup) throws IllegalArgumentException {
+            if (maxReadsPerWakeup < 1) {
+                throw new IllegalArgumentException("Max reads per wakeup must be at least '1'");
+            }
+
+            this.maxReadsPerWakeup = maxReadsPerWakeup;
+            return this;
+        }
+
+        // TCP connections open at the same time, each holding a receive
+        // buffer of its own
+        public TemperatureIngestServerBuilder maxConnections(int maxConnections) throws IllegalArgumentException {
+            if (maxConnections < 1) {
+                throw new IllegalArgumentException("Max connections must be at least '1'");
+            }
+
+            this.maxConnections = maxConnections;
+            return this;
+        }
+    }
+
+    public static class IngestStatistics {
+
+        private final long packetCount;
+        private final long readingCount;
+        private final long skippedReadingCount;
+        private final long failedReadingCount;
+        private final long parseErrorCount;
+        private final long acceptedConnectionCount;
+        private final long rejectedConnectionCount;
+        private final int openConnectionCount;
+        private final long elapsedNanos;
+
+        private IngestStatistics(
+                long packetCount,
+                long readingCount,
+                long skippedReadingCount,
+                long failedReadingCount,
+                long parseErrorCount,
+                long acceptedConnectionCount,
+                long rejectedConnectionCount,
+                int openConnectionCount,
+                long elapsedNanos) {
+
+            this.packetCount = packetCount;
+            this.readingCount = readingCount;
+            this.skippedReadingCount = skippedReadingCount;
+            this.failedReadingCount = failedReadingCount;
+            this.parseErrorCount = parseErrorCount;
+            this.acceptedConnectionCount = acceptedConnectionCount;
+            this.rejectedConnectionCount = rejectedConnectionCount;
+            this.openConnectionCount = openConnectionCount;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        // Datagrams received plus reads from TCP connections that returned data
+        public long getPacketCount() {
+            return packetCount;
+        }
+
+        public long getReadingCount() {
+            return readingCount;
+        }
+
+        // Readings for sensors that weren't routed to a listener
+        public long getSkippedReadingCount() {
+            return skippedReadingCount;
+        }
+
+        // Readings whose listener threw, which aren't provided again
+        public long getFailedReadingCount() {
+            return failedReadingCount;
+        }
+
+        // Datagrams that didn't hold whole frames and TCP connections that
+        // closed part way through a frame
+        public long getParseErrorCount() {
+            return parseErrorCount;
+        }
+
+        public long getAcceptedConnectionCount() {
+            return acceptedConnectionCount;
+        }
+
+        // Connections closed straight away as `maxConnections` were open
+        public long getRejectedConnectionCount() {
+            return rejectedConnectionCount;
+        }
+
+        public int getOpenConnectionCount() {
+            return openConnectionCount;
+        }
+
+        // Time since the server was started
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getPacketsPerSecond() {
+            return elapsedNanos == 0 ? 0.0 : packetCount / (elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1));
+        }
+
+        public double getReadingsPerSecond() {
+            return elapsedNanos == 0 ? 0.0 : readingCount / (elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d packets - %.0f packets/sec, %d readings (%d skipped, %d failed) - %.0f readings/sec, %d parse errors, %d connections (%d open, %d rejected)",
+                    packetCount,
+                    getPacketsPerSecond(),
+                    readingCount,
+                    skippedReadingCount,
+                    failedReadingCount,
+                    getReadingsPerSecond(),
+                    parseErrorCount,
+                    acceptedConnectionCount,
+                    openConnectionCount,
+                    rejectedConnectionCount);
+        }
+    }
+
+    // Returns 'false' when the readings weren't routed to a listener
+    @FunctionalInterface
+    private interface SensorBatchConsumer {
+
+        boolean accept(int sensorId, float[] temperatures, int offset, int length);
+    }
+
+    // The frames in flight on a TCP connection, a frame split across reads
+    // stays at the start of the buffer until the rest of it arrives
+    private static class TcpConnection {
+
+        private final ByteBuffer receiveBuffer;
+
+        private TcpConnection(int receiveBufferSize) {
+            this.receiveBuffer = newReceiveBuffer(receiveBufferSize);
+        }
+    }
+
+    public IngestStatistics getStatistics() {
+        return new IngestStatistics(
+                packetCount,
+                readingCount,
+                skippedReadingCount,
+                failedReadingCount,
+                parseErrorCount,
+                acceptedConnectionCount,
+                rejectedConnectionCount,
+                openConnectionCount,
+                System.nanoTime() - startNanos);
+    }
+
+    // 'null' when the server doesn't listen for UDP datagrams
+    public InetSocketAddress getUdpAddress() throws IOException {
+        return datagramChannel == null ? null : (InetSocketAddress) datagramChannel.getLocalAddress();
+    }
+
+    // 'null' when the server doesn't accept TCP connections
+    public InetSocketAddress getTcpAddress() throws IOException {
+        return serverSocketChannel == null ? null : (InetSocketAddress) serverSocketChannel.getLocalAddress();
+    }
+
+    public int getReceiveBufferSize() {
+        return receiveBufferSize;
+    }
+
+    public int getMaxReadsPerWakeup() {
+        return maxReadsPerWakeup;
+    }
+
+    public int getMaxConnections() {
+        return maxConnections;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    // Waits for the selector thread to finish with what it has already read
+    // before the channels are closed
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+        selector.wakeup();
+
+        try {
+            selectorThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        for (SelectionKey selectionKey : selector.keys()) {
+            if (selectionKey.attachment() instanceof TcpConnection) {
+                closeConnection(selectionKey, (TcpConnection) selectionKey.attachment());
+            }
+        }
+
+        closeChannels();
+    }
+
+    private void selectPeriodically() {
+        while (!closed) {
+            try {
+                selector.select(selectedKeyHandler);
+            } catch (ClosedSelectorException e) {
+                return;
+            } catch (IOException | RuntimeException e) {
+                // A failing listener mustn't stop the readings of every other
+                // sensor from being served
+                Thread currentThread = Thread.currentThread();
+                currentThread.getUncaughtExceptionHandler().uncaughtException(currentThread, e);
+            }
+        }
+    }
+
+    private void onKeySelected(SelectionKey selectionKey) {
+        try {
+            if (selectionKey.isAcceptable()) {
+                acceptConnections();
+            } else if (selectionKey.channel() == datagramChannel) {
+                receiveDatagrams();
+            } else {
+                readConnection(selectionKey);
+            }
+        } catch (IOException e) {
+            // Only a connection can fail on its own, the server's channels
+            // failing is reported by the selector thread
+            if (selectionKey.attachment() instanceof TcpConnection) {
+                closeConnection(selectionKey, (TcpConnection) selectionKey.attachment());
+            } else {
+                throw new IllegalStateException("Ingest channel failed", e);
+            }
+        }
+    }
+
+    private void acceptConnections() throws IOException {
+        for (int acceptIndex = 0; acceptIndex < maxReadsPerWakeup; acceptIndex++) {
+            SocketChannel socketChannel = serverSocketChannel.accept();
+
+            if (socketChannel == null) {
+                return;
+            }
+
+            // Accepted rather than left in the backlog so the client finds
+            // out straight away
+            if (openConnectionCount >= maxConnections) {
+                rejectedConnectionCount++;
+                socketChannel.close();
+                continue;
+            }
+
+            socketChannel.configureBlocking(false);
+            socketChannel.register(selector, SelectionKey.OP_READ, new TcpConnection(receiveBufferSize));
+
+            acceptedConnectionCount++;
+            openConnectionCount++;
+        }
+    }
+
+    private void receiveDatagrams() throws IOException {
+        for (int readIndex = 0; readIndex < maxReadsPerWakeup; readIndex++) {
+            datagramBuffer.clear();
+
+            if (datagramChannel.receive(datagramBuffer) == null) {
+                return;
+            }
+
+            datagramBuffer.flip();
+            packetCount++;
+
+            // A datagram that doesn't end on a frame boundary was either
+            // truncated or isn't made of frames at all so none of it is trusted
+            if (datagramBuffer.remaining() % TemperatureRecords.RECORD_SIZE != 0) {
+                parseErrorCount++;
+                continue;
+            }
+
+            decodeFrames(datagramBuffer);
+        }
+    }
+
+    private void readConnection(SelectionKey selectionKey) throws IOException {
+        SocketChannel socketChannel = (SocketChannel) selectionKey.channel();
+        TcpConnection tcpConnection = (TcpConnection) selectionKey.attachment();
+        ByteBuffer receiveBuffer = tcpConnection.receiveBuffer;
+
+        for (int readIndex = 0; readIndex < maxReadsPerWakeup; readIndex++) {
+            int readCount = socketChannel.read(receiveBuffer);
+
+            if (readCount < 0) {
+                closeConnection(selectionKey, tcpConnection);
+                return;
+            }
+
+            if (readCount == 0) {
+                return;
+            }
+
+            packetCount++;
+
+            receiveBuffer.flip();
+
+            try {
+                decodeFrames(receiveBuffer);
+            } finally {
+                receiveBuffer.compact();
+            }
+        }
+    }
+
+    private void closeConnection(SelectionKey selectionKey, TcpConnection tcpConnection) {
+        if (tcpConnection.receiveBuffer.position() > 0) {
+            parseErrorCount++;
+        }
+
+        selectionKey.cancel();
+
+        try {
+            selectionKey.channel().close();
+        } catch (IOException e) {
+            // Nothing more can be done with a connection that failed to close
+        }
+
+        openConnectionCount--;
+    }
+
+    // Decodes every whole frame remaining in the buffer and leaves a trailing
+    // partial frame in it
+    private void decodeFrames(ByteBuffer receiveBuffer) {
+        int position = receiveBuffer.position();
+        int framesEnd = position + (receiveBuffer.remaining() / TemperatureRecords.RECORD_SIZE) * TemperatureRecords.RECORD_SIZE;
+
+        int batchSensorId = 0;
+        int batchLength = 0;
+
+        for (int frameOffset = position; frameOffset < framesEnd; frameOffset += TemperatureRecords.RECORD_SIZE) {
+            int sensorId = receiveBuffer.getInt(frameOffset + TemperatureRecords.SENSOR_ID_OFFSET);
+            float temperature = receiveBuffer.getFloat(frameOffset + TemperatureRecords.TEMPERATURE_OFFSET);
+
+            if (batchLength > 0 && sensorId != batchSensorId) {
+                provideBatch(batchSensorId, batchLength);
+                batchLength = 0;
+            }
+
+            batchSensorId = sensorId;
+            batchTemperatures[batchLength++] = temperature;
+        }
+
+        if (batchLength > 0) {
+            provideBatch(batchSensorId, batchLength);
+        }
+
+        receiveBuffer.position(framesEnd);
+    }
+
+    // A listener that throws only loses its own batch. Letting it out would
+    // leave the frames of the read undecoded, so a TCP connection would
+    // provide the batches before it again on its next read.
+    private void provideBatch(int sensorId, int batchLength) {
+        boolean accepted;
+
+        try {
+            accepted = sensorBatchConsumer.accept(sensorId, batchTemperatures, 0, batchLength);
+        } catch (RuntimeException e) {
+            failedReadingCount += batchLength;
+
+            Thread currentThread = Thread.currentThread();
+            currentThread.getUncaughtExceptionHandler().uncaughtException(currentThread, e);
+            return;
+        }
+
+        if (accepted) {
+            readingCount += batchLength;
+        } else {
+            skippedReadingCount += batchLength;
+        }
+    }
+
+    private void closeChannels() throws IOException {
+        IOException closeException = null;
+
+        for (AutoCloseable channel : new AutoCloseable[]{datagramChannel, serverSocketChannel, selector}) {
+            try {
+                if (channel != null) {
+                    channel.close();
+                }
+            } catch (Exception e) {
+                if (closeException == null) {
+                    closeException = e instanceof IOException ? (IOException) e : new IOException(e);
+                }
+            }
+        }
+
+        if (closeException != null) {
+            throw closeException;
+        }
+    }
+
+    private static ByteBuffer newReceiveBuffer(int receiveBufferSize) {
+        return ByteBuffer.allocateDirect(receiveBufferSize).order(TemperatureRecords.BYTE_ORDER);
+    }
+
+}
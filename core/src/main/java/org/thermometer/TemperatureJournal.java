@@ -0,0 +1,796 @@
+package org.thermometer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Append-only journal of readings and fired threshold events spread across
+// fixed size memory-mapped segment files in a directory.
+//
+// Appending only copies a record into the mapping of the current segment while
+// forcing the segments to disk is left to a background flusher. The flusher
+// forces once every flush interval, or sooner once enough records are waiting
+// on it, so the cost of a sync is shared by every record appended since the
+// previous one (group commit). Callers that need a record to be durable wait
+// on its sequence number with `awaitDurable`.
+//
+// Each record carries a checksum so that a record torn by a crash is detected
+// and recovery stops at the last complete record.
+//
+// A snapshot appends the state of every sensor followed by a record marking
+// the snapshot as complete. Recovery starts from the latest complete snapshot
+// rather than replaying the whole journal, and segments are only ever
+// truncated up to it so sensors that haven't been read since keep their state.
+public class TemperatureJournal implements AutoCloseable {
+
+    public static final long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024;
+    public static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 10;
+    public static final int DEFAULT_FLUSH_RECORD_COUNT = 4096;
+
+    static final int SEGMENT_MAGIC = 0x544A524E; // "TJRN"
+    static final int SEGMENT_VERSION = 1;
+
+    static final int RECORD_SIZE = 32;
+    static final int SEGMENT_HEADER_SIZE = RECORD_SIZE;
+
+    static final int READING_RECORD = 1;
+    static final int THRESHOLD_EVENT_RECORD = 2;
+    static final int SENSOR_STATE_RECORD = 3;
+    static final int SNAPSHOT_RECORD = 4;
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".journal";
+
+    private static final TemperatureScales[] TEMPERATURE_SCALES = TemperatureScales.values();
+
+    // Copied over the tail of a reopened segment
+    private static final byte[] ZEROES = new byte[64 * RECORD_SIZE];
+
+    private final Path directory;
+    private final long segmentSize;
+    private final long flushIntervalMillis;
+    private final int flushRecordCount;
+
+    // Held for a whole flush so that a flush can't mark records durable while
+    // another one is still forcing the segments they were appended to
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final Condition flushRequested = appendLock.newCondition();
+    private final Condition flushed = appendLock.newCondition();
+
+    // Guarded by `appendLock`
+    private final ArrayList<JournalSegment> unforcedSegments = new ArrayList<>();
+    private JournalSegment currentSegment;
+    private long nextSequence;
+    private long durableSequence;
+
+    // First sequence of the latest complete snapshot or '-1' without one
+    private long snapshotSequence;
+
+    private boolean closed = false;
+
+    private final Thread flusherThread;
+
+    private TemperatureJournal(Path directory, long segmentSize, long flushIntervalMillis, int flushRecordCount) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.flushRecordCount = flushRecordCount;
+
+        Files.createDirectories(directory);
+
+        openCurrentSegment();
+        this.snapshotSequence = findSnapshotSequence();
+
+        this.flusherThread = new Thread(this::flushPeriodically, "temperature-journal-flusher");
+        this.flusherThread.setDaemon(true);
+        this.flusherThread.start();
+    }
+
+    public static class TemperatureJournalBuilder {
+
+        private final Path directory;
+        private long segmentSize = DEFAULT_SEGMENT_SIZE;
+        private long flushIntervalMillis = DEFAULT_FLUSH_INTERVAL_MILLIS;
+        private int flushRecordCount = DEFAULT_FLUSH_RECORD_COUNT;
+
+        public TemperatureJournalBuilder(Path directory) throws IllegalArgumentException {
+            if (directory == null) {
+                throw new IllegalArgumentException("Directory can't be 'null'");
+            }
+
+            this.directory = directory;
+        }
+
+        public TemperatureJournal build() throws IOException {
+            return new TemperatureJournal(
+                    this.directory,
+                    this.segmentSize,
+                    this.flushIntervalMillis,
+                    this.flushRecordCount);
+        }
+
+        public TemperatureJournalBuilder segmentSize(long segmentSize) throws IllegalArgumentException {
+            if (segmentSize < SEGMENT_HEADER_SIZE + RECORD_SIZE || segmentSize > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException(String.format("Segment size must be between '%d' and '%d' bytes", SEGMENT_HEADER_SIZE + RECORD_SIZE, Integer.MAX_VALUE));
+            }
+
+            this.segmentSize = segmentSize;
+            return this;
+        }
+
+        public TemperatureJournalBuilder flushIntervalMillis(long flushIntervalMillis) throws IllegalArgumentException {
+            if (flushIntervalMillis < 1) {
+                throw new IllegalArgumentException("Flush interval must be at least '1' millisecond");
+            }
+
+            this.flushIntervalMillis = flushIntervalMillis;
+            return this;
+        }
+
+        // Number of records appended since the last flush that wakes the flusher
+        // up early
+        public TemperatureJournalBuilder flushRecordCount(int flushRecordCount) throws IllegalArgumentException {
+            if (flushRecordCount < 1) {
+                throw new IllegalArgumentException("Flush record count must be at least '1'");
+            }
+
+            this.flushRecordCount = flushRecordCount;
+            return this;
+        }
+    }
+
+    // Invoked with every record of the journal in the order they were appended
+    public interface JournalRecordListener {
+
+        public default void onReading(long sequence, int sensorId, long timestamp, float temperature) {
+        }
+
+        public default void onThresholdEvent(
+                long sequence,
+                int sensorId,
+                long timestamp,
+                float temperature,
+                float temperatureThreshold,
+                TemperatureScales temperatureScale) {
+        }
+
+        // The state of a sensor as of a snapshot, without a previous temperature
+        // when the sensor had only been read once
+        public default void onSensorState(long sequence, int sensorId, long timestamp, float currentTemperature, Float previousTemperature) {
+        }
+    }
+
+    public long appendReading(int sensorId, long timestamp, float temperature) throws IllegalStateException {
+        return append(READING_RECORD, sensorId, timestamp, temperature, 0.0F, 0);
+    }
+
+    public long appendThresholdEvent(int sensorId, long timestamp, float temperature, TemperatureThreshold temperatureThreshold) throws IllegalStateException {
+        return append(
+                THRESHOLD_EVENT_RECORD,
+                sensorId,
+                timestamp,
+                temperature,
+                temperatureThreshold.getTemperatureThreshold(),
+                temperatureThreshold.getTemperatureScale().ordinal());
+    }
+
+    // Appends a batch of readings for a single sensor while holding the lock
+    // once, returning the sequence of the last reading
+    public long appendReadings(int sensorId, long timestamp, float[] temperatures, int offset, int length) throws IllegalStateException {
+        appendLock.lock();
+        try {
+            long sequence = -1;
+
+            for (int temperatureIndex = offset; temperatureIndex < offset + length; temperatureIndex++) {
+                sequence = appendLocked(READING_RECORD, sensorId, timestamp, temperatures[temperatureIndex], 0.0F, 0);
+            }
+
+            return sequence;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // Appends the state of a sensor as part of a snapshot
+    long appendSensorState(int sensorId, long timestamp, float currentTemperature, Float previousTemperature) throws IllegalStateException {
+        return append(
+                SENSOR_STATE_RECORD,
+                sensorId,
+                timestamp,
+                currentTemperature,
+                previousTemperature != null ? previousTemperature : 0.0F,
+                previousTemperature != null ? 1 : 0);
+    }
+
+    // Marks every record from the provided sequence onwards as a complete
+    // snapshot, so recovery can start from it and truncation can reach it
+    void appendSnapshot(long snapshotSequence) throws IllegalStateException {
+        appendLock.lock();
+        try {
+            appendLocked(SNAPSHOT_RECORD, 0, snapshotSequence, 0.0F, 0.0F, 0);
+            this.snapshotSequence = snapshotSequence;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private long append(int recordType, int sensorId, long timestamp, float temperature, float temperatureThreshold, int temperatureScale) throws IllegalStateException {
+        appendLock.lock();
+        try {
+            return appendLocked(recordType, sensorId, timestamp, temperature, temperatureThreshold, temperatureScale);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private long appendLocked(int recordType, int sensorId, long timestamp, float temperature, float temperatureThreshold, int temperatureScale) throws IllegalStateException {
+        if (closed) {
+            throw new IllegalStateException("Temperature journal has been closed");
+        }
+
+        if (nextSequence >= currentSegment.baseSequence + currentSegment.recordCapacity) {
+            rollSegment();
+        }
+
+        long sequence = nextSequence++;
+
+        putRecord(
+                currentSegment.mappedBuffer,
+                recordOffset(sequence - currentSegment.baseSequence),
+                recordType,
+                sensorId,
+                timestamp,
+                temperature,
+                temperatureThreshold,
+                temperatureScale);
+
+        if (nextSequence - durableSequence >= flushRecordCount) {
+            flushRequested.signal();
+        }
+
+        return sequence;
+    }
+
+    // Blocks until every record up to and including the provided sequence has
+    // been forced to disk by the flusher
+    public boolean awaitDurable(long sequence, long timeout, TimeUnit unit) throws InterruptedException {
+        long remainingNanos = unit.toNanos(timeout);
+
+        appendLock.lock();
+        try {
+            while (durableSequence <= sequence) {
+                if (closed || remainingNanos <= 0) {
+                    return durableSequence > sequence;
+                }
+
+                flushRequested.signal();
+                remainingNanos = flushed.awaitNanos(remainingNanos);
+            }
+
+            return true;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // Forces everything appended so far to disk on the calling thread
+    public void sync() throws IOException {
+        flush();
+    }
+
+    // Reads every complete record of the journal from the oldest retained
+    // segment onwards
+    public void recover(JournalRecordListener journalRecordListener) throws IOException {
+        recoverFrom(0L, journalRecordListener);
+    }
+
+    // Reads every complete record of the journal from the start of the latest
+    // complete snapshot onwards, or from the oldest retained segment without one
+    public void recoverFromSnapshot(JournalRecordListener journalRecordListener) throws IOException {
+        recoverFrom(getSnapshotSequence(), journalRecordListener);
+    }
+
+    private void recoverFrom(long fromSequence, JournalRecordListener journalRecordListener) throws IOException {
+        List<Path> segmentPaths = listSegmentPaths();
+
+        appendLock.lock();
+        try {
+            for (int segmentIndex = 0; segmentIndex < segmentPaths.size(); segmentIndex++) {
+                // Segments that end before the sequence aren't even opened
+                if (segmentIndex + 1 < segmentPaths.size() && parseBaseSequence(segmentPaths.get(segmentIndex + 1)) <= fromSequence) {
+                    continue;
+                }
+
+                Path segmentPath = segmentPaths.get(segmentIndex);
+
+                try (FileChannel fileChannel = FileChannel.open(segmentPath, StandardOpenOption.READ)) {
+                    ByteBuffer segmentBuffer = mapSegment(fileChannel, FileChannel.MapMode.READ_ONLY, segmentPath);
+
+                    long baseSequence = checkSegmentHeader(segmentBuffer, segmentPath);
+                    int recordCount = countRecords(segmentBuffer);
+
+                    for (int recordIndex = (int) Math.max(0L, Math.min(recordCount, fromSequence - baseSequence)); recordIndex < recordCount; recordIndex++) {
+                        readRecord(segmentBuffer, recordOffset(recordIndex), baseSequence + recordIndex, journalRecordListener);
+                    }
+                }
+            }
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    // Deletes every segment that only holds records before the provided
+    // sequence. The current segment and every record from the start of the
+    // latest snapshot onwards are always retained, so nothing is deleted until
+    // a snapshot has been appended.
+    public int truncateBefore(long sequence) throws IOException {
+        int deletedSegmentCount = 0;
+
+        // Flushes can't run in the meantime so no segment is deleted while it's
+        // being forced
+        flushLock.lock();
+        try {
+            long retainedSequence;
+
+            appendLock.lock();
+            try {
+                retainedSequence = Math.min(sequence, Math.max(snapshotSequence, 0L));
+            } finally {
+                appendLock.unlock();
+            }
+
+            // The snapshot has to be on disk before the records it stands in for
+            // are deleted
+            flushLocked();
+
+            appendLock.lock();
+            try {
+                List<Path> segmentPaths = listSegmentPaths();
+
+                // A segment holds every record up to the base sequence of the
+                // next one
+                for (int segmentIndex = 0; segmentIndex + 1 < segmentPaths.size(); segmentIndex++) {
+                    Path segmentPath = segmentPaths.get(segmentIndex);
+                    long baseSequence = parseBaseSequence(segmentPath);
+
+                    if (baseSequence == currentSegment.baseSequence || parseBaseSequence(segmentPaths.get(segmentIndex + 1)) > retainedSequence) {
+                        continue;
+                    }
+
+                    // Don't delete segments that have rolled over since as their
+                    // mapping is still needed by the flusher
+                    if (unforcedSegments.stream().anyMatch(segment -> segment.baseSequence == baseSequence)) {
+                        continue;
+                    }
+
+                    Files.deleteIfExists(segmentPath);
+                    deletedSegmentCount++;
+                }
+            } finally {
+                appendLock.unlock();
+            }
+        } finally {
+            flushLock.unlock();
+        }
+
+        return deletedSegmentCount;
+    }
+
+    public long getNextSequence() {
+        appendLock.lock();
+        try {
+            return nextSequence;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    public long getDurableSequence() {
+        appendLock.lock();
+        try {
+            return durableSequence;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    public long getSnapshotSequence() {
+        appendLock.lock();
+        try {
+            return Math.max(snapshotSequence, 0L);
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public void close() throws IOException {
+        appendLock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+            flushRequested.signal();
+        } finally {
+            appendLock.unlock();
+        }
+
+        try {
+            flusherThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        flush();
+
+        appendLock.lock();
+        try {
+            currentSegment.fileChannel.close();
+            flushed.signalAll();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void flushPeriodically() {
+        while (true) {
+            appendLock.lock();
+            try {
+                if (closed) {
+                    return;
+                }
+
+                if (nextSequence - durableSequence < flushRecordCount) {
+                    flushRequested.await(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                }
+
+                if (closed) {
+                    return;
+                }
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                appendLock.unlock();
+            }
+
+            try {
+                flush();
+            } catch (IOException e) {
+                Thread currentThread = Thread.currentThread();
+                currentThread.getUncaughtExceptionHandler().uncaughtException(currentThread, e);
+            }
+        }
+    }
+
+    private void flush() throws IOException {
+        flushLock.lock();
+        try {
+            flushLocked();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // Must be invoked while holding `flushLock`
+    private void flushLocked() throws IOException {
+        List<JournalSegment> segmentsToForce;
+        long flushedSequence;
+
+        appendLock.lock();
+        try {
+            if (nextSequence == durableSequence) {
+                return;
+            }
+
+            // Every record up to here has been fully copied into its mapping as
+            // appends hold the lock for the whole copy
+            flushedSequence = nextSequence;
+
+            segmentsToForce = new ArrayList<>(unforcedSegments);
+            segmentsToForce.add(currentSegment);
+            unforcedSegments.clear();
+        } finally {
+            appendLock.unlock();
+        }
+
+        // Forcing happens outside of the lock so appends carry on while the
+        // sync is in progress
+        for (JournalSegment segment : segmentsToForce) {
+            segment.mappedBuffer.force();
+        }
+
+        appendLock.lock();
+        try {
+            for (JournalSegment segment : segmentsToForce) {
+                if (segment != currentSegment) {
+                    segment.fileChannel.close();
+                }
+            }
+
+            if (flushedSequence > durableSequence) {
+                durableSequence = flushedSequence;
+            }
+
+            flushed.signalAll();
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    private void rollSegment() {
+        unforcedSegments.add(currentSegment);
+
+        try {
+            currentSegment = createSegment(nextSequence);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to roll the temperature journal onto a new segment", e);
+        }
+    }
+
+    private void openCurrentSegment() throws IOException {
+        List<Path> segmentPaths = listSegmentPaths();
+
+        if (segmentPaths.isEmpty()) {
+            currentSegment = createSegment(0);
+            nextSequence = 0;
+            durableSequence = 0;
+            return;
+        }
+
+        // Continue appending to the last segment after its last complete
+        // record, clearing anything a crash might have left behind it. The
+        // segment keeps the size it was created with, which needn't be the
+        // configured one.
+        Path lastSegmentPath = segmentPaths.get(segmentPaths.size() - 1);
+        FileChannel fileChannel = FileChannel.open(lastSegmentPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer mappedBuffer;
+
+        try {
+            mappedBuffer = mapSegment(fileChannel, FileChannel.MapMode.READ_WRITE, lastSegmentPath);
+        } catch (IOException e) {
+            fileChannel.close();
+            throw e;
+        }
+
+        long baseSequence = checkSegmentHeader(mappedBuffer, lastSegmentPath);
+        int recordCount = countRecords(mappedBuffer);
+
+        ByteBuffer tailBuffer = mappedBuffer.duplicate();
+        tailBuffer.position(recordOffset(recordCount));
+
+        while (tailBuffer.hasRemaining()) {
+            tailBuffer.put(ZEROES, 0, Math.min(ZEROES.length, tailBuffer.remaining()));
+        }
+
+        mappedBuffer.force();
+
+        currentSegment = new JournalSegment(baseSequence, fileChannel, mappedBuffer);
+        nextSequence = baseSequence + recordCount;
+        durableSequence = nextSequence;
+    }
+
+    private JournalSegment createSegment(long baseSequence) throws IOException {
+        Path segmentPath = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, baseSequence, SEGMENT_SUFFIX));
+
+        FileChannel fileChannel = FileChannel.open(
+                segmentPath,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+
+        MappedByteBuffer mappedBuffer = fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        mappedBuffer.order(TemperatureRecords.BYTE_ORDER);
+
+        mappedBuffer.putInt(0, SEGMENT_MAGIC);
+        mappedBuffer.putInt(Integer.BYTES, SEGMENT_VERSION);
+        mappedBuffer.putLong(2 * Integer.BYTES, baseSequence);
+
+        return new JournalSegment(baseSequence, fileChannel, mappedBuffer);
+    }
+
+    // Looks for the latest snapshot from the last segment backwards so only the
+    // segments appended to since it are read
+    private long findSnapshotSequence() throws IOException {
+        List<Path> segmentPaths = listSegmentPaths();
+
+        for (int segmentIndex = segmentPaths.size() - 1; segmentIndex >= 0; segmentIndex--) {
+            Path segmentPath = segmentPaths.get(segmentIndex);
+
+            try (FileChannel fileChannel = FileChannel.open(segmentPath, StandardOpenOption.READ)) {
+                ByteBuffer segmentBuffer = mapSegment(fileChannel, FileChannel.MapMode.READ_ONLY, segmentPath);
+                checkSegmentHeader(segmentBuffer, segmentPath);
+
+                for (int recordIndex = countRecords(segmentBuffer) - 1; recordIndex >= 0; recordIndex--) {
+                    int offset = recordOffset(recordIndex);
+
+                    if (segmentBuffer.getInt(offset) == SNAPSHOT_RECORD) {
+                        return segmentBuffer.getLong(offset + 8);
+                    }
+                }
+            }
+        }
+
+        return -1L;
+    }
+
+    private static MappedByteBuffer mapSegment(FileChannel fileChannel, FileChannel.MapMode mapMode, Path segmentPath) throws IOException {
+        long fileSize = fileChannel.size();
+
+        if (fileSize < SEGMENT_HEADER_SIZE || fileSize > Integer.MAX_VALUE) {
+            throw new IOException(String.format("'%s' isn't a temperature journal segment", segmentPath));
+        }
+
+        MappedByteBuffer mappedBuffer = fileChannel.map(mapMode, 0, fileSize);
+        mappedBuffer.order(TemperatureRecords.BYTE_ORDER);
+
+        return mappedBuffer;
+    }
+
+    private List<Path> listSegmentPaths() throws IOException {
+        List<Path> segmentPaths = new ArrayList<>();
+
+        try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path segmentPath : directoryStream) {
+                segmentPaths.add(segmentPath);
+            }
+        }
+
+        // Base sequences are zero padded so the names sort in sequence order
+        segmentPaths.sort(null);
+        return segmentPaths;
+    }
+
+    private static long parseBaseSequence(Path segmentPath) {
+        String fileName = segmentPath.getFileName().toString();
+
+        return Long.parseLong(fileName.substring(SEGMENT_PREFIX.length(), fileName.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static long checkSegmentHeader(ByteBuffer segmentBuffer, Path segmentPath) throws IOException {
+        if (segmentBuffer.capacity() < SEGMENT_HEADER_SIZE
+                || segmentBuffer.getInt(0) != SEGMENT_MAGIC
+                || segmentBuffer.getInt(Integer.BYTES) != SEGMENT_VERSION) {
+            throw new IOException(String.format("'%s' isn't a temperature journal segment", segmentPath));
+        }
+
+        return segmentBuffer.getLong(2 * Integer.BYTES);
+    }
+
+    private static int countRecords(ByteBuffer segmentBuffer) {
+        int recordCount = 0;
+
+        while (recordOffset(recordCount) + RECORD_SIZE <= segmentBuffer.capacity()
+                && isCompleteRecord(segmentBuffer, recordOffset(recordCount))) {
+            recordCount++;
+        }
+
+        return recordCount;
+    }
+
+    private static int recordOffset(long recordIndex) {
+        return (int) (SEGMENT_HEADER_SIZE + recordIndex * RECORD_SIZE);
+    }
+
+    // Record layout:
+    //
+    // type (int) | sensor id (int) | timestamp (long) | temperature (float) |
+    // threshold temperature (float) | threshold scale (int) | checksum (int)
+    //
+    // Sensor state records keep the previous temperature in place of the
+    // threshold temperature and whether there is one in place of the scale.
+    // Snapshot records keep the first sequence of the snapshot in place of the
+    // timestamp.
+    private static void putRecord(
+            ByteBuffer segmentBuffer,
+            int offset,
+            int recordType,
+            int sensorId,
+            long timestamp,
+            float temperature,
+            float temperatureThreshold,
+            int temperatureScale) {
+
+        int temperatureBits = Float.floatToRawIntBits(temperature);
+        int temperatureThresholdBits = Float.floatToRawIntBits(temperatureThreshold);
+
+        segmentBuffer.putInt(offset, recordType);
+        segmentBuffer.putInt(offset + 4, sensorId);
+        segmentBuffer.putLong(offset + 8, timestamp);
+        segmentBuffer.putInt(offset + 16, temperatureBits);
+        segmentBuffer.putInt(offset + 20, temperatureThresholdBits);
+        segmentBuffer.putInt(offset + 24, temperatureScale);
+        segmentBuffer.putInt(offset + 28, checksum(recordType, sensorId, timestamp, temperatureBits, temperatureThresholdBits, temperatureScale));
+    }
+
+    private static boolean isCompleteRecord(ByteBuffer segmentBuffer, int offset) {
+        int recordType = segmentBuffer.getInt(offset);
+
+        if (recordType < READING_RECORD || recordType > SNAPSHOT_RECORD) {
+            return false;
+        }
+
+        return segmentBuffer.getInt(offset + 28) == checksum(
+                recordType,
+                segmentBuffer.getInt(offset + 4),
+                segmentBuffer.getLong(offset + 8),
+                segmentBuffer.getInt(offset + 16),
+                segmentBuffer.getInt(offset + 20),
+                segmentBuffer.getInt(offset + 24));
+    }
+
+    private static void readRecord(ByteBuffer segmentBuffer, int offset, long sequence, JournalRecordListener journalRecordListener) {
+        int recordType = segmentBuffer.getInt(offset);
+        int sensorId = segmentBuffer.getInt(offset + 4);
+        long timestamp = segmentBuffer.getLong(offset + 8);
+        float temperature = Float.intBitsToFloat(segmentBuffer.getInt(offset + 16));
+
+        if (recordType == READING_RECORD) {
+            journalRecordListener.onReading(sequence, sensorId, timestamp, temperature);
+        } else if (recordType == SENSOR_STATE_RECORD) {
+            journalRecordListener.onSensorState(
+                    sequence,
+                    sensorId,
+                    timestamp,
+                    temperature,
+                    segmentBuffer.getInt(offset + 24) != 0 ? Float.intBitsToFloat(segmentBuffer.getInt(offset + 20)) : null);
+        } else if (recordType == THRESHOLD_EVENT_RECORD) {
+            journalRecordListener.onThresholdEvent(
+                    sequence,
+                    sensorId,
+                    timestamp,
+                    temperature,
+                    Float.intBitsToFloat(segmentBuffer.getInt(offset + 20)),
+                    TEMPERATURE_SCALES[segmentBuffer.getInt(offset + 24)]);
+        }
+    }
+
+    private static int checksum(int recordType, int sensorId, long timestamp, int temperatureBits, int temperatureThresholdBits, int temperatureScale) {
+        // FNV-1a over the fields of the record
+        int checksum = 0x811C9DC5;
+        checksum = (checksum ^ recordType) * 0x01000193;
+        checksum = (checksum ^ sensorId) * 0x01000193;
+        checksum = (checksum ^ (int) timestamp) * 0x01000193;
+        checksum = (checksum ^ (int) (timestamp >>> 32)) * 0x01000193;
+        checksum = (checksum ^ temperatureBits) * 0x01000193;
+        checksum = (checksum ^ temperatureThresholdBits) * 0x01000193;
+        checksum = (checksum ^ temperatureScale) * 0x01000193;
+
+        // Never let a complete record look like zeroed out space
+        return checksum == 0 ? 1 : checksum;
+    }
+
+    private static class JournalSegment {
+
+        private final long baseSequence;
+        private final FileChannel fileChannel;
+        private final MappedByteBuffer mappedBuffer;
+        private final int recordCapacity;
+
+        private JournalSegment(long baseSequence, FileChannel fileChannel, MappedByteBuffer mappedBuffer) {
+            this.baseSequence = baseSequence;
+            this.fileChannel = fileChannel;
+            this.mappedBuffer = mappedBuffer;
+            this.recordCapacity = (mappedBuffer.capacity() - SEGMENT_HEADER_SIZE) / RECORD_SIZE;
+        }
+    }
+
+}
@@ -0,0 +1,175 @@
+package org.thermometer;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Lock free histogram of latencies in nanoseconds laid out the same way as an
+// HdrHistogram: values below 64 get a bucket each and every power of two above
+// that is split into 32 linear sub-buckets, so any recorded value is reported
+// within ~3% of what was recorded. Recording a value is a single atomic
+// increment of its bucket with no locking or allocation.
+public class TemperatureLatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_BUCKET_COUNT = 2 * SUB_BUCKET_COUNT;
+
+    // Enough buckets for any positive `long`
+    static final int BUCKET_COUNT = LINEAR_BUCKET_COUNT + (Long.SIZE - 1 - SUB_BUCKET_BITS - 1) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray bucketCounts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+
+    // Negative latencies (i.e. a clock that went backwards) are recorded as '0'
+    public void recordNanos(long nanos) {
+        long value = Math.max(0L, nanos);
+
+        bucketCounts.incrementAndGet(bucketIndex(value));
+        totalNanos.add(value);
+        maxNanos.accumulate(value);
+    }
+
+    public void reset() {
+        for (int bucketIndex = 0; bucketIndex < BUCKET_COUNT; bucketIndex++) {
+            bucketCounts.set(bucketIndex, 0L);
+        }
+
+        totalNanos.reset();
+        maxNanos.reset();
+    }
+
+    // Buckets are copied one at a time while recording carries on so a snapshot
+    // taken under load may be off by the values recorded while it was taken
+    public HistogramSnapshot snapshot() {
+        long[] snapshotCounts = new long[BUCKET_COUNT];
+        long snapshotCount = 0L;
+
+        for (int bucketIndex = 0; bucketIndex < BUCKET_COUNT; bucketIndex++) {
+            snapshotCounts[bucketIndex] = bucketCounts.get(bucketIndex);
+            snapshotCount += snapshotCounts[bucketIndex];
+        }
+
+        return new HistogramSnapshot(snapshotCounts, snapshotCount, totalNanos.sum(), maxNanos.get());
+    }
+
+    static int bucketIndex(long value) {
+        if (value < LINEAR_BUCKET_COUNT) {
+            return (int) value;
+        }
+
+        // Shift the value down so its top bits land in [SUB_BUCKET_COUNT,
+        // 2 * SUB_BUCKET_COUNT) which picks the sub-bucket
+        int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+
+        return LINEAR_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_COUNT + (int) ((value >>> shift) - SUB_BUCKET_COUNT);
+    }
+
+    // The highest value that lands in the bucket
+    static long bucketUpperBound(int bucketIndex) {
+        if (bucketIndex < LINEAR_BUCKET_COUNT) {
+            return bucketIndex;
+        }
+
+        int shift = (bucketIndex - LINEAR_BUCKET_COUNT) / SUB_BUCKET_COUNT + 1;
+        long subBucket = (bucketIndex - LINEAR_BUCKET_COUNT) % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    public static class HistogramSnapshot {
+
+        private final long[] bucketCounts;
+        private final long count;
+        private final long totalNanos;
+        private final long maxNanos;
+
+        private HistogramSnapshot(long[] bucketCounts, long count, long totalNanos, long maxNanos) {
+            this.bucketCounts = bucketCounts;
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMeanNanos() {
+            return count == 0 ? 0.0 : totalNanos / (double) count;
+        }
+
+        public long getMaxNanos() {
+            return maxNanos;
+        }
+
+        // e.g. '99.9' for the 99.9th percentile. Reported as the highest value
+        // of the bucket the percentile falls in, capped at the largest value
+        // recorded.
+        public long getValueAtPercentile(double percentile) throws IllegalArgumentException {
+            if (!(percentile >= 0.0 && percentile <= 100.0)) {
+                throw new IllegalArgumentException("Percentile must be between '0' and '100'");
+            }
+
+            if (count == 0) {
+                return 0L;
+            }
+
+            long targetCount = Math.max(1L, (long) Math.ceil(percentile / 100.0 * count));
+            long cumulativeCount = 0L;
+
+            for (int bucketIndex = 0; bucketIndex < bucketCounts.length; bucketIndex++) {
+                cumulativeCount += bucketCounts[bucketIndex];
+
+                if (cumulativeCount >= targetCount) {
+                    return Math.min(bucketUpperBound(bucketIndex), maxNanos);
+                }
+            }
+
+            return maxNanos;
+        }
+
+        // The values recorded between an earlier snapshot of the same histogram
+        // and this one, e.g. for percentiles per interval of a long run. The
+        // maximum of the difference is only known to the precision of its
+        // bucket.
+        public HistogramSnapshot since(HistogramSnapshot earlierSnapshot) throws IllegalArgumentException {
+            if (earlierSnapshot == null) {
+                throw new IllegalArgumentException("Earlier snapshot can't be 'null'");
+            }
+
+            long[] differenceCounts = new long[bucketCounts.length];
+            long differenceCount = 0L;
+            long differenceMaxNanos = 0L;
+
+            for (int bucketIndex = 0; bucketIndex < bucketCounts.length; bucketIndex++) {
+                // A histogram reset in between leaves fewer values than before
+                differenceCounts[bucketIndex] = Math.max(0L, bucketCounts[bucketIndex] - earlierSnapshot.bucketCounts[bucketIndex]);
+                differenceCount += differenceCounts[bucketIndex];
+
+                if (differenceCounts[bucketIndex] > 0L) {
+                    differenceMaxNanos = Math.min(bucketUpperBound(bucketIndex), maxNanos);
+                }
+            }
+
+            return new HistogramSnapshot(
+                    differenceCounts,
+                    differenceCount,
+                    Math.max(0L, totalNanos - earlierSnapshot.totalNanos),
+                    differenceMaxNanos);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("count=%d mean=%.0fns p50=%dns p99=%dns p99.9=%dns max=%dns",
+                    count,
+                    getMeanNanos(),
+                    getValueAtPercentile(50.0),
+                    getValueAtPercentile(99.0),
+                    getValueAtPercentile(99.9),
+                    maxNanos);
+        }
+    }
+
+}
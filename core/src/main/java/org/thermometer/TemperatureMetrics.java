@@ -0,0 +1,310 @@
+package org.thermometer;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Instrumentation of the ingest and dispatch paths of a `ThermometerRegistry`.
+// Counters are `LongAdder` instances which stripe their count across cells
+// under contention so producers on many threads don't fight over a single
+// cache line, and latencies are recorded into a lock free
+// `TemperatureLatencyHistogram`.
+//
+// Registries are only instrumented when they are built with metrics - without
+// them none of this code runs - and metrics can also be switched off at runtime
+// (e.g. through JMX) in which case each reading costs a single volatile read.
+//
+// Reading the clock is the most expensive part of measuring latencies so only
+// one in every `latencySampleInterval` readings is timed on average. Counters
+// always count every reading.
+public class TemperatureMetrics implements TemperatureMetricsMXBean {
+
+    public static final String DEFAULT_MBEAN_DOMAIN = "org.thermometer";
+    public static final int DEFAULT_LATENCY_SAMPLE_INTERVAL = 16;
+
+    private final int latencySampleInterval;
+
+    private volatile boolean enabled = true;
+
+    private final LongAdder readingCount = new LongAdder();
+    private final LongAdder unchangedReadingCount = new LongAdder();
+    private final LongAdder dispatchedReadingCount = new LongAdder();
+    private final LongAdder conflatedReadingCount = new LongAdder();
+    private final LongAdder thresholdEvaluationCount = new LongAdder();
+    private final LongAdder thresholdFiredCount = new LongAdder();
+    private final TemperatureLatencyHistogram callbackLatency = new TemperatureLatencyHistogram();
+
+    // Only counted for registries that isolate their callbacks (see
+    // `TemperatureCallbackIsolation`). Overruns are also kept per listener so
+    // the offending threshold can be told apart from the rest.
+    private final LongAdder callbackOverrunCount = new LongAdder();
+    private final LongAdder shedCallbackCount = new LongAdder();
+    private final LongAdder listenerQuarantineCount = new LongAdder();
+    private final ConcurrentHashMap<String, LongAdder> callbackOverrunsByListener = new ConcurrentHashMap<>();
+
+    private ObjectName registeredObjectName = null;
+
+    private TemperatureMetrics(int latencySampleInterval) {
+        this.latencySampleInterval = latencySampleInterval;
+    }
+
+    public static class TemperatureMetricsBuilder {
+
+        private int latencySampleInterval = DEFAULT_LATENCY_SAMPLE_INTERVAL;
+
+        public TemperatureMetrics build() {
+            return new TemperatureMetrics(this.latencySampleInterval);
+        }
+
+        // '1' times every reading
+        public TemperatureMetricsBuilder latencySampleInterval(int latencySampleInterval) throws IllegalArgumentException {
+            if (latencySampleInterval < 1) {
+                throw new IllegalArgumentException("Latency sample interval must be at least '1'");
+            }
+
+            this.latencySampleInterval = latencySampleInterval;
+            return this;
+        }
+    }
+
+    // The `System.nanoTime` a reading is provided at when it is sampled,
+    // otherwise '0' which skips recording its latency
+    long sampleReadNanos() {
+        if (latencySampleInterval > 1 && ThreadLocalRandom.current().nextInt(latencySampleInterval) != 0) {
+            return 0L;
+        }
+
+        return System.nanoTime();
+    }
+
+    // Samples a reading whose time was read regardless of sampling, e.g. for
+    // a time window, at the same rate as `sampleReadNanos`
+    long sampleReadNanos(long readNanos) {
+        if (latencySampleInterval > 1 && ThreadLocalRandom.current().nextInt(latencySampleInterval) != 0) {
+            return 0L;
+        }
+
+        return readNanos;
+    }
+
+    void onReadings(long count) {
+        readingCount.add(count);
+    }
+
+    void onUnchangedReadings(long count) {
+        unchangedReadingCount.add(count);
+    }
+
+    void onDispatchedReadings(long count) {
+        dispatchedReadingCount.add(count);
+    }
+
+    // Readings merged into a summary that was already waiting to be dispatched
+    void onConflatedReadings(long count) {
+        conflatedReadingCount.add(count);
+    }
+
+    void onThresholdsEvaluated(int count) {
+        thresholdEvaluationCount.add(count);
+    }
+
+    // Invoked once the callback of a threshold has returned with the
+    // `System.nanoTime` of when the reading that triggered it was provided or
+    // '0' when that reading wasn't sampled
+    void onThresholdFired(long readNanos) {
+        thresholdFiredCount.increment();
+
+        if (readNanos != 0L) {
+            callbackLatency.recordNanos(System.nanoTime() - readNanos);
+        }
+    }
+
+    void onCallbackOverrun(String listenerName) {
+        callbackOverrunCount.increment();
+        callbackOverrunsByListener.computeIfAbsent(listenerName, name -> new LongAdder()).increment();
+    }
+
+    void onCallbacksShed(long count) {
+        shedCallbackCount.add(count);
+    }
+
+    void onListenerQuarantined() {
+        listenerQuarantineCount.increment();
+    }
+
+    public TemperatureMetricsSnapshot snapshot() {
+        return new TemperatureMetricsSnapshot(
+                readingCount.sum(),
+                unchangedReadingCount.sum(),
+                dispatchedReadingCount.sum(),
+                conflatedReadingCount.sum(),
+                thresholdEvaluationCount.sum(),
+                thresholdFiredCount.sum(),
+                callbackLatency.snapshot(),
+                callbackOverrunCount.sum(),
+                shedCallbackCount.sum(),
+                listenerQuarantineCount.sum(),
+                getCallbackOverrunsByListener());
+    }
+
+    // Registers the metrics with the platform MBean server under
+    // 'org.thermometer:type=TemperatureMetrics,name=<name>'
+    public synchronized ObjectName registerMBean(String name) throws IllegalArgumentException, IllegalStateException {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("MBean name can't be 'null' or empty");
+        }
+
+        if (registeredObjectName != null) {
+            throw new IllegalStateException(String.format("Metrics are already registered as '%s'", registeredObjectName));
+        }
+
+        try {
+            ObjectName objectName = new ObjectName(String.format("%s:type=TemperatureMetrics,name=%s", DEFAULT_MBEAN_DOMAIN, ObjectName.quote(name)));
+
+            getPlatformMBeanServer().registerMBean(this, objectName);
+            registeredObjectName = objectName;
+
+            return objectName;
+        } catch (JMException e) {
+            throw new IllegalStateException(String.format("Failed to register metrics '%s' as an MBean", name), e);
+        }
+    }
+
+    public synchronized void unregisterMBean() throws IllegalStateException {
+        if (registeredObjectName == null) {
+            return;
+        }
+
+        try {
+            getPlatformMBeanServer().unregisterMBean(registeredObjectName);
+            registeredObjectName = null;
+        } catch (JMException e) {
+            throw new IllegalStateException(String.format("Failed to unregister MBean '%s'", registeredObjectName), e);
+        }
+    }
+
+    private static MBeanServer getPlatformMBeanServer() {
+        return ManagementFactory.getPlatformMBeanServer();
+    }
+
+    public int getLatencySampleInterval() {
+        return latencySampleInterval;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    @Override
+    public long getReadingCount() {
+        return readingCount.sum();
+    }
+
+    @Override
+    public long getUnchangedReadingCount() {
+        return unchangedReadingCount.sum();
+    }
+
+    @Override
+    public long getDispatchedReadingCount() {
+        return dispatchedReadingCount.sum();
+    }
+
+    @Override
+    public long getConflatedReadingCount() {
+        return conflatedReadingCount.sum();
+    }
+
+    @Override
+    public long getThresholdEvaluationCount() {
+        return thresholdEvaluationCount.sum();
+    }
+
+    @Override
+    public long getThresholdFiredCount() {
+        return thresholdFiredCount.sum();
+    }
+
+    @Override
+    public long getCallbackLatencyCount() {
+        return callbackLatency.snapshot().getCount();
+    }
+
+    @Override
+    public double getCallbackLatencyMeanNanos() {
+        return callbackLatency.snapshot().getMeanNanos();
+    }
+
+    @Override
+    public long getCallbackLatencyP50Nanos() {
+        return callbackLatency.snapshot().getValueAtPercentile(50.0);
+    }
+
+    @Override
+    public long getCallbackLatencyP99Nanos() {
+        return callbackLatency.snapshot().getValueAtPercentile(99.0);
+    }
+
+    @Override
+    public long getCallbackLatencyP999Nanos() {
+        return callbackLatency.snapshot().getValueAtPercentile(99.9);
+    }
+
+    @Override
+    public long getCallbackLatencyMaxNanos() {
+        return callbackLatency.snapshot().getMaxNanos();
+    }
+
+    @Override
+    public long getCallbackOverrunCount() {
+        return callbackOverrunCount.sum();
+    }
+
+    @Override
+    public long getShedCallbackCount() {
+        return shedCallbackCount.sum();
+    }
+
+    @Override
+    public long getListenerQuarantineCount() {
+        return listenerQuarantineCount.sum();
+    }
+
+    // Sorted by listener name
+    @Override
+    public Map<String, Long> getCallbackOverrunsByListener() {
+        Map<String, Long> overrunsByListener = new TreeMap<>();
+
+        callbackOverrunsByListener.forEach((listenerName, overrunCount) -> overrunsByListener.put(listenerName, overrunCount.sum()));
+
+        return overrunsByListener;
+    }
+
+    @Override
+    public void reset() {
+        readingCount.reset();
+        unchangedReadingCount.reset();
+        dispatchedReadingCount.reset();
+        conflatedReadingCount.reset();
+        thresholdEvaluationCount.reset();
+        thresholdFiredCount.reset();
+        callbackLatency.reset();
+        callbackOverrunCount.reset();
+        shedCallbackCount.reset();
+        listenerQuarantineCount.reset();
+        callbackOverrunsByListener.clear();
+    }
+
+}
@@ -0,0 +1,46 @@
+package org.thermometer;
+
+import java.util.Map;
+
+// Management interface of `TemperatureMetrics` registered with the platform
+// MBean server through `TemperatureMetrics.registerMBean`
+public interface TemperatureMetricsMXBean {
+
+    public boolean isEnabled();
+
+    public void setEnabled(boolean enabled);
+
+    public long getReadingCount();
+
+    public long getUnchangedReadingCount();
+
+    public long getDispatchedReadingCount();
+
+    public long getConflatedReadingCount();
+
+    public long getThresholdEvaluationCount();
+
+    public long getThresholdFiredCount();
+
+    public long getCallbackLatencyCount();
+
+    public double getCallbackLatencyMeanNanos();
+
+    public long getCallbackLatencyP50Nanos();
+
+    public long getCallbackLatencyP99Nanos();
+
+    public long getCallbackLatencyP999Nanos();
+
+    public long getCallbackLatencyMaxNanos();
+
+    public long getCallbackOverrunCount();
+
+    public long getShedCallbackCount();
+
+    public long getListenerQuarantineCount();
+
+    public Map<String, Long> getCallbackOverrunsByListener();
+
+    public void reset();
+}
@@ -0,0 +1,119 @@
+package org.thermometer;
+
+import java.util.Map;
+
+// Point in time copy of the values of a `TemperatureMetrics`
+public class TemperatureMetricsSnapshot {
+
+    private final long readingCount;
+    private final long unchangedReadingCount;
+    private final long dispatchedReadingCount;
+    private final long conflatedReadingCount;
+    private final long thresholdEvaluationCount;
+    private final long thresholdFiredCount;
+    private final TemperatureLatencyHistogram.HistogramSnapshot callbackLatency;
+    private final long callbackOverrunCount;
+    private final long shedCallbackCount;
+    private final long listenerQuarantineCount;
+    private final Map<String, Long> callbackOverrunsByListener;
+
+    TemperatureMetricsSnapshot(
+            long readingCount,
+            long unchangedReadingCount,
+            long dispatchedReadingCount,
+            long conflatedReadingCount,
+            long thresholdEvaluationCount,
+            long thresholdFiredCount,
+            TemperatureLatencyHistogram.HistogramSnapshot callbackLatency,
+            long callbackOverrunCount,
+            long shedCallbackCount,
+            long listenerQuarantineCount,
+            Map<String, Long> callbackOverrunsByListener) {
+
+        this.readingCount = readingCount;
+        this.unchangedReadingCount = unchangedReadingCount;
+        this.dispatchedReadingCount = dispatchedReadingCount;
+        this.conflatedReadingCount = conflatedReadingCount;
+        this.thresholdEvaluationCount = thresholdEvaluationCount;
+        this.thresholdFiredCount = thresholdFiredCount;
+        this.callbackLatency = callbackLatency;
+        this.callbackOverrunCount = callbackOverrunCount;
+        this.shedCallbackCount = shedCallbackCount;
+        this.listenerQuarantineCount = listenerQuarantineCount;
+        this.callbackOverrunsByListener = callbackOverrunsByListener;
+    }
+
+    // Readings provided through `onTemperatureData`
+    public long getReadingCount() {
+        return readingCount;
+    }
+
+    // Readings equal to the one before them which are skipped unless a
+    // threshold needs to see every reading
+    public long getUnchangedReadingCount() {
+        return unchangedReadingCount;
+    }
+
+    // Readings queued on a dispatch lane to be evaluated against thresholds
+    public long getDispatchedReadingCount() {
+        return dispatchedReadingCount;
+    }
+
+    // Readings merged into a summary that was already waiting to be
+    // dispatched by a conflating registry
+    public long getConflatedReadingCount() {
+        return conflatedReadingCount;
+    }
+
+    // `TemperatureThreshold` instances checked by a threshold index
+    public long getThresholdEvaluationCount() {
+        return thresholdEvaluationCount;
+    }
+
+    // `TemperatureThreshold` callbacks that were triggered
+    public long getThresholdFiredCount() {
+        return thresholdFiredCount;
+    }
+
+    // Time from `onTemperatureData` until a triggered callback returned
+    public TemperatureLatencyHistogram.HistogramSnapshot getCallbackLatency() {
+        return callbackLatency;
+    }
+
+    // Callbacks that ran for longer than the time budget of an isolated listener
+    public long getCallbackOverrunCount() {
+        return callbackOverrunCount;
+    }
+
+    // Callbacks that were dropped because the lane of their listener was full
+    // or the listener was quarantined
+    public long getShedCallbackCount() {
+        return shedCallbackCount;
+    }
+
+    // Times a listener was quarantined for overrunning its budget repeatedly
+    public long getListenerQuarantineCount() {
+        return listenerQuarantineCount;
+    }
+
+    // Overruns keyed by the sensor and listener that overran
+    public Map<String, Long> getCallbackOverrunsByListener() {
+        return callbackOverrunsByListener;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("readings=%d unchanged=%d dispatched=%d conflated=%d evaluations=%d fired=%d callbackLatency=[%s] overruns=%d shed=%d quarantines=%d",
+                readingCount,
+                unchangedReadingCount,
+                dispatchedReadingCount,
+                conflatedReadingCount,
+                thresholdEvaluationCount,
+                thresholdFiredCount,
+                callbackLatency,
+                callbackOverrunCount,
+                shedCallbackCount,
+                listenerQuarantineCount);
+    }
+
+}
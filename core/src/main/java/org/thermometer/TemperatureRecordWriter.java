@@ -0,0 +1,64 @@
+package org.thermometer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Writes readings out in the format described by `TemperatureRecords`
+public class TemperatureRecordWriter implements AutoCloseable {
+
+    private static final int RECORDS_PER_WRITE = 4096;
+
+    private final FileChannel fileChannel;
+    private final ByteBuffer recordBuffer = ByteBuffer.allocateDirect(TemperatureRecords.RECORD_SIZE * RECORDS_PER_WRITE)
+            .order(TemperatureRecords.BYTE_ORDER);
+
+    private long recordCount = 0;
+
+    public TemperatureRecordWriter(Path path) throws IOException {
+        this.fileChannel = FileChannel.open(
+                path,
+                StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+
+        TemperatureRecords.putHeader(recordBuffer);
+    }
+
+    public void write(long timestamp, int sensorId, float temperature) throws IOException {
+        if (recordBuffer.remaining() < TemperatureRecords.RECORD_SIZE) {
+            flush();
+        }
+
+        recordBuffer.putLong(timestamp);
+        recordBuffer.putInt(sensorId);
+        recordBuffer.putFloat(temperature);
+        recordCount++;
+    }
+
+    public void flush() throws IOException {
+        recordBuffer.flip();
+
+        while (recordBuffer.hasRemaining()) {
+            fileChannel.write(recordBuffer);
+        }
+
+        recordBuffer.clear();
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            fileChannel.close();
+        }
+    }
+
+}
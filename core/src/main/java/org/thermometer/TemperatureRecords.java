@@ -0,0 +1,63 @@
+package org.thermometer;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// Layout of the compact binary log of readings. A log is a fixed size header
+// followed by fixed size little endian records of:
+//
+// timestamp (long, milliseconds) | sensor id (int) | temperature (float)
+//
+// Records are 16 bytes and the header is padded to the same size so every
+// record stays aligned when the log is memory-mapped.
+public final class TemperatureRecords {
+
+    public static final int MAGIC = 0x54524543; // "TREC"
+    public static final short VERSION = 1;
+
+    public static final int RECORD_SIZE = Long.BYTES + Integer.BYTES + Float.BYTES;
+    public static final int HEADER_SIZE = RECORD_SIZE;
+
+    public static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+    static final int TIMESTAMP_OFFSET = 0;
+    static final int SENSOR_ID_OFFSET = Long.BYTES;
+    static final int TEMPERATURE_OFFSET = Long.BYTES + Integer.BYTES;
+
+    private TemperatureRecords() {
+    }
+
+    static void putHeader(ByteBuffer buffer) {
+        buffer.putInt(MAGIC);
+        buffer.putShort(VERSION);
+        buffer.putShort((short) RECORD_SIZE);
+
+        // Reserved for future use
+        buffer.putLong(0L);
+    }
+
+    static void checkHeader(ByteBuffer buffer) throws IllegalArgumentException {
+        if (buffer.remaining() < HEADER_SIZE) {
+            throw new IllegalArgumentException("Temperature record log is too short to hold a header");
+        }
+
+        int position = buffer.position();
+
+        if (buffer.getInt(position) != MAGIC) {
+            throw new IllegalArgumentException("Temperature record log doesn't start with the expected magic number");
+        }
+
+        short version = buffer.getShort(position + Integer.BYTES);
+
+        if (version != VERSION) {
+            throw new IllegalArgumentException(String.format("Temperature record log version '%d' isn't supported", version));
+        }
+
+        short recordSize = buffer.getShort(position + Integer.BYTES + Short.BYTES);
+
+        if (recordSize != RECORD_SIZE) {
+            throw new IllegalArgumentException(String.format("Temperature record size '%d' isn't supported", recordSize));
+        }
+    }
+
+}
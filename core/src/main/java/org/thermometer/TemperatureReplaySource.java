@@ -0,0 +1,227 @@
+package org.thermometer;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.IntFunction;
+
+// Replays a log of readings written in the format described by
+// `TemperatureRecords`. The log is memory-mapped and every record is read
+// straight out of the mapping so nothing is copied on the way to the
+// `TemperatureDataEventListener` the reading is routed to.
+public class TemperatureReplaySource {
+
+    public static final ReplayPacingModes DEFAULT_PACING_MODE = ReplayPacingModes.AS_FAST_AS_POSSIBLE;
+    public static final double DEFAULT_SPEED_MULTIPLIER = 1.0;
+
+    // Logs larger than a single mapping can address are mapped a segment at a
+    // time with segments always ending on a record boundary
+    private static final long MAX_SEGMENT_SIZE = (Integer.MAX_VALUE / TemperatureRecords.RECORD_SIZE) * (long) TemperatureRecords.RECORD_SIZE;
+
+    private final Path path;
+    private final ReplayPacingModes pacingMode;
+    private final double speedMultiplier;
+
+    private TemperatureReplaySource(Path path, ReplayPacingModes pacingMode, double speedMultiplier) {
+        this.path = path;
+        this.pacingMode = pacingMode;
+        this.speedMultiplier = speedMultiplier;
+    }
+
+    public static class TemperatureReplaySourceBuilder {
+
+        private final Path path;
+        private ReplayPacingModes pacingMode = DEFAULT_PACING_MODE;
+        private double speedMultiplier = DEFAULT_SPEED_MULTIPLIER;
+
+        public TemperatureReplaySourceBuilder(Path path) throws IllegalArgumentException {
+            if (path == null) {
+                throw new IllegalArgumentException("Path can't be 'null'");
+            }
+
+            this.path = path;
+        }
+
+        public TemperatureReplaySource build() {
+            return new TemperatureReplaySource(
+                    this.path,
+                    this.pacingMode,
+                    this.speedMultiplier);
+        }
+
+        public TemperatureReplaySourceBuilder pacingMode(ReplayPacingModes pacingMode) throws IllegalArgumentException {
+            if (pacingMode == null) {
+                throw new IllegalArgumentException("Pacing mode can't be set to 'null'");
+            }
+
+            this.pacingMode = pacingMode;
+            return this;
+        }
+
+        // Only applies to real time pacing - e.g. '2.0' replays twice as fast as
+        // the readings were recorded
+        public TemperatureReplaySourceBuilder speedMultiplier(double speedMultiplier) throws IllegalArgumentException {
+            if (!(speedMultiplier > 0.0)) {
+                throw new IllegalArgumentException("Speed multiplier must be greater than '0'");
+            }
+
+            this.speedMultiplier = speedMultiplier;
+            return this;
+        }
+    }
+
+    public static class ReplayStatistics {
+
+        private final long readingCount;
+        private final long skippedReadingCount;
+        private final long elapsedNanos;
+
+        private ReplayStatistics(long readingCount, long skippedReadingCount, long elapsedNanos) {
+            this.readingCount = readingCount;
+            this.skippedReadingCount = skippedReadingCount;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public long getReadingCount() {
+            return readingCount;
+        }
+
+        // Readings for sensors that weren't routed to a listener
+        public long getSkippedReadingCount() {
+            return skippedReadingCount;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getReadingsPerSecond() {
+            return elapsedNanos == 0 ? 0.0 : readingCount / (elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1));
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d readings (%d skipped) in %.3f ms - %.0f readings/sec",
+                    readingCount,
+                    skippedReadingCount,
+                    elapsedNanos / (double) TimeUnit.MILLISECONDS.toNanos(1),
+                    getReadingsPerSecond());
+        }
+    }
+
+    // Every reading is provided to the same listener regardless of its sensor id
+    public ReplayStatistics replay(TemperatureDataEventListener temperatureDataEventListener) throws IOException {
+        return replayBySensor(sensorId -> temperatureDataEventListener);
+    }
+
+    // Readings for sensor ids outside of the registry are skipped
+    public ReplayStatistics replay(ThermometerRegistry thermometerRegistry) throws IOException {
+        int sensorCapacity = thermometerRegistry.getSensorCapacity();
+
+        return replayReadings((sensorId, temperature) -> {
+            if (sensorId < 0 || sensorId >= sensorCapacity) {
+                return false;
+            }
+
+            thermometerRegistry.onTemperatureData(sensorId, temperature);
+            return true;
+        });
+    }
+
+    // Routes every reading to the listener for its sensor id, readings for
+    // sensors without a listener (i.e. 'null') are skipped. Named apart from
+    // `replay` so a lambda passed to either isn't ambiguous.
+    public ReplayStatistics replayBySensor(IntFunction<TemperatureDataEventListener> temperatureDataEventListeners) throws IOException {
+        return replayReadings((sensorId, temperature) -> {
+            TemperatureDataEventListener temperatureDataEventListener = temperatureDataEventListeners.apply(sensorId);
+
+            if (temperatureDataEventListener == null) {
+                return false;
+            }
+
+            temperatureDataEventListener.onTemperatureData(temperature);
+            return true;
+        });
+    }
+
+    private ReplayStatistics replayReadings(SensorReadingConsumer sensorReadingConsumer) throws IOException {
+        long readingCount = 0;
+        long skippedReadingCount = 0;
+
+        long startNanos = System.nanoTime();
+        long firstTimestamp = 0;
+
+        try (FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long fileSize = fileChannel.size();
+
+            MappedByteBuffer headerBuffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(fileSize, TemperatureRecords.HEADER_SIZE));
+            headerBuffer.order(TemperatureRecords.BYTE_ORDER);
+            TemperatureRecords.checkHeader(headerBuffer);
+
+            // A partially written trailing record is ignored
+            long recordsEnd = TemperatureRecords.HEADER_SIZE
+                    + ((fileSize - TemperatureRecords.HEADER_SIZE) / TemperatureRecords.RECORD_SIZE) * TemperatureRecords.RECORD_SIZE;
+
+            for (long segmentStart = TemperatureRecords.HEADER_SIZE; segmentStart < recordsEnd; segmentStart += MAX_SEGMENT_SIZE) {
+                int segmentSize = (int) Math.min(MAX_SEGMENT_SIZE, recordsEnd - segmentStart);
+
+                MappedByteBuffer segmentBuffer = fileChannel.map(FileChannel.MapMode.READ_ONLY, segmentStart, segmentSize);
+                segmentBuffer.order(TemperatureRecords.BYTE_ORDER);
+
+                for (int recordOffset = 0; recordOffset < segmentSize; recordOffset += TemperatureRecords.RECORD_SIZE) {
+                    long timestamp = segmentBuffer.getLong(recordOffset + TemperatureRecords.TIMESTAMP_OFFSET);
+                    int sensorId = segmentBuffer.getInt(recordOffset + TemperatureRecords.SENSOR_ID_OFFSET);
+                    float temperature = segmentBuffer.getFloat(recordOffset + TemperatureRecords.TEMPERATURE_OFFSET);
+
+                    if (readingCount + skippedReadingCount == 0) {
+                        firstTimestamp = timestamp;
+                    }
+
+                    if (pacingMode == ReplayPacingModes.REAL_TIME) {
+                        awaitReadingTime(startNanos, timestamp - firstTimestamp);
+                    }
+
+                    if (sensorReadingConsumer.accept(sensorId, temperature)) {
+                        readingCount++;
+                    } else {
+                        skippedReadingCount++;
+                    }
+                }
+            }
+        }
+
+        return new ReplayStatistics(readingCount, skippedReadingCount, System.nanoTime() - startNanos);
+    }
+
+    private void awaitReadingTime(long startNanos, long millisSinceFirstReading) {
+        long readingNanos = startNanos + (long) (TimeUnit.MILLISECONDS.toNanos(millisSinceFirstReading) / speedMultiplier);
+
+        for (long remainingNanos = readingNanos - System.nanoTime(); remainingNanos > 0; remainingNanos = readingNanos - System.nanoTime()) {
+            LockSupport.parkNanos(remainingNanos);
+        }
+    }
+
+    @FunctionalInterface
+    private interface SensorReadingConsumer {
+
+        // Returns whether the reading was routed or skipped
+        boolean accept(int sensorId, float temperature);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public ReplayPacingModes getPacingMode() {
+        return pacingMode;
+    }
+
+    public double getSpeedMultiplier() {
+        return speedMultiplier;
+    }
+
+}
@@ -0,0 +1,543 @@
+package org.thermometer;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+// Spreads the readings of many producer threads over a fixed number of shards,
+// each a single thread that is the only one to ever provide readings for its
+// sensors to the `ThermometerRegistry`. Shards own whole dispatch lanes of the
+// registry so the temperatures of a sensor are only ever swapped and its lane
+// only ever locked by one thread, producers sharing sensors never contend on
+// them, and with a `CALLER_THREAD` dispatcher the thresholds of a sensor are
+// evaluated on its shard as well.
+//
+// Every producer gets a `PipelineProducer` of its own which holds a
+// preallocated single producer, single consumer ring per shard, so handing a
+// reading over is a couple of plain array writes and an ordered store with no
+// locking, allocation or contention with other producers. A producer finding
+// a ring full and a shard finding its rings empty wait according to the
+// `WaitStrategies` of the pipeline:
+//
+// - BUSY_SPIN never gives up the processor for the lowest latency
+// - YIELD spins for a while before yielding between attempts
+// - PARK spins for a while before parking, the shard is unparked by the next
+//   reading handed to it
+public class TemperatureShardedPipeline implements AutoCloseable {
+
+    public static final int DEFAULT_SHARD_COUNT = Runtime.getRuntime().availableProcessors();
+    public static final int DEFAULT_RING_CAPACITY = 4096;
+    public static final WaitStrategies DEFAULT_WAIT_STRATEGY = WaitStrategies.YIELD;
+
+    // How often a waiting thread retries before yielding or parking
+    private static final int SPIN_TRIES = 100;
+
+    // Producers waiting on a full ring aren't signalled when it drains
+    private static final long PRODUCER_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private static final ReadingRing[] NO_RINGS = new ReadingRing[0];
+
+    // Packed temperatures are a long per sensor
+    private static final int SENSORS_PER_CACHE_LINE = 64 / Long.BYTES;
+
+    private final ThermometerRegistry thermometerRegistry;
+    private final int ringCapacity;
+    private final WaitStrategies waitStrategy;
+    private final Shard[] shards;
+    private final int shardSensorCount;
+
+    private volatile boolean closed = false;
+
+    private TemperatureShardedPipeline(ThermometerRegistry thermometerRegistry, int shardCount, int ringCapacity, WaitStrategies waitStrategy) {
+        this.thermometerRegistry = thermometerRegistry;
+        this.ringCapacity = ringCapacity;
+        this.waitStrategy = waitStrategy;
+        this.shards = new Shard[shardCount];
+
+        // The registry packs the temperatures of consecutive sensors next to
+        // each other, eight to a cache line, and serves blocks of consecutive
+        // sensors from each of its lanes. Every shard owns a block of whole
+        // lanes so no other shard ever locks them, rounded up to whole lines
+        // too while lanes are shorter than one. Dealing sensors out in turn
+        // would have every shard swapping temperatures on the same lines and
+        // locking the same lanes as every other shard.
+        int laneSensorCount = thermometerRegistry.getLaneSensorCount();
+        int blockSensorCount = laneSensorCount >= SENSORS_PER_CACHE_LINE
+                ? laneSensorCount
+                : laneSensorCount * SENSORS_PER_CACHE_LINE / greatestCommonDivisor(laneSensorCount, SENSORS_PER_CACHE_LINE);
+        int sensorsPerShard = (thermometerRegistry.getSensorCapacity() - 1) / shardCount + 1;
+        this.shardSensorCount = (sensorsPerShard - 1) / blockSensorCount * blockSensorCount + blockSensorCount;
+
+        for (int shardIndex = 0; shardIndex < shardCount; shardIndex++) {
+            shards[shardIndex] = new Shard(shardIndex);
+        }
+
+        for (Shard shard : shards) {
+            shard.thread.start();
+        }
+    }
+
+    public static class TemperatureShardedPipelineBuilder {
+
+        private final ThermometerRegistry thermometerRegistry;
+        private int shardCount = DEFAULT_SHARD_COUNT;
+        private int ringCapacity = DEFAULT_RING_CAPACITY;
+        private WaitStrategies waitStrategy = DEFAULT_WAIT_STRATEGY;
+
+        public TemperatureShardedPipelineBuilder(ThermometerRegistry thermometerRegistry) throws IllegalArgumentException {
+            if (thermometerRegistry == null) {
+                throw new IllegalArgumentException("Thermometer registry can't be 'null'");
+            }
+
+            this.thermometerRegistry = thermometerRegistry;
+        }
+
+        public TemperatureShardedPipeline build() {
+            return new TemperatureShardedPipeline(
+                    this.thermometerRegistry,
+                    this.shardCount,
+                    this.ringCapacity,
+                    this.waitStrategy);
+        }
+
+        public TemperatureShardedPipelineBuilder shardCount(int shardCount) throws IllegalArgumentException {
+            if (shardCount < 1) {
+                throw new IllegalArgumentException("Shard count must be at least '1'");
+            }
+
+            this.shardCount = shardCount;
+            return this;
+        }
+
+        // Rounded up to a power of two so positions map onto the ring with a
+        // mask. Every producer allocates a ring of this capacity per shard.
+        public TemperatureShardedPipelineBuilder ringCapacity(int ringCapacity) throws IllegalArgumentException {
+            if (ringCapacity < 1 || ringCapacity > 1 << 30) {
+                throw new IllegalArgumentException("Ring capacity must be between '1' and '2^30'");
+            }
+
+            this.ringCapacity = ringCapacity == 1 ? 1 : Integer.highestOneBit(ringCapacity - 1) << 1;
+            return this;
+        }
+
+        public TemperatureShardedPipelineBuilder waitStrategy(WaitStrategies waitStrategy) throws IllegalArgumentException {
+            if (waitStrategy == null) {
+                throw new IllegalArgumentException("Wait strategy can't be set to 'null'");
+            }
+
+            this.waitStrategy = waitStrategy;
+            return this;
+        }
+    }
+
+    // A producer must only ever be used by a single thread at a time
+    public synchronized PipelineProducer newProducer() throws IllegalStateException {
+        if (closed) {
+            throw new IllegalStateException("Pipeline has been closed");
+        }
+
+        ReadingRing[] producerRings = new ReadingRing[shards.length];
+
+        for (int shardIndex = 0; shardIndex < shards.length; shardIndex++) {
+            producerRings[shardIndex] = new ReadingRing(ringCapacity);
+            shards[shardIndex].addRing(producerRings[shardIndex]);
+        }
+
+        return new PipelineProducer(producerRings);
+    }
+
+    // Sensor ids are handed out densely so every shard owns a block of
+    // consecutive sensors and the lanes serving them. Only the cache line at
+    // either end of a block can be shared with the neighbouring shard.
+    public int getShardIndex(int sensorId) {
+        return Math.min(sensorId / shardSensorCount, shards.length - 1);
+    }
+
+    // Consecutive sensors owned by every shard. The last shards are left
+    // without sensors when there are too few to fill a lane or cache line each.
+    public int getShardSensorCount() {
+        return shardSensorCount;
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    public int getRingCapacity() {
+        return ringCapacity;
+    }
+
+    public WaitStrategies getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    public ThermometerRegistry getThermometerRegistry() {
+        return thermometerRegistry;
+    }
+
+    // Readings the shards have provided to the registry so far
+    public long getProcessedReadingCount() {
+        long processedReadingCount = 0L;
+
+        for (Shard shard : shards) {
+            processedReadingCount += shard.processedReadingCount;
+        }
+
+        return processedReadingCount;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    // Waits for the shards to provide every reading already handed to them.
+    // Producers should be done before the pipeline is closed as readings
+    // handed over while it is closing may not be provided.
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+        }
+
+        for (Shard shard : shards) {
+            LockSupport.unpark(shard.thread);
+        }
+
+        try {
+            for (Shard shard : shards) {
+                shard.thread.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static int greatestCommonDivisor(int a, int b) {
+        return b == 0 ? a : greatestCommonDivisor(b, a % b);
+    }
+
+    public final class PipelineProducer implements AutoCloseable {
+
+        private final ReadingRing[] producerRings;
+        private boolean producerClosed = false;
+
+        private PipelineProducer(ReadingRing[] producerRings) {
+            this.producerRings = producerRings;
+        }
+
+        // Waits for room on the ring of the sensor's shard when it is full
+        public void onTemperatureData(int sensorId, float temperature) throws IllegalArgumentException, IllegalStateException {
+            if (sensorId < 0 || sensorId >= thermometerRegistry.getSensorCapacity()) {
+                throw new IllegalArgumentException(String.format(
+                        "Sensor id '%d' is outside of the registry capacity of '%d'", sensorId, thermometerRegistry.getSensorCapacity()));
+            }
+
+            if (producerClosed || closed) {
+                throw new IllegalStateException("Producer or pipeline has been closed");
+            }
+
+            int shardIndex = getShardIndex(sensorId);
+            ReadingRing producerRing = producerRings[shardIndex];
+            boolean signalShard = waitStrategy == WaitStrategies.PARK;
+            int idleCount = 0;
+
+            while (!producerRing.offer(sensorId, temperature, signalShard)) {
+                if (closed) {
+                    throw new IllegalStateException("Pipeline has been closed");
+                }
+
+                idleCount = waitForRoom(idleCount);
+            }
+
+            if (signalShard) {
+                shards[shardIndex].signal();
+            }
+        }
+
+        public void onTemperatureData(int sensorId, float[] temperatures, int offset, int length) throws IllegalArgumentException, IllegalStateException {
+            if (temperatures == null || offset < 0 || length < 0 || offset > temperatures.length - length) {
+                throw new IllegalArgumentException("Temperatures, offset and length don't describe a range of readings");
+            }
+
+            for (int temperatureIndex = offset; temperatureIndex < offset + length; temperatureIndex++) {
+                onTemperatureData(sensorId, temperatures[temperatureIndex]);
+            }
+        }
+
+        // A view of a single sensor for code written against
+        // `TemperatureDataEventListener`
+        public TemperatureDataEventListener forSensor(int sensorId) {
+            return temperature -> onTemperatureData(sensorId, temperature);
+        }
+
+        // The shards let go of the rings of the producer once they drained them
+        @Override
+        public void close() {
+            if (producerClosed) {
+                return;
+            }
+
+            producerClosed = true;
+
+            for (ReadingRing producerRing : producerRings) {
+                producerRing.closed = true;
+            }
+        }
+
+        private int waitForRoom(int idleCount) {
+            if (waitStrategy == WaitStrategies.BUSY_SPIN || idleCount < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else if (waitStrategy == WaitStrategies.YIELD) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(this, PRODUCER_PARK_NANOS);
+            }
+
+            return idleCount + 1;
+        }
+    }
+
+    private final class Shard implements Runnable {
+
+        private final Thread thread;
+
+        // Replaced as a whole under the lock of the pipeline as producers come
+        // and go so the shard never locks to find its rings
+        private volatile ReadingRing[] shardRings = NO_RINGS;
+
+        // Only written by the shard thread
+        private volatile long processedReadingCount = 0L;
+
+        private volatile boolean sleeping = false;
+
+        private Shard(int shardIndex) {
+            this.thread = new Thread(this, "temperature-shard-" + shardIndex);
+            this.thread.setDaemon(true);
+        }
+
+        // Must be invoked while holding the lock on the pipeline
+        private void addRing(ReadingRing producerRing) {
+            ReadingRing[] grownRings = Arrays.copyOf(shardRings, shardRings.length + 1);
+            grownRings[shardRings.length] = producerRing;
+            shardRings = grownRings;
+        }
+
+        private void removeRing(ReadingRing producerRing) {
+            synchronized (TemperatureShardedPipeline.this) {
+                shardRings = Arrays.stream(shardRings)
+                        .filter(shardRing -> shardRing != producerRing)
+                        .toArray(ReadingRing[]::new);
+            }
+        }
+
+        // The shard reads `sleeping` only after publishing it and producers
+        // read it only after publishing their reading, so either the shard
+        // sees the reading before parking or the producer sees it sleeping
+        private void signal() {
+            if (sleeping) {
+                LockSupport.unpark(thread);
+            }
+        }
+
+        @Override
+        public void run() {
+            int idleCount = 0;
+
+            while (true) {
+                // Read before draining so every reading handed over before the
+                // pipeline was closed is drained before the shard stops
+                boolean closing = closed;
+
+                if (drainRings() > 0) {
+                    idleCount = 0;
+                    continue;
+                }
+
+                if (closing) {
+                    return;
+                }
+
+                idleCount = waitForReadings(idleCount);
+            }
+        }
+
+        private int drainRings() {
+            int drainedCount = 0;
+
+            for (ReadingRing shardRing : shardRings) {
+                boolean producerClosed = shardRing.closed;
+
+                drainedCount += shardRing.drain(thermometerRegistry);
+
+                if (producerClosed && shardRing.isEmpty()) {
+                    removeRing(shardRing);
+                }
+            }
+
+            if (drainedCount > 0) {
+                processedReadingCount += drainedCount;
+            }
+
+            return drainedCount;
+        }
+
+        private int waitForReadings(int idleCount) {
+            if (waitStrategy == WaitStrategies.BUSY_SPIN || idleCount < SPIN_TRIES) {
+                Thread.onSpinWait();
+            } else if (waitStrategy == WaitStrategies.YIELD) {
+                Thread.yield();
+            } else {
+                sleeping = true;
+
+                if (!hasReadings() && !closed) {
+                    LockSupport.park(this);
+                }
+
+                sleeping = false;
+            }
+
+            return idleCount + 1;
+        }
+
+        private boolean hasReadings() {
+            for (ReadingRing shardRing : shardRings) {
+                if (!shardRing.isEmpty()) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+    }
+
+    // A position in a ring along with the last position of the other side
+    // that its owner saw. Padded so the positions of the producer and the
+    // shard don't share a cache line.
+    @SuppressWarnings("unused")
+    private static final class RingSequence {
+
+        private static final VarHandle POSITION;
+
+        static {
+            try {
+                POSITION = MethodHandles.lookup().findVarHandle(RingSequence.class, "position", long.class);
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        private volatile long position = 0L;
+        private long cachedOtherPosition = 0L;
+        private long padding1, padding2, padding3, padding4, padding5, padding6;
+
+        private long get() {
+            return position;
+        }
+
+        private long getPlain() {
+            return (long) POSITION.get(this);
+        }
+
+        private long getAcquire() {
+            return (long) POSITION.getAcquire(this);
+        }
+
+        private void set(long newPosition) {
+            position = newPosition;
+        }
+
+        private void setRelease(long newPosition) {
+            POSITION.setRelease(this, newPosition);
+        }
+    }
+
+    private static final class ReadingRing {
+
+        private final int[] sensorIds;
+        private final float[] temperatures;
+        private final int mask;
+
+        // The next position the producer writes to and the shard reads from
+        private final RingSequence producerSequence = new RingSequence();
+        private final RingSequence shardSequence = new RingSequence();
+
+        private volatile boolean closed = false;
+
+        private ReadingRing(int capacity) {
+            this.sensorIds = new int[capacity];
+            this.temperatures = new float[capacity];
+            this.mask = capacity - 1;
+        }
+
+        // Only invoked by the producer. A shard that may park has to be
+        // published to with a volatile store so the producer's check of
+        // whether it is sleeping can't be ordered before it.
+        private boolean offer(int sensorId, float temperature, boolean signalShard) {
+            long position = producerSequence.getPlain();
+
+            if (position - producerSequence.cachedOtherPosition > mask) {
+                producerSequence.cachedOtherPosition = shardSequence.getAcquire();
+
+                if (position - producerSequence.cachedOtherPosition > mask) {
+                    return false;
+                }
+            }
+
+            int index = (int) position & mask;
+            sensorIds[index] = sensorId;
+            temperatures[index] = temperature;
+
+            if (signalShard) {
+                producerSequence.set(position + 1);
+            } else {
+                producerSequence.setRelease(position + 1);
+            }
+
+            return true;
+        }
+
+        // Only invoked by the shard. Slots are handed back to the producer as
+        // a whole once every reading that was available has been provided.
+        private int drain(ThermometerRegistry thermometerRegistry) {
+            long position = shardSequence.getPlain();
+
+            if (shardSequence.cachedOtherPosition == position) {
+                shardSequence.cachedOtherPosition = producerSequence.getAcquire();
+
+                if (shardSequence.cachedOtherPosition == position) {
+                    return 0;
+                }
+            }
+
+            long endPosition = shardSequence.cachedOtherPosition;
+
+            for (long readingPosition = position; readingPosition < endPosition; readingPosition++) {
+                int index = (int) readingPosition & mask;
+
+                try {
+                    thermometerRegistry.onTemperatureData(sensorIds[index], temperatures[index]);
+                } catch (RuntimeException e) {
+                    // A failing listener mustn't stop the shard from serving
+                    // the readings of every other sensor
+                    Thread currentThread = Thread.currentThread();
+                    currentThread.getUncaughtExceptionHandler().uncaughtException(currentThread, e);
+                }
+            }
+
+            shardSequence.setRelease(endPosition);
+
+            return (int) (endPosition - position);
+        }
+
+        private boolean isEmpty() {
+            return producerSequence.get() == shardSequence.get();
+        }
+    }
+
+}
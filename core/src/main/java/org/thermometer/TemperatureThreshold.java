@@ -0,0 +1,476 @@
+package org.thermometer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+public class TemperatureThreshold implements TemperatureThresholdEventListener {
+
+    public static final TemperatureScales DEFAULT_TEMPERATURE_SCALE = TemperatureScales.CELSIUS_SCALE;
+    public static final float DEFAULT_THRESHOLD_TRIGGER_PRECISION = 0.0F;
+    public static final ThresholdTriggerDirections DEFAULT_THRESHOLD_TRIGGER_DIRECTION = null;
+    public static final float DEFAULT_HYSTERESIS_BAND = 0.0F;
+    public static final int DEFAULT_HOLD_SAMPLE_COUNT = 1;
+    public static final long DEFAULT_HOLD_TIME_NANOS = 0L;
+    public static final long DEFAULT_COOLDOWN_NANOS = 0L;
+    public static final TemperatureAggregates DEFAULT_TEMPERATURE_AGGREGATE = null;
+
+    // Which side of the threshold a crossing ended up on
+    private static final byte NO_SIDE = 0;
+    private static final byte ABOVE_THRESHOLD = 1;
+    private static final byte BELOW_THRESHOLD = 2;
+
+    private final float temperatureThreshold;
+    private final FloatConsumer thresholdEventCallback;
+    private final TemperatureScales temperatureScale;
+    private final float thresholdTriggerPrecision;
+    private final ThresholdTriggerDirections thresholdTriggerDirection;
+    private final float hysteresisBand;
+    private final int holdSampleCount;
+    private final long holdTimeNanos;
+    private final long cooldownNanos;
+    private final TemperatureAggregates temperatureAggregate;
+    private final TemperatureWindow temperatureWindow;
+
+    private final boolean debounced;
+    private final boolean observesEveryReading;
+
+    // Debounce state which is only used when one of the debounce options was
+    // provided. Guarded by `this` - readings of a sensor are dispatched one at
+    // a time so the lock is uncontended unless the threshold is shared by
+    // several sensors.
+    private byte disarmedSide = NO_SIDE;
+    private byte pendingSide = NO_SIDE;
+    private int pendingSampleCount;
+    private long pendingStartNanos;
+    private boolean hasFired = false;
+    private long lastFiredNanos;
+
+    // Created the first time it is asked for so thresholds nobody subscribes to
+    // never build events
+    private volatile TemperatureThresholdPublisher thresholdEventPublisher = null;
+
+    private TemperatureThreshold(
+            float temperatureThreshold,
+            TemperatureScales temperatureScale,
+            float thresholdTriggerPrecision,
+            ThresholdTriggerDirections thresholdTriggerDirection,
+            FloatConsumer thresholdEventCallback,
+            float hysteresisBand,
+            int holdSampleCount,
+            long holdTimeNanos,
+            long cooldownNanos,
+            TemperatureAggregates temperatureAggregate,
+            TemperatureWindow temperatureWindow
+    ) {
+        this.temperatureThreshold = temperatureThreshold;
+        this.temperatureScale = temperatureScale;
+        this.thresholdTriggerPrecision = thresholdTriggerPrecision;
+        this.thresholdTriggerDirection = thresholdTriggerDirection;
+        this.thresholdEventCallback = thresholdEventCallback;
+        this.hysteresisBand = hysteresisBand;
+        this.holdSampleCount = holdSampleCount;
+        this.holdTimeNanos = holdTimeNanos;
+        this.cooldownNanos = cooldownNanos;
+        this.temperatureAggregate = temperatureAggregate;
+        this.temperatureWindow = temperatureWindow;
+
+        // Re-arming and holding depend on readings that don't cross the
+        // threshold so those thresholds need to see every reading
+        this.observesEveryReading = hysteresisBand > 0.0F || holdSampleCount > 1 || holdTimeNanos > 0L;
+        this.debounced = observesEveryReading || cooldownNanos > 0L;
+    }
+
+    public static class TemperatureThresholdBuilder {
+
+        private final float temperatureThreshold;
+        private FloatConsumer thresholdEventCallback;
+        private TemperatureScales temperatureScale = DEFAULT_TEMPERATURE_SCALE;
+        private float thresholdTriggerPrecision = DEFAULT_THRESHOLD_TRIGGER_PRECISION;
+        private ThresholdTriggerDirections thresholdTriggerDirection = DEFAULT_THRESHOLD_TRIGGER_DIRECTION;
+        private float hysteresisBand = DEFAULT_HYSTERESIS_BAND;
+        private int holdSampleCount = DEFAULT_HOLD_SAMPLE_COUNT;
+        private long holdTimeNanos = DEFAULT_HOLD_TIME_NANOS;
+        private long cooldownNanos = DEFAULT_COOLDOWN_NANOS;
+        private TemperatureAggregates temperatureAggregate = DEFAULT_TEMPERATURE_AGGREGATE;
+        private TemperatureWindow temperatureWindow = null;
+
+        // The callback must then be provided through `thresholdEventCallback`
+        public TemperatureThresholdBuilder(float temperatureThreshold) {
+            this.temperatureThreshold = temperatureThreshold;
+        }
+
+        // Boxes the temperature on every callback - prefer providing a
+        // `FloatConsumer` through `thresholdEventCallback` for thresholds that
+        // are expected to fire often
+        public TemperatureThresholdBuilder(float temperatureThreshold, Consumer<Float> thresholdEventCallback) {
+            this.temperatureThreshold = temperatureThreshold;
+            this.thresholdEventCallback = thresholdEventCallback == null ? null : thresholdEventCallback::accept;
+        }
+
+        public TemperatureThreshold build() throws IllegalStateException {
+            if (thresholdEventCallback == null) {
+                throw new IllegalStateException("Threshold event callback must be provided");
+            }
+
+            return new TemperatureThreshold(
+                    this.temperatureThreshold,
+                    this.temperatureScale,
+                    this.thresholdTriggerPrecision,
+                    this.thresholdTriggerDirection,
+                    this.thresholdEventCallback,
+                    this.hysteresisBand,
+                    this.holdSampleCount,
+                    this.holdTimeNanos,
+                    this.cooldownNanos,
+                    this.temperatureAggregate,
+                    this.temperatureWindow);
+        }
+
+        public TemperatureThresholdBuilder thresholdEventCallback(FloatConsumer thresholdEventCallback) throws IllegalArgumentException {
+            if (thresholdEventCallback == null) {
+                throw new IllegalArgumentException("Threshold event callback can't be set to 'null'");
+            }
+
+            this.thresholdEventCallback = thresholdEventCallback;
+            return this;
+        }
+
+        public TemperatureThresholdBuilder temperatureScale(TemperatureScales temperatureScale) {
+            this.temperatureScale = temperatureScale;
+            return this;
+        }
+
+        public TemperatureThresholdBuilder thresholdTriggerPrecision(float thresholdTriggerPrecision) {
+            this.thresholdTriggerPrecision = thresholdTriggerPrecision;
+            return this;
+        }
+
+        public TemperatureThresholdBuilder thresholdTriggerDirection(ThresholdTriggerDirections thresholdTriggerDirection) {
+            this.thresholdTriggerDirection = thresholdTriggerDirection;
+            return this;
+        }
+
+        // Once fired the threshold is disarmed until a reading moves back past
+        // the far edge of the band - i.e. below 'threshold - band' after firing
+        // on the way up and above 'threshold + band' after firing on the way down
+        public TemperatureThresholdBuilder hysteresisBand(float hysteresisBand) throws IllegalArgumentException {
+            if (!(hysteresisBand >= 0.0F) || Float.isInfinite(hysteresisBand)) {
+                throw new IllegalArgumentException("Hysteresis band must be a finite temperature of at least '0'");
+            }
+
+            this.hysteresisBand = hysteresisBand;
+            return this;
+        }
+
+        // Number of consecutive readings, including the one that crossed the
+        // threshold, that must stay on the far side of it before firing
+        public TemperatureThresholdBuilder holdSampleCount(int holdSampleCount) throws IllegalArgumentException {
+            if (holdSampleCount < 1) {
+                throw new IllegalArgumentException("Hold sample count must be at least '1'");
+            }
+
+            this.holdSampleCount = holdSampleCount;
+            return this;
+        }
+
+        // Minimum time the readings must stay on the far side of the threshold
+        // before firing. Checked as readings arrive so it fires on the first
+        // reading after the hold time has passed.
+        public TemperatureThresholdBuilder holdTime(long holdTime, TimeUnit unit) throws IllegalArgumentException {
+            if (holdTime < 0 || unit == null) {
+                throw new IllegalArgumentException("Hold time must be at least '0' with a time unit");
+            }
+
+            this.holdTimeNanos = unit.toNanos(holdTime);
+            return this;
+        }
+
+        // Minimum time between two fires, crossings in between are dropped
+        public TemperatureThresholdBuilder cooldown(long cooldown, TimeUnit unit) throws IllegalArgumentException {
+            if (cooldown < 0 || unit == null) {
+                throw new IllegalArgumentException("Cooldown must be at least '0' with a time unit");
+            }
+
+            this.cooldownNanos = unit.toNanos(cooldown);
+            return this;
+        }
+
+        // Compares an aggregate of the readings in the window against the
+        // threshold rather than the raw readings. Crossings are detected between
+        // the aggregate before and after each reading the same way they are for
+        // raw readings.
+        public TemperatureThresholdBuilder aggregate(TemperatureAggregates temperatureAggregate, TemperatureWindow temperatureWindow) throws IllegalArgumentException {
+            if (temperatureAggregate == null || temperatureWindow == null) {
+                throw new IllegalArgumentException("Temperature aggregate and window can't be set to 'null'");
+            }
+
+            this.temperatureAggregate = temperatureAggregate;
+            this.temperatureWindow = temperatureWindow;
+            return this;
+        }
+    }
+
+    // Thresholds on an aggregate are evaluated by the registry that keeps
+    // their window, evaluating them against raw readings would compare the
+    // wrong temperatures
+    @Override
+    public void onTemperatureRead(float newTemperature, float previousTemperature, TemperatureScales temperatureScaleUsedForReading) throws UnsupportedOperationException {
+        if (temperatureAggregate != null) {
+            throw new UnsupportedOperationException("Thresholds on an aggregate can only be evaluated by a thermometer or thermometer registry");
+        }
+
+        // Ensure that our temperatures are in the correct scale as defined for this threshold
+        // in the event that the scale used to read the temperature was different
+        float convertedNewTemperature = convertTemperature(newTemperature, temperatureScaleUsedForReading, temperatureScale);
+        float convertedPreviousTemperature = convertTemperature(previousTemperature, temperatureScaleUsedForReading, temperatureScale);
+
+        onConvertedTemperatureRead(convertedNewTemperature, convertedPreviousTemperature);
+    }
+
+    // Returns whether the threshold event callback was triggered
+    boolean onConvertedTemperatureRead(float convertedNewTemperature, float convertedPreviousTemperature) {
+        boolean shouldTrigger = shouldTriggerConvertedThresholdEvent(convertedNewTemperature, convertedPreviousTemperature);
+
+        // The callback is invoked outside of the lock so a slow callback doesn't
+        // hold up other sensors sharing the threshold
+        if (shouldTrigger) {
+            triggerThresholdEvent(convertedNewTemperature);
+        }
+
+        return shouldTrigger;
+    }
+
+    // Advances the debounce state without invoking the callback so the caller
+    // can trigger it elsewhere, e.g. on a lane isolating the callback. The
+    // crossing is published as soon as it is detected.
+    boolean shouldTriggerConvertedThresholdEvent(float convertedNewTemperature, float convertedPreviousTemperature) {
+        boolean shouldTrigger;
+
+        if (!debounced) {
+            shouldTrigger = shouldTriggerThresholdEvent(convertedNewTemperature, convertedPreviousTemperature);
+        } else {
+            synchronized (this) {
+                shouldTrigger = shouldTriggerDebouncedThresholdEvent(convertedNewTemperature, convertedPreviousTemperature);
+            }
+        }
+
+        if (shouldTrigger) {
+            publishThresholdEvent(this, thresholdEventPublisher, convertedNewTemperature, convertedPreviousTemperature);
+        }
+
+        return shouldTrigger;
+    }
+
+    // Events are only built when someone is subscribed to them
+    static void publishThresholdEvent(
+            TemperatureThreshold temperatureThreshold,
+            TemperatureThresholdPublisher thresholdEventPublisher,
+            float convertedNewTemperature,
+            float convertedPreviousTemperature) {
+
+        if (thresholdEventPublisher != null && thresholdEventPublisher.hasSubscribers()) {
+            thresholdEventPublisher.publish(new TemperatureThresholdEvent(
+                    temperatureThreshold, convertedNewTemperature, convertedPreviousTemperature, System.currentTimeMillis()));
+        }
+    }
+
+    void triggerThresholdEvent(float convertedNewTemperature) {
+        thresholdEventCallback.accept(convertedNewTemperature);
+    }
+
+    // Must be invoked while holding the lock on `this`
+    private boolean shouldTriggerDebouncedThresholdEvent(float newTemperature, float previousTemperature) {
+        // Re-arm once the reading has moved back past the far edge of the band
+        if ((disarmedSide == ABOVE_THRESHOLD && newTemperature <= temperatureThreshold - hysteresisBand)
+                || (disarmedSide == BELOW_THRESHOLD && newTemperature >= temperatureThreshold + hysteresisBand)) {
+            disarmedSide = NO_SIDE;
+        }
+
+        // A crossing starts a new hold on the side of the threshold it ended up
+        // on, replacing any hold that was in progress
+        if (shouldTriggerThresholdEvent(newTemperature, previousTemperature)) {
+            pendingSide = newTemperature > previousTemperature ? ABOVE_THRESHOLD : BELOW_THRESHOLD;
+            pendingSampleCount = 0;
+            pendingStartNanos = holdTimeNanos > 0L ? System.nanoTime() : 0L;
+        }
+
+        if (pendingSide == NO_SIDE) {
+            return false;
+        }
+
+        // Moving back across the threshold cancels the hold
+        if ((pendingSide == ABOVE_THRESHOLD && newTemperature < temperatureThreshold)
+                || (pendingSide == BELOW_THRESHOLD && newTemperature > temperatureThreshold)) {
+            pendingSide = NO_SIDE;
+            return false;
+        }
+
+        pendingSampleCount++;
+
+        long nowNanos = holdTimeNanos > 0L || cooldownNanos > 0L ? System.nanoTime() : 0L;
+
+        if (pendingSampleCount < holdSampleCount || nowNanos - pendingStartNanos < holdTimeNanos) {
+            return false;
+        }
+
+        byte crossedSide = pendingSide;
+        pendingSide = NO_SIDE;
+
+        if (disarmedSide != NO_SIDE || (hasFired && nowNanos - lastFiredNanos < cooldownNanos)) {
+            return false;
+        }
+
+        hasFired = true;
+        lastFiredNanos = nowNanos;
+
+        if (hysteresisBand > 0.0F) {
+            disarmedSide = crossedSide;
+        }
+
+        return true;
+    }
+
+    private boolean shouldTriggerThresholdEvent(float newTemperature, float previousTemperature) {
+        // Check to see if a temperature threshold has been reached along with
+        // any additional requirements that the consumer provided and if so
+        // trigger the event callback.
+        return isTempThresholdReached(newTemperature, previousTemperature)
+                && isTempDifferencePrecise(newTemperature, previousTemperature)
+                && isTempMovementCorrectDirection(newTemperature, previousTemperature);
+    }
+
+    public boolean isTempThresholdReached(float newTemperature, float previousTemperature) {
+        // Temperature threshold can be reached in two cases:
+        // 1) Previous temperature is less than the threshold and new temperature
+        // is equal or greater than the threshold
+        // e.g. temperatureThreshold: 10, previousTemperature: 5, newTemperature: 15 (or 10)
+        //
+        // 2) Previous temperature is greater than the threshold and new temperature
+        // is equal or less than the threshold
+        // e.g. temperatureThreshold: 10, previousTemperature: 15, newTemperature: 5 (or 10)
+        return (previousTemperature < temperatureThreshold && newTemperature >= temperatureThreshold)
+                || (previousTemperature > temperatureThreshold && newTemperature <= temperatureThreshold);
+    }
+
+    public boolean isTempDifferencePrecise(float newTemperature, float previousTemperature) {
+        return Math.abs(newTemperature - previousTemperature) >= thresholdTriggerPrecision;
+    }
+
+    public boolean isTempMovementCorrectDirection(float newTemperature, float previousTemperature) {
+        // If no trigger direction was provided indicate that any movement is
+        // the correct direction
+        if (thresholdTriggerDirection == null) {
+            return true;
+        }
+
+        return (thresholdTriggerDirection == ThresholdTriggerDirections.DECREASING_TEMP && newTemperature < previousTemperature)
+                || (thresholdTriggerDirection == ThresholdTriggerDirections.INCREASING_TEMP && newTemperature > previousTemperature);
+    }
+
+    // Crossings of this threshold, whichever sensor they were detected on
+    public TemperatureThresholdPublisher getThresholdEventPublisher() {
+        TemperatureThresholdPublisher publisher = thresholdEventPublisher;
+
+        if (publisher == null) {
+            synchronized (this) {
+                publisher = thresholdEventPublisher;
+
+                if (publisher == null) {
+                    publisher = new TemperatureThresholdPublisher();
+                    thresholdEventPublisher = publisher;
+                }
+            }
+        }
+
+        return publisher;
+    }
+
+    public float getTemperatureThreshold() {
+        return temperatureThreshold;
+    }
+
+    public TemperatureScales getTemperatureScale() {
+        return temperatureScale;
+    }
+
+    public float getThresholdTriggerPrecision() {
+        return thresholdTriggerPrecision;
+    }
+
+    public ThresholdTriggerDirections getThresholdTriggerDirection() {
+        return thresholdTriggerDirection;
+    }
+
+    public float getHysteresisBand() {
+        return hysteresisBand;
+    }
+
+    public int getHoldSampleCount() {
+        return holdSampleCount;
+    }
+
+    public long getHoldTimeNanos() {
+        return holdTimeNanos;
+    }
+
+    public long getCooldownNanos() {
+        return cooldownNanos;
+    }
+
+    // 'null' when the threshold is compared against raw readings
+    public TemperatureAggregates getTemperatureAggregate() {
+        return temperatureAggregate;
+    }
+
+    public TemperatureWindow getTemperatureWindow() {
+        return temperatureWindow;
+    }
+
+    // Whether the threshold has to be evented with readings that don't cross it
+    boolean observesEveryReading() {
+        return observesEveryReading;
+    }
+
+    // Identifies the threshold in metrics, e.g. of callbacks running over budget
+    @Override
+    public String toString() {
+        StringBuilder description = new StringBuilder(String.format("%s %s", temperatureThreshold, temperatureScale));
+
+        if (thresholdTriggerDirection != null) {
+            description.append(' ').append(thresholdTriggerDirection);
+        }
+
+        if (temperatureAggregate != null) {
+            description.append(String.format(" on the %s of the %s", temperatureAggregate, temperatureWindow));
+        }
+
+        return String.format("TemperatureThreshold[%s]", description);
+    }
+
+    public static float convertTemperature(
+            float temp,
+            TemperatureScales currentTemperatureScale,
+            TemperatureScales expectedTemperatureScale) {
+
+        // If the scales are the same then simply return the temp that is provided
+        if (currentTemperatureScale == expectedTemperatureScale) {
+            return temp;
+        }
+
+        // Otherwise convert the temp to the expected temperature scale
+        if (expectedTemperatureScale == TemperatureScales.CELSIUS_SCALE) {
+            return convertFahrenheitToCelsius(temp);
+        }
+
+        return convertCelsiusToFahrenheit(temp);
+    }
+
+    public static float convertCelsiusToFahrenheit(float celsiusTemp) {
+        return (celsiusTemp * (9 / 5)) + 32;
+    }
+
+    public static float convertFahrenheitToCelsius(float fahrenheitTemp) {
+        return (fahrenheitTemp - 32) * (5 / 9);
+    }
+
+}
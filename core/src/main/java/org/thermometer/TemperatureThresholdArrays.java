@@ -0,0 +1,322 @@
+package org.thermometer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+
+// An alternative to `TemperatureThresholdIndex` for very large sets of
+// thresholds. The value, precision and direction of every threshold are packed
+// into parallel primitive arrays with a set per temperature scale, and a
+// reading is evaluated against all of them in a single pass over those arrays
+// by a `TemperatureCrossingKernel`. Only the thresholds whose bit is set in the
+// resulting mask are touched as objects, so a reading costs a streaming pass
+// over three arrays rather than a call on every threshold.
+//
+// The kernel uses the Vector API (`jdk.incubator.vector`) when the JVM was
+// started with '--add-modules jdk.incubator.vector' and falls back to a scalar
+// loop otherwise. Both give exactly the thresholds that
+// `TemperatureThreshold.onTemperatureRead` would trigger, in the same order
+// the index triggers them in.
+//
+// Unlike the index every reading scans every threshold, so the index is
+// cheaper for readings that only move across a few thresholds while the
+// arrays don't depend on how far a reading moves.
+public class TemperatureThresholdArrays implements
+        TemperatureThresholdEventListener,
+        TemperatureThresholdRegistration.RegistrationOwner {
+
+    private static final String VECTOR_KERNEL_CLASS_NAME = "org.thermometer.VectorTemperatureCrossingKernel";
+    private static final TemperatureCrossingKernel DEFAULT_CROSSING_KERNEL = loadDefaultCrossingKernel();
+
+    // Readings of different sensors can be evaluated against the same arrays
+    // on different threads so each thread gets a mask of its own
+    private static final ThreadLocal<CrossedMask> CROSSED_MASKS = ThreadLocal.withInitial(CrossedMask::new);
+
+    private final TemperatureCrossingKernel crossingKernel;
+
+    private volatile ArraysSnapshot arraysSnapshot;
+
+    // Guarded by `this`
+    private int registeredCount = 0;
+
+    public TemperatureThresholdArrays() {
+        this(DEFAULT_CROSSING_KERNEL);
+    }
+
+    TemperatureThresholdArrays(TemperatureCrossingKernel crossingKernel) {
+        this.crossingKernel = crossingKernel;
+        this.arraysSnapshot = new ArraysSnapshot(new TemperatureThresholdRegistration[0]);
+    }
+
+    // The class only loads when the incubator module was added to the JVM and
+    // the JVM is new enough to run it
+    private static TemperatureCrossingKernel loadDefaultCrossingKernel() {
+        try {
+            TemperatureCrossingKernel vectorCrossingKernel = (TemperatureCrossingKernel) Class.forName(VECTOR_KERNEL_CLASS_NAME)
+                    .getDeclaredConstructor()
+                    .newInstance();
+
+            // Links the Vector API classes now rather than on the first reading
+            vectorCrossingKernel.computeCrossings(
+                    new float[]{1.0F},
+                    new float[]{0.0F},
+                    new float[]{TemperatureCrossingKernel.ANY_DIRECTION},
+                    1,
+                    2.0F,
+                    0.0F,
+                    new long[1]);
+
+            return vectorCrossingKernel;
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new TemperatureCrossingKernel.ScalarCrossingKernel();
+        }
+    }
+
+    public TemperatureThresholdRegistration addTemperatureThreshold(TemperatureThreshold temperatureThreshold) throws IllegalArgumentException {
+        return addTemperatureThresholds(Collections.singletonList(temperatureThreshold)).get(0);
+    }
+
+    // Publishes a single snapshot for all of the thresholds so bulk
+    // registration only packs the arrays once
+    public synchronized List<TemperatureThresholdRegistration> addTemperatureThresholds(Collection<? extends TemperatureThreshold> temperatureThresholds) throws IllegalArgumentException {
+        List<TemperatureThresholdRegistration> registrations = TemperatureThresholdIndex.newRegistrations(temperatureThresholds, this);
+
+        if (!registrations.isEmpty()) {
+            TemperatureThresholdRegistration[] grownRegistrations = Arrays.copyOf(
+                    arraysSnapshot.registrations, arraysSnapshot.registrations.length + registrations.size());
+
+            for (int addedIndex = 0; addedIndex < registrations.size(); addedIndex++) {
+                grownRegistrations[arraysSnapshot.registrations.length + addedIndex] = registrations.get(addedIndex);
+            }
+
+            arraysSnapshot = new ArraysSnapshot(grownRegistrations);
+            registeredCount += registrations.size();
+        }
+
+        return Collections.unmodifiableList(registrations);
+    }
+
+    public synchronized void clearTemperatureThresholds() {
+        for (TemperatureThresholdRegistration registration : arraysSnapshot.registrations) {
+            registration.markUnregistered();
+        }
+
+        arraysSnapshot = new ArraysSnapshot(new TemperatureThresholdRegistration[0]);
+        registeredCount = 0;
+    }
+
+    @Override
+    public synchronized void onUnregistered(int unregisteredCount) {
+        registeredCount = Math.max(0, registeredCount - unregisteredCount);
+
+        if (TemperatureThresholdIndex.IndexSnapshot.shouldCompact(registeredCount, arraysSnapshot.registrations.length)) {
+            arraysSnapshot = new ArraysSnapshot(Arrays.stream(arraysSnapshot.registrations)
+                    .filter(TemperatureThresholdRegistration::isRegistered)
+                    .toArray(TemperatureThresholdRegistration[]::new));
+            registeredCount = arraysSnapshot.registrations.length;
+        }
+    }
+
+    // Readings that haven't changed the temperature still have to be evented
+    // when this is true
+    public boolean observesEveryReading() {
+        return arraysSnapshot.observesEveryReading;
+    }
+
+    public boolean isVectorized() {
+        return crossingKernel.isVectorized();
+    }
+
+    public synchronized int size() {
+        return registeredCount;
+    }
+
+    public synchronized boolean isEmpty() {
+        return registeredCount == 0;
+    }
+
+    @Override
+    public void onTemperatureRead(float newTemperature, float previousTemperature, TemperatureScales temperatureScaleUsedForReading) {
+        for (ScaleArrays scaleArrays : arraysSnapshot.scaleArrays) {
+            scaleArrays.onTemperatureRead(newTemperature, previousTemperature, temperatureScaleUsedForReading, crossingKernel);
+        }
+    }
+
+    // An immutable set of registered thresholds packed into arrays per scale
+    private static final class ArraysSnapshot {
+
+        // In the order they were registered
+        private final TemperatureThresholdRegistration[] registrations;
+        private final ScaleArrays[] scaleArrays;
+        private final boolean observesEveryReading;
+
+        private ArraysSnapshot(TemperatureThresholdRegistration[] registrations) {
+            this.registrations = registrations;
+
+            EnumMap<TemperatureScales, List<TemperatureThresholdRegistration>> registrationsByScale = new EnumMap<>(TemperatureScales.class);
+            boolean anyObservesEveryReading = false;
+
+            for (TemperatureThresholdRegistration registration : registrations) {
+                TemperatureThreshold temperatureThreshold = (TemperatureThreshold) registration.getTemperatureThreshold();
+
+                anyObservesEveryReading |= temperatureThreshold.observesEveryReading();
+
+                registrationsByScale
+                        .computeIfAbsent(temperatureThreshold.getTemperatureScale(), temperatureScale -> new ArrayList<>())
+                        .add(registration);
+            }
+
+            this.observesEveryReading = anyObservesEveryReading;
+            this.scaleArrays = new ScaleArrays[registrationsByScale.size()];
+
+            int scaleIndex = 0;
+
+            for (List<TemperatureThresholdRegistration> scaleRegistrations : registrationsByScale.values()) {
+                scaleArrays[scaleIndex++] = new ScaleArrays(scaleRegistrations);
+            }
+        }
+    }
+
+    private static final class ScaleArrays {
+
+        private final TemperatureScales temperatureScale;
+
+        // Parallel arrays sorted by threshold value, lane `i` of each belongs to
+        // `registrations[i]`
+        private final TemperatureThresholdRegistration[] registrations;
+        private final float[] thresholdValues;
+        private final float[] thresholdPrecisions;
+        private final float[] thresholdDirections;
+
+        // Debounced thresholds that need readings which don't cross them (see
+        // `TemperatureThreshold.observesEveryReading`) are evented on every
+        // reading instead
+        private final TemperatureThresholdRegistration[] everyReadingRegistrations;
+
+        private ScaleArrays(List<TemperatureThresholdRegistration> scaleRegistrations) {
+            temperatureScale = getTemperatureThreshold(scaleRegistrations.get(0)).getTemperatureScale();
+
+            registrations = scaleRegistrations.stream()
+                    .filter(registration -> !getTemperatureThreshold(registration).observesEveryReading())
+                    .toArray(TemperatureThresholdRegistration[]::new);
+            everyReadingRegistrations = scaleRegistrations.stream()
+                    .filter(registration -> getTemperatureThreshold(registration).observesEveryReading())
+                    .toArray(TemperatureThresholdRegistration[]::new);
+
+            // Sorting is stable so thresholds sharing a value keep the order
+            // they were registered in, the same order the index fires them in
+            Arrays.sort(registrations, Comparator.comparingDouble(registration -> getTemperatureThreshold(registration).getTemperatureThreshold()));
+
+            thresholdValues = new float[registrations.length];
+            thresholdPrecisions = new float[registrations.length];
+            thresholdDirections = new float[registrations.length];
+
+            for (int laneIndex = 0; laneIndex < registrations.length; laneIndex++) {
+                TemperatureThreshold temperatureThreshold = getTemperatureThreshold(registrations[laneIndex]);
+
+                thresholdValues[laneIndex] = temperatureThreshold.getTemperatureThreshold();
+                thresholdPrecisions[laneIndex] = temperatureThreshold.getThresholdTriggerPrecision();
+                thresholdDirections[laneIndex] = TemperatureCrossingKernel.packDirection(temperatureThreshold.getThresholdTriggerDirection());
+            }
+        }
+
+        private static TemperatureThreshold getTemperatureThreshold(TemperatureThresholdRegistration registration) {
+            return (TemperatureThreshold) registration.getTemperatureThreshold();
+        }
+
+        private void onTemperatureRead(
+                float newTemperature,
+                float previousTemperature,
+                TemperatureScales temperatureScaleUsedForReading,
+                TemperatureCrossingKernel crossingKernel) {
+
+            float convertedNewTemperature = TemperatureThreshold.convertTemperature(newTemperature, temperatureScaleUsedForReading, temperatureScale);
+            float convertedPreviousTemperature = TemperatureThreshold.convertTemperature(previousTemperature, temperatureScaleUsedForReading, temperatureScale);
+
+            if (registrations.length > 0) {
+                CrossedMask crossedMask = CROSSED_MASKS.get();
+
+                // A callback evaluating readings against other arrays on the same
+                // thread gets a mask of its own rather than overwriting this one
+                long[] crossedWords = crossedMask.inUse
+                        ? new long[TemperatureCrossingKernel.wordCount(registrations.length)]
+                        : crossedMask.getWords(TemperatureCrossingKernel.wordCount(registrations.length));
+
+                boolean ownsMask = !crossedMask.inUse;
+                crossedMask.inUse = true;
+
+                try {
+                    crossingKernel.computeCrossings(
+                            thresholdValues,
+                            thresholdPrecisions,
+                            thresholdDirections,
+                            registrations.length,
+                            convertedNewTemperature,
+                            convertedPreviousTemperature,
+                            crossedWords);
+
+                    fireCrossedTemperatureThresholds(crossedWords, convertedNewTemperature, convertedPreviousTemperature);
+                } finally {
+                    if (ownsMask) {
+                        crossedMask.inUse = false;
+                    }
+                }
+            }
+
+            for (TemperatureThresholdRegistration everyReadingRegistration : everyReadingRegistrations) {
+                fireTemperatureThreshold(everyReadingRegistration, convertedNewTemperature, convertedPreviousTemperature);
+            }
+        }
+
+        // Increasing temperatures fire from the lowest to the highest threshold
+        // and decreasing temperatures from the highest to the lowest
+        private void fireCrossedTemperatureThresholds(long[] crossedWords, float convertedNewTemperature, float convertedPreviousTemperature) {
+            int wordCount = TemperatureCrossingKernel.wordCount(registrations.length);
+
+            if (convertedPreviousTemperature < convertedNewTemperature) {
+                for (int wordIndex = 0; wordIndex < wordCount; wordIndex++) {
+                    for (long crossedBits = crossedWords[wordIndex]; crossedBits != 0L; crossedBits &= crossedBits - 1) {
+                        int laneIndex = (wordIndex << 6) + Long.numberOfTrailingZeros(crossedBits);
+
+                        fireTemperatureThreshold(registrations[laneIndex], convertedNewTemperature, convertedPreviousTemperature);
+                    }
+                }
+            } else {
+                for (int wordIndex = wordCount - 1; wordIndex >= 0; wordIndex--) {
+                    for (long crossedBits = crossedWords[wordIndex]; crossedBits != 0L; crossedBits &= ~Long.highestOneBit(crossedBits)) {
+                        int laneIndex = (wordIndex << 6) + Long.SIZE - 1 - Long.numberOfLeadingZeros(crossedBits);
+
+                        fireTemperatureThreshold(registrations[laneIndex], convertedNewTemperature, convertedPreviousTemperature);
+                    }
+                }
+            }
+        }
+
+        private static void fireTemperatureThreshold(TemperatureThresholdRegistration registration, float convertedNewTemperature, float convertedPreviousTemperature) {
+            // Unregistering doesn't wait for a new snapshot to be published
+            if (registration.isRegistered()) {
+                getTemperatureThreshold(registration).onConvertedTemperatureRead(convertedNewTemperature, convertedPreviousTemperature);
+            }
+        }
+
+    }
+
+    private static final class CrossedMask {
+
+        private long[] words = new long[0];
+        private boolean inUse = false;
+
+        private long[] getWords(int wordCount) {
+            if (words.length < wordCount) {
+                words = new long[wordCount];
+            }
+
+            return words;
+        }
+    }
+
+}
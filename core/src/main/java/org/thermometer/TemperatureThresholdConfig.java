@@ -0,0 +1,306 @@
+package org.thermometer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+// Thresholds declared in a CSV rather than built by hand, as loaded by
+// `TemperatureThresholdReloader`. Every line declares a single threshold:
+//
+// sensor id,threshold,scale,precision,direction,callback[,hysteresis band,hold sample count,hold time (milliseconds),cooldown (milliseconds)]
+//
+// The scale is one of `TemperatureScales` and the direction one of
+// `ThresholdTriggerDirections` or left empty for either direction. The
+// callback names one of the callbacks the thresholds are built with. Empty
+// precision and debounce fields take the defaults of
+// `TemperatureThreshold.TemperatureThresholdBuilder`.
+//
+// Blank lines and lines starting with '#' are skipped. So is a header naming
+// the columns as above, units aside, when it comes before the first threshold.
+public class TemperatureThresholdConfig {
+
+    private static final int REQUIRED_FIELD_COUNT = 6;
+    private static final int FIELD_COUNT = 10;
+
+    private static final String[] COLUMN_NAMES = {
+            "sensor id",
+            "threshold",
+            "scale",
+            "precision",
+            "direction",
+            "callback",
+            "hysteresis band",
+            "hold sample count",
+            "hold time",
+            "cooldown"
+    };
+
+    private final List<ThresholdDefinition> thresholdDefinitions;
+
+    private TemperatureThresholdConfig(List<ThresholdDefinition> thresholdDefinitions) {
+        this.thresholdDefinitions = Collections.unmodifiableList(thresholdDefinitions);
+    }
+
+    public static TemperatureThresholdConfig parse(Path configPath) throws IOException, IllegalArgumentException {
+        try (BufferedReader configReader = Files.newBufferedReader(configPath, StandardCharsets.UTF_8)) {
+            return parse(configReader);
+        }
+    }
+
+    public static TemperatureThresholdConfig parse(Reader configReader) throws IOException, IllegalArgumentException {
+        BufferedReader bufferedConfigReader = configReader instanceof BufferedReader ? (BufferedReader) configReader : new BufferedReader(configReader);
+        List<ThresholdDefinition> thresholdDefinitions = new ArrayList<>();
+        int lineNumber = 0;
+        boolean headerAllowed = true;
+
+        for (String line = bufferedConfigReader.readLine(); line != null; line = bufferedConfigReader.readLine()) {
+            lineNumber++;
+            line = line.trim();
+
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+
+            // Keep trailing empty fields so every field lines up
+            String[] fields = line.split(",", -1);
+
+            if (fields.length < REQUIRED_FIELD_COUNT || fields.length > FIELD_COUNT) {
+                throw new IllegalArgumentException(String.format(
+                        "Line '%d' must have between '%d' and '%d' fields", lineNumber, REQUIRED_FIELD_COUNT, FIELD_COUNT));
+            }
+
+            for (int fieldIndex = 0; fieldIndex < fields.length; fieldIndex++) {
+                fields[fieldIndex] = fields[fieldIndex].trim();
+            }
+
+            if (headerAllowed && isHeader(fields)) {
+                headerAllowed = false;
+                continue;
+            }
+
+            headerAllowed = false;
+
+            int sensorId;
+
+            try {
+                sensorId = Integer.parseInt(fields[0]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(String.format("Line '%d' doesn't start with a sensor id", lineNumber), e);
+            }
+
+            try {
+                ThresholdDefinition thresholdDefinition = new ThresholdDefinition(
+                        sensorId,
+                        Float.parseFloat(fields[1]),
+                        TemperatureScales.valueOf(fields[2]),
+                        fields[3].isEmpty() ? TemperatureThreshold.DEFAULT_THRESHOLD_TRIGGER_PRECISION : Float.parseFloat(fields[3]),
+                        fields[4].isEmpty() ? null : ThresholdTriggerDirections.valueOf(fields[4]),
+                        fields[5],
+                        optionalField(fields, 6) == null ? TemperatureThreshold.DEFAULT_HYSTERESIS_BAND : Float.parseFloat(fields[6]),
+                        optionalField(fields, 7) == null ? TemperatureThreshold.DEFAULT_HOLD_SAMPLE_COUNT : Integer.parseInt(fields[7]),
+                        optionalField(fields, 8) == null ? TimeUnit.NANOSECONDS.toMillis(TemperatureThreshold.DEFAULT_HOLD_TIME_NANOS) : Long.parseLong(fields[8]),
+                        optionalField(fields, 9) == null ? TimeUnit.NANOSECONDS.toMillis(TemperatureThreshold.DEFAULT_COOLDOWN_NANOS) : Long.parseLong(fields[9]));
+
+                // Fails on debounce settings the builder would reject before
+                // any threshold is built from the config
+                thresholdDefinition.newTemperatureThreshold(newTemperature -> {
+                });
+
+                thresholdDefinitions.add(thresholdDefinition);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(String.format("Line '%d' isn't a valid threshold: %s", lineNumber, e.getMessage()), e);
+            }
+        }
+
+        return new TemperatureThresholdConfig(thresholdDefinitions);
+    }
+
+    // Only a line naming every one of its columns is a header so a threshold
+    // with a mistyped sensor id isn't mistaken for one
+    private static boolean isHeader(String[] fields) {
+        for (int fieldIndex = 0; fieldIndex < fields.length; fieldIndex++) {
+            // Drop a unit such as '(ms)'
+            String columnName = fields[fieldIndex].replaceFirst("\\s*\\(.*\\)$", "");
+
+            if (!columnName.equalsIgnoreCase(COLUMN_NAMES[fieldIndex])) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    private static String optionalField(String[] fields, int fieldIndex) {
+        return fieldIndex < fields.length && !fields[fieldIndex].isEmpty() ? fields[fieldIndex] : null;
+    }
+
+    // In the order they were declared
+    public List<ThresholdDefinition> getThresholdDefinitions() {
+        return thresholdDefinitions;
+    }
+
+    // A single line of the config. Definitions are equal when every field is
+    // so a reload can tell which thresholds didn't change.
+    public static final class ThresholdDefinition {
+
+        private final int sensorId;
+        private final float temperatureThreshold;
+        private final TemperatureScales temperatureScale;
+        private final float thresholdTriggerPrecision;
+        private final ThresholdTriggerDirections thresholdTriggerDirection;
+        private final String callbackName;
+        private final float hysteresisBand;
+        private final int holdSampleCount;
+        private final long holdTimeMillis;
+        private final long cooldownMillis;
+
+        // Only checks what building a threshold doesn't
+        ThresholdDefinition(
+                int sensorId,
+                float temperatureThreshold,
+                TemperatureScales temperatureScale,
+                float thresholdTriggerPrecision,
+                ThresholdTriggerDirections thresholdTriggerDirection,
+                String callbackName,
+                float hysteresisBand,
+                int holdSampleCount,
+                long holdTimeMillis,
+                long cooldownMillis) throws IllegalArgumentException {
+
+            if (sensorId < 0) {
+                throw new IllegalArgumentException("Sensor id can't be negative");
+            }
+
+            if (temperatureScale == null || callbackName == null || callbackName.isEmpty()) {
+                throw new IllegalArgumentException("Temperature scale and callback must be named");
+            }
+
+            this.sensorId = sensorId;
+            this.temperatureThreshold = temperatureThreshold;
+            this.temperatureScale = temperatureScale;
+            this.thresholdTriggerPrecision = thresholdTriggerPrecision;
+            this.thresholdTriggerDirection = thresholdTriggerDirection;
+            this.callbackName = callbackName;
+            this.hysteresisBand = hysteresisBand;
+            this.holdSampleCount = holdSampleCount;
+            this.holdTimeMillis = holdTimeMillis;
+            this.cooldownMillis = cooldownMillis;
+        }
+
+        public TemperatureThreshold newTemperatureThreshold(FloatConsumer thresholdEventCallback) throws IllegalArgumentException {
+            return new TemperatureThreshold.TemperatureThresholdBuilder(temperatureThreshold)
+                    .temperatureScale(temperatureScale)
+                    .thresholdTriggerPrecision(thresholdTriggerPrecision)
+                    .thresholdTriggerDirection(thresholdTriggerDirection)
+                    .thresholdEventCallback(thresholdEventCallback)
+                    .hysteresisBand(hysteresisBand)
+                    .holdSampleCount(holdSampleCount)
+                    .holdTime(holdTimeMillis, TimeUnit.MILLISECONDS)
+                    .cooldown(cooldownMillis, TimeUnit.MILLISECONDS)
+                    .build();
+        }
+
+        public int getSensorId() {
+            return sensorId;
+        }
+
+        public float getTemperatureThreshold() {
+            return temperatureThreshold;
+        }
+
+        public TemperatureScales getTemperatureScale() {
+            return temperatureScale;
+        }
+
+        public float getThresholdTriggerPrecision() {
+            return thresholdTriggerPrecision;
+        }
+
+        public ThresholdTriggerDirections getThresholdTriggerDirection() {
+            return thresholdTriggerDirection;
+        }
+
+        public String getCallbackName() {
+            return callbackName;
+        }
+
+        public float getHysteresisBand() {
+            return hysteresisBand;
+        }
+
+        public int getHoldSampleCount() {
+            return holdSampleCount;
+        }
+
+        public long getHoldTimeMillis() {
+            return holdTimeMillis;
+        }
+
+        public long getCooldownMillis() {
+            return cooldownMillis;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+
+            if (!(other instanceof ThresholdDefinition)) {
+                return false;
+            }
+
+            ThresholdDefinition otherDefinition = (ThresholdDefinition) other;
+
+            return sensorId == otherDefinition.sensorId
+                    && Float.compare(temperatureThreshold, otherDefinition.temperatureThreshold) == 0
+                    && temperatureScale == otherDefinition.temperatureScale
+                    && Float.compare(thresholdTriggerPrecision, otherDefinition.thresholdTriggerPrecision) == 0
+                    && thresholdTriggerDirection == otherDefinition.thresholdTriggerDirection
+                    && callbackName.equals(otherDefinition.callbackName)
+                    && Float.compare(hysteresisBand, otherDefinition.hysteresisBand) == 0
+                    && holdSampleCount == otherDefinition.holdSampleCount
+                    && holdTimeMillis == otherDefinition.holdTimeMillis
+                    && cooldownMillis == otherDefinition.cooldownMillis;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(
+                    sensorId,
+                    temperatureThreshold,
+                    temperatureScale,
+                    thresholdTriggerPrecision,
+                    thresholdTriggerDirection,
+                    callbackName,
+                    hysteresisBand,
+                    holdSampleCount,
+                    holdTimeMillis,
+                    cooldownMillis);
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d,%s,%s,%s,%s,%s,%s,%d,%d,%d",
+                    sensorId,
+                    temperatureThreshold,
+                    temperatureScale,
+                    thresholdTriggerPrecision,
+                    thresholdTriggerDirection == null ? "" : thresholdTriggerDirection,
+                    callbackName,
+                    hysteresisBand,
+                    holdSampleCount,
+                    holdTimeMillis,
+                    cooldownMillis);
+        }
+    }
+
+}
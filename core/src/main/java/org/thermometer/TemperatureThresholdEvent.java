@@ -0,0 +1,80 @@
+package org.thermometer;
+
+// A crossing of a `TemperatureThreshold` as published by a
+// `TemperatureThresholdPublisher`. Temperatures are in the scale of the
+// threshold.
+public final class TemperatureThresholdEvent {
+
+    private final TemperatureThreshold temperatureThreshold;
+    private final float newTemperature;
+    private final float previousTemperature;
+    private final TemperatureScales temperatureScale;
+    private final ThresholdTriggerDirections crossingDirection;
+    private final long timestamp;
+
+    TemperatureThresholdEvent(
+            TemperatureThreshold temperatureThreshold,
+            float newTemperature,
+            float previousTemperature,
+            long timestamp) {
+
+        this.temperatureThreshold = temperatureThreshold;
+        this.newTemperature = newTemperature;
+        this.previousTemperature = previousTemperature;
+        this.temperatureScale = temperatureThreshold.getTemperatureScale();
+        this.crossingDirection = getCrossingDirection(temperatureThreshold.getTemperatureThreshold(), newTemperature, previousTemperature);
+        this.timestamp = timestamp;
+    }
+
+    // Debounced thresholds can fire on a reading after the one that crossed
+    // them so the side of the threshold the temperature ended up on says more
+    // about the crossing than the last move does. Only a temperature that
+    // landed on the threshold falls back to the move.
+    private static ThresholdTriggerDirections getCrossingDirection(float temperatureThreshold, float newTemperature, float previousTemperature) {
+        if (newTemperature > temperatureThreshold) {
+            return ThresholdTriggerDirections.INCREASING_TEMP;
+        }
+
+        if (newTemperature < temperatureThreshold) {
+            return ThresholdTriggerDirections.DECREASING_TEMP;
+        }
+
+        return newTemperature < previousTemperature ? ThresholdTriggerDirections.DECREASING_TEMP : ThresholdTriggerDirections.INCREASING_TEMP;
+    }
+
+    public TemperatureThreshold getTemperatureThreshold() {
+        return temperatureThreshold;
+    }
+
+    public float getNewTemperature() {
+        return newTemperature;
+    }
+
+    public float getPreviousTemperature() {
+        return previousTemperature;
+    }
+
+    public TemperatureScales getTemperatureScale() {
+        return temperatureScale;
+    }
+
+    public ThresholdTriggerDirections getCrossingDirection() {
+        return crossingDirection;
+    }
+
+    // Milliseconds since the epoch of when the crossing was detected
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s crossed %s from %s to %s at %d",
+                temperatureThreshold,
+                crossingDirection,
+                previousTemperature,
+                newTemperature,
+                timestamp);
+    }
+
+}
@@ -0,0 +1,666 @@
+package org.thermometer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Set;
+
+// Keeps `TemperatureThreshold` instances sorted by their threshold value with a
+// bucket per temperature scale. A move from the previous to the new temperature
+// can only cross the thresholds that lie between the two, so a reading costs
+// two binary searches per scale plus the thresholds that are actually crossed
+// rather than a scan of every registered threshold.
+//
+// Registered thresholds are published as immutable snapshots so readings never
+// wait on thresholds being added or removed and see either all or none of a
+// bulk registration.
+public class TemperatureThresholdIndex implements
+        TemperatureThresholdEventListener,
+        TemperatureThresholdRegistration.RegistrationOwner {
+
+    private final TemperatureThresholdIndexListener temperatureThresholdIndexListener;
+
+    // Replaced as a whole whenever thresholds are added or compacted away so
+    // readings evaluate whichever snapshot was current when they started
+    // without ever waiting on a registration
+    private volatile IndexSnapshot indexSnapshot;
+
+    // Guarded by `this`
+    private int registeredCount = 0;
+
+    public TemperatureThresholdIndex() {
+        this(null);
+    }
+
+    // The listener is told how many thresholds each reading evaluated and about
+    // every threshold whose callback was triggered, after the callback returned
+    TemperatureThresholdIndex(TemperatureThresholdIndexListener temperatureThresholdIndexListener) {
+        this.temperatureThresholdIndexListener = temperatureThresholdIndexListener;
+        this.indexSnapshot = IndexSnapshot.empty(temperatureThresholdIndexListener);
+    }
+
+    interface TemperatureThresholdIndexListener {
+
+        default void onTemperatureThresholdsEvaluated(int evaluatedCount) {
+        }
+
+        void onTemperatureThresholdFired(TemperatureThreshold temperatureThreshold, float convertedNewTemperature, float convertedPreviousTemperature);
+    }
+
+    public TemperatureThresholdRegistration addTemperatureThreshold(TemperatureThreshold temperatureThreshold) throws IllegalArgumentException {
+        return addTemperatureThresholds(Collections.singletonList(temperatureThreshold)).get(0);
+    }
+
+    // Publishes a single snapshot for all of the thresholds so bulk
+    // registration only pays for a single sort
+    public synchronized List<TemperatureThresholdRegistration> addTemperatureThresholds(Collection<? extends TemperatureThreshold> temperatureThresholds) throws IllegalArgumentException {
+        List<TemperatureThresholdRegistration> registrations = newRegistrations(temperatureThresholds, this);
+
+        indexSnapshot = indexSnapshot.withAdded(registrations);
+        registeredCount += registrations.size();
+
+        return Collections.unmodifiableList(registrations);
+    }
+
+    public synchronized void clearTemperatureThresholds() {
+        indexSnapshot.markUnregistered();
+        indexSnapshot = IndexSnapshot.empty(temperatureThresholdIndexListener);
+        registeredCount = 0;
+    }
+
+    @Override
+    public synchronized void onUnregistered(int unregisteredCount) {
+        registeredCount = Math.max(0, registeredCount - unregisteredCount);
+
+        if (IndexSnapshot.shouldCompact(registeredCount, indexSnapshot.size())) {
+            indexSnapshot = indexSnapshot.withoutUnregistered();
+            registeredCount = indexSnapshot.size();
+        }
+    }
+
+    // Readings that haven't changed the temperature still have to be evented
+    // when this is true
+    public boolean observesEveryReading() {
+        return indexSnapshot.observesEveryReading();
+    }
+
+    public synchronized int size() {
+        return registeredCount;
+    }
+
+    public synchronized boolean isEmpty() {
+        return registeredCount == 0;
+    }
+
+    @Override
+    public void onTemperatureRead(float newTemperature, float previousTemperature, TemperatureScales temperatureScaleUsedForReading) {
+        indexSnapshot.onTemperatureRead(newTemperature, previousTemperature, temperatureScaleUsedForReading);
+    }
+
+    // Evaluates every pair of consecutive readings in order. Each reading is
+    // converted once per scale up front rather than twice per pair as it would
+    // be when evented one pair at a time.
+    public void onTemperatureReads(float[] temperatures, int offset, int length, TemperatureScales temperatureScaleUsedForReading) {
+        indexSnapshot.onTemperatureReads(temperatures, offset, length, temperatureScaleUsedForReading);
+    }
+
+    static List<TemperatureThresholdRegistration> newRegistrations(
+            Collection<? extends TemperatureThreshold> temperatureThresholds,
+            TemperatureThresholdRegistration.RegistrationOwner registrationOwner) throws IllegalArgumentException {
+
+        if (temperatureThresholds == null) {
+            throw new IllegalArgumentException("Temperature thresholds can't be 'null'");
+        }
+
+        List<TemperatureThresholdRegistration> registrations = new ArrayList<>(temperatureThresholds.size());
+
+        for (TemperatureThreshold temperatureThreshold : temperatureThresholds) {
+            if (temperatureThreshold == null) {
+                throw new IllegalArgumentException("Temperature threshold can't be 'null'");
+            }
+
+            // Only registries keep the windows that aggregates are taken over
+            if (temperatureThreshold.getTemperatureAggregate() != null) {
+                throw new IllegalArgumentException("Thresholds on an aggregate can only be added to a thermometer or thermometer registry");
+            }
+
+            registrations.add(new TemperatureThresholdRegistration(temperatureThreshold, registrationOwner));
+        }
+
+        return registrations;
+    }
+
+    // An immutable set of registered thresholds sorted into scale buckets. Kept
+    // package-private so a registry can compose the snapshots of a sensor into a
+    // single snapshot of its own.
+    static final class IndexSnapshot {
+
+        private static final TemperatureThresholdRegistration[] NO_REGISTRATIONS = new TemperatureThresholdRegistration[0];
+        private static final ScaleBucket[] NO_BUCKETS = new ScaleBucket[0];
+
+        private final TemperatureThresholdIndexListener temperatureThresholdIndexListener;
+
+        // In the order they were registered. Registrations that were
+        // unregistered since the snapshot was built are skipped when readings
+        // are evaluated and dropped the next time it is rebuilt.
+        private final TemperatureThresholdRegistration[] registrations;
+        private final ScaleBucket[] scaleBuckets;
+
+        // Whether a threshold needs readings that don't cross it (see
+        // `TemperatureThreshold.observesEveryReading`)
+        private final boolean observesEveryReading;
+
+        // Thresholds found by searching between temperatures, numbered across
+        // the buckets one bucket after the other
+        private final int searchedCount;
+
+        private IndexSnapshot(TemperatureThresholdRegistration[] registrations, TemperatureThresholdIndexListener temperatureThresholdIndexListener) {
+            this.temperatureThresholdIndexListener = temperatureThresholdIndexListener;
+            this.registrations = registrations;
+
+            EnumMap<TemperatureScales, List<TemperatureThresholdRegistration>> registrationsByScale = new EnumMap<>(TemperatureScales.class);
+            boolean anyObservesEveryReading = false;
+
+            for (TemperatureThresholdRegistration registration : registrations) {
+                TemperatureThreshold temperatureThreshold = (TemperatureThreshold) registration.getTemperatureThreshold();
+
+                anyObservesEveryReading |= temperatureThreshold.observesEveryReading();
+
+                // A threshold of NaN can never be reached so there is no reason to
+                // index it and it would break the ordering the binary search needs
+                if (Float.isNaN(temperatureThreshold.getTemperatureThreshold())) {
+                    continue;
+                }
+
+                registrationsByScale
+                        .computeIfAbsent(temperatureThreshold.getTemperatureScale(), temperatureScale -> new ArrayList<>())
+                        .add(registration);
+            }
+
+            this.observesEveryReading = anyObservesEveryReading;
+            this.scaleBuckets = new ScaleBucket[registrationsByScale.size()];
+
+            int bucketIndex = 0;
+            int searchedOffset = 0;
+
+            for (List<TemperatureThresholdRegistration> scaleRegistrations : registrationsByScale.values()) {
+                ScaleBucket scaleBucket = new ScaleBucket(scaleRegistrations, searchedOffset, temperatureThresholdIndexListener);
+
+                scaleBuckets[bucketIndex++] = scaleBucket;
+                searchedOffset += scaleBucket.registrations.length;
+            }
+
+            this.searchedCount = searchedOffset;
+        }
+
+        static IndexSnapshot empty(TemperatureThresholdIndexListener temperatureThresholdIndexListener) {
+            return new IndexSnapshot(NO_REGISTRATIONS, temperatureThresholdIndexListener);
+        }
+
+        // Snapshots are compacted once at most half of what they hold is still
+        // registered which keeps the cost of unregistering amortized O(1)
+        static boolean shouldCompact(int registeredCount, int snapshotSize) {
+            return snapshotSize > 0 && registeredCount * 2 <= snapshotSize;
+        }
+
+        IndexSnapshot withAdded(List<TemperatureThresholdRegistration> addedRegistrations) {
+            if (addedRegistrations.isEmpty()) {
+                return this;
+            }
+
+            TemperatureThresholdRegistration[] grownRegistrations = Arrays.copyOf(registrations, registrations.length + addedRegistrations.size());
+
+            for (int addedIndex = 0; addedIndex < addedRegistrations.size(); addedIndex++) {
+                grownRegistrations[registrations.length + addedIndex] = addedRegistrations.get(addedIndex);
+            }
+
+            return new IndexSnapshot(grownRegistrations, temperatureThresholdIndexListener);
+        }
+
+        IndexSnapshot withoutUnregistered() {
+            return withoutUnregistered(Collections.emptySet());
+        }
+
+        // Also leaves out registrations that are about to be unregistered so a
+        // replacement can be published before they are
+        IndexSnapshot withoutUnregistered(Set<TemperatureThresholdRegistration> removedRegistrations) {
+            TemperatureThresholdRegistration[] registeredRegistrations = Arrays.stream(registrations)
+                    .filter(registration -> registration.isRegistered() && !removedRegistrations.contains(registration))
+                    .toArray(TemperatureThresholdRegistration[]::new);
+
+            return registeredRegistrations.length == registrations.length
+                    ? this
+                    : new IndexSnapshot(registeredRegistrations, temperatureThresholdIndexListener);
+        }
+
+        // An empty snapshot sharing the listener of this one
+        IndexSnapshot cleared() {
+            return empty(temperatureThresholdIndexListener);
+        }
+
+        void markUnregistered() {
+            for (TemperatureThresholdRegistration registration : registrations) {
+                registration.markUnregistered();
+            }
+        }
+
+        // Includes registrations unregistered since the snapshot was built
+        int size() {
+            return registrations.length;
+        }
+
+        boolean isEmpty() {
+            return registrations.length == 0;
+        }
+
+        boolean observesEveryReading() {
+            return observesEveryReading;
+        }
+
+        void onTemperatureRead(float newTemperature, float previousTemperature, TemperatureScales temperatureScaleUsedForReading) {
+            for (ScaleBucket scaleBucket : scaleBuckets) {
+                scaleBucket.onTemperatureRead(newTemperature, previousTemperature, temperatureScaleUsedForReading);
+            }
+        }
+
+        // Only evaluates the thresholds that observe every reading, the others
+        // are left to the `ConflatedCrossings` of the readings
+        void onEveryTemperatureRead(float newTemperature, float previousTemperature, TemperatureScales temperatureScaleUsedForReading) {
+            for (ScaleBucket scaleBucket : scaleBuckets) {
+                scaleBucket.onEveryTemperatureRead(newTemperature, previousTemperature, temperatureScaleUsedForReading);
+            }
+        }
+
+        void onTemperatureReads(float[] temperatures, int offset, int length, TemperatureScales temperatureScaleUsedForReading) {
+            if (length < 2 || scaleBuckets.length == 0) {
+                return;
+            }
+
+            float[][] convertedTemperatures = new float[scaleBuckets.length][];
+
+            for (int bucketIndex = 0; bucketIndex < scaleBuckets.length; bucketIndex++) {
+                convertedTemperatures[bucketIndex] = scaleBuckets[bucketIndex].convertTemperatures(
+                        temperatures, offset, length, temperatureScaleUsedForReading);
+            }
+
+            boolean skipUnchangedReadings = !observesEveryReading;
+
+            for (int temperatureIndex = 1; temperatureIndex < length; temperatureIndex++) {
+                // Unchanged readings are skipped the same way they are when evented
+                // one at a time
+                if (skipUnchangedReadings
+                        && Float.compare(temperatures[offset + temperatureIndex - 1], temperatures[offset + temperatureIndex]) == 0) {
+                    continue;
+                }
+
+                for (int bucketIndex = 0; bucketIndex < scaleBuckets.length; bucketIndex++) {
+                    scaleBuckets[bucketIndex].onConvertedTemperatureRead(
+                            convertedTemperatures[bucketIndex][temperatureIndex],
+                            convertedTemperatures[bucketIndex][temperatureIndex - 1]);
+                }
+            }
+        }
+    }
+
+    // The crossings of the conflated readings of a sensor. They are found
+    // with the search of an `IndexSnapshot` as the readings are merged and
+    // fired once the summary of the readings is evaluated. Only the first and
+    // the last crossing of a threshold in either direction are kept, so a
+    // summary fires at most four crossings per threshold no matter how many
+    // readings it merged.
+    static final class ConflatedCrossings {
+
+        // The first crossing in a direction is kept at the slot of the
+        // direction and the last one at the slot after it
+        private static final int RISE = 0;
+        private static final int FALL = 2;
+        private static final int CROSSING_SLOTS = 4;
+
+        private static final int[] NO_INDEXES = new int[0];
+        private static final float[] NO_TEMPERATURES = new float[0];
+        private static final long[] NO_CROSSINGS = new long[0];
+
+        private IndexSnapshot indexSnapshot;
+
+        // The reading that crossed a threshold, '0' when there was none, and
+        // the converted temperatures it crossed with for every slot of every
+        // searched threshold of the snapshot
+        private int[] readingIndexes = NO_INDEXES;
+        private float[] newTemperatures = NO_TEMPERATURES;
+        private float[] previousTemperatures = NO_TEMPERATURES;
+
+        // Only the thresholds that were crossed have to be cleared
+        private int[] crossedThresholds = NO_INDEXES;
+        private int crossedCount = 0;
+
+        // Sorted by the reading that crossed, then by the order the search
+        // fires the thresholds of a reading in
+        private long[] firingOrder = NO_CROSSINGS;
+        private int firingCount = 0;
+        private int firedCount = 0;
+
+        // Readings are then numbered from '1' in the order they are merged
+        void start(IndexSnapshot indexSnapshot) {
+            for (int crossedIndex = 0; crossedIndex < crossedCount; crossedIndex++) {
+                int fromSlot = crossedThresholds[crossedIndex] * CROSSING_SLOTS;
+
+                Arrays.fill(readingIndexes, fromSlot, fromSlot + CROSSING_SLOTS, 0);
+            }
+
+            this.indexSnapshot = indexSnapshot;
+            crossedCount = 0;
+            firingCount = 0;
+            firedCount = 0;
+
+            if (crossedThresholds.length < indexSnapshot.searchedCount) {
+                int slotCount = indexSnapshot.searchedCount * CROSSING_SLOTS;
+
+                readingIndexes = new int[slotCount];
+                newTemperatures = new float[slotCount];
+                previousTemperatures = new float[slotCount];
+                crossedThresholds = new int[indexSnapshot.searchedCount];
+                firingOrder = new long[slotCount];
+            }
+        }
+
+        void onTemperatureRead(int readingIndex, float newTemperature, float previousTemperature, TemperatureScales temperatureScaleUsedForReading) {
+            for (ScaleBucket scaleBucket : indexSnapshot.scaleBuckets) {
+                scaleBucket.conflateTemperatureRead(this, readingIndex, newTemperature, previousTemperature, temperatureScaleUsedForReading);
+            }
+        }
+
+        private void record(int searchedIndex, boolean rising, int readingIndex, float convertedNewTemperature, float convertedPreviousTemperature) {
+            int thresholdSlot = searchedIndex * CROSSING_SLOTS;
+            int firstSlot = thresholdSlot + (rising ? RISE : FALL);
+            int slot = readingIndexes[firstSlot] == 0 ? firstSlot : firstSlot + 1;
+
+            if (readingIndexes[thresholdSlot + RISE] == 0 && readingIndexes[thresholdSlot + FALL] == 0) {
+                crossedThresholds[crossedCount++] = searchedIndex;
+            }
+
+            readingIndexes[slot] = readingIndex;
+            newTemperatures[slot] = convertedNewTemperature;
+            previousTemperatures[slot] = convertedPreviousTemperature;
+        }
+
+        // Must be invoked once every reading was merged and before any
+        // crossing is fired
+        void sortCrossings() {
+            firingCount = 0;
+            firedCount = 0;
+
+            for (int crossedIndex = 0; crossedIndex < crossedCount; crossedIndex++) {
+                int searchedIndex = crossedThresholds[crossedIndex];
+                ScaleBucket scaleBucket = getScaleBucket(searchedIndex);
+                int thresholdIndex = searchedIndex - scaleBucket.searchedOffset;
+
+                for (int slotIndex = 0; slotIndex < CROSSING_SLOTS; slotIndex++) {
+                    int readingIndex = readingIndexes[searchedIndex * CROSSING_SLOTS + slotIndex];
+
+                    if (readingIndex == 0) {
+                        continue;
+                    }
+
+                    // Rising readings fire thresholds from the lowest to the
+                    // highest and falling ones the other way around
+                    int searchOrder = scaleBucket.searchedOffset + (slotIndex < FALL
+                            ? thresholdIndex
+                            : scaleBucket.registrations.length - 1 - thresholdIndex);
+
+                    firingOrder[firingCount++] = (long) readingIndex << 32 | (long) searchOrder << 2 | slotIndex;
+                }
+            }
+
+            Arrays.sort(firingOrder, 0, firingCount);
+
+            if (firingCount > 0 && indexSnapshot.temperatureThresholdIndexListener != null) {
+                indexSnapshot.temperatureThresholdIndexListener.onTemperatureThresholdsEvaluated(firingCount);
+            }
+        }
+
+        // Fires the crossings made by the readings up to and including the
+        // given one that haven't been fired yet
+        void fireThrough(int readingIndex) {
+            while (firedCount < firingCount && (int) (firingOrder[firedCount] >>> 32) <= readingIndex) {
+                int crossing = (int) firingOrder[firedCount++];
+                int slotIndex = crossing & (CROSSING_SLOTS - 1);
+                int searchOrder = crossing >>> 2;
+                ScaleBucket scaleBucket = getScaleBucket(searchOrder);
+                int orderIndex = searchOrder - scaleBucket.searchedOffset;
+                int thresholdIndex = slotIndex < FALL ? orderIndex : scaleBucket.registrations.length - 1 - orderIndex;
+                int slot = (scaleBucket.searchedOffset + thresholdIndex) * CROSSING_SLOTS + slotIndex;
+
+                scaleBucket.fireTemperatureThreshold(scaleBucket.registrations[thresholdIndex], newTemperatures[slot], previousTemperatures[slot]);
+            }
+        }
+
+        // There is a bucket per scale so only ever a handful of them
+        private ScaleBucket getScaleBucket(int searchedIndex) {
+            for (ScaleBucket scaleBucket : indexSnapshot.scaleBuckets) {
+                if (searchedIndex < scaleBucket.searchedOffset + scaleBucket.registrations.length) {
+                    return scaleBucket;
+                }
+            }
+
+            throw new IllegalStateException(String.format("Threshold '%d' isn't searched by the snapshot", searchedIndex));
+        }
+    }
+
+    private static class ScaleBucket {
+
+        private final TemperatureScales temperatureScale;
+        private final float[] thresholdValues;
+        private final TemperatureThresholdRegistration[] registrations;
+        private final TemperatureThresholdRegistration[] everyReadingRegistrations;
+        private final TemperatureThresholdIndexListener temperatureThresholdIndexListener;
+
+        // Where the searched thresholds of the bucket start in the numbering
+        // of the snapshot
+        private final int searchedOffset;
+
+        private ScaleBucket(
+                List<TemperatureThresholdRegistration> scaleRegistrations,
+                int searchedOffset,
+                TemperatureThresholdIndexListener temperatureThresholdIndexListener) {
+
+            this.searchedOffset = searchedOffset;
+            this.temperatureThresholdIndexListener = temperatureThresholdIndexListener;
+
+            temperatureScale = getTemperatureThreshold(scaleRegistrations.get(0)).getTemperatureScale();
+
+            // Debounced thresholds that re-arm or hold on readings that don't
+            // cross them can't be found by searching between the previous and
+            // new temperatures so they are evented on every reading instead
+            registrations = scaleRegistrations.stream()
+                    .filter(registration -> !getTemperatureThreshold(registration).observesEveryReading())
+                    .toArray(TemperatureThresholdRegistration[]::new);
+            everyReadingRegistrations = scaleRegistrations.stream()
+                    .filter(registration -> getTemperatureThreshold(registration).observesEveryReading())
+                    .toArray(TemperatureThresholdRegistration[]::new);
+
+            // Sorting is stable so thresholds sharing a value keep the order
+            // they were registered in
+            Arrays.sort(registrations, Comparator.comparingDouble(registration -> getTemperatureThreshold(registration).getTemperatureThreshold()));
+
+            thresholdValues = new float[registrations.length];
+
+            for (int thresholdIndex = 0; thresholdIndex < registrations.length; thresholdIndex++) {
+                thresholdValues[thresholdIndex] = getTemperatureThreshold(registrations[thresholdIndex]).getTemperatureThreshold();
+            }
+        }
+
+        private static TemperatureThreshold getTemperatureThreshold(TemperatureThresholdRegistration registration) {
+            return (TemperatureThreshold) registration.getTemperatureThreshold();
+        }
+
+        private void onTemperatureRead(float newTemperature, float previousTemperature, TemperatureScales temperatureScaleUsedForReading) {
+            // The reading is converted once for every threshold in the bucket
+            // rather than once per threshold
+            onConvertedTemperatureRead(
+                    TemperatureThreshold.convertTemperature(newTemperature, temperatureScaleUsedForReading, temperatureScale),
+                    TemperatureThreshold.convertTemperature(previousTemperature, temperatureScaleUsedForReading, temperatureScale));
+        }
+
+        private void onEveryTemperatureRead(float newTemperature, float previousTemperature, TemperatureScales temperatureScaleUsedForReading) {
+            if (everyReadingRegistrations.length == 0) {
+                return;
+            }
+
+            float convertedNewTemperature = TemperatureThreshold.convertTemperature(newTemperature, temperatureScaleUsedForReading, temperatureScale);
+            float convertedPreviousTemperature = TemperatureThreshold.convertTemperature(previousTemperature, temperatureScaleUsedForReading, temperatureScale);
+
+            for (TemperatureThresholdRegistration everyReadingRegistration : everyReadingRegistrations) {
+                fireTemperatureThreshold(everyReadingRegistration, convertedNewTemperature, convertedPreviousTemperature);
+            }
+
+            if (temperatureThresholdIndexListener != null) {
+                temperatureThresholdIndexListener.onTemperatureThresholdsEvaluated(everyReadingRegistrations.length);
+            }
+        }
+
+        // The same search a reading is evaluated with, except that the
+        // crossings which would trigger their threshold are recorded to be
+        // fired later on rather than fired
+        private void conflateTemperatureRead(
+                ConflatedCrossings conflatedCrossings,
+                int readingIndex,
+                float newTemperature,
+                float previousTemperature,
+                TemperatureScales temperatureScaleUsedForReading) {
+
+            float convertedNewTemperature = TemperatureThreshold.convertTemperature(newTemperature, temperatureScaleUsedForReading, temperatureScale);
+            float convertedPreviousTemperature = TemperatureThreshold.convertTemperature(previousTemperature, temperatureScaleUsedForReading, temperatureScale);
+
+            if (convertedPreviousTemperature < convertedNewTemperature) {
+                int toIndex = firstIndexAbove(convertedNewTemperature);
+
+                for (int thresholdIndex = firstIndexAbove(convertedPreviousTemperature); thresholdIndex < toIndex; thresholdIndex++) {
+                    if (isTriggeredBy(registrations[thresholdIndex], convertedNewTemperature, convertedPreviousTemperature)) {
+                        conflatedCrossings.record(searchedOffset + thresholdIndex, true, readingIndex, convertedNewTemperature, convertedPreviousTemperature);
+                    }
+                }
+            } else if (convertedPreviousTemperature > convertedNewTemperature) {
+                int toIndex = firstIndexAtOrAbove(convertedPreviousTemperature);
+
+                for (int thresholdIndex = firstIndexAtOrAbove(convertedNewTemperature); thresholdIndex < toIndex; thresholdIndex++) {
+                    if (isTriggeredBy(registrations[thresholdIndex], convertedNewTemperature, convertedPreviousTemperature)) {
+                        conflatedCrossings.record(searchedOffset + thresholdIndex, false, readingIndex, convertedNewTemperature, convertedPreviousTemperature);
+                    }
+                }
+            }
+        }
+
+        // Precision and direction only depend on the crossing itself, whereas
+        // a cooldown is left to when the crossing is fired
+        private static boolean isTriggeredBy(TemperatureThresholdRegistration registration, float convertedNewTemperature, float convertedPreviousTemperature) {
+            TemperatureThreshold temperatureThreshold = getTemperatureThreshold(registration);
+
+            return temperatureThreshold.isTempDifferencePrecise(convertedNewTemperature, convertedPreviousTemperature)
+                    && temperatureThreshold.isTempMovementCorrectDirection(convertedNewTemperature, convertedPreviousTemperature);
+        }
+
+        private float[] convertTemperatures(float[] temperatures, int offset, int length, TemperatureScales temperatureScaleUsedForReading) {
+            float[] convertedTemperatures = new float[length];
+
+            for (int temperatureIndex = 0; temperatureIndex < length; temperatureIndex++) {
+                convertedTemperatures[temperatureIndex] = TemperatureThreshold.convertTemperature(
+                        temperatures[offset + temperatureIndex], temperatureScaleUsedForReading, temperatureScale);
+            }
+
+            return convertedTemperatures;
+        }
+
+        private void onConvertedTemperatureRead(float convertedNewTemperature, float convertedPreviousTemperature) {
+            int evaluatedCount = everyReadingRegistrations.length;
+
+            if (convertedPreviousTemperature < convertedNewTemperature) {
+                // Increasing temperatures reach thresholds in (previous, new] so
+                // fire them from the lowest to the highest
+                int fromIndex = firstIndexAbove(convertedPreviousTemperature);
+                int toIndex = firstIndexAbove(convertedNewTemperature);
+                evaluatedCount += toIndex - fromIndex;
+
+                for (int thresholdIndex = fromIndex; thresholdIndex < toIndex; thresholdIndex++) {
+                    fireTemperatureThreshold(registrations[thresholdIndex], convertedNewTemperature, convertedPreviousTemperature);
+                }
+            } else if (convertedPreviousTemperature > convertedNewTemperature) {
+                // Decreasing temperatures reach thresholds in [new, previous) so
+                // fire them from the highest to the lowest
+                int fromIndex = firstIndexAtOrAbove(convertedNewTemperature);
+                int toIndex = firstIndexAtOrAbove(convertedPreviousTemperature);
+                evaluatedCount += toIndex - fromIndex;
+
+                for (int thresholdIndex = toIndex - 1; thresholdIndex >= fromIndex; thresholdIndex--) {
+                    fireTemperatureThreshold(registrations[thresholdIndex], convertedNewTemperature, convertedPreviousTemperature);
+                }
+            }
+
+            for (TemperatureThresholdRegistration everyReadingRegistration : everyReadingRegistrations) {
+                fireTemperatureThreshold(everyReadingRegistration, convertedNewTemperature, convertedPreviousTemperature);
+            }
+
+            if (temperatureThresholdIndexListener != null && evaluatedCount > 0) {
+                temperatureThresholdIndexListener.onTemperatureThresholdsEvaluated(evaluatedCount);
+            }
+        }
+
+        private void fireTemperatureThreshold(TemperatureThresholdRegistration registration, float convertedNewTemperature, float convertedPreviousTemperature) {
+            // Unregistering doesn't wait for a new snapshot to be published
+            if (!registration.isRegistered()) {
+                return;
+            }
+
+            TemperatureThreshold temperatureThreshold = getTemperatureThreshold(registration);
+            TemperatureCallbackIsolation.IsolatedListener isolatedListener = registration.getIsolatedListener();
+
+            // Isolated callbacks are handed off to the lane of their listener
+            // once the crossing has been detected here
+            boolean fired = isolatedListener == null
+                    ? temperatureThreshold.onConvertedTemperatureRead(convertedNewTemperature, convertedPreviousTemperature)
+                    : isolatedListener.onConvertedTemperatureRead(convertedNewTemperature, convertedPreviousTemperature);
+
+            if (fired && temperatureThresholdIndexListener != null) {
+                temperatureThresholdIndexListener.onTemperatureThresholdFired(temperatureThreshold, convertedNewTemperature, convertedPreviousTemperature);
+            }
+        }
+
+        private int firstIndexAbove(float temperature) {
+            int low = 0;
+            int high = thresholdValues.length;
+
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+
+                if (thresholdValues[middle] <= temperature) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+
+            return low;
+        }
+
+        private int firstIndexAtOrAbove(float temperature) {
+            int low = 0;
+            int high = thresholdValues.length;
+
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+
+                if (thresholdValues[middle] < temperature) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+
+            return low;
+        }
+    }
+
+}
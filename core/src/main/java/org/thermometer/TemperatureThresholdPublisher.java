@@ -0,0 +1,421 @@
+package org.thermometer;
+
+import java.util.Arrays;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Publishes the crossings of thresholds as a `Flow.Publisher` so they can be
+// consumed by reactive pipelines with demand driven backpressure. Obtained
+// from `TemperatureThreshold.getThresholdEventPublisher` for the crossings of a
+// single threshold or `Thermometer.getThresholdEventPublisher` for every
+// threshold of a sensor.
+//
+// Each subscriber gets a bounded buffer of its own. Events are only delivered
+// while the subscriber has outstanding demand, the rest wait in its buffer
+// and once that is full its overflow policy decides what happens to the next
+// event, so a slow subscriber never holds up the others and never grows an
+// unbounded queue.
+//
+// Events are delivered on a lane of the subscriber's delivery dispatcher. The
+// default dispatcher delivers on the thread that detected the crossing (or
+// that requested more events) so subscribers doing real work should either
+// be given a pooled dispatcher or hand the events off themselves.
+public class TemperatureThresholdPublisher implements Flow.Publisher<TemperatureThresholdEvent> {
+
+    public static final int DEFAULT_BUFFER_CAPACITY = 256;
+    public static final BackpressurePolicies DEFAULT_OVERFLOW_POLICY = BackpressurePolicies.DROP_OLDEST;
+
+    private static final ThresholdSubscription[] NO_SUBSCRIPTIONS = new ThresholdSubscription[0];
+    private static final SubscriptionOptions DEFAULT_SUBSCRIPTION_OPTIONS = new SubscriptionOptionsBuilder().build();
+
+    // Replaced as a whole under the lock of `this` so publishing never waits on
+    // a subscriber coming or going
+    private volatile ThresholdSubscription[] subscriptions = NO_SUBSCRIPTIONS;
+
+    // Guarded by `this`
+    private boolean closed = false;
+
+    // Events dropped by the overflow policies of every subscriber
+    private final LongAdder droppedEventCount = new LongAdder();
+
+    TemperatureThresholdPublisher() {
+    }
+
+    public static class SubscriptionOptions {
+
+        private final int bufferCapacity;
+        private final BackpressurePolicies overflowPolicy;
+        private final TemperatureDispatcher deliveryDispatcher;
+
+        private SubscriptionOptions(int bufferCapacity, BackpressurePolicies overflowPolicy, TemperatureDispatcher deliveryDispatcher) {
+            this.bufferCapacity = bufferCapacity;
+            this.overflowPolicy = overflowPolicy;
+            this.deliveryDispatcher = deliveryDispatcher;
+        }
+
+        public int getBufferCapacity() {
+            return bufferCapacity;
+        }
+
+        public BackpressurePolicies getOverflowPolicy() {
+            return overflowPolicy;
+        }
+
+        public TemperatureDispatcher getDeliveryDispatcher() {
+            return deliveryDispatcher;
+        }
+    }
+
+    public static class SubscriptionOptionsBuilder {
+
+        private int bufferCapacity = DEFAULT_BUFFER_CAPACITY;
+        private BackpressurePolicies overflowPolicy = DEFAULT_OVERFLOW_POLICY;
+        private TemperatureDispatcher deliveryDispatcher = null;
+
+        public SubscriptionOptionsBuilder() {
+        }
+
+        public SubscriptionOptions build() {
+            return new SubscriptionOptions(
+                    this.bufferCapacity,
+                    this.overflowPolicy,
+                    this.deliveryDispatcher == null ? TemperatureDispatcher.getDefaultDispatcher() : this.deliveryDispatcher);
+        }
+
+        public SubscriptionOptionsBuilder bufferCapacity(int bufferCapacity) throws IllegalArgumentException {
+            if (bufferCapacity < 1) {
+                throw new IllegalArgumentException("Buffer capacity must be at least '1'");
+            }
+
+            this.bufferCapacity = bufferCapacity;
+            return this;
+        }
+
+        // Drops the oldest or newest event when the buffer is full. Blocking
+        // holds up the thread that detected the crossing until the subscriber
+        // requests more, which never happens when that thread is also the one
+        // events are delivered on and the subscriber only requests from them.
+        public SubscriptionOptionsBuilder overflowPolicy(BackpressurePolicies overflowPolicy) throws IllegalArgumentException {
+            if (overflowPolicy == null) {
+                throw new IllegalArgumentException("Overflow policy can't be set to 'null'");
+            }
+
+            if (overflowPolicy == BackpressurePolicies.CALLER_RUNS) {
+                throw new IllegalArgumentException("Events can only be delivered when they are requested so they can't run on the caller");
+            }
+
+            this.overflowPolicy = overflowPolicy;
+            return this;
+        }
+
+        public SubscriptionOptionsBuilder deliveryDispatcher(TemperatureDispatcher deliveryDispatcher) throws IllegalArgumentException {
+            if (deliveryDispatcher == null) {
+                throw new IllegalArgumentException("Delivery dispatcher can't be set to 'null'");
+            }
+
+            this.deliveryDispatcher = deliveryDispatcher;
+            return this;
+        }
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super TemperatureThresholdEvent> subscriber) {
+        subscribe(subscriber, DEFAULT_SUBSCRIPTION_OPTIONS);
+    }
+
+    // Subscribers that subscribe after the publisher was closed are completed
+    // straight away
+    public void subscribe(Flow.Subscriber<? super TemperatureThresholdEvent> subscriber, SubscriptionOptions subscriptionOptions) {
+        if (subscriber == null) {
+            throw new NullPointerException("Subscriber can't be 'null'");
+        }
+
+        if (subscriptionOptions == null) {
+            throw new IllegalArgumentException("Subscription options can't be 'null'");
+        }
+
+        ThresholdSubscription subscription = new ThresholdSubscription(subscriber, subscriptionOptions);
+
+        synchronized (this) {
+            if (closed) {
+                subscription.complete();
+            } else {
+                ThresholdSubscription[] grownSubscriptions = Arrays.copyOf(subscriptions, subscriptions.length + 1);
+                grownSubscriptions[subscriptions.length] = subscription;
+                subscriptions = grownSubscriptions;
+            }
+        }
+
+        subscription.signal();
+    }
+
+    public boolean hasSubscribers() {
+        return subscriptions.length > 0;
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.length;
+    }
+
+    // Completes every subscriber once it has been delivered the events already
+    // in its buffer
+    public void close() {
+        ThresholdSubscription[] closedSubscriptions;
+
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+
+            closed = true;
+            closedSubscriptions = subscriptions;
+            subscriptions = NO_SUBSCRIPTIONS;
+        }
+
+        for (ThresholdSubscription subscription : closedSubscriptions) {
+            subscription.complete();
+            subscription.signal();
+        }
+    }
+
+    public long getDroppedEventCount() {
+        return droppedEventCount.sum();
+    }
+
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    void publish(TemperatureThresholdEvent temperatureThresholdEvent) {
+        for (ThresholdSubscription subscription : subscriptions) {
+            subscription.offer(temperatureThresholdEvent);
+        }
+    }
+
+    private synchronized void removeSubscription(ThresholdSubscription subscription) {
+        ThresholdSubscription[] currentSubscriptions = subscriptions;
+
+        for (int subscriptionIndex = 0; subscriptionIndex < currentSubscriptions.length; subscriptionIndex++) {
+            if (currentSubscriptions[subscriptionIndex] == subscription) {
+                ThresholdSubscription[] shrunkSubscriptions = new ThresholdSubscription[currentSubscriptions.length - 1];
+
+                System.arraycopy(currentSubscriptions, 0, shrunkSubscriptions, 0, subscriptionIndex);
+                System.arraycopy(currentSubscriptions, subscriptionIndex + 1, shrunkSubscriptions, subscriptionIndex, shrunkSubscriptions.length - subscriptionIndex);
+
+                subscriptions = shrunkSubscriptions.length == 0 ? NO_SUBSCRIPTIONS : shrunkSubscriptions;
+                return;
+            }
+        }
+    }
+
+    // Signals are only ever made from `deliver` which runs on the lane of the
+    // subscription one signal at a time. Requests, events and terminal signals
+    // only record what has to be signalled and make sure a delivery follows.
+    private final class ThresholdSubscription implements Flow.Subscription {
+
+        private final Flow.Subscriber<? super TemperatureThresholdEvent> subscriber;
+        private final int bufferCapacity;
+        private final BackpressurePolicies overflowPolicy;
+        private final TemperatureDispatcher.DispatchLane deliveryLane;
+        private final Runnable deliveryTask = this::deliver;
+
+        // Deliveries that were asked for since the last one started, a
+        // delivery keeps going until it has caught up with all of them
+        private final AtomicInteger deliveryRequests = new AtomicInteger();
+
+        private final ReentrantLock bufferLock = new ReentrantLock();
+        private final Condition notFull = bufferLock.newCondition();
+
+        // Guarded by `bufferLock`
+        private final TemperatureThresholdEvent[] bufferedEvents;
+        private int bufferHead = 0;
+        private int bufferedCount = 0;
+        private long demand = 0L;
+        private boolean completed = false;
+        private boolean cancelled = false;
+        private Throwable pendingError = null;
+
+        // Only touched by `deliver`
+        private boolean subscribed = false;
+        private boolean terminated = false;
+
+        private ThresholdSubscription(Flow.Subscriber<? super TemperatureThresholdEvent> subscriber, SubscriptionOptions subscriptionOptions) {
+            this.subscriber = subscriber;
+            this.bufferCapacity = subscriptionOptions.getBufferCapacity();
+            this.overflowPolicy = subscriptionOptions.getOverflowPolicy();
+            this.bufferedEvents = new TemperatureThresholdEvent[bufferCapacity];
+
+            // Only ever a single delivery task is queued on the lane
+            this.deliveryLane = subscriptionOptions.getDeliveryDispatcher().newLane(1, BackpressurePolicies.DROP_NEWEST);
+        }
+
+        @Override
+        public void request(long requestedCount) {
+            bufferLock.lock();
+            try {
+                if (cancelled) {
+                    return;
+                }
+
+                if (requestedCount <= 0L) {
+                    pendingError = new IllegalArgumentException(String.format("Requested event count must be positive but was '%d'", requestedCount));
+                } else {
+                    demand = demand + requestedCount < 0L ? Long.MAX_VALUE : demand + requestedCount;
+                }
+            } finally {
+                bufferLock.unlock();
+            }
+
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            bufferLock.lock();
+            try {
+                cancelled = true;
+                Arrays.fill(bufferedEvents, null);
+                bufferedCount = 0;
+                notFull.signalAll();
+            } finally {
+                bufferLock.unlock();
+            }
+
+            removeSubscription(this);
+        }
+
+        private void offer(TemperatureThresholdEvent temperatureThresholdEvent) {
+            bufferLock.lock();
+            try {
+                while (bufferedCount == bufferCapacity && !cancelled) {
+                    if (overflowPolicy == BackpressurePolicies.DROP_NEWEST) {
+                        droppedEventCount.increment();
+                        return;
+                    }
+
+                    if (overflowPolicy == BackpressurePolicies.DROP_OLDEST) {
+                        removeHead();
+                        droppedEventCount.increment();
+                        break;
+                    }
+
+                    notFull.awaitUninterruptibly();
+                }
+
+                if (cancelled) {
+                    return;
+                }
+
+                bufferedEvents[(bufferHead + bufferedCount) % bufferCapacity] = temperatureThresholdEvent;
+                bufferedCount++;
+
+                if (demand == 0L) {
+                    return;
+                }
+            } finally {
+                bufferLock.unlock();
+            }
+
+            signal();
+        }
+
+        private void complete() {
+            bufferLock.lock();
+            try {
+                completed = true;
+            } finally {
+                bufferLock.unlock();
+            }
+        }
+
+        private void signal() {
+            if (deliveryRequests.getAndIncrement() == 0) {
+                deliveryLane.submitUnbounded(deliveryTask);
+            }
+        }
+
+        private void deliver() {
+            int missedRequests = 1;
+
+            do {
+                if (!subscribed) {
+                    subscribed = true;
+                    subscriber.onSubscribe(this);
+                }
+
+                while (!terminated) {
+                    TemperatureThresholdEvent temperatureThresholdEvent = null;
+                    Throwable error = null;
+                    boolean complete = false;
+
+                    bufferLock.lock();
+                    try {
+                        if (cancelled) {
+                            terminated = true;
+                            break;
+                        }
+
+                        if (pendingError != null) {
+                            error = pendingError;
+                        } else if (bufferedCount > 0 && demand > 0L) {
+                            temperatureThresholdEvent = bufferedEvents[bufferHead];
+                            removeHead();
+
+                            if (demand != Long.MAX_VALUE) {
+                                demand--;
+                            }
+                        } else if (bufferedCount == 0 && completed) {
+                            complete = true;
+                            cancelled = true;
+                        } else {
+                            break;
+                        }
+                    } finally {
+                        bufferLock.unlock();
+                    }
+
+                    if (error != null) {
+                        terminated = true;
+
+                        // Cancelling wakes up anyone blocked on a full buffer
+                        // and lets go of the events nobody will be handed
+                        cancel();
+                        subscriber.onError(error);
+                    } else if (complete) {
+                        terminated = true;
+                        subscriber.onComplete();
+                    } else {
+                        onNext(temperatureThresholdEvent);
+                    }
+                }
+
+                missedRequests = deliveryRequests.addAndGet(-missedRequests);
+            } while (missedRequests != 0);
+        }
+
+        // A subscriber that throws has broken the `Flow` contract so it is
+        // cancelled rather than being handed more events
+        private void onNext(TemperatureThresholdEvent temperatureThresholdEvent) {
+            try {
+                subscriber.onNext(temperatureThresholdEvent);
+            } catch (RuntimeException e) {
+                cancel();
+
+                Thread currentThread = Thread.currentThread();
+                currentThread.getUncaughtExceptionHandler().uncaughtException(currentThread, e);
+            }
+        }
+
+        // Must be invoked while holding `bufferLock`
+        private void removeHead() {
+            bufferedEvents[bufferHead] = null;
+            bufferHead = (bufferHead + 1) % bufferCapacity;
+            bufferedCount--;
+            notFull.signalAll();
+        }
+    }
+
+}
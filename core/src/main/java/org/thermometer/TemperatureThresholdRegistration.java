@@ -0,0 +1,117 @@
+package org.thermometer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+// Handle returned when a listener is added to a `Thermometer`,
+// `ThermometerRegistry` or `TemperatureThresholdIndex` which removes that one
+// registration of the listener again.
+//
+// Unregistering is O(1): it flips the registration's state, which the dispatch
+// path checks before eventing the listener, so the listener stops being
+// evented straight away. The snapshot of listeners the registration lives in
+// is only rebuilt without it once half of that snapshot has been unregistered.
+public final class TemperatureThresholdRegistration {
+
+    private static final AtomicIntegerFieldUpdater<TemperatureThresholdRegistration> REGISTERED_UPDATER
+            = AtomicIntegerFieldUpdater.newUpdater(TemperatureThresholdRegistration.class, "registered");
+
+    private final TemperatureThresholdEventListener temperatureThreshold;
+    private final RegistrationOwner registrationOwner;
+
+    // Set when the callbacks of the listener are isolated on a lane of their own
+    private final TemperatureCallbackIsolation.IsolatedListener isolatedListener;
+
+    private volatile int registered = 1;
+
+    TemperatureThresholdRegistration(TemperatureThresholdEventListener temperatureThreshold, RegistrationOwner registrationOwner) {
+        this(temperatureThreshold, registrationOwner, null);
+    }
+
+    TemperatureThresholdRegistration(
+            TemperatureThresholdEventListener temperatureThreshold,
+            RegistrationOwner registrationOwner,
+            TemperatureCallbackIsolation.IsolatedListener isolatedListener) {
+
+        this.temperatureThreshold = temperatureThreshold;
+        this.registrationOwner = registrationOwner;
+        this.isolatedListener = isolatedListener;
+    }
+
+    // Told how many of its registrations were unregistered so it can decide
+    // when to compact its snapshot
+    interface RegistrationOwner {
+
+        void onUnregistered(int unregisteredCount);
+    }
+
+    // Returns 'false' when the registration had already been unregistered
+    public boolean unregister() {
+        if (!markUnregistered()) {
+            return false;
+        }
+
+        registrationOwner.onUnregistered(1);
+        return true;
+    }
+
+    // Unregisters every registration while only compacting the snapshot each
+    // of them lives in once. Returns how many were still registered.
+    public static int unregisterAll(Collection<TemperatureThresholdRegistration> registrations) throws IllegalArgumentException {
+        if (registrations == null) {
+            throw new IllegalArgumentException("Registrations can't be 'null'");
+        }
+
+        Map<RegistrationOwner, List<TemperatureThresholdRegistration>> registrationsByOwner = new IdentityHashMap<>();
+
+        for (TemperatureThresholdRegistration registration : registrations) {
+            if (registration != null && registration.markUnregistered()) {
+                registrationsByOwner.computeIfAbsent(registration.registrationOwner, owner -> new ArrayList<>()).add(registration);
+            }
+        }
+
+        int unregisteredCount = 0;
+
+        for (Map.Entry<RegistrationOwner, List<TemperatureThresholdRegistration>> ownerRegistrations : registrationsByOwner.entrySet()) {
+            ownerRegistrations.getKey().onUnregistered(ownerRegistrations.getValue().size());
+            unregisteredCount += ownerRegistrations.getValue().size();
+        }
+
+        return unregisteredCount;
+    }
+
+    // Used when the owner drops every registration at once, e.g. when its
+    // thresholds are cleared, and doesn't need to be told about it
+    boolean markUnregistered() {
+        if (!REGISTERED_UPDATER.compareAndSet(this, 1, 0)) {
+            return false;
+        }
+
+        if (isolatedListener != null) {
+            isolatedListener.onUnregistered();
+        }
+
+        return true;
+    }
+
+    boolean isOwnedBy(RegistrationOwner owner) {
+        return registrationOwner == owner;
+    }
+
+    public boolean isRegistered() {
+        return registered == 1;
+    }
+
+    public TemperatureThresholdEventListener getTemperatureThreshold() {
+        return temperatureThreshold;
+    }
+
+    TemperatureCallbackIsolation.IsolatedListener getIsolatedListener() {
+        return isolatedListener;
+    }
+
+}
@@ -0,0 +1,503 @@
+package org.thermometer;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+// Keeps the thresholds of a `ThermometerRegistry` in line with a
+// `TemperatureThresholdConfig` file, reloading it whenever the file changes.
+//
+// A reload is parsed, validated and diffed against what the previous load
+// registered on the thread doing the reload. Only the thresholds that were
+// added or removed are swapped, one sensor at a time with
+// `ThermometerRegistry.replaceTemperatureThresholds`, so readings of a sensor
+// see its thresholds either before or after the reload and are never held up
+// by it. Other sensors may still have their previous thresholds while a sensor
+// already has the reloaded ones. Thresholds declared the same way before and
+// after keep their instance and with it their debounce state. A config that
+// fails to parse or names an unknown callback leaves the thresholds of the
+// previous load in place.
+//
+// A config without any thresholds is refused once thresholds have been loaded
+// unless empty configs are allowed, as a file that is truncated before being
+// written, as `Files.write` and many editors do, would otherwise unregister
+// every threshold. Replacing the file by an atomic rename avoids loading a
+// partly written config altogether.
+//
+// A reloader can be seeded with a `TemperatureCheckpoint` of the definitions
+// an earlier reloader had loaded. Its thresholds are registered straight away
+// and the config is then loaded as a reload against them, on the watcher
+// thread when watching, so alerting is live before the config is even parsed
+// and thresholds that didn't change are neither built nor registered twice.
+public class TemperatureThresholdReloader implements AutoCloseable {
+
+    public static final long DEFAULT_SETTLE_TIME_MILLIS = 100L;
+
+    private final ThermometerRegistry thermometerRegistry;
+    private final Path configPath;
+    private final Map<String, FloatConsumer> thresholdEventCallbacks;
+    private final long settleTimeMillis;
+    private final boolean allowEmptyConfig;
+    private final WatchService watchService;
+    private final Thread watcherThread;
+
+    // What the last successful load registered. Guarded by `this`.
+    private Map<TemperatureThresholdConfig.ThresholdDefinition, List<TemperatureThresholdRegistration>> registrationsByDefinition = new LinkedHashMap<>();
+
+    private volatile long reloadCount = 0L;
+    private volatile long failedReloadCount = 0L;
+    private volatile Exception lastReloadFailure = null;
+    private volatile boolean closed = false;
+
+    private TemperatureThresholdReloader(
+            ThermometerRegistry thermometerRegistry,
+            Path configPath,
+            Map<String, FloatConsumer> thresholdEventCallbacks,
+            long settleTimeMillis,
+            boolean allowEmptyConfig,
+            TemperatureCheckpoint thresholdCheckpoint,
+            boolean watchForChanges) throws IOException, IllegalArgumentException {
+
+        this.thermometerRegistry = thermometerRegistry;
+        this.configPath = configPath.toAbsolutePath();
+        this.thresholdEventCallbacks = Collections.unmodifiableMap(new HashMap<>(thresholdEventCallbacks));
+        this.settleTimeMillis = settleTimeMillis;
+        this.allowEmptyConfig = allowEmptyConfig;
+
+        if (thresholdCheckpoint != null) {
+            seed(thresholdCheckpoint);
+        }
+
+        // Seeded reloaders that watch the file load it on the watcher thread
+        boolean reloadOnWatcher = thresholdCheckpoint != null && watchForChanges;
+
+        if (!reloadOnWatcher) {
+            reload();
+        }
+
+        if (!watchForChanges) {
+            this.watchService = null;
+            this.watcherThread = null;
+            return;
+        }
+
+        // Editors commonly replace a file rather than write to it so the
+        // directory is watched rather than the file
+        this.watchService = this.configPath.getFileSystem().newWatchService();
+
+        try {
+            this.configPath.getParent().register(
+                    watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException | RuntimeException e) {
+            watchService.close();
+            throw e;
+        }
+
+        this.watcherThread = new Thread(() -> watchPeriodically(reloadOnWatcher), "temperature-threshold-reloader");
+        this.watcherThread.setDaemon(true);
+        this.watcherThread.start();
+    }
+
+    public static class TemperatureThresholdReloaderBuilder {
+
+        private final ThermometerRegistry thermometerRegistry;
+        private final Path configPath;
+        private final Map<String, FloatConsumer> thresholdEventCallbacks = new HashMap<>();
+        private long settleTimeMillis = DEFAULT_SETTLE_TIME_MILLIS;
+        private boolean allowEmptyConfig = false;
+        private TemperatureCheckpoint thresholdCheckpoint = null;
+        private boolean watchForChanges = true;
+
+        public TemperatureThresholdReloaderBuilder(ThermometerRegistry thermometerRegistry, Path configPath) throws IllegalArgumentException {
+            if (thermometerRegistry == null || configPath == null) {
+                throw new IllegalArgumentException("Thermometer registry and config path can't be 'null'");
+            }
+
+            this.thermometerRegistry = thermometerRegistry;
+            this.configPath = configPath;
+        }
+
+        // Loads the config before returning so a config that can't be loaded
+        // fails the build
+        public TemperatureThresholdReloader build() throws IOException, IllegalArgumentException {
+            return new TemperatureThresholdReloader(
+                    this.thermometerRegistry,
+                    this.configPath,
+                    this.thresholdEventCallbacks,
+                    this.settleTimeMillis,
+                    this.allowEmptyConfig,
+                    this.thresholdCheckpoint,
+                    this.watchForChanges);
+        }
+
+        // The callback thresholds naming it in the config are built with
+        public TemperatureThresholdReloaderBuilder thresholdEventCallback(String callbackName, FloatConsumer thresholdEventCallback) throws IllegalArgumentException {
+            if (callbackName == null || callbackName.trim().isEmpty() || thresholdEventCallback == null) {
+                throw new IllegalArgumentException("Callback name and threshold event callback can't be empty or 'null'");
+            }
+
+            this.thresholdEventCallbacks.put(callbackName.trim(), thresholdEventCallback);
+            return this;
+        }
+
+        // How long the file has to stay unchanged before it is reloaded so a
+        // file written in several steps is only loaded once it is complete
+        public TemperatureThresholdReloaderBuilder settleTime(long settleTime, TimeUnit unit) throws IllegalArgumentException {
+            if (settleTime < 0 || unit == null) {
+                throw new IllegalArgumentException("Settle time must be at least '0' with a time unit");
+            }
+
+            this.settleTimeMillis = unit.toMillis(settleTime);
+            return this;
+        }
+
+        // Lets a config without any thresholds unregister every threshold the
+        // previous load registered
+        public TemperatureThresholdReloaderBuilder allowEmptyConfig(boolean allowEmptyConfig) {
+            this.allowEmptyConfig = allowEmptyConfig;
+            return this;
+        }
+
+        // Registers the thresholds of the checkpoint before the config is loaded.
+        // The checkpoint should hold the definitions of an earlier reloader,
+        // e.g. as written by a `TemperatureCheckpointer` asking it for them.
+        public TemperatureThresholdReloaderBuilder thresholdCheckpoint(TemperatureCheckpoint thresholdCheckpoint) throws IllegalArgumentException {
+            if (thresholdCheckpoint == null) {
+                throw new IllegalArgumentException("Threshold checkpoint can't be set to 'null'");
+            }
+
+            this.thresholdCheckpoint = thresholdCheckpoint;
+            return this;
+        }
+
+        // Without watching, the config is only reloaded by `reload`
+        public TemperatureThresholdReloaderBuilder watchForChanges(boolean watchForChanges) {
+            this.watchForChanges = watchForChanges;
+            return this;
+        }
+    }
+
+    public static class ReloadStatistics {
+
+        private final int addedCount;
+        private final int removedCount;
+        private final int unchangedCount;
+
+        private ReloadStatistics(int addedCount, int removedCount, int unchangedCount) {
+            this.addedCount = addedCount;
+            this.removedCount = removedCount;
+            this.unchangedCount = unchangedCount;
+        }
+
+        public int getAddedCount() {
+            return addedCount;
+        }
+
+        public int getRemovedCount() {
+            return removedCount;
+        }
+
+        // Thresholds that kept their instance and state
+        public int getUnchangedCount() {
+            return unchangedCount;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("added=%d removed=%d unchanged=%d", addedCount, removedCount, unchangedCount);
+        }
+    }
+
+    public synchronized ReloadStatistics reload() throws IOException, IllegalArgumentException {
+        if (closed) {
+            throw new IllegalStateException("Reloader has been closed");
+        }
+
+        TemperatureThresholdConfig temperatureThresholdConfig = TemperatureThresholdConfig.parse(configPath);
+        Map<TemperatureThresholdConfig.ThresholdDefinition, Integer> definitionCounts = new LinkedHashMap<>();
+
+        for (TemperatureThresholdConfig.ThresholdDefinition thresholdDefinition : temperatureThresholdConfig.getThresholdDefinitions()) {
+            if (!thresholdEventCallbacks.containsKey(thresholdDefinition.getCallbackName())) {
+                throw new IllegalArgumentException(String.format(
+                        "Threshold '%s' names the unknown callback '%s'", thresholdDefinition, thresholdDefinition.getCallbackName()));
+            }
+
+            if (thresholdDefinition.getSensorId() >= thermometerRegistry.getSensorCapacity()) {
+                throw new IllegalArgumentException(String.format(
+                        "Threshold '%s' is for a sensor beyond the capacity of the registry", thresholdDefinition));
+            }
+
+            definitionCounts.merge(thresholdDefinition, 1, Integer::sum);
+        }
+
+        if (definitionCounts.isEmpty() && !allowEmptyConfig && hasRegisteredThresholds()) {
+            throw new IllegalArgumentException(String.format(
+                    "Config '%s' has no thresholds and would unregister every threshold", configPath));
+        }
+
+        // Everything is built before anything is swapped so a config that
+        // can't be loaded changes nothing
+        Map<Integer, SensorChanges> changesBySensor = new TreeMap<>();
+        Map<TemperatureThresholdConfig.ThresholdDefinition, List<TemperatureThresholdRegistration>> reloadedRegistrations = new LinkedHashMap<>();
+        int unchangedCount = 0;
+
+        for (Map.Entry<TemperatureThresholdConfig.ThresholdDefinition, Integer> definitionCount : definitionCounts.entrySet()) {
+            TemperatureThresholdConfig.ThresholdDefinition thresholdDefinition = definitionCount.getKey();
+            List<TemperatureThresholdRegistration> keptRegistrations = new ArrayList<>(definitionCount.getValue());
+
+            // Registrations unregistered behind the reloader's back, e.g. by
+            // clearing the sensor, are registered again
+            for (TemperatureThresholdRegistration registration : registrationsByDefinition.getOrDefault(thresholdDefinition, Collections.emptyList())) {
+                if (!registration.isRegistered()) {
+                    continue;
+                }
+
+                if (keptRegistrations.size() < definitionCount.getValue()) {
+                    keptRegistrations.add(registration);
+                } else {
+                    changesBySensor.computeIfAbsent(thresholdDefinition.getSensorId(), sensorId -> new SensorChanges()).replace(thresholdDefinition, registration);
+                }
+            }
+
+            unchangedCount += keptRegistrations.size();
+
+            for (int addedIndex = keptRegistrations.size(); addedIndex < definitionCount.getValue(); addedIndex++) {
+                SensorChanges sensorChanges = changesBySensor.computeIfAbsent(thresholdDefinition.getSensorId(), sensorId -> new SensorChanges());
+
+                sensorChanges.addedDefinitions.add(thresholdDefinition);
+                sensorChanges.addedThresholds.add(thresholdDefinition.newTemperatureThreshold(thresholdEventCallbacks.get(thresholdDefinition.getCallbackName())));
+            }
+
+            reloadedRegistrations.put(thresholdDefinition, keptRegistrations);
+        }
+
+        for (Map.Entry<TemperatureThresholdConfig.ThresholdDefinition, List<TemperatureThresholdRegistration>> previousRegistrations : registrationsByDefinition.entrySet()) {
+            if (definitionCounts.containsKey(previousRegistrations.getKey())) {
+                continue;
+            }
+
+            for (TemperatureThresholdRegistration registration : previousRegistrations.getValue()) {
+                if (registration.isRegistered()) {
+                    changesBySensor
+                            .computeIfAbsent(previousRegistrations.getKey().getSensorId(), sensorId -> new SensorChanges())
+                            .replace(previousRegistrations.getKey(), registration);
+                }
+            }
+        }
+
+        int addedCount = 0;
+        int removedCount = 0;
+        int swappedSensorCount = 0;
+
+        try {
+            for (Map.Entry<Integer, SensorChanges> sensorChanges : changesBySensor.entrySet()) {
+                SensorChanges changes = sensorChanges.getValue();
+                List<TemperatureThresholdRegistration> addedRegistrations = thermometerRegistry.replaceTemperatureThresholds(
+                        sensorChanges.getKey(), changes.replacedRegistrations, changes.addedThresholds);
+
+                swappedSensorCount++;
+
+                for (int addedIndex = 0; addedIndex < addedRegistrations.size(); addedIndex++) {
+                    reloadedRegistrations.get(changes.addedDefinitions.get(addedIndex)).add(addedRegistrations.get(addedIndex));
+                }
+
+                removedCount += changes.replacedRegistrations.size();
+                addedCount += addedRegistrations.size();
+            }
+        } catch (RuntimeException e) {
+            // Sensors that weren't swapped keep their previous thresholds, which
+            // are tracked along with the reloaded thresholds of the swapped ones
+            for (SensorChanges changes : new ArrayList<>(changesBySensor.values()).subList(swappedSensorCount, changesBySensor.size())) {
+                for (int replacedIndex = 0; replacedIndex < changes.replacedRegistrations.size(); replacedIndex++) {
+                    reloadedRegistrations
+                            .computeIfAbsent(changes.replacedDefinitions.get(replacedIndex), thresholdDefinition -> new ArrayList<>())
+                            .add(changes.replacedRegistrations.get(replacedIndex));
+                }
+            }
+
+            registrationsByDefinition = reloadedRegistrations;
+            throw e;
+        }
+
+        registrationsByDefinition = reloadedRegistrations;
+        reloadCount++;
+
+        return new ReloadStatistics(addedCount, removedCount, unchangedCount);
+    }
+
+    // The registrations of the checkpoint stand in for a previous load, so the
+    // first reload only swaps what changed since the checkpoint
+    private synchronized void seed(TemperatureCheckpoint thresholdCheckpoint) throws IllegalArgumentException {
+        List<TemperatureThresholdConfig.ThresholdDefinition> thresholdDefinitions = thresholdCheckpoint.getThresholdDefinitions();
+        List<TemperatureThresholdRegistration> registrations = thresholdCheckpoint.restoreThresholds(thermometerRegistry, thresholdEventCallbacks);
+
+        for (int definitionIndex = 0; definitionIndex < thresholdDefinitions.size(); definitionIndex++) {
+            registrationsByDefinition
+                    .computeIfAbsent(thresholdDefinitions.get(definitionIndex), thresholdDefinition -> new ArrayList<>())
+                    .add(registrations.get(definitionIndex));
+        }
+    }
+
+    private boolean hasRegisteredThresholds() {
+        for (List<TemperatureThresholdRegistration> definitionRegistrations : registrationsByDefinition.values()) {
+            for (TemperatureThresholdRegistration registration : definitionRegistrations) {
+                if (registration.isRegistered()) {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    private static class SensorChanges {
+
+        private final List<TemperatureThresholdRegistration> replacedRegistrations = new ArrayList<>();
+        private final List<TemperatureThresholdConfig.ThresholdDefinition> replacedDefinitions = new ArrayList<>();
+        private final List<TemperatureThresholdConfig.ThresholdDefinition> addedDefinitions = new ArrayList<>();
+        private final List<TemperatureThreshold> addedThresholds = new ArrayList<>();
+
+        private void replace(TemperatureThresholdConfig.ThresholdDefinition thresholdDefinition, TemperatureThresholdRegistration registration) {
+            replacedDefinitions.add(thresholdDefinition);
+            replacedRegistrations.add(registration);
+        }
+    }
+
+    // Every registration of the last successful load in the order the config
+    // declared them in
+    public synchronized List<TemperatureThresholdRegistration> getRegistrations() {
+        List<TemperatureThresholdRegistration> registrations = new ArrayList<>();
+
+        for (List<TemperatureThresholdRegistration> definitionRegistrations : registrationsByDefinition.values()) {
+            registrations.addAll(definitionRegistrations);
+        }
+
+        return Collections.unmodifiableList(registrations);
+    }
+
+    // The definition of every registration of the last successful load, e.g.
+    // for a `TemperatureCheckpointer` to write out
+    public synchronized List<TemperatureThresholdConfig.ThresholdDefinition> getThresholdDefinitions() {
+        List<TemperatureThresholdConfig.ThresholdDefinition> thresholdDefinitions = new ArrayList<>();
+
+        for (Map.Entry<TemperatureThresholdConfig.ThresholdDefinition, List<TemperatureThresholdRegistration>> definitionRegistrations : registrationsByDefinition.entrySet()) {
+            for (int registrationIndex = 0; registrationIndex < definitionRegistrations.getValue().size(); registrationIndex++) {
+                thresholdDefinitions.add(definitionRegistrations.getKey());
+            }
+        }
+
+        return Collections.unmodifiableList(thresholdDefinitions);
+    }
+
+    public long getReloadCount() {
+        return reloadCount;
+    }
+
+    public long getFailedReloadCount() {
+        return failedReloadCount;
+    }
+
+    // Why the last reload that was triggered by a change to the file failed
+    public Exception getLastReloadFailure() {
+        return lastReloadFailure;
+    }
+
+    public Path getConfigPath() {
+        return configPath;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    // Stops watching the file. The thresholds of the last load stay registered.
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+
+        closed = true;
+
+        if (watchService == null) {
+            return;
+        }
+
+        watchService.close();
+
+        try {
+            watcherThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void watchPeriodically(boolean reloadOnStart) {
+        boolean reloadPending = reloadOnStart;
+
+        while (!closed) {
+            try {
+                if (reloadPending) {
+                    reloadPending = false;
+                } else {
+                    if (!isConfigChanged(watchService.take())) {
+                        continue;
+                    }
+
+                    // Keep waiting until the file has been left alone for the
+                    // settle time
+                    for (WatchKey watchKey = watchService.poll(settleTimeMillis, TimeUnit.MILLISECONDS);
+                            watchKey != null;
+                            watchKey = watchService.poll(settleTimeMillis, TimeUnit.MILLISECONDS)) {
+
+                        watchKey.pollEvents();
+                        watchKey.reset();
+                    }
+                }
+
+                reload();
+            } catch (ClosedWatchServiceException | InterruptedException e) {
+                return;
+            } catch (IOException | RuntimeException e) {
+                if (closed) {
+                    return;
+                }
+
+                // The thresholds of the previous load stay in place
+                failedReloadCount++;
+                lastReloadFailure = e;
+
+                Thread currentThread = Thread.currentThread();
+                currentThread.getUncaughtExceptionHandler().uncaughtException(currentThread, e);
+            }
+        }
+    }
+
+    // Overflows may have hidden a change to the file so they count as one
+    private boolean isConfigChanged(WatchKey watchKey) {
+        boolean configChanged = false;
+
+        for (WatchEvent<?> watchEvent : watchKey.pollEvents()) {
+            configChanged |= watchEvent.kind() == StandardWatchEventKinds.OVERFLOW
+                    || configPath.getFileName().equals(watchEvent.context());
+        }
+
+        watchKey.reset();
+        return configChanged;
+    }
+
+}
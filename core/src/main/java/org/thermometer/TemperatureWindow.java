@@ -0,0 +1,126 @@
+package org.thermometer;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+// Describes the readings a `TemperatureWindowAggregator` aggregates over -
+// either the last N readings or the readings of the last period of time - along
+// with the smoothing factor of its exponentially weighted moving average. The
+// EWMA covers every reading rather than only those in the window.
+public class TemperatureWindow {
+
+    public static final double DEFAULT_EWMA_ALPHA = 0.1;
+
+    private final int readingCount;
+    private final long durationNanos;
+    private final double ewmaAlpha;
+
+    private TemperatureWindow(int readingCount, long durationNanos, double ewmaAlpha) {
+        this.readingCount = readingCount;
+        this.durationNanos = durationNanos;
+        this.ewmaAlpha = ewmaAlpha;
+    }
+
+    public static class TemperatureWindowBuilder {
+
+        private int readingCount = 0;
+        private long durationNanos = 0L;
+        private double ewmaAlpha = DEFAULT_EWMA_ALPHA;
+
+        public TemperatureWindow build() throws IllegalStateException {
+            if (readingCount == 0 && durationNanos == 0L) {
+                throw new IllegalStateException("Either a count window or a time window must be provided");
+            }
+
+            return new TemperatureWindow(
+                    this.readingCount,
+                    this.durationNanos,
+                    this.ewmaAlpha);
+        }
+
+        // Replaces any time window that was provided
+        public TemperatureWindowBuilder countWindow(int readingCount) throws IllegalArgumentException {
+            if (readingCount < 1) {
+                throw new IllegalArgumentException("Count window must hold at least '1' reading");
+            }
+
+            this.readingCount = readingCount;
+            this.durationNanos = 0L;
+            return this;
+        }
+
+        // Replaces any count window that was provided
+        public TemperatureWindowBuilder timeWindow(long duration, TimeUnit unit) throws IllegalArgumentException {
+            if (duration < 1 || unit == null) {
+                throw new IllegalArgumentException("Time window must be at least '1' with a time unit");
+            }
+
+            this.durationNanos = unit.toNanos(duration);
+            this.readingCount = 0;
+            return this;
+        }
+
+        // Weight given to a new reading - e.g. '1.0' only tracks the last reading
+        public TemperatureWindowBuilder ewmaAlpha(double ewmaAlpha) throws IllegalArgumentException {
+            if (!(ewmaAlpha > 0.0 && ewmaAlpha <= 1.0)) {
+                throw new IllegalArgumentException("EWMA alpha must be greater than '0' and at most '1'");
+            }
+
+            this.ewmaAlpha = ewmaAlpha;
+            return this;
+        }
+    }
+
+    public boolean isCountWindow() {
+        return readingCount > 0;
+    }
+
+    public boolean isTimeWindow() {
+        return durationNanos > 0L;
+    }
+
+    // '0' for time windows
+    public int getReadingCount() {
+        return readingCount;
+    }
+
+    // '0' for count windows
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public double getEwmaAlpha() {
+        return ewmaAlpha;
+    }
+
+    // Thresholds on windows that are equal share a single aggregator per sensor
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+
+        if (!(other instanceof TemperatureWindow)) {
+            return false;
+        }
+
+        TemperatureWindow otherWindow = (TemperatureWindow) other;
+
+        return readingCount == otherWindow.readingCount
+                && durationNanos == otherWindow.durationNanos
+                && Double.compare(ewmaAlpha, otherWindow.ewmaAlpha) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(readingCount, durationNanos, ewmaAlpha);
+    }
+
+    @Override
+    public String toString() {
+        return isCountWindow()
+                ? String.format("last %d readings (EWMA alpha %s)", readingCount, ewmaAlpha)
+                : String.format("last %d ms (EWMA alpha %s)", TimeUnit.NANOSECONDS.toMillis(durationNanos), ewmaAlpha);
+    }
+
+}
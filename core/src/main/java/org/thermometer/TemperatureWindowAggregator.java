@@ -0,0 +1,243 @@
+package org.thermometer;
+
+// Maintains the minimum, maximum, mean and EWMA of the readings in a
+// `TemperatureWindow` incrementally so every reading costs O(1) (amortized)
+// rather than a rescan of the window.
+//
+// The minimum and maximum are kept in monotonic deques - a new reading drops
+// every reading at the back of the deque that it beats since those can never
+// be the minimum/maximum again while it is in the window - so the front of each
+// deque is always the aggregate. The mean is kept as a running sum of the
+// readings in the window.
+//
+// An aggregator isn't thread safe. Registries only use it from the dispatch lane
+// of its sensor where readings are evaluated one at a time.
+public class TemperatureWindowAggregator {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final TemperatureWindow temperatureWindow;
+
+    // Readings in the window as a ring - the oldest at `head` - along with the
+    // time they were read at for time windows. Sequences of the readings are
+    // implied by their position relative to `nextSequence`.
+    private float[] windowTemperatures;
+    private long[] windowNanos;
+    private int head = 0;
+    private int size = 0;
+    private long nextSequence = 0L;
+
+    private double windowSum = 0.0;
+
+    private final MonotonicDeque minimumDeque = new MonotonicDeque(true);
+    private final MonotonicDeque maximumDeque = new MonotonicDeque(false);
+
+    private double ewma = Double.NaN;
+
+    public TemperatureWindowAggregator(TemperatureWindow temperatureWindow) throws IllegalArgumentException {
+        if (temperatureWindow == null) {
+            throw new IllegalArgumentException("Temperature window can't be 'null'");
+        }
+
+        this.temperatureWindow = temperatureWindow;
+
+        int initialCapacity = temperatureWindow.isCountWindow()
+                ? temperatureWindow.getReadingCount()
+                : INITIAL_CAPACITY;
+
+        this.windowTemperatures = new float[initialCapacity];
+        this.windowNanos = temperatureWindow.isTimeWindow() ? new long[initialCapacity] : null;
+    }
+
+    // Count windows don't need the time of the reading
+    public void onTemperatureRead(float temperature) {
+        onTemperatureRead(temperature, temperatureWindow.isTimeWindow() ? System.nanoTime() : 0L);
+    }
+
+    // NaN readings are ignored as they can't be ordered against other readings
+    // and infinite ones as the running sum and EWMA would never recover from
+    // them, an infinity leaving the sum subtracts to NaN
+    public void onTemperatureRead(float temperature, long readNanos) {
+        if (!Float.isFinite(temperature)) {
+            return;
+        }
+
+        evictExpiredTemperatures(readNanos);
+
+        if (size == windowTemperatures.length) {
+            growWindow();
+        }
+
+        int tail = (head + size) % windowTemperatures.length;
+        windowTemperatures[tail] = temperature;
+
+        if (windowNanos != null) {
+            windowNanos[tail] = readNanos;
+        }
+
+        size++;
+        windowSum += temperature;
+
+        long sequence = nextSequence++;
+        minimumDeque.push(temperature, sequence);
+        maximumDeque.push(temperature, sequence);
+
+        ewma = Double.isNaN(ewma) ? temperature : ewma + temperatureWindow.getEwmaAlpha() * (temperature - ewma);
+    }
+
+    private void evictExpiredTemperatures(long readNanos) {
+        if (temperatureWindow.isCountWindow()) {
+            if (size == temperatureWindow.getReadingCount()) {
+                evictOldestTemperature();
+            }
+
+            return;
+        }
+
+        while (size > 0 && readNanos - windowNanos[head] >= temperatureWindow.getDurationNanos()) {
+            evictOldestTemperature();
+        }
+    }
+
+    private void evictOldestTemperature() {
+        long oldestSequence = nextSequence - size;
+
+        windowSum -= windowTemperatures[head];
+        minimumDeque.evict(oldestSequence);
+        maximumDeque.evict(oldestSequence);
+
+        head = (head + 1) % windowTemperatures.length;
+        size--;
+
+        // Start the sum over once the window empties so rounding errors don't
+        // accumulate forever
+        if (size == 0) {
+            windowSum = 0.0;
+        }
+    }
+
+    // Only time windows grow as a count window is sized up front
+    private void growWindow() {
+        float[] grownTemperatures = new float[windowTemperatures.length * 2];
+        long[] grownNanos = new long[grownTemperatures.length];
+
+        for (int index = 0; index < size; index++) {
+            int windowIndex = (head + index) % windowTemperatures.length;
+            grownTemperatures[index] = windowTemperatures[windowIndex];
+            grownNanos[index] = windowNanos[windowIndex];
+        }
+
+        windowTemperatures = grownTemperatures;
+        windowNanos = grownNanos;
+        head = 0;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Number of readings currently in the window
+    public int getReadingCount() {
+        return size;
+    }
+
+    // Aggregates are NaN until the first reading
+    public float getAggregate(TemperatureAggregates temperatureAggregate) {
+        switch (temperatureAggregate) {
+            case MINIMUM:
+                return getMinimum();
+            case MAXIMUM:
+                return getMaximum();
+            case MEAN:
+                return getMean();
+            case EWMA:
+                return getEwma();
+            default:
+                throw new IllegalArgumentException(String.format("Unknown temperature aggregate '%s'", temperatureAggregate));
+        }
+    }
+
+    public float getMinimum() {
+        return minimumDeque.front();
+    }
+
+    public float getMaximum() {
+        return maximumDeque.front();
+    }
+
+    public float getMean() {
+        return size == 0 ? Float.NaN : (float) (windowSum / size);
+    }
+
+    public float getEwma() {
+        return (float) ewma;
+    }
+
+    public TemperatureWindow getTemperatureWindow() {
+        return temperatureWindow;
+    }
+
+    private static class MonotonicDeque {
+
+        private final boolean keepsMinimum;
+
+        private float[] temperatures = new float[INITIAL_CAPACITY];
+        private long[] sequences = new long[INITIAL_CAPACITY];
+        private int head = 0;
+        private int size = 0;
+
+        private MonotonicDeque(boolean keepsMinimum) {
+            this.keepsMinimum = keepsMinimum;
+        }
+
+        private void push(float temperature, long sequence) {
+            // Readings at the back that the new reading beats can never be the
+            // aggregate again as they will leave the window before it does
+            while (size > 0) {
+                float backTemperature = temperatures[(head + size - 1) % temperatures.length];
+
+                if (keepsMinimum ? backTemperature < temperature : backTemperature > temperature) {
+                    break;
+                }
+
+                size--;
+            }
+
+            if (size == temperatures.length) {
+                grow();
+            }
+
+            int tail = (head + size) % temperatures.length;
+            temperatures[tail] = temperature;
+            sequences[tail] = sequence;
+            size++;
+        }
+
+        // The front only leaves once the reading it holds leaves the window
+        private void evict(long sequence) {
+            if (size > 0 && sequences[head] == sequence) {
+                head = (head + 1) % temperatures.length;
+                size--;
+            }
+        }
+
+        private float front() {
+            return size == 0 ? Float.NaN : temperatures[head];
+        }
+
+        private void grow() {
+            float[] grownTemperatures = new float[temperatures.length * 2];
+            long[] grownSequences = new long[grownTemperatures.length];
+
+            for (int index = 0; index < size; index++) {
+                grownTemperatures[index] = temperatures[(head + index) % temperatures.length];
+                grownSequences[index] = sequences[(head + index) % temperatures.length];
+            }
+
+            temperatures = grownTemperatures;
+            sequences = grownSequences;
+            head = 0;
+        }
+    }
+
+}
@@ -0,0 +1,114 @@
+package org.thermometer;
+
+import java.util.Collection;
+import java.util.List;
+
+// A `Thermometer` is a lightweight view over a single sensor slot of a
+// `ThermometerRegistry`. Constructing one directly gives it a registry of its
+// own while `ThermometerRegistry.getThermometer` hands out views over a shared
+// registry holding many sensors.
+public class Thermometer implements TemperatureDataEventListener {
+
+    private final ThermometerRegistry thermometerRegistry;
+    private final int sensorId;
+
+    public Thermometer() {
+        this(TemperatureDispatcher.getDefaultDispatcher());
+    }
+
+    public Thermometer(TemperatureDispatcher temperatureDispatcher) throws IllegalArgumentException {
+        this(new ThermometerRegistry.ThermometerRegistryBuilder(1)
+                .temperatureDispatcher(temperatureDispatcher)
+                .build(), 0);
+    }
+
+    public Thermometer(TemperatureDispatcher temperatureDispatcher, TemperatureJournal temperatureJournal) throws IllegalArgumentException {
+        this(new ThermometerRegistry.ThermometerRegistryBuilder(1)
+                .temperatureDispatcher(temperatureDispatcher)
+                .temperatureJournal(temperatureJournal)
+                .build(), 0);
+    }
+
+    public Thermometer(TemperatureDispatcher temperatureDispatcher, IngestModes ingestMode) throws IllegalArgumentException {
+        this(new ThermometerRegistry.ThermometerRegistryBuilder(1)
+                .temperatureDispatcher(temperatureDispatcher)
+                .ingestMode(ingestMode)
+                .build(), 0);
+    }
+
+    Thermometer(ThermometerRegistry thermometerRegistry, int sensorId) {
+        this.thermometerRegistry = thermometerRegistry;
+        this.sensorId = sensorId;
+    }
+
+    @Override
+    public void onTemperatureData(float currentTemp) {
+        thermometerRegistry.onTemperatureData(sensorId, currentTemp);
+    }
+
+    @Override
+    public void onTemperatureData(float[] temperatures, int offset, int length) {
+        thermometerRegistry.onTemperatureData(sensorId, temperatures, offset, length);
+    }
+
+    public TemperatureThresholdRegistration addTemperatureThreshold(TemperatureThresholdEventListener temperatureThreshold) {
+        return thermometerRegistry.addTemperatureThreshold(sensorId, temperatureThreshold);
+    }
+
+    public List<TemperatureThresholdRegistration> addTemperatureThresholds(Collection<? extends TemperatureThresholdEventListener> temperatureThresholds) {
+        return thermometerRegistry.addTemperatureThresholds(sensorId, temperatureThresholds);
+    }
+
+    public TemperatureThresholdPublisher getThresholdEventPublisher() {
+        return thermometerRegistry.getThresholdEventPublisher(sensorId);
+    }
+
+    public void clearTemperatureThresholds() {
+        thermometerRegistry.clearTemperatureThresholds(sensorId);
+    }
+
+    public Float getCurrentTemperature() {
+        return thermometerRegistry.getCurrentTemperature(sensorId);
+    }
+
+    public Float getPreviousTemperature() {
+        return thermometerRegistry.getPreviousTemperature(sensorId);
+    }
+
+    public float getCurrentTemperature(float defaultTemperature) {
+        return thermometerRegistry.getCurrentTemperature(sensorId, defaultTemperature);
+    }
+
+    public float getPreviousTemperature(float defaultTemperature) {
+        return thermometerRegistry.getPreviousTemperature(sensorId, defaultTemperature);
+    }
+
+    public boolean hasPreviousTemperature() {
+        return thermometerRegistry.hasPreviousTemperature(sensorId);
+    }
+
+    public long getDroppedReadingCount() {
+        return thermometerRegistry.getDroppedReadingCount(sensorId);
+    }
+
+    public TemperatureScales getTemperatureScale() {
+        return thermometerRegistry.getTemperatureScale(sensorId);
+    }
+
+    public void setTemperatureScale(TemperatureScales temperatureScale) throws IllegalArgumentException {
+        thermometerRegistry.setTemperatureScale(sensorId, temperatureScale);
+    }
+
+    public IngestModes getIngestMode() {
+        return thermometerRegistry.getIngestMode();
+    }
+
+    public ThermometerRegistry getThermometerRegistry() {
+        return thermometerRegistry;
+    }
+
+    public int getSensorId() {
+        return sensorId;
+    }
+
+}
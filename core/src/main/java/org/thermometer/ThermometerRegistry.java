@@ -0,0 +1,1608 @@
+package org.thermometer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.LongSupplier;
+
+// Holds the state of many sensors in primitive arrays indexed by sensor id so
+// that a large fleet of sensors doesn't cost a graph of objects per sensor.
+//
+// The current and previous temperature of a sensor are packed into a single
+// `long` as raw float bits (previous in the high 32 bits, current in the low 32
+// bits) which lets a reading update both with one compare-and-set. Listeners
+// are only allocated for sensors that actually have some registered and
+// every dispatch lane serves a block of consecutive sensors so a sensor always
+// maps onto the same lane and keeps its readings in order. Sensors sharing a
+// cache line of temperatures mostly share a lane too, and a producer owning a
+// block of sensors, e.g. a shard of a `TemperatureShardedPipeline`, is the
+// only one to ever lock their lanes.
+public class ThermometerRegistry {
+
+    public static final int DEFAULT_LANE_COUNT = 64;
+    public static final IngestModes DEFAULT_INGEST_MODE = IngestModes.EVERY_READING;
+
+    // A signaling NaN which `Float.floatToIntBits` never produces as it
+    // collapses every NaN onto the canonical one, so it can't collide with a
+    // reading and is used to mark that no reading has been made yet
+    static final int NO_READING_BITS = 0x7F800001;
+    static final long NO_READINGS = packTemperatureBits(NO_READING_BITS, NO_READING_BITS);
+
+    private static final TemperatureScales[] TEMPERATURE_SCALES = TemperatureScales.values();
+
+    private final int sensorCapacity;
+
+    private final AtomicLongArray sensorTemperatures;
+    private final byte[] sensorTemperatureScales;
+    private final AtomicReferenceArray<SensorThresholds> sensorThresholds;
+
+    private final TemperatureDispatcher.DispatchLane[] dispatchLanes;
+    private final int laneSensorCount;
+
+    private final TemperatureJournal temperatureJournal;
+    private final TemperatureMetrics temperatureMetrics;
+    private final TemperatureCallbackIsolation callbackIsolation;
+    private final IngestModes ingestMode;
+
+    private ThermometerRegistry(
+            int sensorCapacity,
+            TemperatureDispatcher temperatureDispatcher,
+            int laneCount,
+            TemperatureJournal temperatureJournal,
+            TemperatureMetrics temperatureMetrics,
+            TemperatureCallbackIsolation callbackIsolation,
+            IngestModes ingestMode) {
+
+        this.sensorCapacity = sensorCapacity;
+
+        this.sensorTemperatures = new AtomicLongArray(sensorCapacity);
+        this.sensorTemperatureScales = new byte[sensorCapacity];
+        this.sensorThresholds = new AtomicReferenceArray<>(sensorCapacity);
+
+        byte defaultTemperatureScale = (byte) TemperatureScales.CELSIUS_SCALE.ordinal();
+
+        for (int sensorId = 0; sensorId < sensorCapacity; sensorId++) {
+            sensorTemperatures.set(sensorId, NO_READINGS);
+            sensorTemperatureScales[sensorId] = defaultTemperatureScale;
+        }
+
+        // Rounding the block up can leave the last lanes without sensors, which
+        // aren't created
+        this.laneSensorCount = (sensorCapacity - 1) / Math.min(laneCount, sensorCapacity) + 1;
+        this.dispatchLanes = new TemperatureDispatcher.DispatchLane[(sensorCapacity - 1) / laneSensorCount + 1];
+
+        for (int laneIndex = 0; laneIndex < dispatchLanes.length; laneIndex++) {
+            dispatchLanes[laneIndex] = temperatureDispatcher.newLane();
+        }
+
+        this.temperatureJournal = temperatureJournal;
+        this.temperatureMetrics = temperatureMetrics;
+        this.callbackIsolation = callbackIsolation;
+        this.ingestMode = ingestMode;
+
+        if (temperatureJournal != null) {
+            recoverTemperatures(temperatureJournal);
+        }
+    }
+
+    public static class ThermometerRegistryBuilder {
+
+        private final int sensorCapacity;
+        private TemperatureDispatcher temperatureDispatcher = TemperatureDispatcher.getDefaultDispatcher();
+        private int laneCount = DEFAULT_LANE_COUNT;
+        private TemperatureJournal temperatureJournal = null;
+        private TemperatureMetrics temperatureMetrics = null;
+        private TemperatureCallbackIsolation callbackIsolation = null;
+        private IngestModes ingestMode = DEFAULT_INGEST_MODE;
+
+        public ThermometerRegistryBuilder(int sensorCapacity) throws IllegalArgumentException {
+            if (sensorCapacity < 1) {
+                throw new IllegalArgumentException("Sensor capacity must be at least '1'");
+            }
+
+            this.sensorCapacity = sensorCapacity;
+        }
+
+        public ThermometerRegistry build() {
+            return new ThermometerRegistry(
+                    this.sensorCapacity,
+                    this.temperatureDispatcher,
+                    this.laneCount,
+                    this.temperatureJournal,
+                    this.temperatureMetrics,
+                    this.callbackIsolation,
+                    this.ingestMode);
+        }
+
+        public ThermometerRegistryBuilder temperatureDispatcher(TemperatureDispatcher temperatureDispatcher) throws IllegalArgumentException {
+            if (temperatureDispatcher == null) {
+                throw new IllegalArgumentException("Temperature dispatcher can't be 'null'");
+            }
+
+            this.temperatureDispatcher = temperatureDispatcher;
+            return this;
+        }
+
+        public ThermometerRegistryBuilder laneCount(int laneCount) throws IllegalArgumentException {
+            if (laneCount < 1) {
+                throw new IllegalArgumentException("Lane count must be at least '1'");
+            }
+
+            this.laneCount = laneCount;
+            return this;
+        }
+
+        // Readings and fired threshold events are appended to the journal and the
+        // current and previous temperature of every sensor are recovered from it
+        // when the registry is built
+        public ThermometerRegistryBuilder temperatureJournal(TemperatureJournal temperatureJournal) throws IllegalArgumentException {
+            if (temperatureJournal == null) {
+                throw new IllegalArgumentException("Temperature journal can't be 'null'");
+            }
+
+            this.temperatureJournal = temperatureJournal;
+            return this;
+        }
+
+        // Registries built without metrics aren't instrumented at all
+        public ThermometerRegistryBuilder temperatureMetrics(TemperatureMetrics temperatureMetrics) throws IllegalArgumentException {
+            if (temperatureMetrics == null) {
+                throw new IllegalArgumentException("Temperature metrics can't be 'null'");
+            }
+
+            this.temperatureMetrics = temperatureMetrics;
+            return this;
+        }
+
+        // Callbacks of listeners are run on lanes of their own rather than on the
+        // lane of their sensor so a slow listener can't hold up the others
+        public ThermometerRegistryBuilder callbackIsolation(TemperatureCallbackIsolation callbackIsolation) throws IllegalArgumentException {
+            if (callbackIsolation == null) {
+                throw new IllegalArgumentException("Callback isolation can't be 'null'");
+            }
+
+            this.callbackIsolation = callbackIsolation;
+            return this;
+        }
+
+        // Conflated readings are merged into a summary per sensor while the
+        // sensor waits to be dispatched rather than queued one by one
+        public ThermometerRegistryBuilder ingestMode(IngestModes ingestMode) throws IllegalArgumentException {
+            if (ingestMode == null) {
+                throw new IllegalArgumentException("Ingest mode can't be set to 'null'");
+            }
+
+            this.ingestMode = ingestMode;
+            return this;
+        }
+    }
+
+    public Thermometer getThermometer(int sensorId) throws IllegalArgumentException {
+        checkSensorId(sensorId);
+
+        return new Thermometer(this, sensorId);
+    }
+
+    public void onTemperatureData(int sensorId, float currentTemp) throws IllegalArgumentException {
+        checkSensorId(sensorId);
+
+        TemperatureMetrics metrics = getEnabledMetrics();
+        long readNanos = 0L;
+
+        if (metrics != null) {
+            readNanos = metrics.sampleReadNanos();
+            metrics.onReadings(1);
+        }
+
+        SensorThresholds thresholds = sensorThresholds.get(sensorId);
+        TemperatureDispatcher.DispatchLane dispatchLane = lockDispatchLane(sensorId, thresholds);
+
+        // Time windows need to know when every reading was provided rather
+        // than only the readings sampled for their latency
+        if (readNanos == 0L && thresholds != null && thresholds.observesReadTime()) {
+            readNanos = System.nanoTime();
+        }
+
+        try {
+            onTemperatureData(sensorId, currentTemp, thresholds, metrics, readNanos);
+        } finally {
+            if (dispatchLane != null) {
+                dispatchLane.unlockOrdered();
+            }
+        }
+    }
+
+    // Must be invoked while holding the lane of the sensor if the reading is
+    // journaled or dispatched
+    private void onTemperatureData(int sensorId, float currentTemp, SensorThresholds thresholds, TemperatureMetrics metrics, long readNanos) {
+        int currentTempBits = Float.floatToIntBits(currentTemp);
+        long packedTemperatures;
+
+        do {
+            packedTemperatures = sensorTemperatures.get(sensorId);
+        } while (!sensorTemperatures.compareAndSet(
+                sensorId,
+                packedTemperatures,
+                packTemperatureBits(currentTemperatureBits(packedTemperatures), currentTempBits)));
+
+        if (temperatureJournal != null) {
+            temperatureJournal.appendReading(sensorId, System.currentTimeMillis(), currentTemp);
+        }
+
+        int previousTempBits = currentTemperatureBits(packedTemperatures);
+
+        // The first time data is read there won't be a previous value so there is
+        // nothing that could have been crossed yet, but windows still have to
+        // aggregate it
+        if (previousTempBits == NO_READING_BITS) {
+            if (thresholds != null && thresholds.hasWindowThresholds()) {
+                TemperatureScales temperatureScaleUsedForReading = getTemperatureScale(sensorId);
+
+                long firstReadNanos = readNanos;
+
+                queueTask(sensorId, thresholds, () -> thresholds.onFirstTemperatureRead(currentTemp, temperatureScaleUsedForReading, firstReadNanos), 1);
+            }
+
+            return;
+        }
+
+        float previousTemp = Float.intBitsToFloat(previousTempBits);
+        boolean unchangedTemp = Float.compare(previousTemp, currentTemp) == 0;
+
+        if (metrics != null && unchangedTemp) {
+            metrics.onUnchangedReadings(1);
+        }
+
+        if (thresholds != null
+                && !thresholds.isEmpty()
+                && (!unchangedTemp || thresholds.observesEveryReading())) {
+
+            TemperatureScales temperatureScaleUsedForReading = getTemperatureScale(sensorId);
+
+            if (ingestMode == IngestModes.CONFLATED) {
+                // Only a reading that starts a new summary has to be queued, the
+                // ones after it are merged into the summary until it is evaluated
+                boolean startedSummary = thresholds.conflateTemperatureRead(previousTemp, currentTemp, temperatureScaleUsedForReading, readNanos);
+
+                if (startedSummary) {
+                    queueTask(sensorId, thresholds, thresholds.conflatedTemperatureReadsTask, 1);
+                }
+
+                if (metrics != null) {
+                    if (startedSummary) {
+                        metrics.onDispatchedReadings(1);
+                    } else {
+                        metrics.onConflatedReadings(1);
+                    }
+                }
+
+                return;
+            }
+
+            if (metrics != null) {
+                metrics.onDispatchedReadings(1);
+            }
+
+            // Queued as primitives so that evaluating a reading doesn't allocate
+            thresholds.onDroppedReadings(getDispatchLane(sensorId).queueOrdered(
+                    thresholds, null, thresholds, currentTemp, previousTemp, temperatureScaleUsedForReading, readNanos, 1, true));
+        }
+    }
+
+    public void onTemperatureData(int sensorId, float[] temperatures, int offset, int length) throws IllegalArgumentException {
+        checkSensorId(sensorId);
+
+        if (offset < 0 || length < 0 || length > temperatures.length - offset) {
+            throw new IndexOutOfBoundsException(String.format("Range [%d, %d) is out of bounds for length '%d'", offset, (long) offset + length, temperatures.length));
+        }
+
+        if (length == 0) {
+            return;
+        }
+
+        TemperatureMetrics metrics = getEnabledMetrics();
+        long readNanos = 0L;
+
+        if (metrics != null) {
+            readNanos = metrics.sampleReadNanos();
+            metrics.onReadings(length);
+        }
+
+        SensorThresholds thresholds = sensorThresholds.get(sensorId);
+        TemperatureDispatcher.DispatchLane dispatchLane = lockDispatchLane(sensorId, thresholds);
+
+        // Time windows need to know when every reading was provided rather
+        // than only the readings sampled for their latency
+        if (readNanos == 0L && thresholds != null && thresholds.observesReadTime()) {
+            readNanos = System.nanoTime();
+        }
+
+        try {
+            onTemperatureData(sensorId, temperatures, offset, length, thresholds, metrics, readNanos);
+        } finally {
+            if (dispatchLane != null) {
+                dispatchLane.unlockOrdered();
+            }
+        }
+    }
+
+    // Must be invoked while holding the lane of the sensor if the readings are
+    // journaled or dispatched
+    private void onTemperatureData(
+            int sensorId,
+            float[] temperatures,
+            int offset,
+            int length,
+            SensorThresholds thresholds,
+            TemperatureMetrics metrics,
+            long readNanos) {
+
+        // Only the last two readings of the batch end up as the current and
+        // previous temperatures so the sensor state is swapped once per batch
+        // rather than once per reading
+        int lastTempBits = Float.floatToIntBits(temperatures[offset + length - 1]);
+        long packedTemperatures;
+        long batchPackedTemperatures;
+
+        do {
+            packedTemperatures = sensorTemperatures.get(sensorId);
+
+            int secondLastTempBits = length > 1
+                    ? Float.floatToIntBits(temperatures[offset + length - 2])
+                    : currentTemperatureBits(packedTemperatures);
+
+            batchPackedTemperatures = packTemperatureBits(secondLastTempBits, lastTempBits);
+        } while (!sensorTemperatures.compareAndSet(sensorId, packedTemperatures, batchPackedTemperatures));
+
+        if (temperatureJournal != null) {
+            temperatureJournal.appendReadings(sensorId, System.currentTimeMillis(), temperatures, offset, length);
+        }
+
+        int previousTempBits = currentTemperatureBits(packedTemperatures);
+        boolean hasPreviousTemp = previousTempBits != NO_READING_BITS;
+        boolean hasThresholds = thresholds != null && !thresholds.isEmpty();
+
+        // Batches that start with the very first reading of the sensor are
+        // queued as usual since that reading has nothing to be merged with
+        boolean conflated = ingestMode == IngestModes.CONFLATED && hasPreviousTemp;
+
+        if (metrics != null) {
+            recordBatchMetrics(metrics, temperatures, offset, length, previousTempBits, hasThresholds && thresholds.observesEveryReading(), hasThresholds && !conflated);
+        }
+
+        if (!hasThresholds) {
+            return;
+        }
+
+        if (conflated) {
+            boolean startedSummary = thresholds.conflateTemperatureReads(
+                    Float.intBitsToFloat(previousTempBits), temperatures, offset, length, getTemperatureScale(sensorId), readNanos);
+
+            if (startedSummary) {
+                queueTask(sensorId, thresholds, thresholds.conflatedTemperatureReadsTask, 1);
+            }
+
+            if (metrics != null) {
+                metrics.onDispatchedReadings(startedSummary ? 1 : 0);
+                metrics.onConflatedReadings(startedSummary ? length - 1 : length);
+            }
+
+            return;
+        }
+
+        // Copy the batch behind the temperature that was current before it so
+        // that the caller is free to reuse their array once we return and the
+        // first reading of the batch has something to be compared against
+
+        float[] batchTemperatures = new float[length + 1];
+        batchTemperatures[0] = Float.intBitsToFloat(previousTempBits);
+        System.arraycopy(temperatures, offset, batchTemperatures, 1, length);
+
+        TemperatureScales temperatureScaleUsedForReading = getTemperatureScale(sensorId);
+
+        // Every pair of consecutive readings is evaluated in order as a single
+        // unit of dispatch work
+        int firstTempIndex = hasPreviousTemp ? 0 : 1;
+        long batchReadNanos = readNanos;
+
+        queueTask(sensorId, thresholds, () -> {
+            if (!hasPreviousTemp) {
+                thresholds.onFirstTemperatureRead(batchTemperatures[1], temperatureScaleUsedForReading, batchReadNanos);
+            }
+
+            thresholds.onTemperatureReads(
+                    batchTemperatures,
+                    firstTempIndex,
+                    batchTemperatures.length - firstTempIndex,
+                    temperatureScaleUsedForReading,
+                    batchReadNanos);
+        }, length);
+    }
+
+    // Counts the readings of a batch the same way they would have been counted
+    // had they been provided one at a time
+    private static void recordBatchMetrics(
+            TemperatureMetrics metrics,
+            float[] temperatures,
+            int offset,
+            int length,
+            int previousTempBits,
+            boolean observesEveryReading,
+            boolean hasThresholds) {
+
+        int unchangedCount = 0;
+        int comparedCount = 0;
+
+        for (int temperatureIndex = offset; temperatureIndex < offset + length; temperatureIndex++) {
+            int temperatureBits = Float.floatToIntBits(temperatures[temperatureIndex]);
+
+            if (previousTempBits != NO_READING_BITS) {
+                comparedCount++;
+
+                if (previousTempBits == temperatureBits) {
+                    unchangedCount++;
+                }
+            }
+
+            previousTempBits = temperatureBits;
+        }
+
+        metrics.onUnchangedReadings(unchangedCount);
+
+        if (hasThresholds) {
+            metrics.onDispatchedReadings(observesEveryReading ? comparedCount : comparedCount - unchangedCount);
+        }
+    }
+
+    public TemperatureThresholdRegistration addTemperatureThreshold(int sensorId, TemperatureThresholdEventListener temperatureThreshold) throws IllegalArgumentException {
+        return addTemperatureThresholds(sensorId, Collections.singletonList(temperatureThreshold)).get(0);
+    }
+
+    // Readings see either all or none of the thresholds as they are published
+    // to the sensor as a single snapshot
+    public List<TemperatureThresholdRegistration> addTemperatureThresholds(
+            int sensorId,
+            Collection<? extends TemperatureThresholdEventListener> temperatureThresholds) throws IllegalArgumentException {
+
+        checkSensorId(sensorId);
+
+        return getOrCreateSensorThresholds(sensorId).addTemperatureThresholds(temperatureThresholds);
+    }
+
+    // Crossings of every `TemperatureThreshold` held by the index of the sensor
+    // rather than of a single threshold
+    public TemperatureThresholdPublisher getThresholdEventPublisher(int sensorId) throws IllegalArgumentException {
+        checkSensorId(sensorId);
+
+        return getOrCreateSensorThresholds(sensorId).getThresholdEventPublisher();
+    }
+
+    private SensorThresholds getOrCreateSensorThresholds(int sensorId) {
+        SensorThresholds thresholds = sensorThresholds.get(sensorId);
+
+        if (thresholds == null) {
+            sensorThresholds.compareAndSet(sensorId, null, new SensorThresholds(sensorId, temperatureJournal, temperatureMetrics, callbackIsolation));
+            thresholds = sensorThresholds.get(sensorId);
+        }
+
+        return thresholds;
+    }
+
+    // Publishes the added thresholds and drops the replaced registrations in a
+    // single snapshot so a reading sees the thresholds of the sensor either
+    // before or after the swap, never neither or both. Registrations that are
+    // kept aren't touched and keep their state.
+    public List<TemperatureThresholdRegistration> replaceTemperatureThresholds(
+            int sensorId,
+            Collection<TemperatureThresholdRegistration> replacedRegistrations,
+            Collection<? extends TemperatureThresholdEventListener> temperatureThresholds) throws IllegalArgumentException {
+
+        checkSensorId(sensorId);
+
+        return getOrCreateSensorThresholds(sensorId).replaceTemperatureThresholds(replacedRegistrations, temperatureThresholds);
+    }
+
+    public void clearTemperatureThresholds(int sensorId) throws IllegalArgumentException {
+        checkSensorId(sensorId);
+
+        SensorThresholds thresholds = sensorThresholds.get(sensorId);
+
+        if (thresholds != null) {
+            thresholds.clearTemperatureThresholds();
+        }
+    }
+
+    public Float getCurrentTemperature(int sensorId) throws IllegalArgumentException {
+        checkSensorId(sensorId);
+
+        return toTemperature(currentTemperatureBits(sensorTemperatures.get(sensorId)));
+    }
+
+    public Float getPreviousTemperature(int sensorId) throws IllegalArgumentException {
+        checkSensorId(sensorId);
+
+        return toTemperature(previousTemperatureBits(sensorTemperatures.get(sensorId)));
+    }
+
+    // Primitive alternatives to the getters above which return the provided
+    // default temperature when there hasn't been a reading yet
+    public float getCurrentTemperature(int sensorId, float defaultTemperature) throws IllegalArgumentException {
+        checkSensorId(sensorId);
+
+        return toTemperature(currentTemperatureBits(sensorTemperatures.get(sensorId)), defaultTemperature);
+    }
+
+    public float getPreviousTemperature(int sensorId, float defaultTemperature) throws IllegalArgumentException {
+        checkSensorId(sensorId);
+
+        return toTemperature(previousTemperatureBits(sensorTemperatures.get(sensorId)), defaultTemperature);
+    }
+
+    public boolean hasPreviousTemperature(int sensorId) throws IllegalArgumentException {
+        checkSensorId(sensorId);
+
+        return previousTemperatureBits(sensorTemperatures.get(sensorId)) != NO_READING_BITS;
+    }
+
+    public TemperatureScales getTemperatureScale(int sensorId) throws IllegalArgumentException {
+        checkSensorId(sensorId);
+
+        return TEMPERATURE_SCALES[sensorTemperatureScales[sensorId]];
+    }
+
+    public void setTemperatureScale(int sensorId, TemperatureScales temperatureScale) throws IllegalArgumentException {
+        checkSensorId(sensorId);
+
+        if (temperatureScale == null) {
+            throw new IllegalArgumentException("Temperature scale can't be set to 'null'");
+        }
+
+        sensorTemperatureScales[sensorId] = (byte) temperatureScale.ordinal();
+    }
+
+    public long getDroppedReadingCount(int sensorId) throws IllegalArgumentException {
+        checkSensorId(sensorId);
+
+        SensorThresholds thresholds = sensorThresholds.get(sensorId);
+
+        return thresholds != null ? thresholds.getDroppedReadingCount() : 0L;
+    }
+
+    // Appends a snapshot of the temperatures of every sensor that has been read
+    // to the journal and deletes the segments that only hold records before
+    // it, returning how many were deleted. Recovery starts from the latest
+    // snapshot so only the records appended since are replayed.
+    public int compactTemperatureJournal() throws IllegalStateException, IOException {
+        if (temperatureJournal == null) {
+            throw new IllegalStateException("Thermometer registry doesn't have a temperature journal");
+        }
+
+        long snapshotSequence = temperatureJournal.getNextSequence();
+        long timestamp = System.currentTimeMillis();
+
+        // Readings are swapped in and journaled while holding the lane of their
+        // sensor, so holding it orders the state of a sensor with its readings
+        for (int laneIndex = 0; laneIndex < dispatchLanes.length; laneIndex++) {
+            TemperatureDispatcher.DispatchLane dispatchLane = dispatchLanes[laneIndex];
+            dispatchLane.lockOrdered(false);
+
+            try {
+                int endSensorId = Math.min(sensorCapacity, (laneIndex + 1) * laneSensorCount);
+
+                for (int sensorId = laneIndex * laneSensorCount; sensorId < endSensorId; sensorId++) {
+                    long packedTemperatures = sensorTemperatures.get(sensorId);
+
+                    if (currentTemperatureBits(packedTemperatures) != NO_READING_BITS) {
+                        temperatureJournal.appendSensorState(
+                                sensorId,
+                                timestamp,
+                                Float.intBitsToFloat(currentTemperatureBits(packedTemperatures)),
+                                toTemperature(previousTemperatureBits(packedTemperatures)));
+                    }
+                }
+            } finally {
+                dispatchLane.unlockOrdered();
+            }
+        }
+
+        temperatureJournal.appendSnapshot(snapshotSequence);
+
+        return temperatureJournal.truncateBefore(snapshotSequence);
+    }
+
+    public int getSensorCapacity() {
+        return sensorCapacity;
+    }
+
+    public TemperatureJournal getTemperatureJournal() {
+        return temperatureJournal;
+    }
+
+    public TemperatureMetrics getTemperatureMetrics() {
+        return temperatureMetrics;
+    }
+
+    public TemperatureCallbackIsolation getCallbackIsolation() {
+        return callbackIsolation;
+    }
+
+    public IngestModes getIngestMode() {
+        return ingestMode;
+    }
+
+    // 'null' when the registry isn't instrumented or the metrics were switched off
+    private TemperatureMetrics getEnabledMetrics() {
+        TemperatureMetrics metrics = temperatureMetrics;
+
+        return metrics != null && metrics.isEnabled() ? metrics : null;
+    }
+
+    // Replays the readings of the journal since its latest snapshot onto the
+    // packed temperatures so every sensor picks up where it left off and a
+    // crossing that straddles a restart is still detected by the first reading
+    // after it
+    private void recoverTemperatures(TemperatureJournal temperatureJournal) {
+        try {
+            temperatureJournal.recoverFromSnapshot(new TemperatureJournal.JournalRecordListener() {
+                @Override
+                public void onSensorState(long sequence, int sensorId, long timestamp, float currentTemperature, Float previousTemperature) {
+                    if (sensorId < 0 || sensorId >= sensorCapacity) {
+                        return;
+                    }
+
+                    sensorTemperatures.set(sensorId, packTemperatureBits(
+                            previousTemperature != null ? Float.floatToIntBits(previousTemperature) : NO_READING_BITS,
+                            Float.floatToIntBits(currentTemperature)));
+                }
+
+                @Override
+                public void onReading(long sequence, int sensorId, long timestamp, float temperature) {
+                    if (sensorId < 0 || sensorId >= sensorCapacity) {
+                        return;
+                    }
+
+                    long packedTemperatures = sensorTemperatures.get(sensorId);
+
+                    sensorTemperatures.set(
+                            sensorId,
+                            packTemperatureBits(currentTemperatureBits(packedTemperatures), Float.floatToIntBits(temperature)));
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to recover temperatures from the temperature journal", e);
+        }
+    }
+
+    // Raw access to the packed temperatures of a sensor for
+    // `TemperatureCheckpoint`, which writes and restores them as they are
+    long getPackedTemperatures(int sensorId) {
+        return sensorTemperatures.get(sensorId);
+    }
+
+    void restorePackedTemperatures(int sensorId, long packedTemperatures) {
+        sensorTemperatures.set(sensorId, packedTemperatures);
+    }
+
+    int getLaneIndex(int sensorId) {
+        return sensorId / laneSensorCount;
+    }
+
+    int getLaneCount() {
+        return dispatchLanes.length;
+    }
+
+    // Consecutive sensors served by every lane, the last lane may serve fewer
+    int getLaneSensorCount() {
+        return laneSensorCount;
+    }
+
+    private TemperatureDispatcher.DispatchLane getDispatchLane(int sensorId) {
+        return dispatchLanes[getLaneIndex(sensorId)];
+    }
+
+    // Readings of a sensor are swapped in, journaled and queued while holding
+    // its lane so that concurrent producers can't journal or queue them in a
+    // different order than they were swapped in. Producers wait for room in
+    // the lane before swapping in their reading as waiting any later would let
+    // other producers in ahead of them. Returns 'null' when the reading is
+    // neither journaled nor dispatched so nothing needs to be held.
+    private TemperatureDispatcher.DispatchLane lockDispatchLane(int sensorId, SensorThresholds thresholds) {
+        if (thresholds == null && temperatureJournal == null) {
+            return null;
+        }
+
+        TemperatureDispatcher.DispatchLane dispatchLane = getDispatchLane(sensorId);
+        dispatchLane.lockOrdered(thresholds != null && ingestMode != IngestModes.CONFLATED);
+
+        return dispatchLane;
+    }
+
+    // Must be invoked while holding the lane of the sensor. Conflating
+    // registries queue work regardless of the capacity of the lane as it is
+    // already bounded by a single pending summary per sensor, and a summary
+    // that was dropped would never be evaluated.
+    private void queueTask(int sensorId, SensorThresholds thresholds, Runnable task, int readingCount) {
+        thresholds.onDroppedReadings(getDispatchLane(sensorId).queueOrdered(
+                thresholds, task, null, 0.0F, 0.0F, null, 0L, readingCount, ingestMode != IngestModes.CONFLATED));
+    }
+
+    private void checkSensorId(int sensorId) throws IllegalArgumentException {
+        if (sensorId < 0 || sensorId >= sensorCapacity) {
+            throw new IllegalArgumentException(String.format("Sensor id '%d' is outside of the registry capacity of '%d'", sensorId, sensorCapacity));
+        }
+    }
+
+    static long packTemperatureBits(int previousTempBits, int currentTempBits) {
+        return ((long) previousTempBits << 32) | (currentTempBits & 0xFFFFFFFFL);
+    }
+
+    static int currentTemperatureBits(long packedTemperatures) {
+        return (int) packedTemperatures;
+    }
+
+    static int previousTemperatureBits(long packedTemperatures) {
+        return (int) (packedTemperatures >>> 32);
+    }
+
+    private static Float toTemperature(int temperatureBits) {
+        return temperatureBits == NO_READING_BITS ? null : Float.intBitsToFloat(temperatureBits);
+    }
+
+    private static float toTemperature(int temperatureBits, float defaultTemperature) {
+        return temperatureBits == NO_READING_BITS ? defaultTemperature : Float.intBitsToFloat(temperatureBits);
+    }
+
+    // Only allocated for sensors that have had a listener registered with them
+    // or their threshold events subscribed to
+    private static class SensorThresholds implements
+            TemperatureDispatcher.TimedTemperatureThresholdEventListener,
+            TemperatureThresholdIndex.TemperatureThresholdIndexListener,
+            TemperatureThresholdRegistration.RegistrationOwner {
+
+        private final int sensorId;
+        private final TemperatureJournal temperatureJournal;
+        private final TemperatureMetrics temperatureMetrics;
+        private final TemperatureCallbackIsolation callbackIsolation;
+        private final LongSupplier readNanosSource = this::getCurrentReadNanos;
+
+        // Only thresholds held by an index are journaled, instrumented and
+        // published as other listener implementations don't report whether
+        // they fired
+        private final TemperatureThresholdIndex.TemperatureThresholdIndexListener temperatureThresholdIndexListener;
+
+        // Created the first time it is asked for
+        private volatile TemperatureThresholdPublisher thresholdEventPublisher = null;
+
+        // When the reading being evaluated was provided, '0' unless it was
+        // sampled for its latency or the sensor has time windows. Only touched
+        // from the dispatch lane of the sensor which runs one reading at a
+        // time.
+        private long currentIngestNanos = 0L;
+
+        // Same as `currentIngestNanos` but only for readings sampled for their
+        // latency
+        private long currentReadNanos = 0L;
+
+        // Everything registered with the sensor, replaced as a whole under the
+        // lock of `this` so the lane evaluates a reading against a single
+        // snapshot without locking
+        private volatile SensorSnapshot sensorSnapshot;
+
+        // Guarded by `this`
+        private int registeredCount = 0;
+
+        // Summary of the conflated readings that haven't been evaluated yet:
+        // the temperature before them, the last of them, the lowest and
+        // highest temperatures so far, the largest rise and fall in between
+        // and the thresholds of the index they crossed. Readings are numbered
+        // in the order they were merged, the temperature before them being
+        // '0'. Guarded by `conflationLock`.
+        private final Object conflationLock = new Object();
+        private boolean hasConflatedSummary = false;
+        private int conflatedReadingCount;
+        private float conflatedFirstTemperature;
+        private float conflatedLastTemperature;
+        private float conflatedLowestTemperature;
+        private int conflatedLowestIndex;
+        private float conflatedHighestTemperature;
+        private int conflatedHighestIndex;
+        private final ConflatedMove conflatedRise = new ConflatedMove();
+        private final ConflatedMove conflatedFall = new ConflatedMove();
+        private TemperatureScales conflatedTemperatureScale;
+        private long conflatedReadNanos;
+
+        // The lane fires the crossings of the summary it took while readings
+        // are merged into the other one
+        private TemperatureThresholdIndex.ConflatedCrossings conflatedCrossings = new TemperatureThresholdIndex.ConflatedCrossings();
+        private TemperatureThresholdIndex.ConflatedCrossings firedCrossings = new TemperatureThresholdIndex.ConflatedCrossings();
+
+        // The points of the path a summary is evaluated as, only touched from
+        // the dispatch lane of the sensor
+        private final float[] pathTemperatures = new float[ConflatedMove.MAX_PATH_LENGTH];
+        private final int[] pathIndexes = new int[ConflatedMove.MAX_PATH_LENGTH];
+
+        private final Runnable conflatedTemperatureReadsTask = this::onConflatedTemperatureReads;
+
+        // Only written while holding the lane of the sensor
+        private volatile long droppedReadingCount = 0L;
+
+        private SensorThresholds(
+                int sensorId,
+                TemperatureJournal temperatureJournal,
+                TemperatureMetrics temperatureMetrics,
+                TemperatureCallbackIsolation callbackIsolation) {
+
+            this.sensorId = sensorId;
+            this.temperatureJournal = temperatureJournal;
+            this.temperatureMetrics = temperatureMetrics;
+            this.callbackIsolation = callbackIsolation;
+            this.temperatureThresholdIndexListener = this;
+            this.sensorSnapshot = SensorSnapshot.empty(temperatureThresholdIndexListener);
+        }
+
+        @Override
+        public void onTemperatureThresholdsEvaluated(int evaluatedCount) {
+            if (temperatureMetrics != null && temperatureMetrics.isEnabled()) {
+                temperatureMetrics.onThresholdsEvaluated(evaluatedCount);
+            }
+        }
+
+        @Override
+        public void onTemperatureThresholdFired(TemperatureThreshold temperatureThreshold, float convertedNewTemperature, float convertedPreviousTemperature) {
+            TemperatureThreshold.publishThresholdEvent(temperatureThreshold, thresholdEventPublisher, convertedNewTemperature, convertedPreviousTemperature);
+
+            if (temperatureJournal != null) {
+                temperatureJournal.appendThresholdEvent(sensorId, System.currentTimeMillis(), convertedNewTemperature, temperatureThreshold);
+            }
+
+            // Isolated callbacks are timed once they return on their own lane
+            if (temperatureMetrics != null && temperatureMetrics.isEnabled() && callbackIsolation == null) {
+                temperatureMetrics.onThresholdFired(currentReadNanos);
+            }
+        }
+
+        private long getCurrentReadNanos() {
+            return currentReadNanos;
+        }
+
+        // Readings of sensors with time windows are all stamped on ingest so
+        // their latency is sampled here instead
+        private void setCurrentReadNanos(long readNanos) {
+            currentIngestNanos = readNanos;
+            currentReadNanos = readNanos != 0L && temperatureMetrics != null && sensorSnapshot.observesReadTime
+                    ? temperatureMetrics.sampleReadNanos(readNanos)
+                    : readNanos;
+        }
+
+        // Readings provided before the sensor had a time window weren't
+        // stamped on ingest, count windows don't need the time at all
+        private long getWindowNanos() {
+            if (currentIngestNanos != 0L || !sensorSnapshot.observesReadTime) {
+                return currentIngestNanos;
+            }
+
+            return System.nanoTime();
+        }
+
+        private TemperatureThresholdPublisher getThresholdEventPublisher() {
+            TemperatureThresholdPublisher publisher = thresholdEventPublisher;
+
+            if (publisher == null) {
+                synchronized (this) {
+                    publisher = thresholdEventPublisher;
+
+                    if (publisher == null) {
+                        publisher = new TemperatureThresholdPublisher();
+                        thresholdEventPublisher = publisher;
+                    }
+                }
+            }
+
+            return publisher;
+        }
+
+        private TemperatureThresholdRegistration newRegistration(TemperatureThresholdEventListener temperatureThreshold) {
+            if (callbackIsolation == null) {
+                return new TemperatureThresholdRegistration(temperatureThreshold, this);
+            }
+
+            return new TemperatureThresholdRegistration(
+                    temperatureThreshold,
+                    this,
+                    callbackIsolation.newIsolatedListener(sensorId, temperatureThreshold, temperatureMetrics, readNanosSource));
+        }
+
+        private synchronized List<TemperatureThresholdRegistration> addTemperatureThresholds(
+                Collection<? extends TemperatureThresholdEventListener> temperatureThresholds) throws IllegalArgumentException {
+
+            List<TemperatureThresholdRegistration> registrations = new ArrayList<>();
+
+            sensorSnapshot = withAdded(sensorSnapshot, temperatureThresholds, registrations);
+            registeredCount += registrations.size();
+
+            return Collections.unmodifiableList(registrations);
+        }
+
+        private synchronized List<TemperatureThresholdRegistration> replaceTemperatureThresholds(
+                Collection<TemperatureThresholdRegistration> replacedRegistrations,
+                Collection<? extends TemperatureThresholdEventListener> temperatureThresholds) throws IllegalArgumentException {
+
+            if (replacedRegistrations == null) {
+                throw new IllegalArgumentException("Replaced registrations can't be 'null'");
+            }
+
+            Set<TemperatureThresholdRegistration> removedRegistrations = Collections.newSetFromMap(new IdentityHashMap<>());
+
+            for (TemperatureThresholdRegistration replacedRegistration : replacedRegistrations) {
+                if (replacedRegistration == null || !replacedRegistration.isOwnedBy(this)) {
+                    throw new IllegalArgumentException("Replaced registrations must belong to the sensor");
+                }
+
+                removedRegistrations.add(replacedRegistration);
+            }
+
+            List<TemperatureThresholdRegistration> registrations = new ArrayList<>();
+
+            // Validated and built before anything is published
+            SensorSnapshot replacedSnapshot = withAdded(sensorSnapshot.withoutUnregistered(removedRegistrations), temperatureThresholds, registrations);
+
+            // A reading that already started on the previous snapshot skips the
+            // replaced registrations it hadn't got to yet once they are marked
+            sensorSnapshot = replacedSnapshot;
+
+            for (TemperatureThresholdRegistration removedRegistration : removedRegistrations) {
+                removedRegistration.markUnregistered();
+            }
+
+            registeredCount = replacedSnapshot.size;
+
+            return Collections.unmodifiableList(registrations);
+        }
+
+        // Must be invoked while holding the lock on `this`
+        private SensorSnapshot withAdded(
+                SensorSnapshot snapshot,
+                Collection<? extends TemperatureThresholdEventListener> temperatureThresholds,
+                List<TemperatureThresholdRegistration> registrations) throws IllegalArgumentException {
+
+            if (temperatureThresholds == null) {
+                throw new IllegalArgumentException("Temperature thresholds can't be 'null'");
+            }
+
+            List<TemperatureThresholdRegistration> indexRegistrations = new ArrayList<>();
+            List<TemperatureThresholdRegistration> listenerRegistrations = new ArrayList<>();
+            Map<TemperatureWindow, List<TemperatureThresholdRegistration>> windowRegistrations = new LinkedHashMap<>();
+
+            for (TemperatureThresholdEventListener temperatureThreshold : temperatureThresholds) {
+                if (temperatureThreshold == null) {
+                    throw new IllegalArgumentException("Temperature threshold can't be 'null'");
+                }
+
+                TemperatureThresholdRegistration registration = newRegistration(temperatureThreshold);
+                registrations.add(registration);
+
+                // `TemperatureThreshold` instances are kept in a sorted index so
+                // that a reading only evaluates the thresholds it could have
+                // crossed while any other listener implementations are evented
+                // on every reading
+                if (!(temperatureThreshold instanceof TemperatureThreshold)) {
+                    listenerRegistrations.add(registration);
+                } else if (((TemperatureThreshold) temperatureThreshold).getTemperatureAggregate() == null) {
+                    indexRegistrations.add(registration);
+                } else {
+                    windowRegistrations
+                            .computeIfAbsent(((TemperatureThreshold) temperatureThreshold).getTemperatureWindow(), temperatureWindow -> new ArrayList<>())
+                            .add(registration);
+                }
+            }
+
+            return snapshot.withAdded(indexRegistrations, listenerRegistrations, windowRegistrations);
+        }
+
+        private synchronized void clearTemperatureThresholds() {
+            sensorSnapshot.markUnregistered();
+            sensorSnapshot = SensorSnapshot.empty(temperatureThresholdIndexListener);
+            registeredCount = 0;
+        }
+
+        @Override
+        public synchronized void onUnregistered(int unregisteredCount) {
+            registeredCount = Math.max(0, registeredCount - unregisteredCount);
+
+            if (TemperatureThresholdIndex.IndexSnapshot.shouldCompact(registeredCount, sensorSnapshot.size)) {
+                sensorSnapshot = sensorSnapshot.withoutUnregistered();
+                registeredCount = sensorSnapshot.size;
+            }
+        }
+
+        private boolean isEmpty() {
+            return sensorSnapshot.size == 0;
+        }
+
+        private boolean hasWindowThresholds() {
+            return sensorSnapshot.windowThresholds.length > 0;
+        }
+
+        private boolean observesEveryReading() {
+            return sensorSnapshot.observesEveryReading;
+        }
+
+        private boolean observesReadTime() {
+            return sensorSnapshot.observesReadTime;
+        }
+
+        // Must be invoked while holding the lane of the sensor
+        private void onDroppedReadings(int droppedCount) {
+            if (droppedCount > 0) {
+                droppedReadingCount += droppedCount;
+            }
+        }
+
+        private long getDroppedReadingCount() {
+            return droppedReadingCount;
+        }
+
+        private void onFirstTemperatureRead(float temperature, TemperatureScales temperatureScaleUsedForReading, long readNanos) {
+            setCurrentReadNanos(readNanos);
+
+            long windowNanos = getWindowNanos();
+
+            for (WindowThresholds currentWindowThresholds : sensorSnapshot.windowThresholds) {
+                currentWindowThresholds.onTemperatureRead(temperature, temperatureScaleUsedForReading, windowNanos);
+            }
+        }
+
+        @Override
+        public void onTemperatureRead(float newTemperature, float previousTemperature, TemperatureScales temperatureScaleUsedForReading, long readNanos) {
+            setCurrentReadNanos(readNanos);
+
+            onTemperatureRead(sensorSnapshot, newTemperature, previousTemperature, temperatureScaleUsedForReading, getWindowNanos());
+        }
+
+        @Override
+        public void onTemperatureRead(float newTemperature, float previousTemperature, TemperatureScales temperatureScaleUsedForReading) {
+            onTemperatureRead(newTemperature, previousTemperature, temperatureScaleUsedForReading, 0L);
+        }
+
+        private static void onTemperatureRead(
+                SensorSnapshot snapshot,
+                float newTemperature,
+                float previousTemperature,
+                TemperatureScales temperatureScaleUsedForReading,
+                long windowNanos) {
+
+            snapshot.thresholdIndex.onTemperatureRead(newTemperature, previousTemperature, temperatureScaleUsedForReading);
+            onUnindexedTemperatureRead(snapshot, newTemperature, previousTemperature, temperatureScaleUsedForReading, windowNanos);
+        }
+
+        private static void onUnindexedTemperatureRead(
+                SensorSnapshot snapshot,
+                float newTemperature,
+                float previousTemperature,
+                TemperatureScales temperatureScaleUsedForReading,
+                long windowNanos) {
+
+            for (WindowThresholds currentWindowThresholds : snapshot.windowThresholds) {
+                currentWindowThresholds.onTemperatureRead(newTemperature, temperatureScaleUsedForReading, windowNanos);
+            }
+
+            // Unchanged readings are only dispatched for the sake of debounced
+            // and aggregate thresholds, other listeners never saw them before
+            if (Float.compare(previousTemperature, newTemperature) == 0) {
+                return;
+            }
+
+            for (TemperatureThresholdRegistration listenerRegistration : snapshot.listenerRegistrations) {
+                if (!listenerRegistration.isRegistered()) {
+                    continue;
+                }
+
+                TemperatureCallbackIsolation.IsolatedListener isolatedListener = listenerRegistration.getIsolatedListener();
+
+                if (isolatedListener != null) {
+                    isolatedListener.submitReading(newTemperature, previousTemperature, temperatureScaleUsedForReading);
+                } else {
+                    listenerRegistration.getTemperatureThreshold().onTemperatureRead(newTemperature, previousTemperature, temperatureScaleUsedForReading);
+                }
+            }
+        }
+
+        private void onTemperatureReads(float[] temperatures, int offset, int length, TemperatureScales temperatureScaleUsedForReading, long readNanos) {
+            setCurrentReadNanos(readNanos);
+
+            // The whole batch is evaluated against the same snapshot
+            SensorSnapshot snapshot = sensorSnapshot;
+
+            // Only the index can evaluate a whole batch at once, other listeners
+            // and windows have to be interleaved with it pair by pair to keep
+            // their order
+            if (snapshot.listenerRegistrations.length == 0 && snapshot.windowThresholds.length == 0) {
+                snapshot.thresholdIndex.onTemperatureReads(temperatures, offset, length, temperatureScaleUsedForReading);
+                return;
+            }
+
+            long windowNanos = getWindowNanos();
+
+            for (int temperatureIndex = offset + 1; temperatureIndex < offset + length; temperatureIndex++) {
+                float previousTemp = temperatures[temperatureIndex - 1];
+                float currentTemp = temperatures[temperatureIndex];
+
+                if (Float.compare(previousTemp, currentTemp) != 0 || snapshot.observesEveryReading) {
+                    onTemperatureRead(snapshot, currentTemp, previousTemp, temperatureScaleUsedForReading, windowNanos);
+                }
+            }
+        }
+
+        // Returns whether the reading started a new summary which then has to
+        // be queued for evaluation
+        private boolean conflateTemperatureRead(
+                float previousTemperature,
+                float newTemperature,
+                TemperatureScales temperatureScaleUsedForReading,
+                long readNanos) {
+
+            synchronized (conflationLock) {
+                boolean startedSummary = startConflatedSummary(previousTemperature, temperatureScaleUsedForReading, readNanos);
+
+                mergeConflatedTemperature(newTemperature);
+                return startedSummary;
+            }
+        }
+
+        private boolean conflateTemperatureReads(
+                float previousTemperature,
+                float[] temperatures,
+                int offset,
+                int length,
+                TemperatureScales temperatureScaleUsedForReading,
+                long readNanos) {
+
+            synchronized (conflationLock) {
+                boolean startedSummary = startConflatedSummary(previousTemperature, temperatureScaleUsedForReading, readNanos);
+
+                for (int temperatureIndex = offset; temperatureIndex < offset + length; temperatureIndex++) {
+                    mergeConflatedTemperature(temperatures[temperatureIndex]);
+                }
+
+                return startedSummary;
+            }
+        }
+
+        // Must be invoked while holding `conflationLock`. A summary keeps the
+        // scale and the read time of the reading that started it, and crossings
+        // are searched for with the thresholds registered when it started.
+        private boolean startConflatedSummary(float previousTemperature, TemperatureScales temperatureScaleUsedForReading, long readNanos) {
+            if (hasConflatedSummary) {
+                return false;
+            }
+
+            hasConflatedSummary = true;
+            conflatedReadingCount = 0;
+            conflatedFirstTemperature = previousTemperature;
+            conflatedLastTemperature = previousTemperature;
+            conflatedLowestTemperature = previousTemperature;
+            conflatedLowestIndex = 0;
+            conflatedHighestTemperature = previousTemperature;
+            conflatedHighestIndex = 0;
+            conflatedRise.clear();
+            conflatedFall.clear();
+            conflatedTemperatureScale = temperatureScaleUsedForReading;
+            conflatedReadNanos = readNanos;
+            conflatedCrossings.start(sensorSnapshot.thresholdIndex);
+
+            return true;
+        }
+
+        // Must be invoked while holding `conflationLock`. NaN readings can't
+        // be ordered so they only ever end up as the last temperature.
+        private void mergeConflatedTemperature(float temperature) {
+            int readingIndex = ++conflatedReadingCount;
+
+            conflatedCrossings.onTemperatureRead(readingIndex, temperature, conflatedLastTemperature, conflatedTemperatureScale);
+
+            if (Float.isNaN(conflatedLowestTemperature)) {
+                conflatedLowestTemperature = temperature;
+                conflatedLowestIndex = readingIndex;
+                conflatedHighestTemperature = temperature;
+                conflatedHighestIndex = readingIndex;
+            } else {
+                // The largest rise ends here when it starts from the lowest
+                // temperature before it, and likewise for the largest fall
+                if (temperature - conflatedLowestTemperature > conflatedRise.getSize()) {
+                    conflatedRise.set(conflatedLowestTemperature, conflatedLowestIndex, temperature, readingIndex);
+                }
+
+                if (conflatedHighestTemperature - temperature > -conflatedFall.getSize()) {
+                    conflatedFall.set(conflatedHighestTemperature, conflatedHighestIndex, temperature, readingIndex);
+                }
+
+                if (temperature < conflatedLowestTemperature) {
+                    conflatedLowestTemperature = temperature;
+                    conflatedLowestIndex = readingIndex;
+                } else if (temperature > conflatedHighestTemperature) {
+                    conflatedHighestTemperature = temperature;
+                    conflatedHighestIndex = readingIndex;
+                }
+            }
+
+            conflatedLastTemperature = temperature;
+        }
+
+        // Fires the crossings of the index that were found while merging in the
+        // order they were read, so every threshold a reading crossed is fired,
+        // e.g. for 20, 10, 13, 0, 2, 1 a rising threshold of 1.5 crossed on the
+        // way from 0 to 2.
+        // Everything else sees the summary as the path through the temperature
+        // before it, the ends of its largest rise and largest fall and its
+        // last temperature, in the order they were read, which costs at most
+        // five evaluations.
+        private void onConflatedTemperatureReads() {
+            TemperatureThresholdIndex.ConflatedCrossings crossings;
+            int pathLength = 0;
+            float firstTemperature;
+            float lastTemperature;
+            TemperatureScales temperatureScaleUsedForReading;
+            long readNanos;
+
+            synchronized (conflationLock) {
+                firstTemperature = conflatedFirstTemperature;
+                lastTemperature = conflatedLastTemperature;
+                temperatureScaleUsedForReading = conflatedTemperatureScale;
+                readNanos = conflatedReadNanos;
+
+                pathLength = conflatedRise.addTo(pathTemperatures, pathIndexes, pathLength);
+                pathLength = conflatedFall.addTo(pathTemperatures, pathIndexes, pathLength);
+                pathTemperatures[pathLength] = lastTemperature;
+                pathIndexes[pathLength] = conflatedReadingCount;
+                pathLength++;
+
+                crossings = conflatedCrossings;
+                conflatedCrossings = firedCrossings;
+                firedCrossings = crossings;
+
+                hasConflatedSummary = false;
+            }
+
+            setCurrentReadNanos(readNanos);
+
+            // Insertion sort as the path is only ever a handful of points long
+            for (int pathIndex = 1; pathIndex < pathLength; pathIndex++) {
+                float pathTemperature = pathTemperatures[pathIndex];
+                int readingIndex = pathIndexes[pathIndex];
+                int insertIndex = pathIndex;
+
+                while (insertIndex > 0 && pathIndexes[insertIndex - 1] > readingIndex) {
+                    pathTemperatures[insertIndex] = pathTemperatures[insertIndex - 1];
+                    pathIndexes[insertIndex] = pathIndexes[insertIndex - 1];
+                    insertIndex--;
+                }
+
+                pathTemperatures[insertIndex] = pathTemperature;
+                pathIndexes[insertIndex] = readingIndex;
+            }
+
+            SensorSnapshot snapshot = sensorSnapshot;
+            long windowNanos = getWindowNanos();
+            float previousTemperature = firstTemperature;
+            int evaluatedCount = 0;
+
+            crossings.sortCrossings();
+
+            for (int pathIndex = 0; pathIndex < pathLength; pathIndex++) {
+                float pathTemperature = pathTemperatures[pathIndex];
+
+                crossings.fireThrough(pathIndexes[pathIndex]);
+
+                // Points that coincide with their neighbours aren't separate
+                // steps of the path
+                if (Float.compare(previousTemperature, pathTemperature) != 0) {
+                    onConflatedTemperatureRead(snapshot, pathTemperature, previousTemperature, temperatureScaleUsedForReading, windowNanos);
+                    previousTemperature = pathTemperature;
+                    evaluatedCount++;
+                }
+            }
+
+            // Readings that didn't change the temperature were only dispatched
+            // for thresholds that observe every reading
+            if (evaluatedCount == 0) {
+                onConflatedTemperatureRead(snapshot, lastTemperature, firstTemperature, temperatureScaleUsedForReading, windowNanos);
+            }
+        }
+
+        private static void onConflatedTemperatureRead(
+                SensorSnapshot snapshot,
+                float newTemperature,
+                float previousTemperature,
+                TemperatureScales temperatureScaleUsedForReading,
+                long windowNanos) {
+
+            snapshot.thresholdIndex.onEveryTemperatureRead(newTemperature, previousTemperature, temperatureScaleUsedForReading);
+            onUnindexedTemperatureRead(snapshot, newTemperature, previousTemperature, temperatureScaleUsedForReading, windowNanos);
+        }
+    }
+
+    // The largest rise or fall of a conflated summary. Guarded by the
+    // `conflationLock` of the summary.
+    private static final class ConflatedMove {
+
+        // The ends of the largest rise and fall plus the last temperature
+        private static final int MAX_PATH_LENGTH = 5;
+
+        private float startTemperature;
+        private int startIndex;
+        private float endTemperature;
+        private int endIndex;
+        private boolean present;
+
+        private void clear() {
+            present = false;
+        }
+
+        private void set(float startTemperature, int startIndex, float endTemperature, int endIndex) {
+            this.startTemperature = startTemperature;
+            this.startIndex = startIndex;
+            this.endTemperature = endTemperature;
+            this.endIndex = endIndex;
+            this.present = true;
+        }
+
+        // Positive for a rise and negative for a fall, '0' when there is none
+        private float getSize() {
+            return present ? endTemperature - startTemperature : 0.0F;
+        }
+
+        // The start of a move made from the temperature before the summary
+        // is where the path starts from anyway
+        private int addTo(float[] pathTemperatures, int[] pathIndexes, int pathLength) {
+            if (!present) {
+                return pathLength;
+            }
+
+            if (startIndex > 0) {
+                pathTemperatures[pathLength] = startTemperature;
+                pathIndexes[pathLength] = startIndex;
+                pathLength++;
+            }
+
+            pathTemperatures[pathLength] = endTemperature;
+            pathIndexes[pathLength] = endIndex;
+
+            return pathLength + 1;
+        }
+    }
+
+    // An immutable view of everything registered with a sensor
+    private static final class SensorSnapshot {
+
+        private static final TemperatureThresholdRegistration[] NO_REGISTRATIONS = new TemperatureThresholdRegistration[0];
+        private static final WindowThresholds[] NO_WINDOW_THRESHOLDS = new WindowThresholds[0];
+
+        private final TemperatureThresholdIndex.IndexSnapshot thresholdIndex;
+        private final TemperatureThresholdRegistration[] listenerRegistrations;
+
+        // Thresholds on aggregates grouped by their window so thresholds
+        // sharing a window share its aggregator
+        private final WindowThresholds[] windowThresholds;
+
+        // Includes registrations unregistered since the snapshot was built
+        private final int size;
+
+        // Windows aggregate every reading whether or not it changed the
+        // temperature
+        private final boolean observesEveryReading;
+
+        // Time windows need to know when every reading was provided
+        private final boolean observesReadTime;
+
+        private SensorSnapshot(
+                TemperatureThresholdIndex.IndexSnapshot thresholdIndex,
+                TemperatureThresholdRegistration[] listenerRegistrations,
+                WindowThresholds[] windowThresholds) {
+
+            this.thresholdIndex = thresholdIndex;
+            this.listenerRegistrations = listenerRegistrations;
+            this.windowThresholds = windowThresholds;
+
+            int windowSize = 0;
+            boolean hasTimeWindow = false;
+
+            for (WindowThresholds currentWindowThresholds : windowThresholds) {
+                windowSize += currentWindowThresholds.size();
+                hasTimeWindow |= currentWindowThresholds.temperatureWindow.isTimeWindow();
+            }
+
+            this.size = thresholdIndex.size() + listenerRegistrations.length + windowSize;
+            this.observesEveryReading = thresholdIndex.observesEveryReading() || windowThresholds.length > 0;
+            this.observesReadTime = hasTimeWindow;
+        }
+
+        private static SensorSnapshot empty(TemperatureThresholdIndex.TemperatureThresholdIndexListener temperatureThresholdIndexListener) {
+            return new SensorSnapshot(
+                    TemperatureThresholdIndex.IndexSnapshot.empty(temperatureThresholdIndexListener),
+                    NO_REGISTRATIONS,
+                    NO_WINDOW_THRESHOLDS);
+        }
+
+        private SensorSnapshot withAdded(
+                List<TemperatureThresholdRegistration> indexRegistrations,
+                List<TemperatureThresholdRegistration> addedListenerRegistrations,
+                Map<TemperatureWindow, List<TemperatureThresholdRegistration>> windowRegistrations) {
+
+            TemperatureThresholdRegistration[] grownListenerRegistrations = Arrays.copyOf(
+                    listenerRegistrations, listenerRegistrations.length + addedListenerRegistrations.size());
+
+            for (int addedIndex = 0; addedIndex < addedListenerRegistrations.size(); addedIndex++) {
+                grownListenerRegistrations[listenerRegistrations.length + addedIndex] = addedListenerRegistrations.get(addedIndex);
+            }
+
+            // Existing windows keep their aggregator so adding thresholds
+            // doesn't reset the readings already in the window
+            List<WindowThresholds> grownWindowThresholds = new ArrayList<>(windowThresholds.length + windowRegistrations.size());
+            Map<TemperatureWindow, List<TemperatureThresholdRegistration>> addedWindowRegistrations = new LinkedHashMap<>(windowRegistrations);
+
+            for (WindowThresholds currentWindowThresholds : windowThresholds) {
+                List<TemperatureThresholdRegistration> registrations = addedWindowRegistrations.remove(currentWindowThresholds.temperatureWindow);
+
+                grownWindowThresholds.add(registrations == null ? currentWindowThresholds : currentWindowThresholds.withAdded(registrations));
+            }
+
+            for (Map.Entry<TemperatureWindow, List<TemperatureThresholdRegistration>> addedWindow : addedWindowRegistrations.entrySet()) {
+                grownWindowThresholds.add(new WindowThresholds(addedWindow.getKey(), thresholdIndex).withAdded(addedWindow.getValue()));
+            }
+
+            return new SensorSnapshot(
+                    thresholdIndex.withAdded(indexRegistrations),
+                    grownListenerRegistrations,
+                    grownWindowThresholds.toArray(NO_WINDOW_THRESHOLDS));
+        }
+
+        private SensorSnapshot withoutUnregistered() {
+            return withoutUnregistered(Collections.emptySet());
+        }
+
+        // Windows left without any thresholds are dropped along with their
+        // aggregator
+        private SensorSnapshot withoutUnregistered(Set<TemperatureThresholdRegistration> removedRegistrations) {
+            return new SensorSnapshot(
+                    thresholdIndex.withoutUnregistered(removedRegistrations),
+                    Arrays.stream(listenerRegistrations)
+                            .filter(registration -> registration.isRegistered() && !removedRegistrations.contains(registration))
+                            .toArray(TemperatureThresholdRegistration[]::new),
+                    Arrays.stream(windowThresholds)
+                            .map(currentWindowThresholds -> currentWindowThresholds.withoutUnregistered(removedRegistrations))
+                            .filter(currentWindowThresholds -> currentWindowThresholds.size() > 0)
+                            .toArray(WindowThresholds[]::new));
+        }
+
+        private void markUnregistered() {
+            thresholdIndex.markUnregistered();
+
+            for (TemperatureThresholdRegistration listenerRegistration : listenerRegistrations) {
+                listenerRegistration.markUnregistered();
+            }
+
+            for (WindowThresholds currentWindowThresholds : windowThresholds) {
+                currentWindowThresholds.markUnregistered();
+            }
+        }
+    }
+
+    // Thresholds on the aggregates of a single window of a sensor. The index of
+    // an aggregate is evented with the aggregate before and after each reading
+    // as if they were the previous and new temperatures.
+    //
+    // The thresholds are immutable like the rest of a sensor snapshot while the
+    // aggregator is carried over from one snapshot to the next.
+    private static class WindowThresholds {
+
+        private static final TemperatureAggregates[] TEMPERATURE_AGGREGATES = TemperatureAggregates.values();
+
+        private final TemperatureWindow temperatureWindow;
+        private final TemperatureWindowAggregator temperatureWindowAggregator;
+        private final TemperatureThresholdIndex.IndexSnapshot[] aggregateThresholdIndexes;
+        private final float[] previousAggregates;
+
+        // Every aggregate starts out with an empty copy of the sensor index so
+        // they share its listener
+        private WindowThresholds(TemperatureWindow temperatureWindow, TemperatureThresholdIndex.IndexSnapshot emptyThresholdIndex) {
+            this.temperatureWindow = temperatureWindow;
+            this.temperatureWindowAggregator = new TemperatureWindowAggregator(temperatureWindow);
+            this.aggregateThresholdIndexes = new TemperatureThresholdIndex.IndexSnapshot[TEMPERATURE_AGGREGATES.length];
+            this.previousAggregates = new float[TEMPERATURE_AGGREGATES.length];
+
+            Arrays.fill(aggregateThresholdIndexes, emptyThresholdIndex.cleared());
+        }
+
+        private WindowThresholds(WindowThresholds windowThresholds, TemperatureThresholdIndex.IndexSnapshot[] aggregateThresholdIndexes) {
+            this.temperatureWindow = windowThresholds.temperatureWindow;
+            this.temperatureWindowAggregator = windowThresholds.temperatureWindowAggregator;
+            this.aggregateThresholdIndexes = aggregateThresholdIndexes;
+            this.previousAggregates = windowThresholds.previousAggregates;
+        }
+
+        private WindowThresholds withAdded(List<TemperatureThresholdRegistration> registrations) {
+            List<List<TemperatureThresholdRegistration>> aggregateRegistrations = new ArrayList<>(TEMPERATURE_AGGREGATES.length);
+
+            for (int aggregateIndex = 0; aggregateIndex < TEMPERATURE_AGGREGATES.length; aggregateIndex++) {
+                aggregateRegistrations.add(new ArrayList<>());
+            }
+
+            for (TemperatureThresholdRegistration registration : registrations) {
+                TemperatureThreshold temperatureThreshold = (TemperatureThreshold) registration.getTemperatureThreshold();
+
+                aggregateRegistrations.get(temperatureThreshold.getTemperatureAggregate().ordinal()).add(registration);
+            }
+
+            TemperatureThresholdIndex.IndexSnapshot[] grownAggregateThresholdIndexes = new TemperatureThresholdIndex.IndexSnapshot[TEMPERATURE_AGGREGATES.length];
+
+            for (int aggregateIndex = 0; aggregateIndex < TEMPERATURE_AGGREGATES.length; aggregateIndex++) {
+                grownAggregateThresholdIndexes[aggregateIndex] = aggregateThresholdIndexes[aggregateIndex].withAdded(aggregateRegistrations.get(aggregateIndex));
+            }
+
+            return new WindowThresholds(this, grownAggregateThresholdIndexes);
+        }
+
+        private WindowThresholds withoutUnregistered(Set<TemperatureThresholdRegistration> removedRegistrations) {
+            TemperatureThresholdIndex.IndexSnapshot[] compactedAggregateThresholdIndexes = new TemperatureThresholdIndex.IndexSnapshot[TEMPERATURE_AGGREGATES.length];
+
+            for (int aggregateIndex = 0; aggregateIndex < TEMPERATURE_AGGREGATES.length; aggregateIndex++) {
+                compactedAggregateThresholdIndexes[aggregateIndex] = aggregateThresholdIndexes[aggregateIndex].withoutUnregistered(removedRegistrations);
+            }
+
+            return new WindowThresholds(this, compactedAggregateThresholdIndexes);
+        }
+
+        private void markUnregistered() {
+            for (TemperatureThresholdIndex.IndexSnapshot aggregateThresholdIndex : aggregateThresholdIndexes) {
+                aggregateThresholdIndex.markUnregistered();
+            }
+        }
+
+        private int size() {
+            int size = 0;
+
+            for (TemperatureThresholdIndex.IndexSnapshot aggregateThresholdIndex : aggregateThresholdIndexes) {
+                size += aggregateThresholdIndex.size();
+            }
+
+            return size;
+        }
+
+        private void onTemperatureRead(float temperature, TemperatureScales temperatureScaleUsedForReading, long readNanos) {
+            // Nothing can be crossed until the window held a reading before this one
+            boolean hasPreviousAggregates = !temperatureWindowAggregator.isEmpty();
+
+            for (int aggregateIndex = 0; aggregateIndex < previousAggregates.length; aggregateIndex++) {
+                previousAggregates[aggregateIndex] = temperatureWindowAggregator.getAggregate(TEMPERATURE_AGGREGATES[aggregateIndex]);
+            }
+
+            temperatureWindowAggregator.onTemperatureRead(temperature, readNanos);
+
+            if (!hasPreviousAggregates) {
+                return;
+            }
+
+            for (int aggregateIndex = 0; aggregateIndex < aggregateThresholdIndexes.length; aggregateIndex++) {
+                TemperatureThresholdIndex.IndexSnapshot aggregateThresholdIndex = aggregateThresholdIndexes[aggregateIndex];
+
+                float previousAggregate = previousAggregates[aggregateIndex];
+                float newAggregate = temperatureWindowAggregator.getAggregate(TEMPERATURE_AGGREGATES[aggregateIndex]);
+
+                if (Float.compare(previousAggregate, newAggregate) != 0 || aggregateThresholdIndex.observesEveryReading()) {
+                    aggregateThresholdIndex.onTemperatureRead(newAggregate, previousAggregate, temperatureScaleUsedForReading);
+                }
+            }
+        }
+    }
+
+}
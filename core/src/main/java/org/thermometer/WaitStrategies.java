@@ -0,0 +1,7 @@
+package org.thermometer;
+
+public enum WaitStrategies {
+    BUSY_SPIN,
+    YIELD,
+    PARK
+}
@@ -0,0 +1,3187 @@
+package org.thermometer;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+public class ProjectTests {
+
+    public static void main(String[] args) {
+        testDefaultThermometerConstructor();
+        testSetters();
+        testOnTemperatureDataSetsTemperatures();
+        testTemperatureThresholdBuilder();
+        testIsTempThresholdReached();
+        testIsTempDifferencePrecise();
+        testIsTempMovementCorrectDirection();
+        testThresholdIsTriggered();
+        testTemperatureDispatcherBuilder();
+        testDispatchPreservesReadingOrder();
+        testDispatchDropsNewestWhenFull();
+        testDispatchIsReentrantAndBounded();
+        testCallerThreadDispatcherAwaitsDrains();
+        testRegistryDropsAreCountedPerSensor();
+        testRegistryQueuesReadingsInSwapOrder();
+        testTemperatureThresholdIndexMatchesLinearScan();
+        testThermometerRegistryKeepsSensorsIndependent();
+        testBatchOnTemperatureDataMatchesSingleReadings();
+        testPrimitiveTemperatureGetters();
+        testOnTemperatureDataDoesNotAllocate();
+        testBatchWithMixedScalesMatchesSingleReadings();
+        testReplayConvertedCsvIntoRegistry();
+        testReplayPacedInRealTime();
+        testJournalRecoversTemperaturesAcrossRestarts();
+        testJournalDiscardsTornRecords();
+        testDebouncedThresholds();
+        testWindowAggregatorMatchesRescan();
+        testThresholdOnAggregate();
+        testTimeWindowsUseIngestTime();
+        testLatencyHistogramPercentiles();
+        testMetricsCountReadingsAndFires();
+        testThresholdRegistrationHandles();
+        testRegistrationWhileDispatching();
+        testSlowListenerIsQuarantined();
+        testSlowListenerDoesNotDelayOthers();
+        testStuckListenersDoNotStarveDefaultIsolation();
+        testConflatedReadingsKeepCrossings();
+        testConflatedReadingsKeepCrossingsInBothDirections();
+        testConflatedReadingsKeepCrossingsOffTheirPath();
+        testIngestServerOverLoopback();
+        testIngestServerLimitsConnections();
+        testThresholdArraysMatchIndex();
+        testThresholdEventPublisherHonoursDemand();
+        testThresholdEventPublisherWakesBlockedProducersOnError();
+        testThresholdConfigReloadKeepsUnchangedThresholds();
+        testThresholdConfigReloadRefusesEmptyConfig();
+        testShardedPipelineOwnsSensors();
+        testCheckpointRestoresThresholdsAndTemperatures();
+    }
+
+    public static void testDefaultThermometerConstructor() {
+        Thermometer thermometer = new Thermometer();
+
+        assert thermometer.getTemperatureScale() == TemperatureScales.CELSIUS_SCALE :
+                "Constructor didn't set proper temperature scale";
+
+        assert thermometer.getCurrentTemperature() == null :
+                "Constructor didn't properly set current temperature";
+
+        assert thermometer.getPreviousTemperature() == null :
+                "Constructor didn't properly set previous temperature";
+    }
+
+    public static void testSetters() {
+        Thermometer thermometer = new Thermometer();
+
+        TemperatureScales currentTemperatureScale = thermometer.getTemperatureScale();
+
+        // Take the opposite of whatever value the current temperature scale is set at
+        // for the expected test value
+        TemperatureScales expectedTemperatureScale
+                = currentTemperatureScale == TemperatureScales.CELSIUS_SCALE
+                        ? TemperatureScales.FAHRENHEIT_SCALE : TemperatureScales.CELSIUS_SCALE;
+
+        thermometer.setTemperatureScale(expectedTemperatureScale);
+
+        assert thermometer.getTemperatureScale() == expectedTemperatureScale :
+                "Failed to set temperature scale";
+
+        // Verify that setting the temperature scale to a 'null' value fails
+        try {
+            thermometer.setTemperatureScale(null);
+            assert true == false : "Failed to catch an exception when setting 'null' as the temperature scale";
+        } catch (IllegalArgumentException e) {
+            // Purposely left blank - if we get here it means we properly caught an
+            // exception and didn't execute an assert statement that will always fail
+        }
+    }
+
+    public static void testOnTemperatureDataSetsTemperatures() {
+        Thermometer thermometer = new Thermometer();
+
+        // Verify the first iteration of 'onTemperatureData' being invoked which
+        // should should result in the previous value still being null
+        float temperatureData1 = 1.0F;
+
+        Float expectedPreviousTemp = null;
+        Float expectedCurrentTemp = temperatureData1;
+
+        thermometer.onTemperatureData(temperatureData1);
+
+        assert thermometer.getPreviousTemperature() == expectedPreviousTemp :
+                String.format("Previous temp not properly set when reading a temperature of '%f'", temperatureData1);
+
+        assert Float.compare(thermometer.getCurrentTemperature(), expectedCurrentTemp) == 0 :
+                String.format("Current temp not properly set when reading a temperature of '%f'", temperatureData1);
+
+        // Verify the second iteration of 'onTemperatureData' being invoked
+        float temperatureData2 = 7.0F;
+
+        expectedPreviousTemp = temperatureData1;
+        expectedCurrentTemp = temperatureData2;
+
+        thermometer.onTemperatureData(temperatureData2);
+
+        assert Float.compare(thermometer.getPreviousTemperature(), expectedPreviousTemp) == 0 :
+                String.format("Previous temp not properly set when reading a temperature of '%f'", temperatureData2);
+
+        assert Float.compare(thermometer.getCurrentTemperature(), expectedCurrentTemp) == 0 :
+                String.format("Current temp not properly set when reading a temperature of '%f'", temperatureData2);
+
+        // Verify the third iteration of 'onTemperatureData' being invoked
+        float temperatureData3 = -5.0F;
+
+        expectedPreviousTemp = temperatureData2;
+        expectedCurrentTemp = temperatureData3;
+
+        thermometer.onTemperatureData(temperatureData3);
+
+        assert Float.compare(thermometer.getPreviousTemperature(), expectedPreviousTemp) == 0 :
+                String.format("Previous temp not properly set when reading a temperature of '%f'", temperatureData3);
+
+        assert Float.compare(thermometer.getCurrentTemperature(), expectedCurrentTemp) == 0 :
+                String.format("Current temp not properly set when reading a temperature of '%f'", temperatureData3);
+    }
+
+    public static void testTemperatureThresholdBuilder() {
+        // Verify that the default values are set with the required values when
+        // using the TemperatureThresholdBuilder type to get an instance of a
+        // TemperatureThreshold
+        float expectedTemperatureThreshold = 1.0F;
+
+        Consumer<Float> thresholdEventCallback = newTemperature -> {
+            // Purposely left blank - will assert this functionality separtely when
+            // verifying thresholds
+        };
+
+        TemperatureThreshold temperatureThreshold
+                = new TemperatureThreshold.TemperatureThresholdBuilder(expectedTemperatureThreshold, thresholdEventCallback).build();
+
+        assert Float.compare(temperatureThreshold.getTemperatureThreshold(), expectedTemperatureThreshold) == 0 :
+                "TemperatureThresholdBuilder didn't properly set default value of the temperature threshold";
+
+        assert temperatureThreshold.getTemperatureScale() == TemperatureThreshold.DEFAULT_TEMPERATURE_SCALE :
+                "TemperatureThresholdBuilder didn't properly set default value of the temperature scale";
+
+        assert Float.compare(temperatureThreshold.getThresholdTriggerPrecision(), TemperatureThreshold.DEFAULT_THRESHOLD_TRIGGER_PRECISION) == 0 :
+                "TemperatureThresholdBuilder didn't properly set default value of the temperature threshold precision";
+
+        assert temperatureThreshold.getThresholdTriggerDirection() == TemperatureThreshold.DEFAULT_THRESHOLD_TRIGGER_DIRECTION :
+                "TemperatureThresholdBuilder didn't properly set default value of the temperature threshold trigger direction";
+
+        // Verify that setting alternative values using the setters on the 
+        // TemperatureThresholdBuilder type sets the proper values on the
+        // instance of the TemperatureThreshold
+        TemperatureScales expectedTemperatureScale
+                = TemperatureThreshold.DEFAULT_TEMPERATURE_SCALE == TemperatureScales.CELSIUS_SCALE
+                        ? TemperatureScales.FAHRENHEIT_SCALE : TemperatureScales.CELSIUS_SCALE;
+
+        float expectedThresholdTriggerPrecision = 5.0F;
+
+        ThresholdTriggerDirections expectedThresholdTriggerDirection = ThresholdTriggerDirections.DECREASING_TEMP;
+
+        temperatureThreshold
+                = new TemperatureThreshold.TemperatureThresholdBuilder(expectedTemperatureThreshold, thresholdEventCallback)
+                        .temperatureScale(expectedTemperatureScale)
+                        .thresholdTriggerPrecision(expectedThresholdTriggerPrecision)
+                        .thresholdTriggerDirection(expectedThresholdTriggerDirection)
+                        .build();
+
+        assert temperatureThreshold.getTemperatureScale() == expectedTemperatureScale :
+                "TemperatureThresholdBuilder didn't properly set the temperature scale";
+
+        assert Float.compare(temperatureThreshold.getThresholdTriggerPrecision(), expectedThresholdTriggerPrecision) == 0 :
+                "TemperatureThresholdBuilder didn't properly set the temperature threshold precision";
+
+        assert temperatureThreshold.getThresholdTriggerDirection() == expectedThresholdTriggerDirection :
+                "TemperatureThresholdBuilder didn't properly set the temperature threshold trigger direction";
+    }
+
+    public static void testIsTempThresholdReached() {
+        float testTemperatureThreshold = 1.0F;
+
+        Consumer<Float> thresholdEventCallback = newTemperature -> {
+            // Purposely left blank - will assert this functionality separtely when
+            // verifying thresholds
+        };
+
+        TemperatureThreshold temperatureThreshold
+                = new TemperatureThreshold.TemperatureThresholdBuilder(testTemperatureThreshold, thresholdEventCallback).build();
+
+        // Verify that an increasing temperature crossing the threshold is identified
+        float previousTemp = testTemperatureThreshold - 1.0F;
+        float newTemp = testTemperatureThreshold + 1.0F;
+
+        assert temperatureThreshold.isTempThresholdReached(newTemp, previousTemp) == true :
+                String.format("Failed to identify an increasing temperature crossing the threshold");
+
+        // Verify that an increasing temperature landing on the threshold is identified
+        previousTemp = testTemperatureThreshold - 1.0F;
+        newTemp = testTemperatureThreshold;
+
+        assert temperatureThreshold.isTempThresholdReached(newTemp, previousTemp) == true :
+                String.format("Failed to identify an increasing temperature landing on the threshold");
+
+        // Verify that a decresing temperature crossing the threshold is identified
+        previousTemp = testTemperatureThreshold + 1.0F;
+        newTemp = testTemperatureThreshold - 1.0F;
+
+        assert temperatureThreshold.isTempThresholdReached(newTemp, previousTemp) == true :
+                String.format("Failed to identify a decreasing temperature crossing the threshold");
+
+        // Verify that a decresing temperature landing on the threshold is identified
+        previousTemp = testTemperatureThreshold + 1.0F;
+        newTemp = testTemperatureThreshold;
+
+        assert temperatureThreshold.isTempThresholdReached(newTemp, previousTemp) == true :
+                String.format("Failed to identify a decreasing temperature landing on the threshold");
+    }
+
+    public static void testIsTempDifferencePrecise() {
+        float testTemperatureThreshold = 1.0F;
+        float testThresholdTriggerPrecision = 5.0F;
+
+        Consumer<Float> thresholdEventCallback = newTemperature -> {
+            // Purposely left blank - will assert this functionality separtely when
+            // verifying thresholds
+        };
+
+        TemperatureThreshold temperatureThreshold
+                = new TemperatureThreshold.TemperatureThresholdBuilder(testTemperatureThreshold, thresholdEventCallback)
+                        .thresholdTriggerPrecision(testThresholdTriggerPrecision)
+                        .build();
+
+        // Verify that a movement isn't precise enough
+        float previousTemp = testTemperatureThreshold;
+        float newTemp = testTemperatureThreshold + (testThresholdTriggerPrecision - 1.0F);
+
+        assert temperatureThreshold.isTempDifferencePrecise(newTemp, previousTemp) == false :
+                String.format("Failed to identify a movement that isn't precise enough");
+
+        // Verify that a movement is precise enough
+        previousTemp = testTemperatureThreshold;
+        newTemp = testTemperatureThreshold + (testThresholdTriggerPrecision + 1.0F);
+
+        assert temperatureThreshold.isTempDifferencePrecise(newTemp, previousTemp) == true :
+                String.format("Failed to identify a movement that is precise enough");
+    }
+
+    public static void testIsTempMovementCorrectDirection() {
+        float testTemperatureThreshold = 1.0F;
+        ThresholdTriggerDirections testThresholdTriggerDirection = ThresholdTriggerDirections.INCREASING_TEMP;
+
+        Consumer<Float> thresholdEventCallback = newTemperature -> {
+            // Purposely left blank - will assert this functionality separtely when
+            // verifying thresholds
+        };
+
+        TemperatureThreshold temperatureThreshold
+                = new TemperatureThreshold.TemperatureThresholdBuilder(testTemperatureThreshold, thresholdEventCallback)
+                        .thresholdTriggerDirection(testThresholdTriggerDirection)
+                        .build();
+
+        // Verify an increasing movement
+        float previousTemp = testTemperatureThreshold;
+        float newTemp = testTemperatureThreshold + 1.0F;
+
+        assert temperatureThreshold.isTempMovementCorrectDirection(newTemp, previousTemp) == true :
+                String.format("Failed to identify an increasing temp movement");
+
+        // Verify a increasing movement
+        testThresholdTriggerDirection = ThresholdTriggerDirections.DECREASING_TEMP;
+        temperatureThreshold
+                = new TemperatureThreshold.TemperatureThresholdBuilder(testTemperatureThreshold, thresholdEventCallback)
+                        .thresholdTriggerDirection(testThresholdTriggerDirection)
+                        .build();
+
+        previousTemp = testTemperatureThreshold;
+        newTemp = testTemperatureThreshold - 1.0F;
+
+        assert temperatureThreshold.isTempMovementCorrectDirection(newTemp, previousTemp) == true :
+                String.format("Failed to identify an decreasing temp movement");
+    }
+
+    public static void testThresholdIsTriggered() {
+        float expectedTemperatureThreshold = 1.0F;
+
+        AtomicBoolean thresholdHasBeenTriggered = new AtomicBoolean(false);
+
+        Consumer<Float> thresholdEventCallback = newTemperature -> {
+            // Purposely left blank - will assert this functionality separtely when
+            // verifying thresholds
+            thresholdHasBeenTriggered.getAndSet(true);
+            System.out.println("Test threshold event triggered");
+        };
+
+        TemperatureThreshold temperatureThreshold
+                = new TemperatureThreshold.TemperatureThresholdBuilder(expectedTemperatureThreshold, thresholdEventCallback).build();
+
+        Thermometer thermometer = new Thermometer();
+        thermometer.addTemperatureThreshold(temperatureThreshold);
+
+        // Provide several increasing pieces of tempeature data to verify that
+        // we cross a threshold
+        float temperatureData = expectedTemperatureThreshold - 3.0F;
+
+        for (int temperatureDataCount = 0; temperatureDataCount < 10; temperatureDataCount++) {
+            thermometer.onTemperatureData(temperatureData);
+
+            temperatureData += 1.0F;
+        }
+
+        // At this point the atomic of wheter we have triggered our threshold
+        // should be set
+        assert thresholdHasBeenTriggered.get() == true : "Failed to trigger threshold on thermometer";
+    }
+
+    public static void testTemperatureDispatcherBuilder() {
+        TemperatureDispatcher temperatureDispatcher = new TemperatureDispatcher.TemperatureDispatcherBuilder().build();
+
+        assert temperatureDispatcher.getDispatchStrategy() == TemperatureDispatcher.DEFAULT_DISPATCH_STRATEGY :
+                "TemperatureDispatcherBuilder didn't properly set default value of the dispatch strategy";
+
+        assert temperatureDispatcher.getQueueCapacity() == TemperatureDispatcher.DEFAULT_QUEUE_CAPACITY :
+                "TemperatureDispatcherBuilder didn't properly set default value of the queue capacity";
+
+        assert temperatureDispatcher.getBackpressurePolicy() == TemperatureDispatcher.DEFAULT_BACKPRESSURE_POLICY :
+                "TemperatureDispatcherBuilder didn't properly set default value of the backpressure policy";
+
+        temperatureDispatcher.shutdown();
+
+        // Verify that invalid values are rejected by the builder
+        try {
+            new TemperatureDispatcher.TemperatureDispatcherBuilder().queueCapacity(0);
+            assert true == false : "Failed to catch an exception when setting a queue capacity of '0'";
+        } catch (IllegalArgumentException e) {
+            // Purposely left blank - if we get here it means we properly caught an
+            // exception and didn't execute an assert statement that will always fail
+        }
+
+        // Virtual threads are only available on newer runtimes so either we get
+        // a working dispatcher or we are told that it isn't supported
+        try {
+            TemperatureDispatcher virtualThreadDispatcher = new TemperatureDispatcher.TemperatureDispatcherBuilder()
+                    .dispatchStrategy(DispatchStrategies.VIRTUAL_THREADS)
+                    .build();
+
+            assert virtualThreadDispatcher.getDispatchStrategy() == DispatchStrategies.VIRTUAL_THREADS :
+                    "TemperatureDispatcherBuilder didn't properly set the dispatch strategy";
+
+            virtualThreadDispatcher.shutdown();
+        } catch (UnsupportedOperationException e) {
+            // Purposely left blank - running on a runtime without virtual threads
+        }
+
+        // Every default `Thermometer` shares the default dispatcher
+        try {
+            TemperatureDispatcher.getDefaultDispatcher().shutdown();
+            assert true == false : "Failed to catch an exception when shutting down the default dispatcher";
+        } catch (UnsupportedOperationException e) {
+            // Purposely left blank - if we get here it means we properly caught an
+            // exception and didn't execute an assert statement that will always fail
+        }
+
+        assert !TemperatureDispatcher.getDefaultDispatcher().isShutdown() : "The default dispatcher was shutdown";
+    }
+
+    public static void testDispatchPreservesReadingOrder() {
+        TemperatureDispatcher temperatureDispatcher = new TemperatureDispatcher.TemperatureDispatcherBuilder()
+                .dispatchStrategy(DispatchStrategies.BOUNDED_POOL)
+                .poolSize(4)
+                .queueCapacity(16)
+                .backpressurePolicy(BackpressurePolicies.BLOCK)
+                .build();
+
+        List<Float> readTemperatures = Collections.synchronizedList(new ArrayList<>());
+
+        Thermometer thermometer = new Thermometer(temperatureDispatcher);
+        thermometer.addTemperatureThreshold((newTemperature, previousTemperature, temperatureScale) -> {
+            readTemperatures.add(newTemperature);
+        });
+
+        int readingCount = 1000;
+
+        for (int temperatureData = 0; temperatureData < readingCount; temperatureData++) {
+            thermometer.onTemperatureData(temperatureData);
+        }
+
+        temperatureDispatcher.shutdown();
+
+        try {
+            assert temperatureDispatcher.awaitTermination(10, TimeUnit.SECONDS) :
+                    "Dispatcher didn't terminate after being shutdown";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // The first reading has no previous temperature so it is never evented
+        assert readTemperatures.size() == readingCount - 1 :
+                String.format("Expected '%d' readings to be evented but got '%d'", readingCount - 1, readTemperatures.size());
+
+        for (int readIndex = 0; readIndex < readTemperatures.size(); readIndex++) {
+            assert Float.compare(readTemperatures.get(readIndex), readIndex + 1) == 0 :
+                    String.format("Reading '%d' was evented out of order", readIndex);
+        }
+    }
+
+    public static void testDispatchDropsNewestWhenFull() {
+        TemperatureDispatcher temperatureDispatcher = new TemperatureDispatcher.TemperatureDispatcherBuilder()
+                .dispatchStrategy(DispatchStrategies.BOUNDED_POOL)
+                .poolSize(1)
+                .queueCapacity(1)
+                .backpressurePolicy(BackpressurePolicies.DROP_NEWEST)
+                .build();
+
+        CountDownLatch releaseListener = new CountDownLatch(1);
+
+        Thermometer thermometer = new Thermometer(temperatureDispatcher);
+        thermometer.addTemperatureThreshold((newTemperature, previousTemperature, temperatureScale) -> {
+            try {
+                releaseListener.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        // With the listener stuck on the first reading at most two readings can
+        // be held by the dispatcher (one running and one queued)
+        for (int temperatureData = 0; temperatureData < 11; temperatureData++) {
+            thermometer.onTemperatureData(temperatureData);
+        }
+
+        releaseListener.countDown();
+        temperatureDispatcher.shutdown();
+
+        assert thermometer.getDroppedReadingCount() >= 8 :
+                String.format("Expected at least '8' readings to be dropped but got '%d'", thermometer.getDroppedReadingCount());
+    }
+
+    public static void testDispatchIsReentrantAndBounded() {
+        TemperatureDispatcher callerThreadDispatcher = new TemperatureDispatcher.TemperatureDispatcherBuilder()
+                .queueCapacity(1)
+                .backpressurePolicy(BackpressurePolicies.BLOCK)
+                .build();
+
+        List<Float> readTemperatures = Collections.synchronizedList(new ArrayList<>());
+        Thermometer thermometer = new Thermometer(callerThreadDispatcher);
+
+        // A listener providing readings of its own fills the lane it is being
+        // drained from and mustn't wait on itself
+        thermometer.addTemperatureThreshold((newTemperature, previousTemperature, temperatureScale) -> {
+            readTemperatures.add(newTemperature);
+
+            if (newTemperature == 2.0F) {
+                thermometer.onTemperatureData(3.0F);
+                thermometer.onTemperatureData(4.0F);
+            }
+        });
+
+        Thread reentrantProducer = new Thread(() -> {
+            thermometer.onTemperatureData(1.0F);
+            thermometer.onTemperatureData(2.0F);
+        });
+
+        reentrantProducer.start();
+
+        try {
+            reentrantProducer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        assert !reentrantProducer.isAlive() : "A listener providing readings deadlocked on its own lane";
+        assert readTemperatures.equals(Arrays.asList(2.0F, 3.0F, 4.0F)) :
+                String.format("Expected the readings provided by the listener in order but got '%s'", readTemperatures);
+
+        // Callers running the lane themselves never push it past its capacity
+        TemperatureDispatcher callerRunsDispatcher = new TemperatureDispatcher.TemperatureDispatcherBuilder()
+                .dispatchStrategy(DispatchStrategies.BOUNDED_POOL)
+                .poolSize(1)
+                .queueCapacity(2)
+                .backpressurePolicy(BackpressurePolicies.CALLER_RUNS)
+                .build();
+
+        TemperatureDispatcher.DispatchLane dispatchLane = callerRunsDispatcher.newLane();
+        AtomicInteger maxPendingCount = new AtomicInteger();
+        List<Thread> producers = new ArrayList<>();
+
+        for (int producerIndex = 0; producerIndex < 4; producerIndex++) {
+            producers.add(new Thread(() -> {
+                for (int taskIndex = 0; taskIndex < 200; taskIndex++) {
+                    dispatchLane.submit(() -> maxPendingCount.accumulateAndGet(dispatchLane.getPendingCount(), Math::max));
+                }
+            }));
+        }
+
+        producers.forEach(Thread::start);
+
+        try {
+            for (Thread producer : producers) {
+                producer.join();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        callerRunsDispatcher.shutdown();
+
+        assert maxPendingCount.get() <= 2 :
+                String.format("Expected at most '2' tasks to be pending but saw '%d'", maxPendingCount.get());
+    }
+
+    public static void testCallerThreadDispatcherAwaitsDrains() {
+        TemperatureDispatcher callerThreadDispatcher = new TemperatureDispatcher.TemperatureDispatcherBuilder().build();
+
+        CountDownLatch listenerEntered = new CountDownLatch(1);
+        CountDownLatch listenerReleased = new CountDownLatch(1);
+
+        Thermometer thermometer = new Thermometer(callerThreadDispatcher);
+        thermometer.addTemperatureThreshold((newTemperature, previousTemperature, temperatureScale) -> {
+            listenerEntered.countDown();
+
+            try {
+                listenerReleased.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        Thread producer = new Thread(() -> {
+            thermometer.onTemperatureData(1.0F);
+            thermometer.onTemperatureData(2.0F);
+        });
+
+        producer.start();
+
+        try {
+            assert listenerEntered.await(10, TimeUnit.SECONDS) : "Listener wasn't evented";
+
+            // Not terminated before it is shutdown nor while the producer is
+            // still draining the lane
+            assert !callerThreadDispatcher.awaitTermination(20, TimeUnit.MILLISECONDS) :
+                    "Dispatcher terminated before it was shutdown";
+
+            callerThreadDispatcher.shutdown();
+
+            assert !callerThreadDispatcher.awaitTermination(20, TimeUnit.MILLISECONDS) :
+                    "Dispatcher terminated while a producer was still draining a lane";
+
+            listenerReleased.countDown();
+
+            assert callerThreadDispatcher.awaitTermination(10, TimeUnit.SECONDS) :
+                    "Dispatcher didn't terminate once the producer was done draining";
+
+            producer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static void testRegistryDropsAreCountedPerSensor() {
+        TemperatureDispatcher temperatureDispatcher = new TemperatureDispatcher.TemperatureDispatcherBuilder()
+                .dispatchStrategy(DispatchStrategies.BOUNDED_POOL)
+                .poolSize(1)
+                .queueCapacity(2)
+                .backpressurePolicy(BackpressurePolicies.DROP_OLDEST)
+                .build();
+
+        // Both sensors share the one lane
+        ThermometerRegistry thermometerRegistry = new ThermometerRegistry.ThermometerRegistryBuilder(2)
+                .temperatureDispatcher(temperatureDispatcher)
+                .laneCount(1)
+                .build();
+
+        CountDownLatch listenerStarted = new CountDownLatch(1);
+        CountDownLatch releaseListener = new CountDownLatch(1);
+        List<Float> quietSensorTemperatures = Collections.synchronizedList(new ArrayList<>());
+
+        thermometerRegistry.addTemperatureThreshold(0, (newTemperature, previousTemperature, temperatureScale) -> {
+            listenerStarted.countDown();
+
+            try {
+                releaseListener.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        thermometerRegistry.addTemperatureThreshold(1, (newTemperature, previousTemperature, temperatureScale) -> quietSensorTemperatures.add(newTemperature));
+
+        thermometerRegistry.onTemperatureData(0, 0.0F);
+        thermometerRegistry.onTemperatureData(0, 1.0F);
+
+        try {
+            listenerStarted.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        thermometerRegistry.onTemperatureData(1, 0.0F);
+        thermometerRegistry.onTemperatureData(1, 1.0F);
+
+        // The noisy sensor can only push out its own readings
+        for (int temperatureData = 2; temperatureData < 12; temperatureData++) {
+            thermometerRegistry.onTemperatureData(0, temperatureData);
+        }
+
+        releaseListener.countDown();
+        temperatureDispatcher.shutdown();
+
+        try {
+            assert temperatureDispatcher.awaitTermination(10, TimeUnit.SECONDS) :
+                    "Dispatcher didn't terminate after being shutdown";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        assert thermometerRegistry.getDroppedReadingCount(0) == 9 && thermometerRegistry.getDroppedReadingCount(1) == 0 :
+                String.format("Expected '9' and '0' dropped readings but got '%d' and '%d'",
+                        thermometerRegistry.getDroppedReadingCount(0), thermometerRegistry.getDroppedReadingCount(1));
+        assert quietSensorTemperatures.equals(List.of(1.0F)) :
+                String.format("Reading of the quiet sensor was dropped, got '%s'", quietSensorTemperatures);
+    }
+
+    public static void testRegistryQueuesReadingsInSwapOrder() {
+        TemperatureDispatcher temperatureDispatcher = new TemperatureDispatcher.TemperatureDispatcherBuilder()
+                .dispatchStrategy(DispatchStrategies.BOUNDED_POOL)
+                .poolSize(2)
+                .queueCapacity(16)
+                .build();
+
+        ThermometerRegistry thermometerRegistry = new ThermometerRegistry.ThermometerRegistryBuilder(1)
+                .temperatureDispatcher(temperatureDispatcher)
+                .build();
+
+        List<float[]> readings = new ArrayList<>();
+        thermometerRegistry.addTemperatureThreshold(0, (newTemperature, previousTemperature, temperatureScale) ->
+                readings.add(new float[] {previousTemperature, newTemperature}));
+
+        int producerCount = 4;
+        int readingsPerProducer = 5_000;
+        List<Thread> producers = new ArrayList<>();
+
+        for (int producerIndex = 0; producerIndex < producerCount; producerIndex++) {
+            int firstTemperature = producerIndex * readingsPerProducer;
+
+            producers.add(new Thread(() -> {
+                for (int readingIndex = 0; readingIndex < readingsPerProducer; readingIndex++) {
+                    thermometerRegistry.onTemperatureData(0, firstTemperature + readingIndex);
+                }
+            }));
+        }
+
+        producers.forEach(Thread::start);
+
+        try {
+            for (Thread producer : producers) {
+                producer.join();
+            }
+
+            temperatureDispatcher.shutdown();
+
+            assert temperatureDispatcher.awaitTermination(10, TimeUnit.SECONDS) :
+                    "Dispatcher didn't terminate after being shutdown";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Every reading has to be evented with the temperature swapped in right
+        // before it as its previous temperature
+        for (int readingIndex = 1; readingIndex < readings.size(); readingIndex++) {
+            assert Float.compare(readings.get(readingIndex)[0], readings.get(readingIndex - 1)[1]) == 0 :
+                    String.format("Reading '%d' was evented out of order", readingIndex);
+        }
+
+        assert readings.size() == producerCount * readingsPerProducer - 1 :
+                String.format("Expected '%d' readings but got '%d'", producerCount * readingsPerProducer - 1, readings.size());
+    }
+
+    public static void testTemperatureThresholdIndexMatchesLinearScan() {
+        Random random = new Random(42);
+
+        int thresholdCount = 500;
+
+        // Each threshold records its own index when fired so that the index and
+        // a linear scan over the same thresholds can be compared
+        List<Integer> indexTriggeredThresholds = new ArrayList<>();
+        List<Integer> linearScanTriggeredThresholds = new ArrayList<>();
+        List<List<Integer>> triggeredThresholdsHolder = new ArrayList<>(Collections.singletonList(indexTriggeredThresholds));
+
+        TemperatureThresholdIndex temperatureThresholdIndex = new TemperatureThresholdIndex();
+        List<TemperatureThreshold> temperatureThresholds = new ArrayList<>();
+
+        ThresholdTriggerDirections[] thresholdTriggerDirections
+                = {null, ThresholdTriggerDirections.INCREASING_TEMP, ThresholdTriggerDirections.DECREASING_TEMP};
+
+        for (int thresholdIndex = 0; thresholdIndex < thresholdCount; thresholdIndex++) {
+            int triggeredThresholdIndex = thresholdIndex;
+
+            Consumer<Float> thresholdEventCallback = newTemperature -> {
+                triggeredThresholdsHolder.get(0).add(triggeredThresholdIndex);
+            };
+
+            TemperatureThreshold temperatureThreshold
+                    = new TemperatureThreshold.TemperatureThresholdBuilder(random.nextInt(200) - 100, thresholdEventCallback)
+                            .temperatureScale(random.nextBoolean() ? TemperatureScales.CELSIUS_SCALE : TemperatureScales.FAHRENHEIT_SCALE)
+                            .thresholdTriggerPrecision(random.nextInt(20))
+                            .thresholdTriggerDirection(thresholdTriggerDirections[random.nextInt(thresholdTriggerDirections.length)])
+                            .build();
+
+            temperatureThresholdIndex.addTemperatureThreshold(temperatureThreshold);
+            temperatureThresholds.add(temperatureThreshold);
+        }
+
+        assert temperatureThresholdIndex.size() == thresholdCount :
+                "TemperatureThresholdIndex didn't hold every threshold that was added";
+
+        for (int readingCount = 0; readingCount < 1000; readingCount++) {
+            float previousTemp = random.nextInt(240) - 120;
+            float newTemp = random.nextInt(240) - 120;
+
+            indexTriggeredThresholds.clear();
+            linearScanTriggeredThresholds.clear();
+
+            triggeredThresholdsHolder.set(0, indexTriggeredThresholds);
+            temperatureThresholdIndex.onTemperatureRead(newTemp, previousTemp, TemperatureScales.CELSIUS_SCALE);
+
+            triggeredThresholdsHolder.set(0, linearScanTriggeredThresholds);
+            for (TemperatureThreshold temperatureThreshold : temperatureThresholds) {
+                temperatureThreshold.onTemperatureRead(newTemp, previousTemp, TemperatureScales.CELSIUS_SCALE);
+            }
+
+            Collections.sort(indexTriggeredThresholds);
+            Collections.sort(linearScanTriggeredThresholds);
+
+            assert indexTriggeredThresholds.equals(linearScanTriggeredThresholds) :
+                    String.format("Index and linear scan disagree moving from '%f' to '%f'", previousTemp, newTemp);
+        }
+
+        temperatureThresholdIndex.clearTemperatureThresholds();
+
+        assert temperatureThresholdIndex.isEmpty() : "Failed to clear the temperature threshold index";
+    }
+
+    public static void testThermometerRegistryKeepsSensorsIndependent() {
+        ThermometerRegistry thermometerRegistry = new ThermometerRegistry.ThermometerRegistryBuilder(3).build();
+
+        AtomicBoolean thresholdHasBeenTriggered = new AtomicBoolean(false);
+
+        Consumer<Float> thresholdEventCallback = newTemperature -> {
+            thresholdHasBeenTriggered.getAndSet(true);
+        };
+
+        // Only the thermometer viewing sensor '1' has a threshold registered with it
+        Thermometer thermometer = thermometerRegistry.getThermometer(1);
+        thermometer.addTemperatureThreshold(new TemperatureThreshold.TemperatureThresholdBuilder(5.0F, thresholdEventCallback).build());
+
+        thermometerRegistry.onTemperatureData(0, 1.0F);
+        thermometerRegistry.onTemperatureData(0, 10.0F);
+
+        assert thresholdHasBeenTriggered.get() == false :
+                "Reading on one sensor triggered a threshold registered with another sensor";
+
+        assert thermometerRegistry.getCurrentTemperature(1) == null :
+                "Reading on one sensor changed the temperature of another sensor";
+
+        thermometerRegistry.onTemperatureData(1, 1.0F);
+        thermometer.onTemperatureData(10.0F);
+
+        assert thresholdHasBeenTriggered.get() == true :
+                "Failed to trigger threshold on a thermometer viewing a registry slot";
+
+        assert Float.compare(thermometer.getPreviousTemperature(), 1.0F) == 0
+                && Float.compare(thermometer.getCurrentTemperature(), 10.0F) == 0 :
+                "Thermometer view didn't reflect the temperatures held by the registry";
+
+        assert thermometerRegistry.getPreviousTemperature(2) == null
+                && thermometerRegistry.getCurrentTemperature(2) == null :
+                "Registry didn't start a sensor without any readings";
+
+        // Verify that sensor ids outside of the registry are rejected
+        try {
+            thermometerRegistry.onTemperatureData(3, 1.0F);
+            assert true == false : "Failed to catch an exception when reading a sensor id outside of the registry";
+        } catch (IllegalArgumentException e) {
+            // Purposely left blank - if we get here it means we properly caught an
+            // exception and didn't execute an assert statement that will always fail
+        }
+    }
+
+    public static void testBatchOnTemperatureDataMatchesSingleReadings() {
+        float[] temperatureData = {-3.0F, -1.0F, -1.0F, 2.0F, 0.5F, 1.0F, 4.0F, 4.0F, -2.0F, 1.0F};
+
+        List<String> singleReadingEvents = new ArrayList<>();
+        List<String> batchEvents = new ArrayList<>();
+        List<String> bufferEvents = new ArrayList<>();
+
+        Thermometer singleReadingThermometer = newRecordingThermometer(singleReadingEvents);
+        Thermometer batchThermometer = newRecordingThermometer(batchEvents);
+        Thermometer bufferThermometer = newRecordingThermometer(bufferEvents);
+
+        for (float temperature : temperatureData) {
+            singleReadingThermometer.onTemperatureData(temperature);
+        }
+
+        // Split the batch so that the second batch has to pick up from where the
+        // first batch left off
+        batchThermometer.onTemperatureData(temperatureData, 0, 1);
+        batchThermometer.onTemperatureData(temperatureData, 1, temperatureData.length - 1);
+
+        FloatBuffer temperatureBuffer = ByteBuffer.allocateDirect(temperatureData.length * Float.BYTES)
+                .order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+        temperatureBuffer.put(temperatureData).flip();
+
+        bufferThermometer.onTemperatureData(temperatureBuffer);
+
+        assert temperatureBuffer.remaining() == 0 : "Batch didn't consume the temperature buffer";
+
+        assert batchEvents.equals(singleReadingEvents) :
+                String.format("Batch events '%s' don't match single reading events '%s'", batchEvents, singleReadingEvents);
+
+        assert bufferEvents.equals(singleReadingEvents) :
+                String.format("Buffer events '%s' don't match single reading events '%s'", bufferEvents, singleReadingEvents);
+
+        for (Thermometer thermometer : new Thermometer[]{batchThermometer, bufferThermometer}) {
+            assert Float.compare(thermometer.getPreviousTemperature(), singleReadingThermometer.getPreviousTemperature()) == 0 :
+                    "Previous temp not properly set after reading a batch";
+
+            assert Float.compare(thermometer.getCurrentTemperature(), singleReadingThermometer.getCurrentTemperature()) == 0 :
+                    "Current temp not properly set after reading a batch";
+        }
+
+        // Verify that a range whose end overflows an 'int' is rejected rather
+        // than wrapping around to look like it is in bounds
+        try {
+            batchThermometer.onTemperatureData(temperatureData, 2, Integer.MAX_VALUE);
+            assert true == false : "Failed to catch an exception when reading a batch whose range overflows";
+        } catch (IndexOutOfBoundsException e) {
+            // Purposely left blank - if we get here it means we properly caught an
+            // exception and didn't execute an assert statement that will always fail
+        }
+    }
+
+    private static Thermometer newRecordingThermometer(List<String> events) {
+        Thermometer thermometer = new Thermometer();
+
+        thermometer.addTemperatureThreshold((newTemperature, previousTemperature, temperatureScale) -> {
+            events.add(String.format("read %.1f -> %.1f", previousTemperature, newTemperature));
+        });
+
+        thermometer.addTemperatureThreshold(new TemperatureThreshold.TemperatureThresholdBuilder(0.0F)
+                .thresholdEventCallback(newTemperature -> events.add(String.format("crossed at %.1f", newTemperature)))
+                .build());
+
+        return thermometer;
+    }
+
+    public static void testPrimitiveTemperatureGetters() {
+        Thermometer thermometer = new Thermometer();
+
+        float defaultTemperature = -273.15F;
+
+        assert thermometer.hasPreviousTemperature() == false :
+                "Constructor didn't properly set previous temperature";
+
+        assert Float.compare(thermometer.getCurrentTemperature(defaultTemperature), defaultTemperature) == 0 :
+                "Default temperature wasn't returned before any reading";
+
+        thermometer.onTemperatureData(1.0F);
+        thermometer.onTemperatureData(2.0F);
+
+        assert thermometer.hasPreviousTemperature() == true :
+                "Previous temp not properly set after two readings";
+
+        assert Float.compare(thermometer.getPreviousTemperature(defaultTemperature), 1.0F) == 0
+                && Float.compare(thermometer.getCurrentTemperature(defaultTemperature), 2.0F) == 0 :
+                "Primitive getters didn't return the temperatures that were read";
+
+        // Verify that a builder without a callback is rejected
+        try {
+            new TemperatureThreshold.TemperatureThresholdBuilder(1.0F).build();
+            assert true == false : "Failed to catch an exception when building a threshold without a callback";
+        } catch (IllegalStateException e) {
+            // Purposely left blank - if we get here it means we properly caught an
+            // exception and didn't execute an assert statement that will always fail
+        }
+    }
+
+    public static void testOnTemperatureDataDoesNotAllocate() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+        // Allocation counters are a HotSpot extension so there is nothing to
+        // verify on runtimes that don't provide them
+        if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+
+        com.sun.management.ThreadMXBean allocationMXBean = (com.sun.management.ThreadMXBean) threadMXBean;
+
+        if (!allocationMXBean.isThreadAllocatedMemorySupported() || !allocationMXBean.isThreadAllocatedMemoryEnabled()) {
+            return;
+        }
+
+        long[] triggeredCount = new long[1];
+
+        Thermometer thermometer = new Thermometer();
+
+        for (int thresholdCount = 0; thresholdCount < 10; thresholdCount++) {
+            thermometer.addTemperatureThreshold(new TemperatureThreshold.TemperatureThresholdBuilder(thresholdCount)
+                    .thresholdEventCallback(newTemperature -> triggeredCount[0]++)
+                    .build());
+        }
+
+        int readingCount = 100_000;
+        long threadId = Thread.currentThread().getId();
+        long allocatedBytes = Long.MAX_VALUE;
+
+        // The interpreter allocates where compiled code doesn't, so keep reading
+        // until the hot path has been compiled and measure the steady state
+        for (int round = 0; round < 50 && allocatedBytes >= 1024; round++) {
+            long allocatedBytesBefore = allocationMXBean.getThreadAllocatedBytes(threadId);
+
+            for (int temperatureData = 0; temperatureData < readingCount; temperatureData++) {
+                thermometer.onTemperatureData(temperatureData % 12);
+            }
+
+            allocatedBytes = allocationMXBean.getThreadAllocatedBytes(threadId) - allocatedBytesBefore;
+        }
+
+        assert triggeredCount[0] > 0 : "Failed to trigger thresholds while measuring allocations";
+
+        // Leave a little room for what the allocation counter itself allocates
+        assert allocatedBytes < 1024 :
+                String.format("Reading '%d' temperatures allocated '%d' bytes", readingCount, allocatedBytes);
+    }
+
+    public static void testBatchWithMixedScalesMatchesSingleReadings() {
+        float[] temperatureData = {-40.0F, -10.0F, 5.0F, 5.0F, 20.0F, 0.0F, 35.0F, -5.0F};
+
+        List<String> singleReadingEvents = new ArrayList<>();
+        List<String> batchEvents = new ArrayList<>();
+
+        Thermometer singleReadingThermometer = new Thermometer();
+        Thermometer batchThermometer = new Thermometer();
+
+        // Only `TemperatureThreshold` instances are registered so the batch is
+        // evaluated by the index converting each reading once per scale
+        for (float thresholdTemperature = -20.0F; thresholdTemperature <= 80.0F; thresholdTemperature += 10.0F) {
+            for (TemperatureScales temperatureScale : TemperatureScales.values()) {
+                String thresholdName = String.format("%.1f %s", thresholdTemperature, temperatureScale);
+
+                singleReadingThermometer.addTemperatureThreshold(new TemperatureThreshold.TemperatureThresholdBuilder(thresholdTemperature)
+                        .temperatureScale(temperatureScale)
+                        .thresholdEventCallback(newTemperature -> singleReadingEvents.add(thresholdName + " at " + newTemperature))
+                        .build());
+
+                batchThermometer.addTemperatureThreshold(new TemperatureThreshold.TemperatureThresholdBuilder(thresholdTemperature)
+                        .temperatureScale(temperatureScale)
+                        .thresholdEventCallback(newTemperature -> batchEvents.add(thresholdName + " at " + newTemperature))
+                        .build());
+            }
+        }
+
+        for (float temperature : temperatureData) {
+            singleReadingThermometer.onTemperatureData(temperature);
+        }
+
+        batchThermometer.onTemperatureData(temperatureData, 0, temperatureData.length);
+
+        assert !singleReadingEvents.isEmpty() : "Failed to trigger any thresholds with mixed scales";
+
+        assert batchEvents.equals(singleReadingEvents) :
+                String.format("Batch events '%s' don't match single reading events '%s'", batchEvents, singleReadingEvents);
+    }
+
+    public static void testReplayConvertedCsvIntoRegistry() {
+        try {
+            Path csvPath = Files.createTempFile("readings", ".csv");
+            Path binaryPath = Files.createTempFile("readings", ".bin");
+
+            try {
+                Files.write(csvPath, Arrays.asList(
+                        "timestamp,sensorId,temperature",
+                        "1000,0,1.5",
+                        "1001,1,-4.0",
+                        "# A comment in the middle of the readings",
+                        "1002,0,12.5",
+                        "1003,7,3.0",
+                        "1004,1,-8.0"), StandardCharsets.UTF_8);
+
+                long recordCount = TemperatureCsvConverter.convert(csvPath, binaryPath);
+
+                assert recordCount == 5 : String.format("Expected '5' readings to be converted but got '%d'", recordCount);
+
+                assert Files.size(binaryPath) == TemperatureRecords.HEADER_SIZE + recordCount * TemperatureRecords.RECORD_SIZE :
+                        "Converted log doesn't hold a fixed size record per reading";
+
+                AtomicBoolean thresholdHasBeenTriggered = new AtomicBoolean(false);
+
+                ThermometerRegistry thermometerRegistry = new ThermometerRegistry.ThermometerRegistryBuilder(2).build();
+                thermometerRegistry.addTemperatureThreshold(0, new TemperatureThreshold.TemperatureThresholdBuilder(10.0F)
+                        .thresholdEventCallback(newTemperature -> thresholdHasBeenTriggered.set(true))
+                        .build());
+
+                TemperatureReplaySource.ReplayStatistics replayStatistics
+                        = new TemperatureReplaySource.TemperatureReplaySourceBuilder(binaryPath).build().replay(thermometerRegistry);
+
+                // Sensor '7' is outside of the registry so its reading is skipped
+                assert replayStatistics.getReadingCount() == 4 && replayStatistics.getSkippedReadingCount() == 1 :
+                        String.format("Unexpected replay statistics '%s'", replayStatistics);
+
+                assert thresholdHasBeenTriggered.get() == true : "Failed to trigger threshold from replayed readings";
+
+                assert Float.compare(thermometerRegistry.getCurrentTemperature(0), 12.5F) == 0
+                        && Float.compare(thermometerRegistry.getPreviousTemperature(0), 1.5F) == 0
+                        && Float.compare(thermometerRegistry.getCurrentTemperature(1), -8.0F) == 0 :
+                        "Replayed readings weren't routed to their sensors";
+
+                List<Float> sensorOneTemperatures = new ArrayList<>();
+
+                replayStatistics = new TemperatureReplaySource.TemperatureReplaySourceBuilder(binaryPath).build()
+                        .replayBySensor(sensorId -> sensorId == 1 ? sensorOneTemperatures::add : null);
+
+                assert replayStatistics.getReadingCount() == 2 && sensorOneTemperatures.equals(List.of(-4.0F, -8.0F)) :
+                        String.format("Expected the readings of sensor '1' to be replayed but got '%s'", sensorOneTemperatures);
+            } finally {
+                Files.deleteIfExists(csvPath);
+                Files.deleteIfExists(binaryPath);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static void testReplayPacedInRealTime() {
+        try {
+            Path binaryPath = Files.createTempFile("readings", ".bin");
+
+            try {
+                // Readings recorded over 200ms replayed at twice the speed
+                try (TemperatureRecordWriter temperatureRecordWriter = new TemperatureRecordWriter(binaryPath)) {
+                    temperatureRecordWriter.write(0L, 0, 1.0F);
+                    temperatureRecordWriter.write(100L, 0, 2.0F);
+                    temperatureRecordWriter.write(200L, 0, 3.0F);
+                }
+
+                Thermometer thermometer = new Thermometer();
+
+                TemperatureReplaySource.ReplayStatistics replayStatistics
+                        = new TemperatureReplaySource.TemperatureReplaySourceBuilder(binaryPath)
+                                .pacingMode(ReplayPacingModes.REAL_TIME)
+                                .speedMultiplier(2.0)
+                                .build()
+                                .replay(thermometer);
+
+                assert replayStatistics.getReadingCount() == 3 :
+                        String.format("Unexpected replay statistics '%s'", replayStatistics);
+
+                assert replayStatistics.getElapsedNanos() >= TimeUnit.MILLISECONDS.toNanos(100) :
+                        String.format("Real time replay finished too quickly '%s'", replayStatistics);
+
+                assert Float.compare(thermometer.getCurrentTemperature(), 3.0F) == 0 :
+                        "Replayed readings weren't provided to the thermometer";
+            } finally {
+                Files.deleteIfExists(binaryPath);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static void testJournalRecoversTemperaturesAcrossRestarts() {
+        try {
+            Path journalDirectory = Files.createTempDirectory("journal");
+
+            try {
+                // Small segments holding four records each so the journal rolls
+                TemperatureJournal.TemperatureJournalBuilder temperatureJournalBuilder
+                        = new TemperatureJournal.TemperatureJournalBuilder(journalDirectory)
+                                .segmentSize(TemperatureJournal.SEGMENT_HEADER_SIZE + 4 * TemperatureJournal.RECORD_SIZE)
+                                .flushRecordCount(2);
+
+                AtomicBoolean firstThresholdHasBeenTriggered = new AtomicBoolean(false);
+
+                try (TemperatureJournal temperatureJournal = temperatureJournalBuilder.build()) {
+                    Thermometer thermometer = new Thermometer(TemperatureDispatcher.getDefaultDispatcher(), temperatureJournal);
+                    thermometer.addTemperatureThreshold(new TemperatureThreshold.TemperatureThresholdBuilder(10.0F)
+                            .thresholdEventCallback(newTemperature -> firstThresholdHasBeenTriggered.set(true))
+                            .build());
+
+                    thermometer.onTemperatureData(1.0F);
+                    thermometer.onTemperatureData(new float[]{3.0F, 5.0F, 12.0F}, 0, 3);
+                    thermometer.onTemperatureData(11.0F);
+
+                    long lastSequence = temperatureJournal.getNextSequence() - 1;
+
+                    assert temperatureJournal.awaitDurable(lastSequence, 10, TimeUnit.SECONDS) :
+                            "Journal records weren't made durable by the flusher";
+                }
+
+                assert firstThresholdHasBeenTriggered.get() == true : "Failed to trigger threshold before the restart";
+
+                long segmentCount;
+
+                try (Stream<Path> segmentPaths = Files.list(journalDirectory)) {
+                    segmentCount = segmentPaths.count();
+                }
+
+                // Five readings and a fired threshold event make six records
+                assert segmentCount == 2 : String.format("Expected the journal to roll onto '2' segments but found '%d'", segmentCount);
+
+                AtomicBoolean secondThresholdHasBeenTriggered = new AtomicBoolean(false);
+
+                try (TemperatureJournal temperatureJournal = temperatureJournalBuilder.build()) {
+                    assert temperatureJournal.getNextSequence() == 6 :
+                            String.format("Expected the journal to continue at sequence '6' but got '%d'", temperatureJournal.getNextSequence());
+
+                    ThermometerRegistry thermometerRegistry = new ThermometerRegistry.ThermometerRegistryBuilder(1)
+                            .temperatureJournal(temperatureJournal)
+                            .build();
+
+                    Thermometer thermometer = thermometerRegistry.getThermometer(0);
+
+                    assert Float.compare(thermometer.getCurrentTemperature(), 11.0F) == 0
+                            && Float.compare(thermometer.getPreviousTemperature(), 12.0F) == 0 :
+                            "Temperatures weren't recovered from the journal";
+
+                    // A crossing straddling the restart is detected against the
+                    // recovered temperature
+                    thermometer.addTemperatureThreshold(new TemperatureThreshold.TemperatureThresholdBuilder(15.0F)
+                            .thresholdEventCallback(newTemperature -> secondThresholdHasBeenTriggered.set(true))
+                            .build());
+
+                    thermometer.onTemperatureData(20.0F);
+
+                    AtomicInteger readingCount = new AtomicInteger();
+                    List<Float> thresholdEventTemperatures = new ArrayList<>();
+
+                    temperatureJournal.recover(new TemperatureJournal.JournalRecordListener() {
+                        @Override
+                        public void onReading(long sequence, int sensorId, long timestamp, float temperature) {
+                            readingCount.incrementAndGet();
+                        }
+
+                        @Override
+                        public void onThresholdEvent(long sequence, int sensorId, long timestamp, float temperature, float temperatureThreshold, TemperatureScales temperatureScale) {
+                            thresholdEventTemperatures.add(temperatureThreshold);
+                        }
+                    });
+
+                    assert readingCount.get() == 6 : String.format("Expected '6' journaled readings but got '%d'", readingCount.get());
+
+                    assert thresholdEventTemperatures.equals(Arrays.asList(10.0F, 15.0F)) :
+                            String.format("Unexpected journaled threshold events '%s'", thresholdEventTemperatures);
+
+                    // Nothing is truncated until a snapshot holds the state of
+                    // the sensors
+                    int deletedSegmentCount = temperatureJournal.truncateBefore(temperatureJournal.getNextSequence());
+
+                    assert deletedSegmentCount == 0 :
+                            String.format("Expected no segment to be truncated without a snapshot but got '%d'", deletedSegmentCount);
+
+                    // Only the segment the snapshot was appended to is retained
+                    deletedSegmentCount = thermometerRegistry.compactTemperatureJournal();
+
+                    assert deletedSegmentCount == 2 :
+                            String.format("Expected '2' segments to be truncated but got '%d'", deletedSegmentCount);
+                }
+
+                assert secondThresholdHasBeenTriggered.get() == true : "Failed to trigger threshold across the restart";
+
+                try (TemperatureJournal temperatureJournal = temperatureJournalBuilder.build()) {
+                    assert temperatureJournal.getSnapshotSequence() == 8 :
+                            String.format("Expected the snapshot to start at sequence '8' but got '%d'", temperatureJournal.getSnapshotSequence());
+
+                    Thermometer thermometer = new Thermometer(TemperatureDispatcher.getDefaultDispatcher(), temperatureJournal);
+
+                    assert Float.compare(thermometer.getCurrentTemperature(), 20.0F) == 0
+                            && Float.compare(thermometer.getPreviousTemperature(), 11.0F) == 0 :
+                            "Temperatures weren't recovered from the snapshot";
+
+                    List<Long> recoveredSequences = new ArrayList<>();
+
+                    temperatureJournal.recoverFromSnapshot(new TemperatureJournal.JournalRecordListener() {
+                        @Override
+                        public void onSensorState(long sequence, int sensorId, long timestamp, float currentTemperature, Float previousTemperature) {
+                            recoveredSequences.add(sequence);
+                        }
+                    });
+
+                    assert recoveredSequences.equals(Collections.singletonList(8L)) :
+                            String.format("Expected recovery to start from the snapshot but got '%s'", recoveredSequences);
+                }
+            } finally {
+                deleteDirectory(journalDirectory);
+            }
+        } catch (IOException | InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static void testJournalDiscardsTornRecords() {
+        try {
+            Path journalDirectory = Files.createTempDirectory("journal");
+
+            try {
+                TemperatureJournal.TemperatureJournalBuilder temperatureJournalBuilder
+                        = new TemperatureJournal.TemperatureJournalBuilder(journalDirectory)
+                                .segmentSize(64 * 1024);
+
+                try (TemperatureJournal temperatureJournal = temperatureJournalBuilder.build()) {
+                    for (int readingIndex = 0; readingIndex < 10; readingIndex++) {
+                        temperatureJournal.appendReading(0, readingIndex, readingIndex);
+                    }
+
+                    temperatureJournal.sync();
+                }
+
+                // Corrupt the temperature of the last record as if the crash
+                // happened part way through writing it
+                Path segmentPath;
+
+                try (Stream<Path> segmentPaths = Files.list(journalDirectory)) {
+                    segmentPath = segmentPaths.findFirst().get();
+                }
+
+                try (FileChannel fileChannel = FileChannel.open(segmentPath, StandardOpenOption.WRITE)) {
+                    fileChannel.write(ByteBuffer.wrap(new byte[]{0x7F}), TemperatureJournal.SEGMENT_HEADER_SIZE + 9 * TemperatureJournal.RECORD_SIZE + 16);
+                }
+
+                ThermometerRegistry thermometerRegistry;
+
+                try (TemperatureJournal temperatureJournal = temperatureJournalBuilder.build()) {
+                    assert temperatureJournal.getNextSequence() == 9 :
+                            String.format("Expected the torn record to be discarded but the journal continues at '%d'", temperatureJournal.getNextSequence());
+
+                    thermometerRegistry = new ThermometerRegistry.ThermometerRegistryBuilder(1)
+                            .temperatureJournal(temperatureJournal)
+                            .build();
+                }
+
+                assert Float.compare(thermometerRegistry.getCurrentTemperature(0), 8.0F) == 0
+                        && Float.compare(thermometerRegistry.getPreviousTemperature(0), 7.0F) == 0 :
+                        "Temperatures weren't recovered up to the last complete record";
+            } finally {
+                deleteDirectory(journalDirectory);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static void testDebouncedThresholds() {
+        // Hysteresis re-arms the threshold only once the reading moves back past
+        // the far edge of the band
+        List<Float> hysteresisFires = new ArrayList<>();
+
+        Thermometer hysteresisThermometer = new Thermometer();
+        hysteresisThermometer.addTemperatureThreshold(new TemperatureThreshold.TemperatureThresholdBuilder(10.0F)
+                .thresholdEventCallback(hysteresisFires::add)
+                .hysteresisBand(2.0F)
+                .build());
+
+        for (float temperature : new float[]{9.0F, 10.5F, 9.5F, 10.5F, 7.5F, 10.5F, 12.5F, 9.0F}) {
+            hysteresisThermometer.onTemperatureData(temperature);
+        }
+
+        assert hysteresisFires.equals(Arrays.asList(10.5F, 7.5F, 9.0F)) :
+                String.format("Unexpected fires '%s' for a threshold with a hysteresis band", hysteresisFires);
+
+        // Holding requires consecutive readings on the far side of the threshold,
+        // including ones that don't change the temperature
+        List<Float> holdFires = new ArrayList<>();
+
+        Thermometer holdThermometer = new Thermometer();
+        holdThermometer.addTemperatureThreshold(new TemperatureThreshold.TemperatureThresholdBuilder(10.0F)
+                .thresholdEventCallback(holdFires::add)
+                .holdSampleCount(3)
+                .build());
+
+        for (float temperature : new float[]{9.0F, 11.0F, 9.0F, 11.0F, 11.0F, 12.0F}) {
+            holdThermometer.onTemperatureData(temperature);
+        }
+
+        assert holdFires.equals(Arrays.asList(12.0F)) :
+                String.format("Unexpected fires '%s' for a threshold with a hold sample count", holdFires);
+
+        // A batch holds the same way as single readings
+        holdFires.clear();
+        holdThermometer.onTemperatureData(new float[]{9.0F, 11.0F, 11.0F, 11.0F, 9.0F}, 0, 5);
+
+        assert holdFires.equals(Arrays.asList(11.0F)) :
+                String.format("Unexpected fires '%s' for a batch with a hold sample count", holdFires);
+
+        // Crossings within the cooldown are dropped
+        List<Float> cooldownFires = new ArrayList<>();
+
+        Thermometer cooldownThermometer = new Thermometer();
+        cooldownThermometer.addTemperatureThreshold(new TemperatureThreshold.TemperatureThresholdBuilder(10.0F)
+                .thresholdEventCallback(cooldownFires::add)
+                .cooldown(1, TimeUnit.HOURS)
+                .build());
+
+        for (float temperature : new float[]{9.0F, 11.0F, 9.0F, 11.0F}) {
+            cooldownThermometer.onTemperatureData(temperature);
+        }
+
+        assert cooldownFires.equals(Arrays.asList(11.0F)) :
+                String.format("Unexpected fires '%s' for a threshold with a cooldown", cooldownFires);
+
+        try {
+            new TemperatureThreshold.TemperatureThresholdBuilder(10.0F).hysteresisBand(-1.0F);
+            assert true == false : "Failed to catch an exception when setting a negative hysteresis band";
+        } catch (IllegalArgumentException e) {
+            // Purposely left blank
+        }
+
+        try {
+            new TemperatureThreshold.TemperatureThresholdBuilder(10.0F).holdSampleCount(0);
+            assert true == false : "Failed to catch an exception when setting a hold sample count of '0'";
+        } catch (IllegalArgumentException e) {
+            // Purposely left blank
+        }
+    }
+
+    public static void testWindowAggregatorMatchesRescan() {
+        Random random = new Random(11);
+
+        // Count window compared against rescanning the last readings
+        int windowSize = 7;
+        TemperatureWindowAggregator countAggregator = new TemperatureWindowAggregator(new TemperatureWindow.TemperatureWindowBuilder()
+                .countWindow(windowSize)
+                .ewmaAlpha(0.5)
+                .build());
+
+        List<Float> readings = new ArrayList<>();
+        double expectedEwma = Double.NaN;
+
+        for (int readingIndex = 0; readingIndex < 1_000; readingIndex++) {
+            float temperature = random.nextInt(40) - 10.0F;
+
+            readings.add(temperature);
+            countAggregator.onTemperatureRead(temperature);
+            expectedEwma = Double.isNaN(expectedEwma) ? temperature : expectedEwma + 0.5 * (temperature - expectedEwma);
+
+            List<Float> window = readings.subList(Math.max(0, readings.size() - windowSize), readings.size());
+            double windowSum = 0.0;
+
+            for (float windowTemperature : window) {
+                windowSum += windowTemperature;
+            }
+
+            assert Float.compare(countAggregator.getMinimum(), Collections.min(window)) == 0
+                    && Float.compare(countAggregator.getMaximum(), Collections.max(window)) == 0 :
+                    String.format("Window minimum/maximum don't match a rescan after reading '%d'", readingIndex);
+
+            assert Math.abs(countAggregator.getMean() - windowSum / window.size()) < 1e-4 :
+                    String.format("Window mean doesn't match a rescan after reading '%d'", readingIndex);
+
+            assert Math.abs(countAggregator.getEwma() - expectedEwma) < 1e-4 :
+                    String.format("EWMA doesn't match after reading '%d'", readingIndex);
+        }
+
+        // Time window with readings 10ns apart over a window of 35ns holds the
+        // last four readings
+        TemperatureWindowAggregator timeAggregator = new TemperatureWindowAggregator(new TemperatureWindow.TemperatureWindowBuilder()
+                .timeWindow(35, TimeUnit.NANOSECONDS)
+                .build());
+
+        float[] temperatures = {5.0F, 1.0F, 3.0F, 4.0F, 2.0F, 6.0F};
+
+        for (int readingIndex = 0; readingIndex < temperatures.length; readingIndex++) {
+            timeAggregator.onTemperatureRead(temperatures[readingIndex], readingIndex * 10L);
+        }
+
+        assert timeAggregator.getReadingCount() == 4
+                && Float.compare(timeAggregator.getMinimum(), 2.0F) == 0
+                && Float.compare(timeAggregator.getMaximum(), 6.0F) == 0
+                && Float.compare(timeAggregator.getMean(), 3.75F) == 0 :
+                "Time window didn't evict readings older than its duration";
+
+        // An infinite reading is skipped rather than left to turn the running
+        // sum into NaN once it is evicted from a count window
+        TemperatureWindowAggregator infiniteAggregator = new TemperatureWindowAggregator(new TemperatureWindow.TemperatureWindowBuilder()
+                .countWindow(3)
+                .build());
+
+        for (float temperature : new float[]{1.0F, Float.POSITIVE_INFINITY, 2.0F, Float.NEGATIVE_INFINITY, 3.0F, 4.0F, 5.0F}) {
+            infiniteAggregator.onTemperatureRead(temperature);
+        }
+
+        assert infiniteAggregator.getReadingCount() == 3
+                && Float.compare(infiniteAggregator.getMean(), 4.0F) == 0
+                && Float.compare(infiniteAggregator.getMaximum(), 5.0F) == 0
+                && Float.isFinite(infiniteAggregator.getEwma()) :
+                String.format("Infinite readings weren't skipped, mean is '%f' and EWMA '%f'", infiniteAggregator.getMean(), infiniteAggregator.getEwma());
+    }
+
+    public static void testThresholdOnAggregate() {
+        TemperatureWindow temperatureWindow = new TemperatureWindow.TemperatureWindowBuilder()
+                .countWindow(3)
+                .build();
+
+        List<Float> meanFires = new ArrayList<>();
+        List<Float> maximumFires = new ArrayList<>();
+
+        Thermometer thermometer = new Thermometer();
+        thermometer.addTemperatureThreshold(new TemperatureThreshold.TemperatureThresholdBuilder(10.0F)
+                .thresholdEventCallback(meanFires::add)
+                .aggregate(TemperatureAggregates.MEAN, temperatureWindow)
+                .build());
+        thermometer.addTemperatureThreshold(new TemperatureThreshold.TemperatureThresholdBuilder(12.0F)
+                .thresholdEventCallback(maximumFires::add)
+                .aggregate(TemperatureAggregates.MAXIMUM, temperatureWindow)
+                .build());
+
+        // Means of 9, 9, 9, 10, 11, 12, 11 - the mean crosses 10 once on the way
+        // up while the maximum reaches 12 on the fourth reading and is still in
+        // the window after the seventh
+        for (float temperature : new float[]{9.0F, 9.0F, 9.0F, 12.0F, 12.0F, 12.0F, 9.0F}) {
+            thermometer.onTemperatureData(temperature);
+        }
+
+        assert meanFires.equals(Arrays.asList(10.0F)) :
+                String.format("Unexpected fires '%s' for a threshold on the mean", meanFires);
+
+        assert maximumFires.equals(Arrays.asList(12.0F)) :
+                String.format("Unexpected fires '%s' for a threshold on the maximum", maximumFires);
+
+        // The same readings as a batch fire the same way on a new thermometer
+        meanFires.clear();
+        maximumFires.clear();
+
+        Thermometer batchThermometer = new Thermometer();
+        batchThermometer.addTemperatureThreshold(new TemperatureThreshold.TemperatureThresholdBuilder(10.0F)
+                .thresholdEventCallback(meanFires::add)
+                .aggregate(TemperatureAggregates.MEAN, temperatureWindow)
+                .build());
+
+        batchThermometer.onTemperatureData(new float[]{9.0F, 9.0F, 9.0F, 12.0F, 12.0F, 12.0F, 9.0F}, 0, 7);
+
+        assert meanFires.equals(Arrays.asList(10.0F)) :
+                String.format("Unexpected fires '%s' for a batch with a threshold on the mean", meanFires);
+    }
+
+    public static void testTimeWindowsUseIngestTime() {
+        TemperatureDispatcher temperatureDispatcher = new TemperatureDispatcher.TemperatureDispatcherBuilder()
+                .dispatchStrategy(DispatchStrategies.BOUNDED_POOL)
+                .poolSize(1)
+                .build();
+
+        ThermometerRegistry thermometerRegistry = new ThermometerRegistry.ThermometerRegistryBuilder(1)
+                .temperatureDispatcher(temperatureDispatcher)
+                .build();
+
+        TemperatureWindow temperatureWindow = new TemperatureWindow.TemperatureWindowBuilder()
+                .timeWindow(100, TimeUnit.MILLISECONDS)
+                .build();
+
+        CountDownLatch listenerBlocked = new CountDownLatch(1);
+        CountDownLatch releaseListener = new CountDownLatch(1);
+        List<Float> maximumFires = Collections.synchronizedList(new ArrayList<>());
+
+        Thermometer thermometer = thermometerRegistry.getThermometer(0);
+        thermometer.addTemperatureThreshold((newTemperature, previousTemperature, temperatureScale) -> {
+            if (listenerBlocked.getCount() > 0) {
+                listenerBlocked.countDown();
+
+                try {
+                    releaseListener.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        thermometer.addTemperatureThreshold(new TemperatureThreshold.TemperatureThresholdBuilder(30.0F)
+                .thresholdTriggerDirection(ThresholdTriggerDirections.DECREASING_TEMP)
+                .thresholdEventCallback(maximumFires::add)
+                .aggregate(TemperatureAggregates.MAXIMUM, temperatureWindow)
+                .build());
+
+        try {
+            thermometer.onTemperatureData(20.0F);
+            thermometer.onTemperatureData(25.0F);
+
+            assert listenerBlocked.await(10, TimeUnit.SECONDS) : "The lane was never held up";
+
+            // Both readings wait on the lane and are evaluated back to back but
+            // were provided further apart than the window is long
+            thermometer.onTemperatureData(50.0F);
+            Thread.sleep(300);
+            thermometer.onTemperatureData(10.0F);
+
+            releaseListener.countDown();
+            temperatureDispatcher.shutdown();
+
+            assert temperatureDispatcher.awaitTermination(10, TimeUnit.SECONDS) :
+                    "Dispatcher didn't terminate after being shutdown";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            releaseListener.countDown();
+        }
+
+        assert maximumFires.equals(Collections.singletonList(10.0F)) :
+                String.format("Expected the maximum to fall to '10.0' once '50.0' left the window but got '%s'", maximumFires);
+
+        // Aggregates need the window a registry keeps for them
+        TemperatureThreshold aggregateThreshold = new TemperatureThreshold.TemperatureThresholdBuilder(30.0F)
+                .thresholdEventCallback(newTemperature -> {
+                })
+                .aggregate(TemperatureAggregates.MAXIMUM, temperatureWindow)
+                .build();
+
+        try {
+            new TemperatureThresholdIndex().addTemperatureThreshold(aggregateThreshold);
+            assert true == false : "Failed to catch an exception when adding a threshold on an aggregate to an index";
+        } catch (IllegalArgumentException e) {
+            // Purposely left blank - if we get here it means we properly caught an
+            // exception and didn't execute an assert statement that will always fail
+        }
+
+        try {
+            aggregateThreshold.onTemperatureRead(40.0F, 20.0F, TemperatureScales.CELSIUS_SCALE);
+            assert true == false : "Failed to catch an exception when evaluating a threshold on an aggregate against a raw reading";
+        } catch (UnsupportedOperationException e) {
+            // Purposely left blank - if we get here it means we properly caught an
+            // exception and didn't execute an assert statement that will always fail
+        }
+    }
+
+    public static void testLatencyHistogramPercentiles() {
+        Random random = new Random(12);
+
+        // Every value is reported within the precision of its bucket
+        for (int valueIndex = 0; valueIndex < 100_000; valueIndex++) {
+            long value = (random.nextLong() >>> 1) >>> random.nextInt(63);
+            long upperBound = TemperatureLatencyHistogram.bucketUpperBound(TemperatureLatencyHistogram.bucketIndex(value));
+
+            assert upperBound >= value && upperBound - value <= value / 32 :
+                    String.format("Value '%d' landed in a bucket ending at '%d'", value, upperBound);
+        }
+
+        TemperatureLatencyHistogram temperatureLatencyHistogram = new TemperatureLatencyHistogram();
+
+        for (long nanos = 1; nanos <= 10_000; nanos++) {
+            temperatureLatencyHistogram.recordNanos(nanos);
+        }
+
+        TemperatureLatencyHistogram.HistogramSnapshot histogramSnapshot = temperatureLatencyHistogram.snapshot();
+
+        assert histogramSnapshot.getCount() == 10_000 && histogramSnapshot.getMaxNanos() == 10_000 :
+                String.format("Unexpected histogram '%s'", histogramSnapshot);
+
+        assert Math.abs(histogramSnapshot.getValueAtPercentile(50.0) - 5_000) <= 5_000 / 32
+                && Math.abs(histogramSnapshot.getValueAtPercentile(99.0) - 9_900) <= 9_900 / 32
+                && histogramSnapshot.getValueAtPercentile(100.0) == 10_000 :
+                String.format("Unexpected percentiles for histogram '%s'", histogramSnapshot);
+
+        assert Math.abs(histogramSnapshot.getMeanNanos() - 5_000.5) < 1e-6 :
+                String.format("Unexpected mean for histogram '%s'", histogramSnapshot);
+
+        // Only the values recorded after the earlier snapshot are left
+        for (long nanos = 20_001; nanos <= 30_000; nanos++) {
+            temperatureLatencyHistogram.recordNanos(nanos);
+        }
+
+        TemperatureLatencyHistogram.HistogramSnapshot intervalSnapshot = temperatureLatencyHistogram.snapshot().since(histogramSnapshot);
+
+        assert intervalSnapshot.getCount() == 10_000
+                && intervalSnapshot.getMaxNanos() == 30_000
+                && Math.abs(intervalSnapshot.getMeanNanos() - 25_000.5) < 1e-6
+                && Math.abs(intervalSnapshot.getValueAtPercentile(0.0) - 20_001) <= 20_001 / 32 :
+                String.format("Unexpected interval histogram '%s'", intervalSnapshot);
+    }
+
+    public static void testMetricsCountReadingsAndFires() {
+        TemperatureMetrics temperatureMetrics = new TemperatureMetrics.TemperatureMetricsBuilder()
+                .latencySampleInterval(1)
+                .build();
+
+        ThermometerRegistry thermometerRegistry = new ThermometerRegistry.ThermometerRegistryBuilder(1)
+                .temperatureMetrics(temperatureMetrics)
+                .build();
+
+        Thermometer thermometer = thermometerRegistry.getThermometer(0);
+        thermometer.addTemperatureThreshold(new TemperatureThreshold.TemperatureThresholdBuilder(10.0F)
+                .thresholdEventCallback(newTemperature -> {
+                })
+                .build());
+
+        for (float temperature : new float[]{5.0F, 5.0F, 12.0F, 12.0F, 8.0F}) {
+            thermometer.onTemperatureData(temperature);
+        }
+
+        thermometer.onTemperatureData(new float[]{8.0F, 15.0F}, 0, 2);
+
+        TemperatureMetricsSnapshot metricsSnapshot = temperatureMetrics.snapshot();
+
+        assert metricsSnapshot.getReadingCount() == 7
+                && metricsSnapshot.getUnchangedReadingCount() == 3
+                && metricsSnapshot.getDispatchedReadingCount() == 3
+                && metricsSnapshot.getThresholdEvaluationCount() == 3
+                && metricsSnapshot.getThresholdFiredCount() == 3
+                && metricsSnapshot.getCallbackLatency().getCount() == 3 :
+                String.format("Unexpected metrics '%s'", metricsSnapshot);
+
+        // Switched off metrics stop counting
+        temperatureMetrics.setEnabled(false);
+        thermometer.onTemperatureData(5.0F);
+
+        assert temperatureMetrics.snapshot().getReadingCount() == 7 : "Metrics kept counting after being switched off";
+
+        temperatureMetrics.setEnabled(true);
+
+        try {
+            ObjectName objectName = temperatureMetrics.registerMBean("testMetricsCountReadingsAndFires");
+
+            try {
+                Object readingCount = ManagementFactory.getPlatformMBeanServer().getAttribute(objectName, "ReadingCount");
+
+                assert Long.valueOf(7).equals(readingCount) :
+                        String.format("Expected the MBean to report '7' readings but got '%s'", readingCount);
+            } finally {
+                temperatureMetrics.unregisterMBean();
+            }
+        } catch (JMException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static void testThresholdRegistrationHandles() {
+        Thermometer thermometer = new Thermometer();
+
+        List<Float> firedThresholds = new ArrayList<>();
+        List<TemperatureThreshold> temperatureThresholds = new ArrayList<>();
+
+        for (float thresholdTemperature = 1.0F; thresholdTemperature <= 8.0F; thresholdTemperature++) {
+            float firedThreshold = thresholdTemperature;
+
+            temperatureThresholds.add(new TemperatureThreshold.TemperatureThresholdBuilder(thresholdTemperature)
+                    .thresholdEventCallback(newTemperature -> firedThresholds.add(firedThreshold))
+                    .build());
+        }
+
+        List<TemperatureThresholdRegistration> registrations = thermometer.addTemperatureThresholds(temperatureThresholds);
+
+        AtomicInteger listenerReadCount = new AtomicInteger();
+        TemperatureThresholdRegistration listenerRegistration = thermometer.addTemperatureThreshold(
+                (newTemperature, previousTemperature, temperatureScale) -> listenerReadCount.incrementAndGet());
+
+        AtomicInteger meanFiredCount = new AtomicInteger();
+        TemperatureThresholdRegistration meanRegistration = thermometer.addTemperatureThreshold(new TemperatureThreshold.TemperatureThresholdBuilder(4.0F)
+                .aggregate(TemperatureAggregates.MEAN, new TemperatureWindow.TemperatureWindowBuilder().countWindow(2).build())
+                .thresholdEventCallback(newTemperature -> meanFiredCount.incrementAndGet())
+                .build());
+
+        assert registrations.size() == temperatureThresholds.size() : "Bulk registration didn't return a handle per threshold";
+
+        for (int thresholdIndex = 0; thresholdIndex < registrations.size(); thresholdIndex++) {
+            assert registrations.get(thresholdIndex).isRegistered()
+                    && registrations.get(thresholdIndex).getTemperatureThreshold() == temperatureThresholds.get(thresholdIndex) :
+                    String.format("Handle '%d' doesn't match the threshold it registered", thresholdIndex);
+        }
+
+        thermometer.onTemperatureData(0.0F);
+        thermometer.onTemperatureData(10.0F);
+
+        assert firedThresholds.equals(Arrays.asList(1.0F, 2.0F, 3.0F, 4.0F, 5.0F, 6.0F, 7.0F, 8.0F)) :
+                String.format("Expected every threshold to fire but got '%s'", firedThresholds);
+
+        // Unregistered thresholds stop firing straight away while the rest keep
+        // firing in order
+        assert registrations.get(2).unregister() : "Unregistering a registered threshold reported it wasn't registered";
+        assert !registrations.get(2).unregister() : "Unregistering a threshold twice reported it was registered both times";
+        assert !registrations.get(2).isRegistered() : "Unregistered threshold still reported being registered";
+
+        assert listenerRegistration.unregister() && meanRegistration.unregister() :
+                "Unregistering a listener or an aggregate threshold reported it wasn't registered";
+
+        firedThresholds.clear();
+        thermometer.onTemperatureData(0.0F);
+
+        assert firedThresholds.equals(Arrays.asList(8.0F, 7.0F, 6.0F, 5.0F, 4.0F, 2.0F, 1.0F)) :
+                String.format("Expected every threshold but '3' to fire but got '%s'", firedThresholds);
+
+        assert listenerReadCount.get() == 1 && meanFiredCount.get() == 1 :
+                String.format("Unregistered listeners kept being evented ('%d' readings and '%d' fires)", listenerReadCount.get(), meanFiredCount.get());
+
+        // Unregistering most of the thresholds compacts the snapshot which has
+        // to keep the remaining thresholds in place
+        assert TemperatureThresholdRegistration.unregisterAll(registrations.subList(0, 6)) == 5 :
+                "Bulk unregistering didn't count the thresholds that were still registered";
+
+        firedThresholds.clear();
+        thermometer.onTemperatureData(10.0F);
+
+        assert firedThresholds.equals(Arrays.asList(7.0F, 8.0F)) :
+                String.format("Expected only the thresholds left registered to fire but got '%s'", firedThresholds);
+
+        // Clearing unregisters whatever is left
+        thermometer.clearTemperatureThresholds();
+
+        assert !registrations.get(7).isRegistered() && !registrations.get(7).unregister() :
+                "Cleared thresholds still reported being registered";
+
+        try {
+            thermometer.addTemperatureThresholds(Arrays.asList(temperatureThresholds.get(0), null));
+            assert false : "Registering a 'null' threshold didn't fail";
+        } catch (IllegalArgumentException e) {
+            // Purposely left blank - expected
+        }
+
+        firedThresholds.clear();
+        thermometer.onTemperatureData(0.0F);
+
+        assert firedThresholds.isEmpty() : "A bulk registration that failed registered some of its thresholds";
+    }
+
+    public static void testRegistrationWhileDispatching() {
+        TemperatureDispatcher temperatureDispatcher = new TemperatureDispatcher.TemperatureDispatcherBuilder()
+                .dispatchStrategy(DispatchStrategies.BOUNDED_POOL)
+                .poolSize(4)
+                .build();
+
+        int sensorCount = 8;
+
+        ThermometerRegistry thermometerRegistry = new ThermometerRegistry.ThermometerRegistryBuilder(sensorCount)
+                .temperatureDispatcher(temperatureDispatcher)
+                .build();
+
+        // Listeners failing on a lane thread end up with the default handler
+        List<Throwable> listenerFailures = Collections.synchronizedList(new ArrayList<>());
+        Thread.UncaughtExceptionHandler defaultHandler = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler((thread, throwable) -> listenerFailures.add(throwable));
+
+        AtomicBoolean registering = new AtomicBoolean(true);
+        AtomicInteger firedCount = new AtomicInteger();
+
+        Thread registeringThread = new Thread(() -> {
+            Random random = new Random(42);
+
+            while (registering.get()) {
+                int sensorId = random.nextInt(sensorCount);
+                List<TemperatureThresholdEventListener> temperatureThresholds = new ArrayList<>();
+
+                for (int thresholdIndex = 0; thresholdIndex < 16; thresholdIndex++) {
+                    temperatureThresholds.add(new TemperatureThreshold.TemperatureThresholdBuilder(random.nextFloat() * 20.0F - 10.0F)
+                            .thresholdEventCallback(newTemperature -> firedCount.incrementAndGet())
+                            .build());
+                    temperatureThresholds.add((newTemperature, previousTemperature, temperatureScale) -> firedCount.incrementAndGet());
+                }
+
+                List<TemperatureThresholdRegistration> registrations = thermometerRegistry.addTemperatureThresholds(sensorId, temperatureThresholds);
+
+                registrations.get(random.nextInt(registrations.size())).unregister();
+                TemperatureThresholdRegistration.unregisterAll(registrations.subList(0, random.nextInt(registrations.size())));
+
+                if (random.nextInt(16) == 0) {
+                    thermometerRegistry.clearTemperatureThresholds(sensorId);
+                }
+            }
+        });
+
+        registeringThread.start();
+
+        Random random = new Random(7);
+
+        for (int readingIndex = 0; readingIndex < 200_000; readingIndex++) {
+            thermometerRegistry.onTemperatureData(readingIndex % sensorCount, random.nextFloat() * 20.0F - 10.0F);
+        }
+
+        registering.set(false);
+        temperatureDispatcher.shutdown();
+
+        try {
+            registeringThread.join();
+
+            assert temperatureDispatcher.awaitTermination(10, TimeUnit.SECONDS) :
+                    "Dispatcher didn't terminate after being shutdown";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            Thread.setDefaultUncaughtExceptionHandler(defaultHandler);
+        }
+
+        assert listenerFailures.isEmpty() :
+                String.format("Dispatching failed while thresholds were registered concurrently: '%s'", listenerFailures);
+
+        assert firedCount.get() > 0 : "No threshold fired while thresholds were registered concurrently";
+    }
+
+    public static void testSlowListenerIsQuarantined() {
+        // Callbacks run on the caller so every overrun is noticed as soon as the
+        // callback returns. Callbacks take as long as they move the clock on.
+        AtomicLong nowNanos = new AtomicLong(1L);
+
+        TemperatureCallbackIsolation callbackIsolation = new TemperatureCallbackIsolation.TemperatureCallbackIsolationBuilder()
+                .callbackDispatcher(new TemperatureDispatcher.TemperatureDispatcherBuilder().build())
+                .callbackTimeBudget(20, TimeUnit.MILLISECONDS)
+                .quarantineOverrunCount(2)
+                .quarantineDuration(1, TimeUnit.HOURS)
+                .nanoTimeSource(nowNanos::get)
+                .build();
+
+        TemperatureMetrics temperatureMetrics = new TemperatureMetrics.TemperatureMetricsBuilder().build();
+
+        ThermometerRegistry thermometerRegistry = new ThermometerRegistry.ThermometerRegistryBuilder(1)
+                .temperatureMetrics(temperatureMetrics)
+                .callbackIsolation(callbackIsolation)
+                .build();
+
+        AtomicInteger slowFiredCount = new AtomicInteger();
+        AtomicInteger fastFiredCount = new AtomicInteger();
+
+        TemperatureThreshold slowThreshold = new TemperatureThreshold.TemperatureThresholdBuilder(10.0F)
+                .thresholdEventCallback(newTemperature -> {
+                    slowFiredCount.incrementAndGet();
+                    nowNanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(50));
+                })
+                .build();
+
+        Thermometer thermometer = thermometerRegistry.getThermometer(0);
+        TemperatureThresholdRegistration slowRegistration = thermometer.addTemperatureThreshold(slowThreshold);
+        thermometer.addTemperatureThreshold(new TemperatureThreshold.TemperatureThresholdBuilder(10.0F)
+                .thresholdEventCallback(newTemperature -> fastFiredCount.incrementAndGet())
+                .build());
+
+        // Every reading crosses both thresholds
+        for (int readingIndex = 0; readingIndex < 11; readingIndex++) {
+            thermometer.onTemperatureData(readingIndex % 2 == 0 ? 5.0F : 15.0F);
+        }
+
+        assert fastFiredCount.get() == 10 :
+                String.format("Expected the fast threshold to fire '10' times but it fired '%d' times", fastFiredCount.get());
+
+        assert slowFiredCount.get() == 2 :
+                String.format("Expected the slow threshold to be quarantined after '2' callbacks but it ran '%d'", slowFiredCount.get());
+
+        List<TemperatureCallbackIsolation.SlowListener> slowListeners = callbackIsolation.getSlowListeners();
+
+        assert slowListeners.size() == 1
+                && slowListeners.get(0).getTemperatureThreshold() == slowThreshold
+                && slowListeners.get(0).isQuarantined()
+                && slowListeners.get(0).getOverrunCount() == 2
+                && slowListeners.get(0).getShedCount() == 8 :
+                String.format("Expected only the slow threshold to be reported as quarantined but got '%s'", slowListeners);
+
+        TemperatureMetricsSnapshot metricsSnapshot = temperatureMetrics.snapshot();
+
+        assert metricsSnapshot.getCallbackOverrunCount() == 2
+                && metricsSnapshot.getShedCallbackCount() == 8
+                && metricsSnapshot.getListenerQuarantineCount() == 1
+                && metricsSnapshot.getThresholdFiredCount() == 12 :
+                String.format("Unexpected metrics '%s'", metricsSnapshot);
+
+        assert metricsSnapshot.getCallbackOverrunsByListener().equals(
+                Collections.singletonMap(slowListeners.get(0).getListenerName(), 2L))
+                && slowListeners.get(0).getListenerName().contains("TemperatureThreshold[10.0 CELSIUS_SCALE]") :
+                String.format("Metrics didn't name the slow threshold '%s'", metricsSnapshot.getCallbackOverrunsByListener());
+
+        // Once the quarantine is over the slow threshold runs again and is
+        // quarantined again by its first overrun
+        nowNanos.addAndGet(TimeUnit.HOURS.toNanos(1));
+
+        thermometer.onTemperatureData(15.0F);
+        thermometer.onTemperatureData(5.0F);
+
+        slowListeners = callbackIsolation.getSlowListeners();
+
+        assert slowFiredCount.get() == 3
+                && slowListeners.get(0).isQuarantined()
+                && slowListeners.get(0).getQuarantineCount() == 2
+                && slowListeners.get(0).getShedCount() == 9 :
+                String.format("Expected the slow threshold to run once after its quarantine but got '%s'", slowListeners);
+
+        slowRegistration.unregister();
+
+        assert callbackIsolation.getSlowListeners().isEmpty() :
+                String.format("Expected unregistered listeners not to be reported but got '%s'", callbackIsolation.getSlowListeners());
+    }
+
+    public static void testSlowListenerDoesNotDelayOthers() {
+        TemperatureDispatcher callbackDispatcher = new TemperatureDispatcher.TemperatureDispatcherBuilder()
+                .dispatchStrategy(DispatchStrategies.BOUNDED_POOL)
+                .poolSize(2)
+                .build();
+
+        AtomicLong nowNanos = new AtomicLong(1L);
+
+        TemperatureCallbackIsolation callbackIsolation = new TemperatureCallbackIsolation.TemperatureCallbackIsolationBuilder()
+                .callbackDispatcher(callbackDispatcher)
+                .listenerQueueCapacity(1000)
+                .callbackTimeBudget(20, TimeUnit.MILLISECONDS)
+                .quarantineOverrunCount(1)
+                .nanoTimeSource(nowNanos::get)
+                .build();
+
+        ThermometerRegistry thermometerRegistry = new ThermometerRegistry.ThermometerRegistryBuilder(1)
+                .callbackIsolation(callbackIsolation)
+                .build();
+
+        CountDownLatch slowListenerStarted = new CountDownLatch(1);
+        CountDownLatch releaseSlowListener = new CountDownLatch(1);
+        int readingCount = 1000;
+
+        // The fast listener is registered from the third reading on
+        CountDownLatch fastReadings = new CountDownLatch(readingCount - 2);
+
+        Thermometer thermometer = thermometerRegistry.getThermometer(0);
+
+        // Blocks until the test is over, as a listener stuck on a call that never
+        // returns would
+        thermometer.addTemperatureThreshold((newTemperature, previousTemperature, temperatureScale) -> {
+            slowListenerStarted.countDown();
+
+            try {
+                releaseSlowListener.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+
+        try {
+            thermometer.onTemperatureData(0.0F);
+            thermometer.onTemperatureData(1.0F);
+
+            // Runs the stuck callback past its budget before the fast listener
+            // gets any, so none of its callbacks straddle the jump of the clock
+            assert slowListenerStarted.await(10, TimeUnit.SECONDS) : "The stuck listener never ran";
+            nowNanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(100));
+
+            thermometer.addTemperatureThreshold((newTemperature, previousTemperature, temperatureScale) -> fastReadings.countDown());
+
+            for (int readingIndex = 2; readingIndex < readingCount; readingIndex++) {
+                thermometer.onTemperatureData(readingIndex);
+            }
+
+            assert fastReadings.await(10, TimeUnit.SECONDS) : "A stuck listener held up the listener registered after it";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            releaseSlowListener.countDown();
+            callbackDispatcher.shutdown();
+        }
+
+        List<TemperatureCallbackIsolation.SlowListener> slowListeners = callbackIsolation.getSlowListeners();
+
+        // The stuck listener was caught running over budget while it was still
+        // running and every reading after that was shed
+        assert slowListeners.size() == 1
+                && slowListeners.get(0).getOverrunCount() == 1
+                && slowListeners.get(0).isQuarantined()
+                && slowListeners.get(0).getShedCount() == readingCount - 2
+                && slowListeners.get(0).getListenerName().startsWith("sensor 0: lambda in org.thermometer.ProjectTests #") :
+                String.format("Expected only the stuck listener to be quarantined but got '%s'", slowListeners);
+    }
+
+    public static void testStuckListenersDoNotStarveDefaultIsolation() {
+        TemperatureCallbackIsolation callbackIsolation = new TemperatureCallbackIsolation.TemperatureCallbackIsolationBuilder().build();
+
+        // More stuck listeners than a pool sized to the processors has threads
+        int stuckListenerCount = Runtime.getRuntime().availableProcessors() + 1;
+        int readingCount = 100;
+
+        ThermometerRegistry thermometerRegistry = new ThermometerRegistry.ThermometerRegistryBuilder(stuckListenerCount + 1)
+                .callbackIsolation(callbackIsolation)
+                .build();
+
+        CountDownLatch stuckListenersStarted = new CountDownLatch(stuckListenerCount);
+        CountDownLatch releaseStuckListeners = new CountDownLatch(1);
+        CountDownLatch fastReadings = new CountDownLatch(readingCount - 1);
+
+        for (int sensorId = 0; sensorId < stuckListenerCount; sensorId++) {
+            thermometerRegistry.addTemperatureThreshold(sensorId, (newTemperature, previousTemperature, temperatureScale) -> {
+                stuckListenersStarted.countDown();
+
+                try {
+                    releaseStuckListeners.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+
+            thermometerRegistry.onTemperatureData(sensorId, 1.0F);
+            thermometerRegistry.onTemperatureData(sensorId, 2.0F);
+        }
+
+        thermometerRegistry.addTemperatureThreshold(stuckListenerCount, (newTemperature, previousTemperature, temperatureScale) -> fastReadings.countDown());
+
+        try {
+            assert stuckListenersStarted.await(10, TimeUnit.SECONDS) : "Not every stuck listener got a thread of its own";
+
+            for (int readingIndex = 0; readingIndex < readingCount; readingIndex++) {
+                thermometerRegistry.onTemperatureData(stuckListenerCount, readingIndex);
+            }
+
+            assert fastReadings.await(10, TimeUnit.SECONDS) :
+                    String.format("Stuck listeners starved another listener which only ran '%d' of '%d' callbacks",
+                            readingCount - 1 - fastReadings.getCount(), readingCount - 1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            releaseStuckListeners.countDown();
+            callbackIsolation.getCallbackDispatcher().shutdown();
+        }
+    }
+
+    public static void testConflatedReadingsKeepCrossings() {
+        TemperatureDispatcher temperatureDispatcher = new TemperatureDispatcher.TemperatureDispatcherBuilder()
+                .dispatchStrategy(DispatchStrategies.BOUNDED_POOL)
+                .poolSize(1)
+                .queueCapacity(1)
+                .backpressurePolicy(BackpressurePolicies.DROP_NEWEST)
+                .build();
+
+        TemperatureMetrics temperatureMetrics = new TemperatureMetrics.TemperatureMetricsBuilder().build();
+
+        ThermometerRegistry thermometerRegistry = new ThermometerRegistry.ThermometerRegistryBuilder(1)
+                .temperatureDispatcher(temperatureDispatcher)
+                .temperatureMetrics(temperatureMetrics)
+                .ingestMode(IngestModes.CONFLATED)
+                .build();
+
+        CountDownLatch listenerBlocked = new CountDownLatch(1);
+        CountDownLatch releaseListener = new CountDownLatch(1);
+        CountDownLatch lastReadingEvaluated = new CountDownLatch(1);
+        AtomicInteger risingCrossings = new AtomicInteger();
+        AtomicInteger fallingCrossings = new AtomicInteger();
+
+        Thermometer thermometer = thermometerRegistry.getThermometer(0);
+
+        // Holds up the lane on the first summary so every reading after it has
+        // to be conflated
+        thermometer.addTemperatureThreshold((newTemperature, previousTemperature, temperatureScale) -> {
+            if (listenerBlocked.getCount() > 0) {
+                listenerBlocked.countDown();
+
+                try {
+                    releaseListener.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            } else if (newTemperature == 22.0F) {
+                lastReadingEvaluated.countDown();
+            }
+        });
+        thermometer.addTemperatureThreshold(new TemperatureThreshold.TemperatureThresholdBuilder(50.0F)
+                .thresholdTriggerDirection(ThresholdTriggerDirections.INCREASING_TEMP)
+                .thresholdEventCallback(newTemperature -> risingCrossings.incrementAndGet())
+                .build());
+        thermometer.addTemperatureThreshold(new TemperatureThreshold.TemperatureThresholdBuilder(10.0F)
+                .thresholdTriggerDirection(ThresholdTriggerDirections.DECREASING_TEMP)
+                .thresholdEventCallback(newTemperature -> fallingCrossings.incrementAndGet())
+                .build());
+
+        int readingCount = 1000;
+
+        try {
+            thermometer.onTemperatureData(20.0F);
+            thermometer.onTemperatureData(21.0F);
+
+            assert listenerBlocked.await(10, TimeUnit.SECONDS) : "The first summary was never evaluated";
+
+            // Crosses both thresholds between two samples of the summary and
+            // comes back to where it started
+            for (int readingIndex = 0; readingIndex < readingCount; readingIndex++) {
+                if (readingIndex == readingCount / 3) {
+                    thermometer.onTemperatureData(60.0F);
+                } else if (readingIndex == 2 * readingCount / 3) {
+                    thermometer.onTemperatureData(new float[]{15.0F, 5.0F}, 0, 2);
+                } else {
+                    thermometer.onTemperatureData(25.0F + readingIndex % 10);
+                }
+            }
+
+            thermometer.onTemperatureData(22.0F);
+            releaseListener.countDown();
+
+            assert lastReadingEvaluated.await(10, TimeUnit.SECONDS) : "The last reading was never evaluated";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            releaseListener.countDown();
+            temperatureDispatcher.shutdown();
+        }
+
+        TemperatureMetricsSnapshot metricsSnapshot = temperatureMetrics.snapshot();
+
+        assert risingCrossings.get() == 1 && fallingCrossings.get() == 1 :
+                String.format("Expected both crossings to be detected once but got '%d' rising and '%d' falling", risingCrossings.get(), fallingCrossings.get());
+
+        // A single summary is queued while the lane is held up no matter how
+        // many readings arrive and none of them are dropped
+        assert thermometer.getDroppedReadingCount() == 0
+                && metricsSnapshot.getDispatchedReadingCount() == 2
+                && metricsSnapshot.getConflatedReadingCount() == readingCount + 1 :
+                String.format("Unexpected dropped readings '%d' or metrics '%s'", thermometer.getDroppedReadingCount(), metricsSnapshot);
+    }
+
+    public static void testConflatedReadingsKeepCrossingsInBothDirections() {
+        TemperatureDispatcher temperatureDispatcher = new TemperatureDispatcher.TemperatureDispatcherBuilder()
+                .dispatchStrategy(DispatchStrategies.BOUNDED_POOL)
+                .poolSize(1)
+                .build();
+
+        ThermometerRegistry thermometerRegistry = new ThermometerRegistry.ThermometerRegistryBuilder(1)
+                .temperatureDispatcher(temperatureDispatcher)
+                .ingestMode(IngestModes.CONFLATED)
+                .build();
+
+        CountDownLatch listenerBlocked = new CountDownLatch(1);
+        CountDownLatch releaseListener = new CountDownLatch(1);
+        CountDownLatch lastReadingEvaluated = new CountDownLatch(1);
+        AtomicInteger risingCrossings = new AtomicInteger();
+        AtomicInteger fallingCrossings = new AtomicInteger();
+
+        Thermometer thermometer = thermometerRegistry.getThermometer(0);
+
+        thermometer.addTemperatureThreshold((newTemperature, previousTemperature, temperatureScale) -> {
+            if (listenerBlocked.getCount() > 0) {
+                listenerBlocked.countDown();
+
+                try {
+                    releaseListener.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            } else if (newTemperature == 5.0F) {
+                lastReadingEvaluated.countDown();
+            }
+        });
+        thermometer.addTemperatureThreshold(new TemperatureThreshold.TemperatureThresholdBuilder(10.0F)
+                .thresholdTriggerDirection(ThresholdTriggerDirections.INCREASING_TEMP)
+                .thresholdEventCallback(newTemperature -> risingCrossings.incrementAndGet())
+                .build());
+        thermometer.addTemperatureThreshold(new TemperatureThreshold.TemperatureThresholdBuilder(10.0F)
+                .thresholdTriggerDirection(ThresholdTriggerDirections.DECREASING_TEMP)
+                .thresholdEventCallback(newTemperature -> fallingCrossings.incrementAndGet())
+                .build());
+
+        try {
+            thermometer.onTemperatureData(30.0F);
+            thermometer.onTemperatureData(31.0F);
+
+            assert listenerBlocked.await(10, TimeUnit.SECONDS) : "The first summary was never evaluated";
+
+            // The rise from 0 to 15 happens after the lowest temperature and
+            // before the last one, in between two falls through 10
+            for (float temperature : new float[] {20.0F, 0.0F, 15.0F, 5.0F}) {
+                thermometer.onTemperatureData(temperature);
+            }
+
+            releaseListener.countDown();
+
+            assert lastReadingEvaluated.await(10, TimeUnit.SECONDS) : "The last reading was never evaluated";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            releaseListener.countDown();
+            temperatureDispatcher.shutdown();
+        }
+
+        assert risingCrossings.get() == 1 && fallingCrossings.get() == 2 :
+                String.format("Expected '1' rising and '2' falling crossings but got '%d' and '%d'", risingCrossings.get(), fallingCrossings.get());
+    }
+
+    public static void testConflatedReadingsKeepCrossingsOffTheirPath() {
+        TemperatureDispatcher temperatureDispatcher = new TemperatureDispatcher.TemperatureDispatcherBuilder()
+                .dispatchStrategy(DispatchStrategies.BOUNDED_POOL)
+                .poolSize(1)
+                .build();
+
+        ThermometerRegistry thermometerRegistry = new ThermometerRegistry.ThermometerRegistryBuilder(1)
+                .temperatureDispatcher(temperatureDispatcher)
+                .ingestMode(IngestModes.CONFLATED)
+                .build();
+
+        CountDownLatch listenerBlocked = new CountDownLatch(1);
+        CountDownLatch releaseListener = new CountDownLatch(1);
+        CountDownLatch lastReadingEvaluated = new CountDownLatch(1);
+        List<Float> risingCrossings = Collections.synchronizedList(new ArrayList<>());
+        List<Float> fallingCrossings = Collections.synchronizedList(new ArrayList<>());
+
+        Thermometer thermometer = thermometerRegistry.getThermometer(0);
+
+        thermometer.addTemperatureThreshold((newTemperature, previousTemperature, temperatureScale) -> {
+            if (listenerBlocked.getCount() > 0) {
+                listenerBlocked.countDown();
+
+                try {
+                    releaseListener.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            } else if (newTemperature == 1.0F) {
+                lastReadingEvaluated.countDown();
+            }
+        });
+        thermometer.addTemperatureThreshold(new TemperatureThreshold.TemperatureThresholdBuilder(1.5F)
+                .thresholdTriggerDirection(ThresholdTriggerDirections.INCREASING_TEMP)
+                .thresholdEventCallback(risingCrossings::add)
+                .build());
+        thermometer.addTemperatureThreshold(new TemperatureThreshold.TemperatureThresholdBuilder(1.5F)
+                .thresholdTriggerDirection(ThresholdTriggerDirections.DECREASING_TEMP)
+                .thresholdEventCallback(fallingCrossings::add)
+                .build());
+
+        try {
+            thermometer.onTemperatureData(30.0F);
+            thermometer.onTemperatureData(31.0F);
+
+            assert listenerBlocked.await(10, TimeUnit.SECONDS) : "The first summary was never evaluated";
+
+            // The largest rise is from 10 to 13 and the largest fall from 31
+            // to 0, so the rise from 0 to 2 and the fall from 2 to 1 are only
+            // ever seen while merging
+            for (float temperature : new float[] {20.0F, 10.0F, 13.0F, 0.0F, 2.0F, 1.0F}) {
+                thermometer.onTemperatureData(temperature);
+            }
+
+            releaseListener.countDown();
+
+            assert lastReadingEvaluated.await(10, TimeUnit.SECONDS) : "The last reading was never evaluated";
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            releaseListener.countDown();
+            temperatureDispatcher.shutdown();
+        }
+
+        // Both crossings are fired before the path reaches the last reading
+        assert risingCrossings.equals(List.of(2.0F)) && fallingCrossings.equals(List.of(0.0F, 1.0F)) :
+                String.format("Expected a rising crossing at '2.0' and falling ones at '0.0' and '1.0' but got '%s' and '%s'", risingCrossings, fallingCrossings);
+    }
+
+    public static void testIngestServerOverLoopback() {
+        List<Float> firstSensorReadings = Collections.synchronizedList(new ArrayList<>());
+        List<Float> secondSensorReadings = Collections.synchronizedList(new ArrayList<>());
+        TemperatureDataEventListener failingListener = temperature -> {
+            throw new IllegalStateException("Listener failed on purpose");
+        };
+
+        // Sensors other than '0', '1' and '2' have no listener so their
+        // readings are skipped
+        TemperatureIngestServer.TemperatureIngestServerBuilder ingestServerBuilder = new TemperatureIngestServer.TemperatureIngestServerBuilder(
+                sensorId -> sensorId == 0 ? firstSensorReadings::add : sensorId == 1 ? secondSensorReadings::add : sensorId == 2 ? failingListener : null)
+                .udpAddress(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))
+                .tcpAddress(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+
+        try (TemperatureIngestServer ingestServer = ingestServerBuilder.build()) {
+            try (DatagramChannel datagramChannel = DatagramChannel.open()) {
+                datagramChannel.send(newIngestFrames(new int[]{0, 0, 1}, new float[]{1.0F, 2.0F, 3.0F}), ingestServer.getUdpAddress());
+                datagramChannel.send(ByteBuffer.allocate(10), ingestServer.getUdpAddress());
+                datagramChannel.send(newIngestFrames(new int[]{7}, new float[]{99.0F}), ingestServer.getUdpAddress());
+            }
+
+            try (SocketChannel socketChannel = SocketChannel.open(ingestServer.getTcpAddress())) {
+                // The failing listener is in the middle of a read so the
+                // batches around it mustn't be provided twice or lost
+                ByteBuffer frames = newIngestFrames(new int[]{1, 2, 1, 1}, new float[]{4.0F, 99.0F, 5.0F, 6.0F});
+
+                // Splits a frame across writes
+                frames.limit(TemperatureRecords.RECORD_SIZE + 5);
+                socketChannel.write(frames);
+                Thread.sleep(20);
+
+                frames.limit(frames.capacity());
+                socketChannel.write(frames);
+
+                // Half a frame before the connection is closed
+                socketChannel.write(ByteBuffer.allocate(TemperatureRecords.RECORD_SIZE / 2));
+            }
+
+            long deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            TemperatureIngestServer.IngestStatistics ingestStatistics = ingestServer.getStatistics();
+
+            while ((ingestStatistics.getReadingCount() < 6 || ingestStatistics.getParseErrorCount() < 2 || ingestStatistics.getOpenConnectionCount() > 0)
+                    && System.nanoTime() < deadlineNanos) {
+
+                Thread.sleep(5);
+                ingestStatistics = ingestServer.getStatistics();
+            }
+
+            assert ingestStatistics.getReadingCount() == 6
+                    && ingestStatistics.getSkippedReadingCount() == 1
+                    && ingestStatistics.getFailedReadingCount() == 1
+                    && ingestStatistics.getParseErrorCount() == 2
+                    && ingestStatistics.getAcceptedConnectionCount() == 1
+                    && ingestStatistics.getOpenConnectionCount() == 0
+                    && ingestStatistics.getPacketsPerSecond() > 0.0 :
+                    String.format("Unexpected ingest statistics '%s'", ingestStatistics);
+
+            assert firstSensorReadings.equals(Arrays.asList(1.0F, 2.0F))
+                    && secondSensorReadings.equals(Arrays.asList(3.0F, 4.0F, 5.0F, 6.0F)) :
+                    String.format("Readings weren't routed to their sensors in order, got '%s' and '%s'", firstSensorReadings, secondSensorReadings);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static void testIngestServerLimitsConnections() {
+        List<Float> sensorReadings = Collections.synchronizedList(new ArrayList<>());
+
+        TemperatureIngestServer.TemperatureIngestServerBuilder ingestServerBuilder = new TemperatureIngestServer.TemperatureIngestServerBuilder(
+                sensorId -> sensorId == 0 ? sensorReadings::add : null)
+                .tcpAddress(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0))
+                .maxConnections(1);
+
+        try (TemperatureIngestServer ingestServer = ingestServerBuilder.build();
+             SocketChannel firstSocketChannel = SocketChannel.open(ingestServer.getTcpAddress());
+             SocketChannel secondSocketChannel = SocketChannel.open(ingestServer.getTcpAddress())) {
+
+            // The connection past the limit is closed by the server
+            int readCount = secondSocketChannel.read(ByteBuffer.allocate(1));
+
+            firstSocketChannel.write(newIngestFrames(new int[]{0}, new float[]{1.0F}));
+
+            long deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            TemperatureIngestServer.IngestStatistics ingestStatistics = ingestServer.getStatistics();
+
+            while (ingestStatistics.getReadingCount() < 1 && System.nanoTime() < deadlineNanos) {
+                Thread.sleep(5);
+                ingestStatistics = ingestServer.getStatistics();
+            }
+
+            assert readCount == -1
+                    && ingestStatistics.getAcceptedConnectionCount() == 1
+                    && ingestStatistics.getRejectedConnectionCount() == 1
+                    && ingestStatistics.getOpenConnectionCount() == 1
+                    && sensorReadings.equals(Collections.singletonList(1.0F)) :
+                    String.format("Unexpected read '%d', ingest statistics '%s' or readings '%s'", readCount, ingestStatistics, sensorReadings);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        try {
+            new TemperatureIngestServer.TemperatureIngestServerBuilder(sensorId -> null).maxConnections(0);
+            assert true == false : "Failed to catch an exception when setting max connections to '0'";
+        } catch (IllegalArgumentException e) {
+            // Purposely left blank - if we get here it means we properly caught an
+            // exception and didn't execute an assert statement that will always fail
+        }
+    }
+
+    public static void testThresholdArraysMatchIndex() {
+        Random random = new Random(7);
+
+        // Not a multiple of any vector length so the scalar tail is evaluated too
+        int thresholdCount = 1001;
+
+        List<Integer> indexTriggeredThresholds = new ArrayList<>();
+        List<Integer> arraysTriggeredThresholds = new ArrayList<>();
+        List<Integer> scalarArraysTriggeredThresholds = new ArrayList<>();
+        List<Integer> linearScanTriggeredThresholds = new ArrayList<>();
+        List<List<Integer>> triggeredThresholdsHolder = new ArrayList<>(Collections.singletonList(indexTriggeredThresholds));
+
+        TemperatureThresholdIndex temperatureThresholdIndex = new TemperatureThresholdIndex();
+        TemperatureThresholdArrays temperatureThresholdArrays = new TemperatureThresholdArrays();
+        TemperatureThresholdArrays scalarTemperatureThresholdArrays = new TemperatureThresholdArrays(new TemperatureCrossingKernel.ScalarCrossingKernel());
+        List<TemperatureThreshold> temperatureThresholds = new ArrayList<>();
+
+        ThresholdTriggerDirections[] thresholdTriggerDirections
+                = {null, ThresholdTriggerDirections.INCREASING_TEMP, ThresholdTriggerDirections.DECREASING_TEMP};
+
+        for (int thresholdIndex = 0; thresholdIndex < thresholdCount; thresholdIndex++) {
+            int triggeredThresholdIndex = thresholdIndex;
+
+            // Half steps make readings land exactly on thresholds
+            TemperatureThreshold temperatureThreshold
+                    = new TemperatureThreshold.TemperatureThresholdBuilder(
+                            (random.nextInt(400) - 200) / 2.0F, newTemperature -> triggeredThresholdsHolder.get(0).add(triggeredThresholdIndex))
+                            .temperatureScale(random.nextBoolean() ? TemperatureScales.CELSIUS_SCALE : TemperatureScales.FAHRENHEIT_SCALE)
+                            .thresholdTriggerPrecision(random.nextInt(40) / 2.0F)
+                            .thresholdTriggerDirection(thresholdTriggerDirections[random.nextInt(thresholdTriggerDirections.length)])
+                            .build();
+
+            temperatureThresholds.add(temperatureThreshold);
+        }
+
+        temperatureThresholdIndex.addTemperatureThresholds(temperatureThresholds);
+        temperatureThresholdArrays.addTemperatureThresholds(temperatureThresholds);
+        scalarTemperatureThresholdArrays.addTemperatureThresholds(temperatureThresholds);
+
+        // The vector kernel has to be used whenever the JVM can run it
+        assert temperatureThresholdArrays.isVectorized() || !ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent() :
+                "Vector API is available but the threshold arrays fell back to the scalar kernel";
+
+        for (int readingCount = 0; readingCount < 2000; readingCount++) {
+            float previousTemp = readingCount % 100 == 0 ? Float.NaN : (random.nextInt(480) - 240) / 2.0F;
+            float newTemp = (random.nextInt(480) - 240) / 2.0F;
+
+            for (List<Integer> triggeredThresholds : Arrays.asList(
+                    indexTriggeredThresholds, arraysTriggeredThresholds, scalarArraysTriggeredThresholds, linearScanTriggeredThresholds)) {
+                triggeredThresholds.clear();
+            }
+
+            triggeredThresholdsHolder.set(0, indexTriggeredThresholds);
+            temperatureThresholdIndex.onTemperatureRead(newTemp, previousTemp, TemperatureScales.CELSIUS_SCALE);
+
+            triggeredThresholdsHolder.set(0, arraysTriggeredThresholds);
+            temperatureThresholdArrays.onTemperatureRead(newTemp, previousTemp, TemperatureScales.CELSIUS_SCALE);
+
+            triggeredThresholdsHolder.set(0, scalarArraysTriggeredThresholds);
+            scalarTemperatureThresholdArrays.onTemperatureRead(newTemp, previousTemp, TemperatureScales.CELSIUS_SCALE);
+
+            triggeredThresholdsHolder.set(0, linearScanTriggeredThresholds);
+            for (TemperatureThreshold temperatureThreshold : temperatureThresholds) {
+                temperatureThreshold.onTemperatureRead(newTemp, previousTemp, TemperatureScales.CELSIUS_SCALE);
+            }
+
+            // The arrays fire in the same order as the index
+            assert arraysTriggeredThresholds.equals(indexTriggeredThresholds)
+                    && scalarArraysTriggeredThresholds.equals(indexTriggeredThresholds) :
+                    String.format("Threshold arrays and index disagree moving from '%f' to '%f'", previousTemp, newTemp);
+
+            Collections.sort(arraysTriggeredThresholds);
+            Collections.sort(linearScanTriggeredThresholds);
+
+            assert arraysTriggeredThresholds.equals(linearScanTriggeredThresholds) :
+                    String.format("Threshold arrays and linear scan disagree moving from '%f' to '%f'", previousTemp, newTemp);
+        }
+
+        // Unregistered thresholds stop firing straight away
+        TemperatureThresholdRegistration.unregisterAll(temperatureThresholdArrays.addTemperatureThresholds(temperatureThresholds));
+        temperatureThresholdArrays.clearTemperatureThresholds();
+
+        arraysTriggeredThresholds.clear();
+        triggeredThresholdsHolder.set(0, arraysTriggeredThresholds);
+        temperatureThresholdArrays.onTemperatureRead(100.0F, -100.0F, TemperatureScales.CELSIUS_SCALE);
+
+        assert temperatureThresholdArrays.isEmpty() && arraysTriggeredThresholds.isEmpty() : "Failed to clear the threshold arrays";
+    }
+
+    public static void testThresholdEventPublisherHonoursDemand() {
+        AtomicInteger callbackCount = new AtomicInteger();
+
+        TemperatureThreshold temperatureThreshold = new TemperatureThreshold.TemperatureThresholdBuilder(50.0F)
+                .thresholdEventCallback(newTemperature -> callbackCount.incrementAndGet())
+                .build();
+
+        // The default dispatcher delivers on the thread that detected the
+        // crossing so everything below is delivered by the time it returns
+        Thermometer thermometer = new Thermometer();
+        thermometer.addTemperatureThreshold(temperatureThreshold);
+
+        RecordingSubscriber singleEventSubscriber = new RecordingSubscriber(1L);
+        RecordingSubscriber droppingSubscriber = new RecordingSubscriber(0L);
+        RecordingSubscriber sensorSubscriber = new RecordingSubscriber(0L);
+
+        TemperatureThresholdPublisher thresholdPublisher = temperatureThreshold.getThresholdEventPublisher();
+        thresholdPublisher.subscribe(singleEventSubscriber);
+        thresholdPublisher.subscribe(droppingSubscriber, new TemperatureThresholdPublisher.SubscriptionOptionsBuilder()
+                .bufferCapacity(1)
+                .overflowPolicy(BackpressurePolicies.DROP_NEWEST)
+                .build());
+
+        TemperatureThresholdPublisher sensorPublisher = thermometer.getThresholdEventPublisher();
+        sensorPublisher.subscribe(sensorSubscriber, new TemperatureThresholdPublisher.SubscriptionOptionsBuilder()
+                .bufferCapacity(2)
+                .overflowPolicy(BackpressurePolicies.DROP_OLDEST)
+                .build());
+
+        assert thresholdPublisher.getSubscriberCount() == 2 && sensorPublisher.getSubscriberCount() == 1 :
+                String.format("Expected '2' and '1' subscribers but there were '%d' and '%d'",
+                        thresholdPublisher.getSubscriberCount(), sensorPublisher.getSubscriberCount());
+
+        try {
+            thermometer.onTemperatureData(new float[] {40.0F, 60.0F, 40.0F, 60.0F, 40.0F}, 0, 5);
+
+            assert callbackCount.get() == 4 : String.format("Expected '4' crossings but the callback saw '%d'", callbackCount.get());
+
+            // Only as many events as were requested are delivered
+            assert singleEventSubscriber.events.size() == 1 && droppingSubscriber.events.isEmpty() && sensorSubscriber.events.isEmpty() :
+                    String.format("Subscribers were delivered '%d', '%d' and '%d' events",
+                            singleEventSubscriber.events.size(), droppingSubscriber.events.size(), sensorSubscriber.events.size());
+
+            TemperatureThresholdEvent firstEvent = singleEventSubscriber.events.get(0);
+
+            assert firstEvent.getTemperatureThreshold() == temperatureThreshold
+                    && firstEvent.getNewTemperature() == 60.0F
+                    && firstEvent.getPreviousTemperature() == 40.0F
+                    && firstEvent.getTemperatureScale() == TemperatureScales.CELSIUS_SCALE
+                    && firstEvent.getCrossingDirection() == ThresholdTriggerDirections.INCREASING_TEMP
+                    && firstEvent.getTimestamp() > 0L :
+                    String.format("Unexpected first event '%s'", firstEvent);
+
+            // The first buffered subscriber kept the first crossing and the
+            // second the last two
+            assert thresholdPublisher.getDroppedEventCount() == 3 && sensorPublisher.getDroppedEventCount() == 2 :
+                    String.format("Expected '3' and '2' dropped events but there were '%d' and '%d'",
+                            thresholdPublisher.getDroppedEventCount(), sensorPublisher.getDroppedEventCount());
+
+            droppingSubscriber.subscription.request(Long.MAX_VALUE);
+            sensorSubscriber.subscription.request(Long.MAX_VALUE);
+
+            assert droppingSubscriber.events.size() == 1
+                    && droppingSubscriber.events.get(0).getCrossingDirection() == ThresholdTriggerDirections.INCREASING_TEMP :
+                    String.format("Expected the first crossing to be kept but got '%s'", droppingSubscriber.events);
+
+            assert sensorSubscriber.events.size() == 2
+                    && sensorSubscriber.events.get(0).getCrossingDirection() == ThresholdTriggerDirections.INCREASING_TEMP
+                    && sensorSubscriber.events.get(1).getCrossingDirection() == ThresholdTriggerDirections.DECREASING_TEMP
+                    && sensorSubscriber.events.get(1).getNewTemperature() == 40.0F :
+                    String.format("Expected the last two crossings to be kept but got '%s'", sensorSubscriber.events);
+
+            // Unbounded demand is delivered straight away
+            thermometer.onTemperatureData(60.0F);
+
+            assert droppingSubscriber.events.size() == 2 && sensorSubscriber.events.size() == 3 && singleEventSubscriber.events.size() == 1 :
+                    "Unbounded demand wasn't delivered straight away";
+
+            // Requests have to be positive
+            singleEventSubscriber.subscription.request(0L);
+
+            assert singleEventSubscriber.error instanceof IllegalArgumentException && thresholdPublisher.getSubscriberCount() == 1 :
+                    String.format("Expected a non-positive request to fail the subscriber but got '%s'", singleEventSubscriber.error);
+
+            // Closing completes the rest, as well as anyone subscribing afterwards
+            thresholdPublisher.close();
+            sensorPublisher.close();
+
+            RecordingSubscriber lateSubscriber = new RecordingSubscriber(1L);
+            thresholdPublisher.subscribe(lateSubscriber);
+
+            assert droppingSubscriber.completed && sensorSubscriber.completed && lateSubscriber.completed && !singleEventSubscriber.completed
+                    && !thresholdPublisher.hasSubscribers() && !sensorPublisher.hasSubscribers() :
+                    "Closing the publishers didn't complete their subscribers";
+
+            thermometer.onTemperatureData(40.0F);
+
+            assert callbackCount.get() == 6 : "Closing the publisher stopped the callback of the threshold";
+        } finally {
+            thermometer.clearTemperatureThresholds();
+        }
+    }
+
+    public static void testThresholdEventPublisherWakesBlockedProducersOnError() {
+        TemperatureThreshold temperatureThreshold = new TemperatureThreshold.TemperatureThresholdBuilder(50.0F)
+                .thresholdEventCallback(newTemperature -> {
+                })
+                .build();
+
+        Thermometer thermometer = new Thermometer();
+        thermometer.addTemperatureThreshold(temperatureThreshold);
+
+        RecordingSubscriber blockingSubscriber = new RecordingSubscriber(0L);
+
+        temperatureThreshold.getThresholdEventPublisher().subscribe(blockingSubscriber, new TemperatureThresholdPublisher.SubscriptionOptionsBuilder()
+                .bufferCapacity(1)
+                .overflowPolicy(BackpressurePolicies.BLOCK)
+                .build());
+
+        // The second crossing finds the buffer full and blocks the producer
+        Thread producer = new Thread(() -> thermometer.onTemperatureData(new float[] {40.0F, 60.0F, 40.0F, 60.0F}, 0, 4));
+        producer.start();
+
+        try {
+            for (int attempt = 0; attempt < 1_000 && producer.getState() != Thread.State.WAITING; attempt++) {
+                Thread.sleep(10L);
+            }
+
+            // A non-positive request fails the subscription which has to let
+            // the producer go
+            blockingSubscriber.subscription.request(0L);
+            producer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        assert !producer.isAlive() : "Producer stayed blocked on the buffer of a failed subscription";
+        assert blockingSubscriber.error instanceof IllegalArgumentException && blockingSubscriber.events.isEmpty() :
+                String.format("Expected the subscription to fail without events but got '%s' and '%s'", blockingSubscriber.error, blockingSubscriber.events);
+    }
+
+    public static void testThresholdConfigReloadKeepsUnchangedThresholds() {
+        try {
+            Path configDirectory = Files.createTempDirectory("thresholds");
+            Path configPath = configDirectory.resolve("thresholds.csv");
+
+            try {
+                AtomicInteger lowCrossings = new AtomicInteger();
+                AtomicInteger highCrossings = new AtomicInteger();
+                AtomicInteger otherCrossings = new AtomicInteger();
+
+                ThermometerRegistry thermometerRegistry = new ThermometerRegistry.ThermometerRegistryBuilder(2).build();
+
+                // The threshold at '20' only fires once a reading has held
+                // above it for two readings
+                Files.write(configPath, Arrays.asList(
+                        "sensor id,threshold,scale,precision,direction,callback,hysteresis band,hold sample count",
+                        "0,10.0,CELSIUS_SCALE,,,low",
+                        "# debounced",
+                        "0,20.0,CELSIUS_SCALE,,INCREASING_TEMP,high,,2",
+                        "1,86.0,FAHRENHEIT_SCALE,0.5,,other"), StandardCharsets.UTF_8);
+
+                TemperatureThresholdReloader temperatureThresholdReloader = new TemperatureThresholdReloader.TemperatureThresholdReloaderBuilder(thermometerRegistry, configPath)
+                        .thresholdEventCallback("low", newTemperature -> lowCrossings.incrementAndGet())
+                        .thresholdEventCallback("high", newTemperature -> highCrossings.incrementAndGet())
+                        .thresholdEventCallback("other", newTemperature -> otherCrossings.incrementAndGet())
+                        .watchForChanges(false)
+                        .build();
+
+                List<TemperatureThresholdRegistration> loadedRegistrations = temperatureThresholdReloader.getRegistrations();
+
+                assert loadedRegistrations.size() == 3 : String.format("Expected '3' thresholds to be loaded but got '%d'", loadedRegistrations.size());
+
+                thermometerRegistry.onTemperatureData(0, 15.0F);
+                thermometerRegistry.onTemperatureData(0, 25.0F);
+
+                assert highCrossings.get() == 0 : "The debounced threshold fired before its hold was over";
+
+                // Only the threshold of sensor '1' changes and one is added
+                Files.write(configPath, Arrays.asList(
+                        "0,10.0,CELSIUS_SCALE,,,low",
+                        "0,20.0,CELSIUS_SCALE,,INCREASING_TEMP,high,,2",
+                        "0,40.0,CELSIUS_SCALE,,,high",
+                        "1,90.0,FAHRENHEIT_SCALE,0.5,,other"), StandardCharsets.UTF_8);
+
+                TemperatureThresholdReloader.ReloadStatistics reloadStatistics = temperatureThresholdReloader.reload();
+
+                assert reloadStatistics.getAddedCount() == 2 && reloadStatistics.getRemovedCount() == 1 && reloadStatistics.getUnchangedCount() == 2 :
+                        String.format("Unexpected reload '%s'", reloadStatistics);
+
+                List<TemperatureThresholdRegistration> reloadedRegistrations = temperatureThresholdReloader.getRegistrations();
+
+                assert reloadedRegistrations.get(0) == loadedRegistrations.get(0)
+                        && reloadedRegistrations.get(1) == loadedRegistrations.get(1)
+                        && !loadedRegistrations.get(2).isRegistered() :
+                        "Unchanged thresholds weren't kept or the changed threshold wasn't unregistered";
+
+                assert temperatureThresholdReloader.getThresholdDefinitions().size() == reloadedRegistrations.size() :
+                        "Expected a threshold definition for every registration of the reload";
+
+                // The hold that started before the reload carries on
+                thermometerRegistry.onTemperatureData(0, 26.0F);
+
+                assert highCrossings.get() == 1 : "The unchanged debounced threshold lost its state on reload";
+
+                // A reading crossing '10' on every reading never misses it
+                // while the config flips between two versions
+                AtomicBoolean ingesting = new AtomicBoolean(true);
+                AtomicInteger crossingReadings = new AtomicInteger();
+                int lowCrossingsBefore = lowCrossings.get();
+
+                Thread producer = new Thread(() -> {
+                    while (ingesting.get()) {
+                        thermometerRegistry.onTemperatureData(0, crossingReadings.get() % 2 == 0 ? 5.0F : 15.0F);
+                        crossingReadings.incrementAndGet();
+                    }
+                });
+
+                producer.start();
+
+                try {
+                    for (int reloadIndex = 0; reloadIndex < 50; reloadIndex++) {
+                        Files.write(configPath, Arrays.asList(
+                                "0,10.0,CELSIUS_SCALE,,,low",
+                                reloadIndex % 2 == 0 ? "0,40.0,CELSIUS_SCALE,,,high" : "0,50.0,CELSIUS_SCALE,,,high"), StandardCharsets.UTF_8);
+
+                        temperatureThresholdReloader.reload();
+                    }
+                } finally {
+                    ingesting.set(false);
+                    producer.join();
+                }
+
+                // Coming from '26' the first reading crosses '10' as well
+                assert lowCrossings.get() - lowCrossingsBefore == crossingReadings.get() :
+                        String.format("Expected '%d' crossings during the reloads but got '%d'", crossingReadings.get(), lowCrossings.get() - lowCrossingsBefore);
+
+                // A config that can't be loaded leaves the thresholds alone
+                Files.write(configPath, Arrays.asList("0,10.0,CELSIUS_SCALE,,,unknown"), StandardCharsets.UTF_8);
+
+                try {
+                    temperatureThresholdReloader.reload();
+                    assert true == false : "Failed to reject a config naming an unknown callback";
+                } catch (IllegalArgumentException e) {
+                    // Purposely left blank
+                }
+
+                assert temperatureThresholdReloader.getRegistrations().size() == 2
+                        && temperatureThresholdReloader.getRegistrations().stream().allMatch(TemperatureThresholdRegistration::isRegistered) :
+                        "A failed reload changed the thresholds";
+
+                temperatureThresholdReloader.close();
+
+                // Changes to the file are picked up without being asked to
+                ThermometerRegistry watchedThermometerRegistry = new ThermometerRegistry.ThermometerRegistryBuilder(1).build();
+                Files.write(configPath, Arrays.asList("0,10.0,CELSIUS_SCALE,,,low"), StandardCharsets.UTF_8);
+
+                try (TemperatureThresholdReloader watchingReloader = new TemperatureThresholdReloader.TemperatureThresholdReloaderBuilder(watchedThermometerRegistry, configPath)
+                        .thresholdEventCallback("low", newTemperature -> lowCrossings.incrementAndGet())
+                        .settleTime(10, TimeUnit.MILLISECONDS)
+                        .build()) {
+
+                    Files.write(configPath, Arrays.asList("0,10.0,CELSIUS_SCALE,,,low", "0,20.0,CELSIUS_SCALE,,,low"), StandardCharsets.UTF_8);
+
+                    long deadlineNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+
+                    while (watchingReloader.getRegistrations().size() != 2 && System.nanoTime() < deadlineNanos) {
+                        Thread.sleep(10);
+                    }
+
+                    assert watchingReloader.getRegistrations().size() == 2 && watchingReloader.getFailedReloadCount() == 0 :
+                            "The changed config file wasn't reloaded";
+                }
+            } finally {
+                deleteDirectory(configDirectory);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static void testThresholdConfigReloadRefusesEmptyConfig() {
+        try {
+            Path configDirectory = Files.createTempDirectory("thresholds");
+            Path configPath = configDirectory.resolve("thresholds.csv");
+
+            try {
+                ThermometerRegistry thermometerRegistry = new ThermometerRegistry.ThermometerRegistryBuilder(1).build();
+
+                // A header is allowed after a leading comment
+                Files.write(configPath, Arrays.asList(
+                        "# thresholds",
+                        "Sensor Id,Threshold,Scale,Precision,Direction,Callback,Hysteresis Band,Hold Sample Count,Hold Time (ms)",
+                        "0,10.0,CELSIUS_SCALE,,,low"), StandardCharsets.UTF_8);
+
+                TemperatureThresholdReloader temperatureThresholdReloader = new TemperatureThresholdReloader.TemperatureThresholdReloaderBuilder(thermometerRegistry, configPath)
+                        .thresholdEventCallback("low", newTemperature -> {
+                        })
+                        .watchForChanges(false)
+                        .build();
+
+                assert temperatureThresholdReloader.getRegistrations().size() == 1 :
+                        String.format("Expected '1' threshold to be loaded but got '%d'", temperatureThresholdReloader.getRegistrations().size());
+
+                // As left behind by a write that truncated the file first
+                Files.write(configPath, Collections.emptyList(), StandardCharsets.UTF_8);
+
+                try {
+                    temperatureThresholdReloader.reload();
+                    assert true == false : "Failed to refuse an empty config";
+                } catch (IllegalArgumentException e) {
+                    // Purposely left blank - if we get here it means we properly caught an
+                    // exception and didn't execute an assert statement that will always fail
+                }
+
+                assert temperatureThresholdReloader.getRegistrations().size() == 1
+                        && temperatureThresholdReloader.getRegistrations().get(0).isRegistered() :
+                        "An empty config unregistered the thresholds";
+
+                temperatureThresholdReloader.close();
+
+                Files.write(configPath, Arrays.asList("0,10.0,CELSIUS_SCALE,,,low"), StandardCharsets.UTF_8);
+
+                TemperatureThresholdReloader emptyConfigReloader = new TemperatureThresholdReloader.TemperatureThresholdReloaderBuilder(new ThermometerRegistry.ThermometerRegistryBuilder(1).build(), configPath)
+                        .thresholdEventCallback("low", newTemperature -> {
+                        })
+                        .allowEmptyConfig(true)
+                        .watchForChanges(false)
+                        .build();
+
+                Files.write(configPath, Collections.emptyList(), StandardCharsets.UTF_8);
+
+                assert emptyConfigReloader.reload().getRemovedCount() == 1 && emptyConfigReloader.getRegistrations().isEmpty() :
+                        "An allowed empty config didn't unregister the thresholds";
+
+                emptyConfigReloader.close();
+            } finally {
+                deleteDirectory(configDirectory);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        // A mistyped sensor id on the first line isn't taken for a header
+        try {
+            TemperatureThresholdConfig.parse(new StringReader(String.join("\n",
+                    "O,10.0,CELSIUS_SCALE,,,low",
+                    "1,20.0,CELSIUS_SCALE,,,low")));
+
+            assert true == false : "Failed to reject a threshold with a mistyped sensor id";
+        } catch (IllegalArgumentException e) {
+            // Purposely left blank - if we get here it means we properly caught an
+            // exception and didn't execute an assert statement that will always fail
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static void testShardedPipelineOwnsSensors() {
+        int producerCount = 4;
+        int sensorCount = 256;
+        int readingCount = 100;
+
+        for (WaitStrategies waitStrategy : WaitStrategies.values()) {
+            ThermometerRegistry thermometerRegistry = new ThermometerRegistry.ThermometerRegistryBuilder(sensorCount).build();
+
+            AtomicInteger[] crossings = new AtomicInteger[sensorCount];
+            String[] evaluatingThreads = new String[sensorCount];
+            AtomicBoolean sharedEvaluation = new AtomicBoolean(false);
+
+            for (int sensorId = 0; sensorId < sensorCount; sensorId++) {
+                int listenedSensorId = sensorId;
+                AtomicInteger sensorCrossings = new AtomicInteger();
+                crossings[sensorId] = sensorCrossings;
+
+                thermometerRegistry.addTemperatureThreshold(sensorId, new TemperatureThreshold.TemperatureThresholdBuilder(10.0F)
+                        .thresholdEventCallback(newTemperature -> sensorCrossings.incrementAndGet())
+                        .build());
+
+                // Unsynchronized on purpose as only the shard of the sensor
+                // should ever evaluate its thresholds
+                thermometerRegistry.addTemperatureThreshold(sensorId, (newTemperature, previousTemperature, temperatureScale) -> {
+                    String threadName = Thread.currentThread().getName();
+
+                    if (evaluatingThreads[listenedSensorId] == null) {
+                        evaluatingThreads[listenedSensorId] = threadName;
+                    } else if (!evaluatingThreads[listenedSensorId].equals(threadName)) {
+                        sharedEvaluation.set(true);
+                    }
+
+                    // Holds up every 64th sensor now and then so that, were
+                    // lanes striped across shards, the other shard would queue
+                    // its readings on the held lane for this one to evaluate
+                    if (listenedSensorId % 64 == 0 && newTemperature < 10.0F) {
+                        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                    }
+                });
+            }
+
+            // A tiny ring keeps producers waiting on the shards
+            TemperatureShardedPipeline temperatureShardedPipeline = new TemperatureShardedPipeline.TemperatureShardedPipelineBuilder(thermometerRegistry)
+                    .shardCount(2)
+                    .ringCapacity(3)
+                    .waitStrategy(waitStrategy)
+                    .build();
+
+            assert temperatureShardedPipeline.getRingCapacity() == 4 :
+                    String.format("Expected the ring capacity to be rounded up to '4' but got '%d'", temperatureShardedPipeline.getRingCapacity());
+
+            // More sensors than the registry has lanes so sensors '64' apart
+            // would share a lane if lanes were striped across the shards
+            assert temperatureShardedPipeline.getShardSensorCount() == 128
+                    && temperatureShardedPipeline.getShardIndex(127) == 0
+                    && temperatureShardedPipeline.getShardIndex(128) == 1
+                    && temperatureShardedPipeline.getShardIndex(sensorCount - 1) == 1 :
+                    String.format("Expected blocks of '128' sensors per shard but got '%d'", temperatureShardedPipeline.getShardSensorCount());
+
+            for (int sensorId = 0; sensorId < sensorCount; sensorId++) {
+                int shardIndex = temperatureShardedPipeline.getShardIndex(sensorId);
+                int firstLaneSensorId = thermometerRegistry.getLaneIndex(sensorId) * thermometerRegistry.getLaneSensorCount();
+
+                assert temperatureShardedPipeline.getShardIndex(firstLaneSensorId) == shardIndex :
+                        String.format("Sensor '%d' shares a lane with sensor '%d' of another shard", sensorId, firstLaneSensorId);
+            }
+
+            List<Thread> producers = new ArrayList<>();
+
+            // Every sensor alternates around its threshold so every reading
+            // after the first crosses it. Every producer feeds both shards but
+            // sensors '64' apart are fed by different producers, so one of
+            // them being held up doesn't hold up the readings of the others.
+            for (int producerIndex = 0; producerIndex < producerCount; producerIndex++) {
+                int fedProducerIndex = producerIndex;
+
+                producers.add(new Thread(() -> {
+                    try (TemperatureShardedPipeline.PipelineProducer pipelineProducer = temperatureShardedPipeline.newProducer()) {
+                        for (int readingIndex = 0; readingIndex < readingCount; readingIndex++) {
+                            float temperature = readingIndex % 2 == 0 ? 5.0F : 15.0F;
+
+                            for (int sensorId = 0; sensorId < sensorCount; sensorId++) {
+                                if ((sensorId + sensorId / 64) % producerCount == fedProducerIndex) {
+                                    pipelineProducer.onTemperatureData(sensorId, temperature);
+                                }
+                            }
+                        }
+                    }
+                }));
+            }
+
+            producers.forEach(Thread::start);
+
+            try {
+                for (Thread producer : producers) {
+                    producer.join();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            temperatureShardedPipeline.close();
+
+            assert temperatureShardedPipeline.getProcessedReadingCount() == (long) sensorCount * readingCount :
+                    String.format("Expected '%d' readings to be processed with '%s' but got '%d'",
+                            sensorCount * readingCount, waitStrategy, temperatureShardedPipeline.getProcessedReadingCount());
+
+            assert !sharedEvaluation.get() : String.format("A sensor was evaluated by more than one thread with '%s'", waitStrategy);
+
+            for (int sensorId = 0; sensorId < sensorCount; sensorId++) {
+                assert crossings[sensorId].get() == readingCount - 1 :
+                        String.format("Expected '%d' crossings of sensor '%d' with '%s' but got '%d'",
+                                readingCount - 1, sensorId, waitStrategy, crossings[sensorId].get());
+
+                assert thermometerRegistry.getCurrentTemperature(sensorId, Float.NaN) == 15.0F :
+                        String.format("Sensor '%d' didn't end on its last reading with '%s'", sensorId, waitStrategy);
+
+                String expectedThread = "temperature-shard-" + temperatureShardedPipeline.getShardIndex(sensorId);
+
+                assert expectedThread.equals(evaluatingThreads[sensorId]) :
+                        String.format("Expected sensor '%d' to be evaluated on '%s' but it was on '%s'", sensorId, expectedThread, evaluatingThreads[sensorId]);
+            }
+
+            try {
+                temperatureShardedPipeline.newProducer();
+                assert true == false : "Handed out a producer of a closed pipeline";
+            } catch (IllegalStateException e) {
+                // Purposely left blank - if we get here it means we properly caught an
+                // exception and didn't execute an assert statement that will always fail
+            }
+        }
+    }
+
+    public static void testCheckpointRestoresThresholdsAndTemperatures() {
+        try {
+            Path checkpointDirectory = Files.createTempDirectory("checkpoint");
+            Path checkpointPath = checkpointDirectory.resolve("thermometers.checkpoint");
+
+            try {
+                TemperatureThresholdConfig temperatureThresholdConfig = TemperatureThresholdConfig.parse(new StringReader(String.join("\n",
+                        "0,10.0,CELSIUS_SCALE,,,low",
+                        "0,20.0,CELSIUS_SCALE,0.5,INCREASING_TEMP,high,1.0,2,0,250",
+                        "2,50.0,FAHRENHEIT_SCALE,,DECREASING_TEMP,low")));
+
+                ThermometerRegistry thermometerRegistry = new ThermometerRegistry.ThermometerRegistryBuilder(4).build();
+
+                for (TemperatureThresholdConfig.ThresholdDefinition thresholdDefinition : temperatureThresholdConfig.getThresholdDefinitions()) {
+                    thermometerRegistry.addTemperatureThreshold(thresholdDefinition.getSensorId(), thresholdDefinition.newTemperatureThreshold(newTemperature -> {
+                    }));
+                }
+
+                // Sensor '1' has only been read once and sensor '3' never
+                thermometerRegistry.onTemperatureData(0, 5.0F);
+                thermometerRegistry.onTemperatureData(0, 8.0F);
+                thermometerRegistry.onTemperatureData(1, 20.0F);
+                thermometerRegistry.setTemperatureScale(2, TemperatureScales.FAHRENHEIT_SCALE);
+                thermometerRegistry.onTemperatureData(2, 60.0F);
+                thermometerRegistry.onTemperatureData(2, 55.0F);
+
+                TemperatureCheckpointer temperatureCheckpointer = new TemperatureCheckpointer.TemperatureCheckpointerBuilder(thermometerRegistry, checkpointPath)
+                        .thresholdDefinitions(temperatureThresholdConfig::getThresholdDefinitions)
+                        .checkpointInterval(1, TimeUnit.HOURS)
+                        .build();
+
+                // Shutting down writes the checkpoint
+                temperatureCheckpointer.close();
+
+                assert temperatureCheckpointer.getCheckpointCount() == 1 :
+                        String.format("Expected '1' checkpoint to be written on close but got '%d'", temperatureCheckpointer.getCheckpointCount());
+
+                TemperatureCheckpoint temperatureCheckpoint = TemperatureCheckpoint.read(checkpointPath);
+
+                assert temperatureCheckpoint.getSensorCount() == 3 :
+                        String.format("Expected '3' sensors to be checkpointed but got '%d'", temperatureCheckpoint.getSensorCount());
+
+                assert temperatureCheckpoint.getThresholdDefinitions().equals(temperatureThresholdConfig.getThresholdDefinitions()) :
+                        String.format("Threshold definitions '%s' didn't survive the checkpoint", temperatureCheckpoint.getThresholdDefinitions());
+
+                AtomicInteger lowCrossings = new AtomicInteger();
+                ThermometerRegistry restartedRegistry = new ThermometerRegistry.ThermometerRegistryBuilder(4).build();
+
+                int restoredCount = temperatureCheckpoint.restoreTemperatures(restartedRegistry);
+                List<TemperatureThresholdRegistration> restoredRegistrations = temperatureCheckpoint.restoreThresholds(restartedRegistry, Map.of(
+                        "low", newTemperature -> lowCrossings.incrementAndGet(),
+                        "high", newTemperature -> {
+                        }));
+
+                assert restoredCount == 3 && restoredRegistrations.size() == 3 && restoredRegistrations.stream().allMatch(TemperatureThresholdRegistration::isRegistered) :
+                        "Failed to restore every sensor and threshold of the checkpoint";
+
+                assert restartedRegistry.getPreviousTemperature(0, Float.NaN) == 5.0F
+                        && restartedRegistry.getCurrentTemperature(0, Float.NaN) == 8.0F
+                        && !restartedRegistry.hasPreviousTemperature(1)
+                        && restartedRegistry.getCurrentTemperature(1, Float.NaN) == 20.0F
+                        && restartedRegistry.getTemperatureScale(2) == TemperatureScales.FAHRENHEIT_SCALE
+                        && restartedRegistry.getCurrentTemperature(3) == null :
+                        "Temperatures weren't restored as they were checkpointed";
+
+                // The first readings after the restart already cross
+                restartedRegistry.onTemperatureData(0, 12.0F);
+                restartedRegistry.onTemperatureData(2, 45.0F);
+
+                assert lowCrossings.get() == 2 : String.format("Expected '2' crossings right after the restart but got '%d'", lowCrossings.get());
+
+                // A reloader seeded from the checkpoint only swaps what changed
+                // in the config since
+                Path configPath = checkpointDirectory.resolve("thresholds.csv");
+
+                Files.write(configPath, Arrays.asList(
+                        "0,10.0,CELSIUS_SCALE,,,low",
+                        "0,20.0,CELSIUS_SCALE,0.5,INCREASING_TEMP,high,1.0,2,0,250",
+                        "2,40.0,FAHRENHEIT_SCALE,,DECREASING_TEMP,low"), StandardCharsets.UTF_8);
+
+                AtomicInteger seededLowCrossings = new AtomicInteger();
+                ThermometerRegistry seededRegistry = new ThermometerRegistry.ThermometerRegistryBuilder(4).build();
+                temperatureCheckpoint.restoreTemperatures(seededRegistry);
+
+                TemperatureThresholdReloader seededReloader = new TemperatureThresholdReloader.TemperatureThresholdReloaderBuilder(seededRegistry, configPath)
+                        .thresholdEventCallback("low", newTemperature -> seededLowCrossings.incrementAndGet())
+                        .thresholdEventCallback("high", newTemperature -> {
+                        })
+                        .thresholdCheckpoint(temperatureCheckpoint)
+                        .watchForChanges(false)
+                        .build();
+
+                assert seededReloader.getThresholdDefinitions().equals(TemperatureThresholdConfig.parse(configPath).getThresholdDefinitions()) :
+                        String.format("Seeded reloader didn't pick up the config but has '%s'", seededReloader.getThresholdDefinitions());
+
+                // Only the single threshold at '10' crosses, and the threshold at
+                // '50' was replaced rather than kept alongside the one at '40'
+                seededRegistry.onTemperatureData(0, 12.0F);
+                seededRegistry.onTemperatureData(2, 45.0F);
+
+                assert seededLowCrossings.get() == 1 :
+                        String.format("Expected '1' crossing after seeding from the checkpoint but got '%d'", seededLowCrossings.get());
+
+                seededReloader.close();
+
+                // A callback name running past the end of the checkpoint is
+                // rejected even when the checksum matches
+                ByteBuffer craftedCheckpoint = ByteBuffer.wrap(Files.readAllBytes(checkpointPath)).order(TemperatureCheckpoint.BYTE_ORDER);
+                craftedCheckpoint.putShort(TemperatureCheckpoint.HEADER_SIZE + temperatureCheckpoint.getSensorCount() * TemperatureCheckpoint.SENSOR_RECORD_SIZE, Short.MAX_VALUE);
+
+                CRC32 crc = new CRC32();
+                crc.update(craftedCheckpoint.array(), TemperatureCheckpoint.HEADER_SIZE, craftedCheckpoint.capacity() - TemperatureCheckpoint.HEADER_SIZE);
+                craftedCheckpoint.putInt(Integer.BYTES + 2 * Short.BYTES, (int) crc.getValue());
+
+                Path craftedPath = checkpointDirectory.resolve("crafted.checkpoint");
+                Files.write(craftedPath, craftedCheckpoint.array());
+
+                try {
+                    TemperatureCheckpoint.read(craftedPath);
+                    assert true == false : "Failed to reject a callback name running past the end of the checkpoint";
+                } catch (IllegalArgumentException e) {
+                    // Purposely left blank - if we get here it means we properly caught an
+                    // exception and didn't execute an assert statement that will always fail
+                }
+
+                // A torn or corrupted checkpoint is rejected as a whole
+                try (FileChannel fileChannel = FileChannel.open(checkpointPath, StandardOpenOption.WRITE)) {
+                    fileChannel.write(ByteBuffer.wrap(new byte[] {0x7F}), TemperatureCheckpoint.HEADER_SIZE + 4);
+                }
+
+                try {
+                    TemperatureCheckpoint.read(checkpointPath);
+                    assert true == false : "Failed to reject a checkpoint that doesn't match its checksum";
+                } catch (IllegalArgumentException e) {
+                    // Purposely left blank - if we get here it means we properly caught an
+                    // exception and didn't execute an assert statement that will always fail
+                }
+            } finally {
+                deleteDirectory(checkpointDirectory);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static class RecordingSubscriber implements Flow.Subscriber<TemperatureThresholdEvent> {
+
+        private final long initialRequest;
+        private final List<TemperatureThresholdEvent> events = Collections.synchronizedList(new ArrayList<>());
+        private volatile Flow.Subscription subscription;
+        private volatile Throwable error;
+        private volatile boolean completed = false;
+
+        private RecordingSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+
+            if (initialRequest > 0L) {
+                subscription.request(initialRequest);
+            }
+        }
+
+        @Override
+        public void onNext(TemperatureThresholdEvent temperatureThresholdEvent) {
+            events.add(temperatureThresholdEvent);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+        }
+    }
+
+    private static ByteBuffer newIngestFrames(int[] sensorIds, float[] temperatures) {
+        ByteBuffer frames = ByteBuffer.allocate(sensorIds.length * TemperatureRecords.RECORD_SIZE).order(TemperatureRecords.BYTE_ORDER);
+
+        for (int frameIndex = 0; frameIndex < sensorIds.length; frameIndex++) {
+            frames.putLong(System.currentTimeMillis());
+            frames.putInt(sensorIds[frameIndex]);
+            frames.putFloat(temperatures[frameIndex]);
+        }
+
+        return frames.flip();
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.list(directory)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                Files.deleteIfExists(path);
+            }
+        }
+
+        Files.deleteIfExists(directory);
+    }
+
+}
@@ -0,0 +1,37 @@
+package org.thermometer;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+// Runs every `test*` method of `ProjectTests` as its own JUnit test so that the
+// tests can be run by the build as well as through `ProjectTests.main`
+public class ProjectTestsTest {
+
+    @TestFactory
+    public Stream<DynamicTest> projectTests() {
+        return Arrays.stream(ProjectTests.class.getDeclaredMethods())
+                .filter(method -> Modifier.isPublic(method.getModifiers())
+                        && Modifier.isStatic(method.getModifiers())
+                        && method.getName().startsWith("test")
+                        && method.getParameterCount() == 0)
+                .sorted(Comparator.comparing(Method::getName))
+                .map(method -> DynamicTest.dynamicTest(method.getName(), () -> invokeProjectTest(method)));
+    }
+
+    private static void invokeProjectTest(Method method) throws Throwable {
+        try {
+            method.invoke(null);
+        } catch (InvocationTargetException e) {
+            // Rethrow what the test threw so that failed assertions are reported
+            // as failures rather than as reflection errors
+            throw e.getCause();
+        }
+    }
+
+}
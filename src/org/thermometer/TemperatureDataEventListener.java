@@ -1,7 +0,0 @@
-package org.thermometer;
-
-public interface TemperatureDataEventListener {
-
-    public void onTemperatureData(float temperature);
-
-}